@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * Request of everything reachable from one point within a time limit. The time limit can be split
+ * into several buckets of equal length, e.g. 10, 20 and 30 minutes.
+ * <p>
+ * @author Peter Karich
+ * @see GraphHopper#calcIsochrone(GHIsochroneRequest)
+ */
+public class GHIsochroneRequest
+{
+    private GHPoint point;
+    private long timeLimit = 10 * 60 * 1000;
+    private int buckets = 1;
+    private final WeightingMap hints = new WeightingMap();
+    private String vehicle = "";
+
+    public GHIsochroneRequest()
+    {
+    }
+
+    public GHIsochroneRequest( GHPoint point )
+    {
+        setPoint(point);
+    }
+
+    public GHIsochroneRequest setPoint( GHPoint point )
+    {
+        if (point == null)
+            throw new IllegalArgumentException("point cannot be null");
+
+        this.point = point;
+        return this;
+    }
+
+    public GHPoint getPoint()
+    {
+        return point;
+    }
+
+    /**
+     * @param timeLimit the maximum travel time in milliseconds
+     */
+    public GHIsochroneRequest setTimeLimit( long timeLimit )
+    {
+        this.timeLimit = timeLimit;
+        return this;
+    }
+
+    public long getTimeLimit()
+    {
+        return timeLimit;
+    }
+
+    /**
+     * Splits the time limit into the specified number of buckets of equal length.
+     */
+    public GHIsochroneRequest setBuckets( int buckets )
+    {
+        this.buckets = buckets;
+        return this;
+    }
+
+    public int getBuckets()
+    {
+        return buckets;
+    }
+
+    /**
+     * By default it supports fastest and shortest. Or specify empty to use default.
+     */
+    public GHIsochroneRequest setWeighting( String w )
+    {
+        hints.setWeighting(w);
+        return this;
+    }
+
+    public String getWeighting()
+    {
+        return hints.getWeighting();
+    }
+
+    /**
+     * Specifiy car, bike or foot. Or specify empty to use default.
+     */
+    public GHIsochroneRequest setVehicle( String vehicle )
+    {
+        if (vehicle != null)
+            this.vehicle = vehicle;
+        return this;
+    }
+
+    public String getVehicle()
+    {
+        return vehicle;
+    }
+
+    public WeightingMap getHints()
+    {
+        return hints;
+    }
+
+    @Override
+    public String toString()
+    {
+        return point + ", timeLimit:" + timeLimit + ", buckets:" + buckets + "(" + vehicle + ")";
+    }
+}
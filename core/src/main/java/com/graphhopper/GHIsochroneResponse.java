@@ -0,0 +1,135 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.PointList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a GHIsochroneRequest. Every bucket contains the points reached within its time limit
+ * but not within the limit of the previous bucket. The polygon of a bucket is the convex hull of
+ * the points of this and all previous buckets.
+ * <p>
+ * @author Peter Karich
+ */
+public class GHIsochroneResponse
+{
+    private String debugInfo = "";
+    private final List<Throwable> errors = new ArrayList<Throwable>(4);
+    private final List<Long> timeLimits = new ArrayList<Long>();
+    private final List<PointList> points = new ArrayList<PointList>();
+    private final List<PointList> polygons = new ArrayList<PointList>();
+    private final PMap hintsMap = new PMap();
+
+    public GHIsochroneResponse()
+    {
+    }
+
+    public GHIsochroneResponse addBucket( long timeLimit, PointList bucketPoints, PointList polygon )
+    {
+        timeLimits.add(timeLimit);
+        points.add(bucketPoints);
+        polygons.add(polygon);
+        return this;
+    }
+
+    public int getBuckets()
+    {
+        check("getBuckets");
+        return points.size();
+    }
+
+    /**
+     * @return the upper time limit of the specified bucket in milliseconds
+     */
+    public long getTimeLimit( int bucket )
+    {
+        check("getTimeLimit");
+        return timeLimits.get(bucket);
+    }
+
+    public PointList getPoints( int bucket )
+    {
+        check("getPoints");
+        return points.get(bucket);
+    }
+
+    public PointList getPolygon( int bucket )
+    {
+        check("getPolygon");
+        return polygons.get(bucket);
+    }
+
+    public String getDebugInfo()
+    {
+        check("getDebugInfo");
+        return debugInfo;
+    }
+
+    public GHIsochroneResponse setDebugInfo( String debugInfo )
+    {
+        if (debugInfo != null)
+            this.debugInfo = debugInfo;
+        return this;
+    }
+
+    private void check( String method )
+    {
+        if (hasErrors())
+        {
+            throw new RuntimeException("You cannot call " + method + " if response contains errors. Check this with ghIsochroneResponse.hasErrors(). "
+                    + "Errors are: " + getErrors());
+        }
+    }
+
+    /**
+     * @return true if one or more error found
+     */
+    public boolean hasErrors()
+    {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors()
+    {
+        return errors;
+    }
+
+    public GHIsochroneResponse addError( Throwable error )
+    {
+        errors.add(error);
+        return this;
+    }
+
+    public PMap getHints()
+    {
+        return hintsMap;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (hasErrors())
+            return errors.toString();
+
+        return "buckets:" + points.size() + ", debug:" + debugInfo;
+    }
+}
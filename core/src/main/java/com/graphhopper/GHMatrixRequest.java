@@ -0,0 +1,122 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request of a many-to-many matrix: the weights, distances and times from every from point to
+ * every to point.
+ * <p>
+ * @author Peter Karich
+ * @see GraphHopper#calcMatrix(GHMatrixRequest)
+ */
+public class GHMatrixRequest
+{
+    private final List<GHPoint> fromPoints = new ArrayList<GHPoint>();
+    private final List<GHPoint> toPoints = new ArrayList<GHPoint>();
+    private final WeightingMap hints = new WeightingMap();
+    private String vehicle = "";
+
+    public GHMatrixRequest()
+    {
+    }
+
+    /**
+     * Adds the point as from and as to point, i.e. creates a symmetric matrix if only this method
+     * is used.
+     */
+    public GHMatrixRequest addPoint( GHPoint point )
+    {
+        addFromPoint(point);
+        addToPoint(point);
+        return this;
+    }
+
+    public GHMatrixRequest addFromPoint( GHPoint point )
+    {
+        if (point == null)
+            throw new IllegalArgumentException("point cannot be null");
+
+        fromPoints.add(point);
+        return this;
+    }
+
+    public List<GHPoint> getFromPoints()
+    {
+        return fromPoints;
+    }
+
+    public GHMatrixRequest addToPoint( GHPoint point )
+    {
+        if (point == null)
+            throw new IllegalArgumentException("point cannot be null");
+
+        toPoints.add(point);
+        return this;
+    }
+
+    public List<GHPoint> getToPoints()
+    {
+        return toPoints;
+    }
+
+    /**
+     * By default it supports fastest and shortest. Or specify empty to use default.
+     */
+    public GHMatrixRequest setWeighting( String w )
+    {
+        hints.setWeighting(w);
+        return this;
+    }
+
+    public String getWeighting()
+    {
+        return hints.getWeighting();
+    }
+
+    /**
+     * Specifiy car, bike or foot. Or specify empty to use default.
+     */
+    public GHMatrixRequest setVehicle( String vehicle )
+    {
+        if (vehicle != null)
+            this.vehicle = vehicle;
+        return this;
+    }
+
+    public String getVehicle()
+    {
+        return vehicle;
+    }
+
+    public WeightingMap getHints()
+    {
+        return hints;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "from:" + fromPoints + ", to:" + toPoints + "(" + vehicle + ")";
+    }
+}
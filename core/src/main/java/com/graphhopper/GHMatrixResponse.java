@@ -0,0 +1,172 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of a GHMatrixRequest. The entries are accessed via the index of the from point (the row)
+ * and the index of the to point (the column). If a to point is not reachable from a from point the
+ * weight and the distance are infinite and the time is -1.
+ * <p>
+ * @author Peter Karich
+ */
+public class GHMatrixResponse
+{
+    private String debugInfo = "";
+    private final List<Throwable> errors = new ArrayList<Throwable>(4);
+    private double[][] weights = new double[0][];
+    private double[][] distances = new double[0][];
+    private long[][] times = new long[0][];
+    private final PMap hintsMap = new PMap();
+
+    public GHMatrixResponse()
+    {
+    }
+
+    /**
+     * Creates the matrix where all entries are not found.
+     */
+    public GHMatrixResponse init( int rows, int columns )
+    {
+        weights = new double[rows][columns];
+        distances = new double[rows][columns];
+        times = new long[rows][columns];
+        for (int row = 0; row < rows; row++)
+        {
+            Arrays.fill(weights[row], Double.POSITIVE_INFINITY);
+            Arrays.fill(distances[row], Double.POSITIVE_INFINITY);
+            Arrays.fill(times[row], -1);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the entry from the specified row to the specified column. Different rows can be set
+     * from different threads.
+     */
+    public void setEntry( int row, int column, double weight, double distance, long time )
+    {
+        weights[row][column] = weight;
+        distances[row][column] = distance;
+        times[row][column] = time;
+    }
+
+    public int getRows()
+    {
+        return weights.length;
+    }
+
+    public int getColumns()
+    {
+        return weights.length == 0 ? 0 : weights[0].length;
+    }
+
+    /**
+     * @return true if the to point of the specified column is reachable from the from point of the
+     * specified row
+     */
+    public boolean isFound( int row, int column )
+    {
+        check("isFound");
+        return !Double.isInfinite(weights[row][column]);
+    }
+
+    public double getWeight( int row, int column )
+    {
+        check("getWeight");
+        return weights[row][column];
+    }
+
+    /**
+     * @return distance in meter
+     */
+    public double getDistance( int row, int column )
+    {
+        check("getDistance");
+        return distances[row][column];
+    }
+
+    /**
+     * @return time in millis
+     */
+    public long getTime( int row, int column )
+    {
+        check("getTime");
+        return times[row][column];
+    }
+
+    public String getDebugInfo()
+    {
+        check("getDebugInfo");
+        return debugInfo;
+    }
+
+    public GHMatrixResponse setDebugInfo( String debugInfo )
+    {
+        if (debugInfo != null)
+            this.debugInfo = debugInfo;
+        return this;
+    }
+
+    private void check( String method )
+    {
+        if (hasErrors())
+        {
+            throw new RuntimeException("You cannot call " + method + " if response contains errors. Check this with ghMatrixResponse.hasErrors(). "
+                    + "Errors are: " + getErrors());
+        }
+    }
+
+    /**
+     * @return true if one or more error found
+     */
+    public boolean hasErrors()
+    {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors()
+    {
+        return errors;
+    }
+
+    public GHMatrixResponse addError( Throwable error )
+    {
+        errors.add(error);
+        return this;
+    }
+
+    public PMap getHints()
+    {
+        return hintsMap;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (hasErrors())
+            return errors.toString();
+
+        return "rows:" + getRows() + ", columns:" + getColumns() + ", debug:" + debugInfo;
+    }
+}
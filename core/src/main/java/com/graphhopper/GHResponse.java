@@ -262,4 +262,26 @@ public class GHResponse
     {
         return hintsMap;
     }
+
+    /**
+     * @return a copy of this response which can be modified independently, only the errors are
+     * shared
+     */
+    public GHResponse copy()
+    {
+        GHResponse copy = new GHResponse();
+        copy.debugInfo = debugInfo;
+        copy.errors.addAll(errors);
+        copy.list = list == PointList.EMPTY ? list : list.clone(false);
+        copy.distance = distance;
+        copy.ascend = ascend;
+        copy.descend = descend;
+        copy.routeWeight = routeWeight;
+        copy.time = time;
+        if (instructions != null)
+            copy.instructions = instructions.copy();
+
+        copy.hintsMap.put(hintsMap);
+        return copy;
+    }
 }
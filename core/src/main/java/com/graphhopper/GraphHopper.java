@@ -18,6 +18,7 @@
 package com.graphhopper;
 
 import com.graphhopper.reader.DataReader;
+import com.graphhopper.reader.OSMIdStorage;
 import com.graphhopper.reader.OSMReader;
 import com.graphhopper.reader.dem.*;
 import com.graphhopper.routing.*;
@@ -28,9 +29,10 @@ import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.*;
+import com.graphhopper.util.profiles.ProfileCache;
 import com.graphhopper.util.profiles.ProfileManager;
-import com.graphhopper.util.profiles.ProfileRepository;
 import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.list.array.TIntArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,7 +42,11 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -52,14 +58,19 @@ import java.util.concurrent.TimeUnit;
  */
 public class GraphHopper implements GraphHopperAPI
 {
+    private static final String MAX_VISITED_NODES = "routing.maxVisitedNodes";
+    private static final String TIMEOUT = "routing.timeout";
     private final Logger logger = LoggerFactory.getLogger(getClass());
     // for graph:
     private GraphHopperStorage ghStorage;
     private EncodingManager encodingManager;
     private int defaultSegmentSize = -1;
+    private int lockStripes = -1;
+    private boolean checkBounds = true;
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
     private boolean sortGraph = false;
+    private String sortOrder = "dfs";
     boolean removeZipped = true;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
@@ -70,8 +81,30 @@ public class GraphHopper implements GraphHopperAPI
     private boolean fullyLoaded = false;
     // for routing
     private double defaultWeightLimit = Double.MAX_VALUE;
+    // the keys can be specialized per vehicle and weighting, e.g. routing.timeout.genbike.dynamic
+    private final PMap searchLimits = new PMap();
     private boolean simplifyResponse = true;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
+    private int profileCacheSize = 100;
+    private long profileCacheCheckInterval = 10000;
+    private ProfileCache profileCache;
+    private long metricCacheBytes = 256 * Helper.MB;
+    private int routeCacheSize = 0;
+    private long routeCacheTimeToLive = 0;
+    private long routeCacheMaxBytes = 100 * Helper.MB;
+    private RouteCache routeCache;
+    // hints which only change the output format of a route, not the route itself
+    private static final Set<String> ROUTE_CACHE_IGNORED_HINTS = new HashSet<String>(Arrays.asList(
+            "instructions", "point", "heading", "locale", "type", "callback", "debug", "pretty", "key",
+            "points_encoded", "elevation", "calc_points", "way_point_max_distance"));
+    private int matrixThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService matrixPool;
+    private Queue<DijkstraOneToMany> matrixAlgoPool;
+    private int legThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService legPool;
+    // keeps the memory of finished isochrone searches for the next requests
+    private final Queue<Isochrone> isochronePool = new java.util.concurrent.ArrayBlockingQueue<Isochrone>(
+            Runtime.getRuntime().availableProcessors());
     private final Map<Weighting, RoutingAlgorithmFactory> algoFactories = new LinkedHashMap<Weighting, RoutingAlgorithmFactory>();
     // for index
     private LocationIndex locationIndex;
@@ -83,9 +116,14 @@ public class GraphHopper implements GraphHopperAPI
     // for CH prepare    
     private boolean doPrepare = true;
     private boolean chEnabled = true;
+    // true while the CH preparation after applyChanges runs
+    private volatile boolean chOutdated = false;
+    private Thread chPrepareThread;
+    private final RoutingAlgorithmFactory flexibleAlgoFactory = new RoutingAlgorithmFactorySimple();
     private String chWeightingStr = "fastest";
     private int chPrepareThreads = -1;
     private ExecutorService chPreparePool;
+    private int chContractionThreads = 1;
     private int preparePeriodicUpdates = -1;
     private int prepareLazyUpdates = -1;
     private int prepareNeighborUpdates = -1;
@@ -96,6 +134,11 @@ public class GraphHopper implements GraphHopperAPI
     private double osmReaderWayPointMaxDistance = 1;
     private String smoothingFilter = "";
     private int workerThreads = -1;
+    private int importThreads = Runtime.getRuntime().availableProcessors();
+    private boolean storeOSMIds = false;
+    private OSMIdStorage osmIdStorage;
+    private String warmupStorages = "";
+    private final StorageWarmup storageWarmup = new StorageWarmup();
     private boolean calcPoints = true;
     // utils
     private final TranslationMap trMap = new TranslationMap().doImport();
@@ -285,9 +328,10 @@ public class GraphHopper implements GraphHopperAPI
     }
 
     /**
-     * Not yet stable enough to offer it for everyone
+     * Holds the graph off-heap which avoids long garbage collections for big graphs. Like the
+     * in-memory graph it is loaded from and flushed to disc.
      */
-    private GraphHopper setUnsafeMemory()
+    public GraphHopper setUnsafeMemory()
     {
         ensureNotLoaded();
         dataAccessType = DAType.UNSAFE_STORE;
@@ -298,7 +342,8 @@ public class GraphHopper implements GraphHopperAPI
      * Enables the use of contraction hierarchies to reduce query times. Enabled by default.
      * <p>
      *
-     * @param weighting can be "fastest", "shortest" or your own weight-calculation type.
+     * @param weighting can be "fastest", "shortest", "dynamic" or your own weight-calculation type.
+     * For "dynamic" a customizable preparation is created which supports all rider profiles.
      */
     public GraphHopper setCHWeighting( String weighting )
     {
@@ -328,6 +373,21 @@ public class GraphHopper implements GraphHopperAPI
         return chPrepareThreads;
     }
 
+    /**
+     * This method changes the number of threads used to contract the nodes of one weighting.
+     * Default is 1. Every thread needs its own search structures, i.e. roughly 20 bytes per node.
+     */
+    public GraphHopper setCHContractionThreads( int contractionThreads )
+    {
+        this.chContractionThreads = contractionThreads;
+        return this;
+    }
+
+    public int getCHContractionThreads()
+    {
+        return chContractionThreads;
+    }
+
     /**
      * Disables the "CH-preparation" preparation only. Use only if you know what you do. To disable
      * the full usage of CH use setCHEnable(false) instead.
@@ -365,6 +425,133 @@ public class GraphHopper implements GraphHopperAPI
         this.defaultWeightLimit = defaultWeightLimit;
     }
 
+    /**
+     * Limits the nodes the search of one leg may visit and the time in milliseconds the searches of
+     * a route request may take. The time is measured from the start of getPaths, so e.g. the wait
+     * for a free slot in the server is not included. A search exceeding a limit is stopped and an
+     * error is returned instead of a path. Use 0 for no limit.
+     * <p>
+     * @param scope the vehicle (e.g. "genbike") or the vehicle and weighting (e.g.
+     * "genbike.dynamic") the limits are used for, or an empty string for the default limits
+     */
+    public GraphHopper setSearchLimits( String scope, int maxVisitedNodes, long timeout )
+    {
+        String suffix = scope.isEmpty() ? "" : "." + scope;
+        searchLimits.put(MAX_VISITED_NODES + suffix, maxVisitedNodes);
+        searchLimits.put(TIMEOUT + suffix, timeout);
+        return this;
+    }
+
+    /**
+     * @return the limit with the specified name configured for the vehicle and weighting, the
+     * most specific configuration is used
+     */
+    long getSearchLimit( String name, String vehicle, String weighting )
+    {
+        String key = (name + "." + vehicle).toLowerCase();
+        String weightingKey = (key + "." + weighting).toLowerCase();
+        if (!weighting.isEmpty() && searchLimits.has(weightingKey))
+            return searchLimits.getLong(weightingKey, 0);
+
+        if (searchLimits.has(key))
+            return searchLimits.getLong(key, 0);
+
+        return searchLimits.getLong(name, 0);
+    }
+
+    /**
+     * This method changes the number of threads used to calculate the rows of a matrix, see
+     * calcMatrix. Default is the number of available processors.
+     */
+    public GraphHopper setMatrixThreads( int matrixThreads )
+    {
+        if (matrixThreads < 1)
+            throw new IllegalArgumentException("matrix threads must be positive but was " + matrixThreads);
+
+        this.matrixThreads = matrixThreads;
+        return this;
+    }
+
+    public int getMatrixThreads()
+    {
+        return matrixThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to calculate the legs between the via points
+     * of one request, see getPaths. Default is the number of available processors, use 1 to
+     * calculate the legs one after the other.
+     */
+    public GraphHopper setLegThreads( int legThreads )
+    {
+        if (legThreads < 1)
+            throw new IllegalArgumentException("leg threads must be positive but was " + legThreads);
+
+        this.legThreads = legThreads;
+        return this;
+    }
+
+    public int getLegThreads()
+    {
+        return legThreads;
+    }
+
+    /**
+     * This method changes the number of threads which encode the flags and fetch the elevation of
+     * the nodes and ways while the OSM import. Default is the number of available processors.
+     */
+    public GraphHopper setImportThreads( int importThreads )
+    {
+        if (importThreads < 1)
+            throw new IllegalArgumentException("import threads must be positive but was " + importThreads);
+
+        this.importThreads = importThreads;
+        return this;
+    }
+
+    public int getImportThreads()
+    {
+        return importThreads;
+    }
+
+    /**
+     * Specifies the storages (comma separated) which are read into memory in the background after
+     * a memory mapped graph was loaded, in the order of their priority. Without this the first
+     * requests are slow as the pages are read lazily. Default is no warm up.
+     * <p>
+     * @see StorageWarmup#DEFAULT_STORAGES
+     */
+    public GraphHopper setWarmupStorages( String warmupStorages )
+    {
+        this.warmupStorages = warmupStorages;
+        return this;
+    }
+
+    /**
+     * @return the warm up to configure threads, thread priority and byte limit
+     */
+    public StorageWarmup getStorageWarmup()
+    {
+        return storageWarmup;
+    }
+
+    /**
+     * Stores the OSM ids of the nodes and edges while the import, which is required to apply OSM
+     * change files later via applyChanges. The nodes of small subnetworks are then kept and the
+     * graph cannot be sorted. Default is false.
+     */
+    public GraphHopper setStoreOSMIds( boolean storeOSMIds )
+    {
+        ensureNotLoaded();
+        this.storeOSMIds = storeOSMIds;
+        return this;
+    }
+
+    public boolean isStoreOSMIds()
+    {
+        return storeOSMIds;
+    }
+
     public boolean isCHEnabled()
     {
         return chEnabled;
@@ -424,6 +611,60 @@ public class GraphHopper implements GraphHopperAPI
         return preferredLanguage;
     }
 
+    /**
+     * Specifies how many fitted rider profiles are kept in memory and the minimum time in
+     * milliseconds between two checks for a modified profile file.
+     */
+    public GraphHopper setProfileCache( int cacheSize, long checkInterval )
+    {
+        ensureNotLoaded();
+        this.profileCacheSize = cacheSize;
+        this.profileCacheCheckInterval = checkInterval;
+        return this;
+    }
+
+    /**
+     * @return the cache of the rider profiles used for the genbike vehicle
+     */
+    public synchronized ProfileCache getProfileCache()
+    {
+        if (profileCache == null)
+        {
+            FlagEncoder encoder = encodingManager.getEncoder("genbike");
+            profileCache = new ProfileCache((BikeGenericFlagEncoder) encoder, profileCacheSize).
+                    setCheckInterval(profileCacheCheckInterval);
+        }
+        return profileCache;
+    }
+
+    /**
+     * Enables the cache of route responses. Repeated requests with the same snapped points,
+     * vehicle, weighting and hints are then answered without routing.
+     * <p>
+     * @param cacheSize the maximum number of cached responses, use 0 to disable the cache
+     * @param timeToLive the time in milliseconds a response is cached, use 0 for no limit
+     * @param maxBytes the maximum estimated memory of the cached responses
+     */
+    public GraphHopper setRouteCache( int cacheSize, long timeToLive, long maxBytes )
+    {
+        ensureNotLoaded();
+        this.routeCacheSize = cacheSize;
+        this.routeCacheTimeToLive = timeToLive;
+        this.routeCacheMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @return the cache of the route responses or null if disabled
+     */
+    public synchronized RouteCache getRouteCache()
+    {
+        if (routeCache == null && routeCacheSize > 0)
+            routeCache = new RouteCache(routeCacheSize, routeCacheMaxBytes).setTimeToLive(routeCacheTimeToLive);
+
+        return routeCache;
+    }
+
     /**
      * This methods enables gps point calculation. If disabled only distance will be calculated.
      */
@@ -529,6 +770,21 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Specifies how the nodes are ordered if the graph is sorted: 'dfs' (depth first), 'bfs'
+     * (breadth first) or 'hilbert' (along a Hilbert curve). The edges are always renumbered in the
+     * order of their nodes.
+     */
+    public GraphHopper setSortOrder( String sortOrder )
+    {
+        ensureNotLoaded();
+        if (!"dfs".equals(sortOrder) && !"bfs".equals(sortOrder) && !"hilbert".equals(sortOrder))
+            throw new IllegalArgumentException("Unknown sort order " + sortOrder);
+
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
     /**
      * Specifies if it is allowed for GraphHopper to write. E.g. for read only filesystems it is not
      * possible to create a lock file and so we can avoid write locks.
@@ -573,17 +829,27 @@ public class GraphHopper implements GraphHopperAPI
         // graph
         setGraphHopperLocation(graphHopperFolder);
         defaultSegmentSize = args.getInt("graph.dataaccess.segmentSize", defaultSegmentSize);
+        lockStripes = args.getInt("graph.dataaccess.lockStripes", lockStripes);
+        checkBounds = args.getBool("graph.dataaccess.checkBounds", checkBounds);
 
         String graphDATypeStr = args.get("graph.dataaccess", "RAM_STORE");
         dataAccessType = DAType.fromString(graphDATypeStr);
 
         sortGraph = args.getBool("graph.doSort", sortGraph);
+        setSortOrder(args.get("graph.sortOrder", sortOrder));
         removeZipped = args.getBool("graph.removeZipped", removeZipped);
         int bytesForFlags = args.getInt("graph.bytesForFlags", 4);
         String flagEncoders = args.get("graph.flagEncoders", "");
         if (!flagEncoders.isEmpty())
             setEncodingManager(new EncodingManager(flagEncoders, bytesForFlags));
 
+        setWarmupStorages(args.get("graph.warmup.storages", warmupStorages));
+        storageWarmup.setThreads(args.getInt("graph.warmup.threads", 2));
+        storageWarmup.setThreadPriority(args.getInt("graph.warmup.priority", Thread.MIN_PRIORITY));
+        long warmupMB = args.getLong("graph.warmup.maxmb", -1);
+        if (warmupMB >= 0)
+            storageWarmup.setMaxBytes(warmupMB * Helper.MB);
+
         if (args.get("graph.locktype", "native").equals("simple"))
             lockFactory = new SimpleFSLockFactory();
         else
@@ -595,6 +861,7 @@ public class GraphHopper implements GraphHopperAPI
         String cacheDirStr = args.get("graph.elevation.cachedir", "");
         String baseURL = args.get("graph.elevation.baseurl", "");
         DAType elevationDAType = DAType.fromString(args.get("graph.elevation.dataaccess", "MMAP"));
+        long eleMaxCacheMB = args.getLong("graph.elevation.maxcachemb", -1);
         ElevationProvider tmpProvider = ElevationProvider.NOOP;
         if (eleProviderStr.equalsIgnoreCase("srtm"))
         {
@@ -613,6 +880,8 @@ public class GraphHopper implements GraphHopperAPI
         if (!baseURL.isEmpty())
             tmpProvider.setBaseURL(baseURL);
         tmpProvider.setDAType(elevationDAType);
+        if (eleMaxCacheMB >= 0)
+            tmpProvider.setMaxCacheBytes(eleMaxCacheMB * 1024 * 1024);
         setElevationProvider(tmpProvider);
 
         // optimizable prepare
@@ -622,9 +891,11 @@ public class GraphHopper implements GraphHopperAPI
         // prepare CH        
         doPrepare = args.getBool("prepare.doPrepare", doPrepare);
         setCHPrepareThreads(args.getInt("prepare.threads", chPrepareThreads));
+        setCHContractionThreads(args.getInt("prepare.contractionThreads", chContractionThreads));
 
         String tmpCHWeighting = args.get("prepare.chWeighting", "fastest");
-        chEnabled = "fastest".equals(tmpCHWeighting) || "shortest".equals(tmpCHWeighting);
+        chEnabled = "fastest".equals(tmpCHWeighting) || "shortest".equals(tmpCHWeighting)
+                || "dynamic".equals(tmpCHWeighting);
         if (chEnabled)
             setCHWeighting(tmpCHWeighting);
 
@@ -639,6 +910,8 @@ public class GraphHopper implements GraphHopperAPI
         smoothingFilter = args.get("osmreader.smoothingFilter", smoothingFilter);
 
         workerThreads = args.getInt("osmreader.workerThreads", workerThreads);
+        setImportThreads(args.getInt("osmreader.importThreads", importThreads));
+        storeOSMIds = args.getBool("osmreader.storeOsmIds", storeOSMIds);
         enableInstructions = args.getBool("osmreader.instructions", enableInstructions);
         preferredLanguage = args.get("osmreader.preferred-language", preferredLanguage);
 
@@ -648,6 +921,20 @@ public class GraphHopper implements GraphHopperAPI
 
         // routing
         defaultWeightLimit = args.getDouble("routing.defaultWeightLimit", defaultWeightLimit);
+        for (Entry<String, String> entry : args.toMap().entrySet())
+        {
+            if (entry.getKey().startsWith(MAX_VISITED_NODES.toLowerCase())
+                    || entry.getKey().startsWith(TIMEOUT.toLowerCase()))
+                searchLimits.put(entry.getKey(), entry.getValue());
+        }
+        profileCacheSize = args.getInt("routing.profileCacheSize", profileCacheSize);
+        profileCacheCheckInterval = args.getLong("routing.profileCacheCheckInterval", profileCacheCheckInterval);
+        metricCacheBytes = args.getLong("routing.metricCacheMB", metricCacheBytes / Helper.MB) * Helper.MB;
+        routeCacheSize = args.getInt("routing.cache.size", routeCacheSize);
+        routeCacheTimeToLive = args.getLong("routing.cache.timeToLive", routeCacheTimeToLive);
+        routeCacheMaxBytes = args.getLong("routing.cache.maxMB", routeCacheMaxBytes / Helper.MB) * Helper.MB;
+        setMatrixThreads(args.getInt("routing.matrixThreads", matrixThreads));
+        setLegThreads(args.getInt("routing.legThreads", legThreads));
         return this;
     }
 
@@ -712,6 +999,157 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Applies an OSM change file (.osc or .osc.gz) to the loaded graph instead of importing the
+     * whole OSM file again, see OSMReader.applyChanges. The OSM ids must have been stored while
+     * the import, see setStoreOSMIds. The location index is created again before this method
+     * returns. The CH preparation is also done again from scratch: a changed way can shorten or
+     * lengthen shortcuts far away from it, and the contraction order of the untouched nodes
+     * depends on the changed ones, so a recontraction of only the affected region would not be
+     * correct. As this takes as long as the preparation after an import the shortcuts are created
+     * in a background thread and until it is finished the routes are calculated without CH, see
+     * isCHOutdated and waitForCHPreparation. This method must not be called while routes are
+     * calculated.
+     */
+    public GraphHopper applyChanges( String changeFile )
+    {
+        // a second change file is applied after the shortcuts of the first one are created
+        waitForCHPreparation();
+        if (!fullyLoaded)
+            throw new IllegalStateException("Load or import the graph before applying changes");
+
+        if (osmIdStorage == null)
+            throw new IllegalStateException("Cannot apply changes as the OSM ids were not stored while the import, "
+                    + "see osmreader.storeOsmIds");
+
+        ensureWriteAccess();
+        Lock lock = null;
+        try
+        {
+            if (ghStorage.getDirectory().getDefaultType().isStoring())
+            {
+                lockFactory.setLockDir(new File(ghLocation));
+                lock = lockFactory.create(fileLockName, true);
+                if (!lock.tryLock())
+                    throw new RuntimeException("To avoid multiple writers we need to obtain a write lock but it failed. In " + ghLocation, lock.getObtainFailedReason());
+            }
+
+            // removes the shortcuts, they are created again below
+            ghStorage.unfreeze();
+            try
+            {
+                new OSMReader(ghStorage).setOSMIdStorage(osmIdStorage).
+                        setElevationProvider(eleProvider).
+                        setImportThreads(importThreads).
+                        setEncodingManager(encodingManager).
+                        setWayPointMaxDistance(osmReaderWayPointMaxDistance).
+                        setElevationFilter(smoothingFilter).
+                        applyChanges(new File(changeFile));
+            } catch (IOException ex)
+            {
+                throw new RuntimeException("Cannot apply OSM change file " + changeFile, ex);
+            }
+            ghStorage.getProperties().put("osmreader.changes.date", formatDateTime(new Date()));
+
+            locationIndex.close();
+            LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, ghStorage.getDirectory());
+            tmpIndex.setResolution(preciseIndexResolution);
+            tmpIndex.setMaxRegionSearch(maxRegionSearch);
+            locationIndex = tmpIndex.prepareIndex();
+
+            ghStorage.getProperties().put("prepare.done", false);
+            if (chEnabled && doPrepare)
+            {
+                // the routes are calculated without CH until the shortcuts are created again
+                chOutdated = true;
+                createCHPreparations();
+                ghStorage.freeze();
+                flush();
+                startCHPreparation(lock);
+                // the background preparation releases the lock
+                lock = null;
+            } else
+            {
+                if (chEnabled)
+                    createCHPreparations();
+
+                prepare();
+                flush();
+            }
+            // the cached responses were calculated with the old edges and weights
+            RouteCache tmpRouteCache = getRouteCache();
+            if (tmpRouteCache != null)
+                tmpRouteCache.clear();
+        } finally
+        {
+            if (lock != null)
+                lock.release();
+        }
+        return this;
+    }
+
+    private void startCHPreparation( final Lock lock )
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    StopWatch sw = new StopWatch().start();
+                    prepare();
+                    flush();
+                    chOutdated = false;
+                    logger.info("CH preparation after applying changes finished, took:" + sw.stop().getSeconds() + "s");
+                } catch (Exception ex)
+                {
+                    logger.error("Problem while CH preparation after applying changes, routes are still calculated without CH", ex);
+                } finally
+                {
+                    if (lock != null)
+                        lock.release();
+                }
+            }
+        }, "ch-prepare-changes");
+        synchronized (this)
+        {
+            chPrepareThread = thread;
+        }
+        thread.start();
+    }
+
+    /**
+     * @return true if changes were applied and the CH preparation for them is not yet finished.
+     * The routes are calculated without CH in the meantime.
+     */
+    public boolean isCHOutdated()
+    {
+        return chOutdated;
+    }
+
+    /**
+     * Blocks until the CH preparation started by applyChanges is finished.
+     */
+    public void waitForCHPreparation()
+    {
+        Thread thread;
+        synchronized (this)
+        {
+            thread = chPrepareThread;
+        }
+        if (thread == null)
+            return;
+
+        try
+        {
+            thread.join();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     protected DataReader importData() throws IOException
     {
         ensureWriteAccess();
@@ -724,6 +1162,13 @@ public class GraphHopper implements GraphHopperAPI
 
         encodingManager.setEnableInstructions(enableInstructions);
         encodingManager.setPreferredLanguage(preferredLanguage);
+        if (storeOSMIds)
+        {
+            if (sortGraph)
+                throw new IllegalArgumentException("Sorting the graph changes the edge ids, so the OSM ids cannot be stored");
+
+            osmIdStorage = new OSMIdStorage(ghStorage.getDirectory()).create(1000);
+        }
         DataReader reader = createReader(ghStorage);
         logger.info("using " + ghStorage.toString() + ", memory:" + Helper.getMemInfo());
         reader.readGraph();
@@ -742,9 +1187,13 @@ public class GraphHopper implements GraphHopperAPI
 
         logger.info("start creating graph from " + osmFile);
         File osmTmpFile = new File(osmFile);
+        if (osmIdStorage != null)
+            reader.setOSMIdStorage(osmIdStorage);
+
         return reader.setOSMFile(osmTmpFile).
                 setElevationProvider(eleProvider).
                 setWorkerThreads(workerThreads).
+                setImportThreads(importThreads).
                 setEncodingManager(encodingManager).
                 setWayPointMaxDistance(osmReaderWayPointMaxDistance).
                 setElevationFilter(smoothingFilter);
@@ -801,6 +1250,11 @@ public class GraphHopper implements GraphHopperAPI
             dataAccessType = DAType.MMAP_RO;
 
         GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
+        if (lockStripes > 0)
+            dir.setLockStripes(lockStripes);
+
+        dir.setCheckBounds(checkBounds);
+
         GraphExtension ext = encodingManager.needsTurnCostsSupport()
                 ? new TurnCostExtension() : new GraphExtension.NoOpExtension();
         if (chEnabled)
@@ -828,7 +1282,15 @@ public class GraphHopper implements GraphHopperAPI
             if (!ghStorage.loadExisting())
                 return false;
 
+            OSMIdStorage tmpOSMIds = new OSMIdStorage(dir);
+            if (tmpOSMIds.loadExisting())
+                osmIdStorage = tmpOSMIds;
+
             postProcessing();
+            // do not delay the startup, requests are served while the pages are read
+            if (!warmupStorages.isEmpty())
+                storageWarmup.warmupInBackground(dir, warmupStorages);
+
             fullyLoaded = true;
             return true;
         } finally
@@ -883,7 +1345,11 @@ public class GraphHopper implements GraphHopperAPI
             tmpPrepareCH.setPeriodicUpdates(preparePeriodicUpdates).
                     setLazyUpdates(prepareLazyUpdates).
                     setNeighborUpdates(prepareNeighborUpdates).
-                    setLogMessages(prepareLogMessages);
+                    setLogMessages(prepareLogMessages).
+                    setContractionThreads(chContractionThreads).
+                    // the dynamic weighting changes per rider profile
+                    setCustomizable(weighting instanceof DynamicWeighting).
+                    setMaxMetricBytes(metricCacheBytes);
 
             algoFactories.put(weighting, tmpPrepareCH);
         }
@@ -902,8 +1368,13 @@ public class GraphHopper implements GraphHopperAPI
                 throw new IllegalArgumentException("Sorting a prepared CHGraph is not possible yet. See #12");
 
             GraphHopperStorage newGraph = GHUtility.newStorage(ghStorage);
-            GHUtility.sortDFS(ghStorage, newGraph);
-            logger.info("graph sorted (" + Helper.getMemInfo() + ")");
+            if ("hilbert".equals(sortOrder))
+                GHUtility.sortHilbert(ghStorage, newGraph);
+            else if ("bfs".equals(sortOrder))
+                GHUtility.sortBFS(ghStorage, newGraph);
+            else
+                GHUtility.sortDFS(ghStorage, newGraph);
+            logger.info("graph sorted via " + sortOrder + " (" + Helper.getMemInfo() + ")");
             ghStorage = newGraph;
         }
 
@@ -990,14 +1461,30 @@ public class GraphHopper implements GraphHopperAPI
         ProfileManager profileManager = null;
 
         if(request.getVehicle().equals("genbike")) {
-            profileManager = initProfile(request.getHints().get("profile", ""), encodingManager.getEncoder(request.getVehicle()));
+            profileManager = getProfileCache().get(request.getHints().get("profile", ""));
         }
 
-        List<Path> paths = getPaths(request, response, profileManager);
+        boolean tmpEnableInstructions = request.getHints().getBool("instructions", enableInstructions);
+        RouteCache tmpRouteCache = getRouteCache();
+        List<QueryResult> qResults = null;
+        List<Object> cacheKey = null;
+        if (tmpRouteCache != null)
+        {
+            // the key needs the snapped points, so the lookup is done before the routing
+            qResults = lookup(request, response);
+            if (response.hasErrors())
+                return response;
+
+            cacheKey = createRouteCacheKey(request, qResults, profileManager);
+            GHResponse cachedResponse = tmpRouteCache.get(cacheKey, tmpEnableInstructions);
+            if (cachedResponse != null)
+                return cachedResponse;
+        }
+
+        List<Path> paths = getPaths(request, response, profileManager, qResults);
         if (response.hasErrors())
             return response;
 
-        boolean tmpEnableInstructions = request.getHints().getBool("instructions", enableInstructions);
         boolean tmpCalcPoints = request.getHints().getBool("calcPoints", calcPoints);
         double wayPointMaxDistance = request.getHints().getDouble("wayPointMaxDistance", 1d);
         Locale locale = request.getLocale();
@@ -1009,14 +1496,59 @@ public class GraphHopper implements GraphHopperAPI
                 setEnableInstructions(tmpEnableInstructions).
                 setSimplifyResponse(simplifyResponse && wayPointMaxDistance > 0).
                 doWork(response, paths, trMap.getWithFallBack(locale));
+
+        if (cacheKey != null && !response.hasErrors())
+            tmpRouteCache.put(cacheKey, response, tmpEnableInstructions);
+
         return response;
     }
 
-    protected List<Path> getPaths( GHRequest request, GHResponse rsp) {
-        return getPaths(request, rsp, null);
+    /**
+     * Creates the key of the route cache from the snapped points and the hints which influence the
+     * route. The key has to be created before the query results are modified by the QueryGraph.
+     */
+    private List<Object> createRouteCacheKey( GHRequest request, List<QueryResult> qResults,
+                                              ProfileManager profileManager )
+    {
+        List<Object> key = new ArrayList<Object>(4 + qResults.size() * 7);
+        key.add(getVehicle(request));
+        key.add(request.getAlgorithm());
+        key.add(request.getLocale());
+        // compared by identity, a modified profile is loaded into a new instance
+        key.add(profileManager);
+        Map<String, String> hints = request.getHints().toMap();
+        hints.keySet().removeAll(ROUTE_CACHE_IGNORED_HINTS);
+        key.add(hints);
+        for (int i = 0; i < qResults.size(); i++)
+        {
+            QueryResult res = qResults.get(i);
+            EdgeIteratorState edge = res.getClosestEdge();
+            key.add(edge.getEdge());
+            key.add(edge.getBaseNode());
+            key.add(res.getWayIndex());
+            key.add(res.getSnappedPosition());
+            // a point snapped onto an edge differs for every query point, round it to roughly 10cm
+            key.add(Helper.round6(res.getSnappedPoint().lat));
+            key.add(Helper.round6(res.getSnappedPoint().lon));
+            key.add(request.getFavoredHeading(i));
+        }
+        return key;
+    }
+
+    private String getVehicle( GHRequest request )
+    {
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        return vehicle;
     }
 
-    protected List<Path> getPaths( GHRequest request, GHResponse rsp, ProfileManager profileManager)
+    /**
+     * Finds the closest edges for the points of the specified request. Errors are added to the
+     * response and an empty list is returned in this case.
+     */
+    protected List<QueryResult> lookup( GHRequest request, GHResponse rsp )
     {
         if (ghStorage == null || !fullyLoaded)
             throw new IllegalStateException("Call load or importOrLoad before routing");
@@ -1024,10 +1556,7 @@ public class GraphHopper implements GraphHopperAPI
         if (ghStorage.isClosed())
             throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
 
-        String vehicle = request.getVehicle();
-        if (vehicle.isEmpty())
-            vehicle = getDefaultVehicle().toString();
-
+        String vehicle = getVehicle(request);
         if (!encodingManager.supports(vehicle))
         {
             rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
@@ -1035,17 +1564,6 @@ public class GraphHopper implements GraphHopperAPI
             return Collections.emptyList();
         }
 
-        TraversalMode tMode;
-        String tModeStr = request.getHints().get("traversal_mode", traversalMode.toString());
-        try
-        {
-            tMode = TraversalMode.fromString(tModeStr);
-        } catch (Exception ex)
-        {
-            rsp.addError(ex);
-            return Collections.emptyList();
-        }
-
         List<GHPoint> points = request.getPoints();
         if (points.size() < 2)
         {
@@ -1053,11 +1571,7 @@ public class GraphHopper implements GraphHopperAPI
             return Collections.emptyList();
         }
 
-        long visitedNodesSum = 0;
-        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
-        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
-
-        StopWatch sw = new StopWatch().start();
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encodingManager.getEncoder(vehicle));
         List<QueryResult> qResults = new ArrayList<QueryResult>(points.size());
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++)
         {
@@ -1072,22 +1586,83 @@ public class GraphHopper implements GraphHopperAPI
         if (rsp.hasErrors())
             return Collections.emptyList();
 
-        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        return qResults;
+    }
+
+    protected List<Path> getPaths( GHRequest request, GHResponse rsp )
+    {
+        return getPaths(request, rsp, null, null);
+    }
+
+    /**
+     * @param qResults the closest edges of the request points or null if they should be looked up
+     */
+    protected List<Path> getPaths( GHRequest request, GHResponse rsp, ProfileManager profileManager,
+                                   List<QueryResult> qResults )
+    {
+        // the lookup is part of the request time
+        long start = System.nanoTime();
+        String debug = "";
+        StopWatch sw;
+        if (qResults == null)
+        {
+            sw = new StopWatch().start();
+            qResults = lookup(request, rsp);
+            if (rsp.hasErrors())
+                return Collections.emptyList();
+
+            debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        }
+
+        TraversalMode tMode;
+        String tModeStr = request.getHints().get("traversal_mode", traversalMode.toString());
+        try
+        {
+            tMode = TraversalMode.fromString(tModeStr);
+        } catch (Exception ex)
+        {
+            rsp.addError(ex);
+            return Collections.emptyList();
+        }
+
+        List<GHPoint> points = request.getPoints();
+        long visitedNodesSum = 0;
+        FlagEncoder encoder = encodingManager.getEncoder(getVehicle(request));
 
         Weighting weighting;
         Graph routingGraph = ghStorage;
 
-        if (chEnabled)
+        RoutingAlgorithmFactory tmpAlgoFactory;
+        // read once as the CH preparation after applyChanges can finish while this request
+        boolean useCH = chEnabled && !chOutdated;
+        if (useCH)
         {
             boolean forceCHHeading = request.getHints().getBool("force_heading_ch", false);
             if (!forceCHHeading && request.hasFavoredHeading(0))
                 throw new IllegalStateException("Heading is not (fully) supported for CHGraph. See issue #483");
             weighting = getWeightingForCH(request.getHints(), encoder);
             routingGraph = ghStorage.getGraph(CHGraph.class, weighting);
+            tmpAlgoFactory = getAlgorithmFactory(weighting);
+        } else if (chEnabled)
+        {
+            // the algoFactories would return the CH preparation for the same weighting
+            weighting = createWeighting(request.getHints(), encoder, profileManager);
+            tmpAlgoFactory = flexibleAlgoFactory;
         } else
+        {
             weighting = createWeighting(request.getHints(), encoder, profileManager);
+            tmpAlgoFactory = getAlgorithmFactory(weighting);
+        }
+
+        if (useCH && tmpAlgoFactory instanceof PrepareContractionHierarchies
+                && ((PrepareContractionHierarchies) tmpAlgoFactory).isCustomizable())
+        {
+            // the customization is cached per profile, see ProfileCache
+            Weighting requestWeighting = createWeighting(request.getHints(), encoder, profileManager);
+            Object metricKey = profileManager != null && profileManager.hasProfile() ? profileManager : null;
+            weighting = ((PrepareContractionHierarchies) tmpAlgoFactory).getCustomizedWeighting(requestWeighting, metricKey);
+        }
 
-        RoutingAlgorithmFactory tmpAlgoFactory = getAlgorithmFactory(weighting);
         QueryGraph queryGraph = new QueryGraph(routingGraph);
         queryGraph.lookup(qResults);
         weighting = createTurnWeighting(weighting, queryGraph, encoder);
@@ -1095,53 +1670,77 @@ public class GraphHopper implements GraphHopperAPI
         List<Path> paths = new ArrayList<Path>(points.size() - 1);
         QueryResult fromQResult = qResults.get(0);
 
-        double weightLimit = request.getHints().getDouble("defaultWeightLimit", defaultWeightLimit);
+        SearchLimits limits = new SearchLimits(request.getHints().getDouble("defaultWeightLimit", defaultWeightLimit),
+                getSearchLimit(MAX_VISITED_NODES, encoder.toString(), request.getWeighting()),
+                getSearchLimit(TIMEOUT, encoder.toString(), request.getWeighting()), start);
         String algoStr = request.getAlgorithm().isEmpty() ? AlgorithmOptions.DIJKSTRA_BI : request.getAlgorithm();
         AlgorithmOptions algoOpts = AlgorithmOptions.start().
                 algorithm(algoStr).traversalMode(tMode).flagEncoder(encoder).weighting(weighting).
                 hints(request.getHints()).
                 build();
 
+        // the time of the paths is updated with the profile speeds while their points or
+        // instructions are calculated, see PathMerger
+        SpeedProvider speedProvider = profileManager == null ? null : new ProfileSpeedProvider(encoder, profileManager);
         boolean viaTurnPenalty = request.getHints().getBool("pass_through", false);
-        for (int placeIndex = 1; placeIndex < points.size(); placeIndex++)
+        if (!viaTurnPenalty && points.size() > 2 && legThreads > 1)
         {
-            if (placeIndex == 1)
-            {
-                // enforce start direction
-                queryGraph.enforceHeading(fromQResult.getClosestNode(), request.getFavoredHeading(0), false);
-            } else if (viaTurnPenalty)
+            // without pass_through the legs are independent
+            sw = new StopWatch().start();
+            long[] legVisitedNodes = new long[points.size() - 1];
+            debug += calcLegsInParallel(queryGraph, qResults, tmpAlgoFactory, algoOpts, limits,
+                    speedProvider, request, rsp, paths, legVisitedNodes);
+            debug += ", parallelLegs:" + sw.stop().getSeconds() + "s";
+            for (long visitedNodes : legVisitedNodes)
             {
-                // enforce straight start after via stop
-                EdgeIteratorState incomingVirtualEdge = paths.get(placeIndex - 2).getFinalEdge();
-                queryGraph.enforceHeadingByEdgeId(fromQResult.getClosestNode(), incomingVirtualEdge.getEdge(), false);
+                visitedNodesSum += visitedNodes;
             }
+        } else
+        {
+            for (int placeIndex = 1; placeIndex < points.size(); placeIndex++)
+            {
+                if (placeIndex == 1)
+                {
+                    // enforce start direction
+                    queryGraph.enforceHeading(fromQResult.getClosestNode(), request.getFavoredHeading(0), false);
+                } else if (viaTurnPenalty)
+                {
+                    // enforce straight start after via stop
+                    EdgeIteratorState incomingVirtualEdge = paths.get(placeIndex - 2).getFinalEdge();
+                    queryGraph.enforceHeadingByEdgeId(fromQResult.getClosestNode(), incomingVirtualEdge.getEdge(), false);
+                }
 
-            QueryResult toQResult = qResults.get(placeIndex);
+                QueryResult toQResult = qResults.get(placeIndex);
 
-            // enforce end direction
-            queryGraph.enforceHeading(toQResult.getClosestNode(), request.getFavoredHeading(placeIndex), true);
+                // enforce end direction
+                queryGraph.enforceHeading(toQResult.getClosestNode(), request.getFavoredHeading(placeIndex), true);
 
-            sw = new StopWatch().start();
-            RoutingAlgorithm algo = tmpAlgoFactory.createAlgo(queryGraph, algoOpts);
-            algo.setWeightLimit(weightLimit);
-            debug += ", algoInit:" + sw.stop().getSeconds() + "s";
+                sw = new StopWatch().start();
+                RoutingAlgorithm algo = tmpAlgoFactory.createAlgo(queryGraph, algoOpts);
+                limits.apply(algo);
+                debug += ", algoInit:" + sw.stop().getSeconds() + "s";
 
-            sw = new StopWatch().start();
-            Path path = algo.calcPath(fromQResult.getClosestNode(), toQResult.getClosestNode());
-            path.initSpeedProvider(profileManager);
-            path.updateTime();
+                sw = new StopWatch().start();
+                Path path = algo.calcPath(fromQResult.getClosestNode(), toQResult.getClosestNode());
+                path.setSpeedProvider(speedProvider);
+                if (limits.isExceeded(algo))
+                {
+                    rsp.addError(limits.createError(algo));
+                    break;
+                }
 
-            if (path.getTime() < 0)
-                throw new RuntimeException("Time was negative. Please report as bug and include:" + request);
+                if (path.getTime() < 0)
+                    throw new RuntimeException("Time was negative. Please report as bug and include:" + request);
 
-            paths.add(path);
-            debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s, " + path.getDebugInfo();
+                paths.add(path);
+                debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s, " + path.getDebugInfo();
 
-            // reset all direction enforcements in queryGraph to avoid influencing next path
-            queryGraph.clearUnfavoredStatus();
+                // reset all direction enforcements in queryGraph to avoid influencing next path
+                queryGraph.clearUnfavoredStatus();
 
-            visitedNodesSum += algo.getVisitedNodes();
-            fromQResult = toQResult;
+                visitedNodesSum += algo.getVisitedNodes();
+                fromQResult = toQResult;
+            }
         }
 
         if (rsp.hasErrors())
@@ -1156,6 +1755,378 @@ public class GraphHopper implements GraphHopperAPI
         return paths;
     }
 
+    /**
+     * The limits of the searches of one route request.
+     */
+    private static class SearchLimits
+    {
+        final double weightLimit;
+        final int maxVisitedNodes;
+        final long timeout;
+        final long deadline;
+
+        /**
+         * @param start the start time of the request as returned by System.nanoTime
+         */
+        SearchLimits( double weightLimit, long maxVisitedNodes, long timeout, long start )
+        {
+            this.weightLimit = weightLimit;
+            this.maxVisitedNodes = maxVisitedNodes <= 0 ? Integer.MAX_VALUE : (int) Math.min(maxVisitedNodes, Integer.MAX_VALUE);
+            this.timeout = timeout;
+            this.deadline = start + timeout * 1000000L;
+        }
+
+        void apply( RoutingAlgorithm algo )
+        {
+            algo.setWeightLimit(weightLimit);
+            algo.setMaxVisitedNodes(maxVisitedNodes);
+            if (timeout > 0)
+                algo.setDeadline(deadline);
+        }
+
+        boolean isExceeded( RoutingAlgorithm algo )
+        {
+            return algo.isMaxVisitedNodesExceeded() || algo.isDeadlineExceeded();
+        }
+
+        Throwable createError( RoutingAlgorithm algo )
+        {
+            if (algo.isMaxVisitedNodesExceeded())
+                return new IllegalArgumentException("No path found due to maximum nodes exceeded " + maxVisitedNodes);
+
+            return new IllegalArgumentException("No path found due to the timeout of " + timeout + "ms");
+        }
+    }
+
+    private static boolean hasFavoredHeadings( GHRequest request )
+    {
+        for (int i = 0; i < request.getPoints().size(); i++)
+        {
+            if (request.hasFavoredHeading(i))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Calculates every leg with its own algorithm on the shared queryGraph and adds the paths in
+     * the order of the points. If headings are specified every leg enforces them in its own view
+     * of the queryGraph.
+     * <p>
+     * @return the debug information of the legs
+     */
+    private String calcLegsInParallel( final QueryGraph queryGraph, final List<QueryResult> qResults,
+                                       final RoutingAlgorithmFactory algoFactory, final AlgorithmOptions algoOpts,
+                                       final SearchLimits limits, final SpeedProvider speedProvider,
+                                       final GHRequest request, GHResponse rsp, List<Path> paths,
+                                       final long[] legVisitedNodes )
+    {
+        int legs = qResults.size() - 1;
+        final boolean enforceHeadings = hasFavoredHeadings(request);
+        final String[] legDebug = new String[legs];
+        final Throwable[] legErrors = new Throwable[legs];
+        List<Callable<Path>> callables = new ArrayList<Callable<Path>>(legs);
+        for (int i = 0; i < legs; i++)
+        {
+            final int leg = i;
+            callables.add(new Callable<Path>()
+            {
+                @Override
+                public Path call()
+                {
+                    StopWatch sw = new StopWatch().start();
+                    int from = qResults.get(leg).getClosestNode();
+                    int to = qResults.get(leg + 1).getClosestNode();
+                    QueryGraph legGraph = queryGraph;
+                    if (enforceHeadings)
+                    {
+                        legGraph = queryGraph.createView();
+                        if (leg == 0)
+                            legGraph.enforceHeading(from, request.getFavoredHeading(0), false);
+
+                        legGraph.enforceHeading(to, request.getFavoredHeading(leg + 1), true);
+                    }
+
+                    RoutingAlgorithm algo = algoFactory.createAlgo(legGraph, algoOpts);
+                    limits.apply(algo);
+                    Path path = algo.calcPath(from, to);
+                    path.setSpeedProvider(speedProvider);
+                    if (limits.isExceeded(algo))
+                        legErrors[leg] = limits.createError(algo);
+
+                    if (path.getTime() < 0)
+                        throw new RuntimeException("Time was negative. Please report as bug and include:" + request);
+
+                    legVisitedNodes[leg] = algo.getVisitedNodes();
+                    legDebug[leg] = ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s, " + path.getDebugInfo();
+                    return path;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Path> future : getLegPool().invokeAll(callables))
+            {
+                paths.add(future.get());
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Route calculation was interrupted", ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Route calculation failed", ex.getCause());
+        }
+
+        for (Throwable error : legErrors)
+        {
+            if (error != null)
+            {
+                rsp.addError(error);
+                break;
+            }
+        }
+
+        StringBuilder debug = new StringBuilder();
+        for (String str : legDebug)
+        {
+            debug.append(str);
+        }
+        return debug.toString();
+    }
+
+    /**
+     * Calculates the weights, distances and times from all from points to all to points of the
+     * specified request. Every point is looked up only once and all of them share one QueryGraph.
+     * Every row is a single one to many search on the graph without shortcuts and the rows are
+     * calculated in parallel, see setMatrixThreads.
+     */
+    public GHMatrixResponse calcMatrix( GHMatrixRequest request )
+    {
+        if (ghStorage == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        if (ghStorage.isClosed())
+            throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+
+        GHMatrixResponse rsp = new GHMatrixResponse();
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        if (!encodingManager.supports(vehicle))
+        {
+            rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
+                    + "Supported are: " + getEncodingManager()));
+            return rsp;
+        }
+
+        List<GHPoint> fromPoints = request.getFromPoints();
+        List<GHPoint> toPoints = request.getToPoints();
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+        {
+            rsp.addError(new IllegalStateException("At least 1 from and 1 to point has to be specified, but was:"
+                    + fromPoints.size() + " and " + toPoints.size()));
+            return rsp;
+        }
+
+        ProfileManager profileManager = null;
+        if ("genbike".equals(vehicle))
+            profileManager = getProfileCache().get(request.getHints().get("profile", ""));
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
+
+        StopWatch sw = new StopWatch().start();
+        // the points of a symmetric matrix are identical, look them up only once
+        Map<GHPoint, QueryResult> lookups = new LinkedHashMap<GHPoint, QueryResult>();
+        lookup(fromPoints, "from point", lookups, edgeFilter, rsp);
+        lookup(toPoints, "to point", lookups, edgeFilter, rsp);
+        if (rsp.hasErrors())
+            return rsp;
+
+        // the closest nodes are only known after the lookup in the QueryGraph
+        QueryGraph queryGraph = new QueryGraph(ghStorage);
+        queryGraph.lookup(new ArrayList<QueryResult>(lookups.values()));
+        int[] fromNodes = new int[fromPoints.size()];
+        int[] toNodes = new int[toPoints.size()];
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            fromNodes[i] = lookups.get(fromPoints.get(i)).getClosestNode();
+        }
+        for (int i = 0; i < toNodes.length; i++)
+        {
+            toNodes[i] = lookups.get(toPoints.get(i)).getClosestNode();
+        }
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+
+        sw = new StopWatch().start();
+        Weighting weighting = createWeighting(request.getHints(), encoder, profileManager);
+        double weightLimit = request.getHints().getDouble("defaultWeightLimit", defaultWeightLimit);
+        MatrixCalculator calculator = new MatrixCalculator(queryGraph, encoder, weighting).
+                setWeightLimit(weightLimit).
+                setProfileManager(profileManager).
+                setExecutorService(getMatrixPool(), matrixThreads).
+                setAlgoPool(getMatrixAlgoPool());
+        rsp.init(fromNodes.length, toNodes.length);
+        calculator.calcMatrix(fromNodes, toNodes, rsp);
+        debug += ", matrix:" + sw.stop().getSeconds() + "s";
+
+        rsp.setDebugInfo(debug);
+        rsp.getHints().put("visited_nodes.sum", calculator.getVisitedNodes());
+        return rsp;
+    }
+
+    /**
+     * Calculates all points reachable from the point of the specified request within its time
+     * limit. This is a single search on the graph without shortcuts which stops at the time limit,
+     * the result is split into the buckets of the request.
+     */
+    public GHIsochroneResponse calcIsochrone( GHIsochroneRequest request )
+    {
+        if (ghStorage == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        if (ghStorage.isClosed())
+            throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+
+        GHIsochroneResponse rsp = new GHIsochroneResponse();
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        if (!encodingManager.supports(vehicle))
+        {
+            rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
+                    + "Supported are: " + getEncodingManager()));
+            return rsp;
+        }
+
+        GHPoint point = request.getPoint();
+        if (point == null)
+        {
+            rsp.addError(new IllegalStateException("A point has to be specified"));
+            return rsp;
+        }
+
+        if (request.getBuckets() < 1 || request.getTimeLimit() <= 0)
+        {
+            rsp.addError(new IllegalArgumentException("The time limit and the number of buckets have to be positive, but were:"
+                    + request.getTimeLimit() + " and " + request.getBuckets()));
+            return rsp;
+        }
+
+        ProfileManager profileManager = null;
+        if ("genbike".equals(vehicle))
+            profileManager = getProfileCache().get(request.getHints().get("profile", ""));
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        StopWatch sw = new StopWatch().start();
+        QueryResult res = locationIndex.findClosest(point.lat, point.lon, new DefaultEdgeFilter(encoder));
+        if (!res.isValid())
+        {
+            rsp.addError(new IllegalArgumentException("Cannot find point: " + point));
+            return rsp;
+        }
+
+        QueryGraph queryGraph = new QueryGraph(ghStorage);
+        queryGraph.lookup(Collections.singletonList(res));
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+
+        sw = new StopWatch().start();
+        Weighting weighting = createWeighting(request.getHints(), encoder, profileManager);
+        SpeedProvider speedProvider = profileManager == null ? null : new ProfileSpeedProvider(encoder, profileManager);
+        Isochrone isochrone = isochronePool.poll();
+        if (isochrone == null)
+            isochrone = new Isochrone();
+
+        try
+        {
+            isochrone.search(queryGraph, weighting, speedProvider, res.getClosestNode(), request.getTimeLimit());
+            debug += ", search:" + sw.stop().getSeconds() + "s";
+
+            sw = new StopWatch().start();
+            NodeAccess nodeAccess = queryGraph.getNodeAccess();
+            TIntArrayList reachedNodes = isochrone.getReachedNodes();
+            int buckets = request.getBuckets();
+            PointList[] bucketPoints = new PointList[buckets];
+            for (int bucket = 0; bucket < buckets; bucket++)
+            {
+                bucketPoints[bucket] = new PointList(reachedNodes.size() / buckets + 10, false);
+            }
+            for (int i = 0; i < reachedNodes.size(); i++)
+            {
+                int node = reachedNodes.get(i);
+                int bucket = (int) Math.min(buckets - 1, isochrone.getTime(node) * buckets / request.getTimeLimit());
+                bucketPoints[bucket].add(nodeAccess.getLatitude(node), nodeAccess.getLongitude(node));
+            }
+
+            ConvexHull convexHull = new ConvexHull();
+            PointList allPoints = new PointList(reachedNodes.size(), false);
+            for (int bucket = 0; bucket < buckets; bucket++)
+            {
+                allPoints.add(bucketPoints[bucket]);
+                // the hull of the previous bucket is inside, so only its points need to be checked
+                PointList polygon = convexHull.calcHull(allPoints);
+                rsp.addBucket(request.getTimeLimit() * (bucket + 1) / buckets, bucketPoints[bucket], polygon);
+                allPoints = polygon.clone(false);
+            }
+            debug += ", polygons:" + sw.stop().getSeconds() + "s";
+            rsp.getHints().put("visited_nodes.sum", isochrone.getVisitedNodes());
+        } finally
+        {
+            isochronePool.offer(isochrone);
+        }
+
+        rsp.setDebugInfo(debug);
+        return rsp;
+    }
+
+    private void lookup( List<GHPoint> points, String name, Map<GHPoint, QueryResult> lookups,
+                          EdgeFilter edgeFilter, GHMatrixResponse rsp )
+    {
+        for (int placeIndex = 0; placeIndex < points.size(); placeIndex++)
+        {
+            GHPoint point = points.get(placeIndex);
+            if (lookups.containsKey(point))
+                continue;
+
+            QueryResult res = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (!res.isValid())
+                rsp.addError(new IllegalArgumentException("Cannot find " + name + " " + placeIndex + ": " + point));
+
+            lookups.put(point, res);
+        }
+    }
+
+    private synchronized ExecutorService getMatrixPool()
+    {
+        if (matrixThreads <= 1)
+            return null;
+
+        if (matrixPool == null)
+            matrixPool = java.util.concurrent.Executors.newFixedThreadPool(matrixThreads);
+        return matrixPool;
+    }
+
+    private synchronized Queue<DijkstraOneToMany> getMatrixAlgoPool()
+    {
+        // keep the search arrays of one algorithm per matrix thread
+        if (matrixAlgoPool == null)
+            matrixAlgoPool = new ArrayBlockingQueue<DijkstraOneToMany>(matrixThreads);
+        return matrixAlgoPool;
+    }
+
+    private synchronized ExecutorService getLegPool()
+    {
+        if (legPool == null)
+            legPool = java.util.concurrent.Executors.newFixedThreadPool(legThreads);
+        return legPool;
+    }
+
     protected LocationIndex createLocationIndex( Directory dir )
     {
         LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, dir);
@@ -1188,10 +2159,13 @@ public class GraphHopper implements GraphHopperAPI
         {
             ensureWriteAccess();
 
-            if (chPrepareThreads > 1 && dataAccessType.isMMap() && !dataAccessType.isSynched())
+            if ((chPrepareThreads > 1 || chContractionThreads > 1) && dataAccessType.isMMap() && !dataAccessType.isSynched())
                 throw new IllegalStateException("You cannot execute CH preparation in parallel for MMAP without synching! Specify MMAP_SYNC or use 1 thread only");
 
             ghStorage.freeze();
+            // the pool was shut down if the preparation is done again after applyChanges
+            if (chPreparePool.isShutdown())
+                chPreparePool = java.util.concurrent.Executors.newFixedThreadPool(chPrepareThreads);
 
             int counter = 0;
             for (final Entry<Weighting, RoutingAlgorithmFactory> entry : algoFactories.entrySet())
@@ -1245,6 +2219,8 @@ public class GraphHopper implements GraphHopperAPI
         PrepareRoutingSubnetworks preparation = new PrepareRoutingSubnetworks(ghStorage, encodingManager.fetchEdgeEncoders());
         preparation.setMinNetworkSize(minNetworkSize);
         preparation.setMinOneWayNetworkSize(minOneWayNetworkSize);
+        // the stored OSM ids are only valid as long as the node ids stay the same
+        preparation.setKeepNodeIds(osmIdStorage != null);
         logger.info("start finding subnetworks, " + Helper.getMemInfo());
         preparation.doWork();
         int currNodeCount = ghStorage.getNodes();
@@ -1259,6 +2235,9 @@ public class GraphHopper implements GraphHopperAPI
         logger.info("flushing graph " + ghStorage.toString() + ", details:" + ghStorage.toDetailsString() + ", "
                 + Helper.getMemInfo() + ")");
         ghStorage.flush();
+        if (osmIdStorage != null)
+            osmIdStorage.flush();
+
         fullyLoaded = true;
     }
 
@@ -1268,9 +2247,36 @@ public class GraphHopper implements GraphHopperAPI
      */
     public void close()
     {
+        // the background preparation still writes to the storage
+        waitForCHPreparation();
+        synchronized (this)
+        {
+            if (matrixPool != null)
+            {
+                matrixPool.shutdown();
+                matrixPool = null;
+            }
+            matrixAlgoPool = null;
+
+            if (legPool != null)
+            {
+                legPool.shutdown();
+                legPool = null;
+            }
+
+            // the responses belong to this graph
+            if (routeCache != null)
+                routeCache.clear();
+        }
+
+        // the warm up must not read a closed storage
+        storageWarmup.stop();
         if (ghStorage != null)
             ghStorage.close();
 
+        if (osmIdStorage != null)
+            osmIdStorage.close();
+
         if (locationIndex != null)
             locationIndex.close();
 
@@ -1303,17 +2309,6 @@ public class GraphHopper implements GraphHopperAPI
         return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(date);
     }
 
-    private ProfileManager initProfile(String profile, FlagEncoder encoder) {
-
-        ProfileManager profileManager = new ProfileManager(new ProfileRepository());
-
-        if(!profile.equals("")) {
-            profileManager.init(profile, (BikeGenericFlagEncoder) encoder);
-        }
-
-        return profileManager;
-    }
-
     protected void ensureNotLoaded()
     {
         if (fullyLoaded)
@@ -0,0 +1,227 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap like IntIntBinHeap but it additionally stores the position of every element so
+ * that update does not need a linear search. Elements have to be non-negative and can be contained
+ * only once, e.g. node ids. Elements with the same key are ordered by the element itself which
+ * gives the same order as GHTreeMapComposed.
+ * <p>
+ * @author Peter Karich
+ */
+public class IndexedIntIntBinHeap implements BinHeapWrapper<Number, Integer>
+{
+    private static final double GROW_FACTOR = 2.0;
+    private int[] keys;
+    private int[] elem;
+    // the 1-based index of every element in the heap, 0 if not contained
+    private int[] positions;
+    private int size;
+    private int capacity;
+
+    public IndexedIntIntBinHeap()
+    {
+        this(1000);
+    }
+
+    public IndexedIntIntBinHeap( int capacity )
+    {
+        if (capacity < 10)
+            capacity = 10;
+
+        this.capacity = capacity;
+        size = 0;
+        // 1-based indexing
+        keys = new int[capacity + 1];
+        elem = new int[capacity + 1];
+        positions = new int[capacity];
+    }
+
+    @Override
+    public int getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains( int element )
+    {
+        return element < positions.length && positions[element] > 0;
+    }
+
+    @Override
+    public Integer peekKey()
+    {
+        return peek_key();
+    }
+
+    public int peek_key()
+    {
+        if (size == 0)
+            throw new IllegalStateException("An empty queue does not have a minimum key.");
+
+        return keys[1];
+    }
+
+    @Override
+    public Integer peekElement()
+    {
+        return peek_element();
+    }
+
+    public int peek_element()
+    {
+        if (size == 0)
+            throw new IllegalStateException("An empty queue does not have a minimum value.");
+
+        return elem[1];
+    }
+
+    @Override
+    public Integer pollElement()
+    {
+        return poll_element();
+    }
+
+    public int poll_element()
+    {
+        if (size == 0)
+            throw new IllegalStateException("An empty queue does not have a minimum value.");
+
+        int minElem = elem[1];
+        positions[minElem] = 0;
+        size--;
+        if (size > 0)
+            siftDown(1, keys[size + 1], elem[size + 1]);
+
+        return minElem;
+    }
+
+    @Override
+    public void update( Number key, Integer element )
+    {
+        update_(key.intValue(), element);
+    }
+
+    /**
+     * Changes the key of the specified element, does nothing if the element is not contained.
+     */
+    public void update_( int key, int element )
+    {
+        if (!contains(element))
+            return;
+
+        int i = positions[element];
+        if (less(key, element, keys[i], elem[i]))
+            siftUp(i, key, element);
+        else
+            siftDown(i, key, element);
+    }
+
+    @Override
+    public void insert( Number key, Integer element )
+    {
+        insert_(key.intValue(), element);
+    }
+
+    public void insert_( int key, int element )
+    {
+        if (element < 0)
+            throw new IllegalArgumentException("Element has to be non-negative but was " + element);
+
+        if (contains(element))
+            throw new IllegalStateException("Element " + element + " is already contained with key " + keys[positions[element]]);
+
+        if (element >= positions.length)
+            positions = Arrays.copyOf(positions, Math.max(element + 1, (int) (positions.length * GROW_FACTOR)));
+
+        size++;
+        if (size > capacity)
+            ensureCapacity((int) (capacity * GROW_FACTOR));
+
+        siftUp(size, key, element);
+    }
+
+    private void siftUp( int i, int key, int element )
+    {
+        while (i > 1 && less(key, element, keys[i / 2], elem[i / 2]))
+        {
+            set(i, keys[i / 2], elem[i / 2]);
+            i /= 2;
+        }
+        set(i, key, element);
+    }
+
+    private void siftDown( int i, int key, int element )
+    {
+        int child;
+        for (; i * 2 <= size; i = child)
+        {
+            child = i * 2;
+            if (child != size && less(keys[child + 1], elem[child + 1], keys[child], elem[child]))
+                child++;
+
+            if (!less(keys[child], elem[child], key, element))
+                break;
+
+            set(i, keys[child], elem[child]);
+        }
+        set(i, key, element);
+    }
+
+    private void set( int i, int key, int element )
+    {
+        keys[i] = key;
+        elem[i] = element;
+        positions[element] = i;
+    }
+
+    private static boolean less( int key1, int element1, int key2, int element2 )
+    {
+        return key1 < key2 || key1 == key2 && element1 < element2;
+    }
+
+    @Override
+    public void ensureCapacity( int capacity )
+    {
+        if (capacity < size)
+            throw new IllegalStateException("BinHeap contains too many elements to fit in new capacity.");
+
+        this.capacity = capacity;
+        keys = Arrays.copyOf(keys, capacity + 1);
+        elem = Arrays.copyOf(elem, capacity + 1);
+    }
+
+    @Override
+    public void clear()
+    {
+        for (int i = 1; i <= size; i++)
+        {
+            positions[elem[i]] = 0;
+        }
+        size = 0;
+    }
+}
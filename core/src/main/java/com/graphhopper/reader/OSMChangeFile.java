@@ -0,0 +1,145 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the elements of an OSM change file (.osc or .osc.gz) in the order of the file. The action
+ * of the last returned element is available via getAction. Deleted nodes have no coordinates.
+ * <p>
+ * @author Peter Karich
+ */
+public class OSMChangeFile implements Closeable
+{
+    public enum Action
+    {
+        CREATE, MODIFY, DELETE
+    }
+
+    private final File file;
+    private InputStream is;
+    private XMLStreamReader parser;
+    private Action action;
+
+    public OSMChangeFile( File file )
+    {
+        this.file = file;
+    }
+
+    public OSMChangeFile open() throws IOException, XMLStreamException
+    {
+        is = new BufferedInputStream(new FileInputStream(file), 50000);
+        if (file.getName().endsWith(".gz"))
+            is = new GZIPInputStream(is, 50000);
+
+        parser = XMLInputFactory.newInstance().createXMLStreamReader(is, "UTF-8");
+        int event = parser.next();
+        if (event != XMLStreamConstants.START_ELEMENT || !parser.getLocalName().equalsIgnoreCase("osmChange"))
+            throw new IllegalArgumentException("File is not a valid OSM change stream " + file);
+
+        return this;
+    }
+
+    /**
+     * @return the next node, way or relation or null if the end of the file is reached
+     */
+    public OSMElement getNext() throws XMLStreamException
+    {
+        int event = parser.next();
+        while (event != XMLStreamConstants.END_DOCUMENT)
+        {
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = parser.getLocalName();
+                if ("create".equals(name))
+                    action = Action.CREATE;
+                else if ("modify".equals(name))
+                    action = Action.MODIFY;
+                else if ("delete".equals(name))
+                    action = Action.DELETE;
+                else
+                {
+                    String idStr = parser.getAttributeValue(null, "id");
+                    if (idStr != null)
+                    {
+                        if (action == null)
+                            throw new IllegalStateException("Element " + name + " " + idStr + " is not part of an action in " + file);
+
+                        long id = Long.parseLong(idStr);
+                        if ("node".equals(name))
+                            return createNode(id);
+                        else if ("way".equals(name))
+                            return OSMWay.create(id, parser);
+                        else if ("relation".equals(name))
+                            return OSMRelation.create(id, parser);
+                    }
+                }
+            }
+            event = parser.next();
+        }
+        return null;
+    }
+
+    private OSMNode createNode( long id ) throws XMLStreamException
+    {
+        String lat = parser.getAttributeValue(null, "lat");
+        String lon = parser.getAttributeValue(null, "lon");
+        if (lat == null || lon == null)
+        {
+            if (action != Action.DELETE)
+                throw new IllegalStateException("Node " + id + " has no coordinates in " + file);
+
+            OSMNode node = new OSMNode(id, Double.NaN, Double.NaN);
+            parser.nextTag();
+            node.readTags(parser);
+            return node;
+        }
+        return OSMNode.create(id, parser);
+    }
+
+    /**
+     * @return the action of the element which was returned last from getNext
+     */
+    public Action getAction()
+    {
+        return action;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            if (parser != null)
+                parser.close();
+        } catch (XMLStreamException ex)
+        {
+            throw new IOException(ex);
+        } finally
+        {
+            if (is != null)
+                is.close();
+        }
+    }
+}
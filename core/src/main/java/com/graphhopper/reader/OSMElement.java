@@ -37,6 +37,8 @@ public abstract class OSMElement
     public static final int NODE = 0;
     public static final int WAY = 1;
     public static final int RELATION = 2;
+    // only delivered if requested, see OSMInputFile.setNodeBlocks
+    public static final int NODE_BLOCK = 3;
     private final int type;
     private final long id;
     private final Map<String, Object> properties = new HashMap<String, Object>(5);
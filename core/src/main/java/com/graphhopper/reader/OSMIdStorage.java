@@ -0,0 +1,229 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * Stores the OSM id of every tower node and the OSM way id of every edge, which is required to
+ * apply OSM change files to an imported graph. This only works as long as the node and edge ids do
+ * not change after the import, i.e. the graph must not be sorted and nodes of small subnetworks
+ * must not be removed. Unknown ids are 0.
+ * <p>
+ * Additionally the OSM ids and the unsimplified coordinates of the pillar nodes of every edge are
+ * stored, so that an edge can be split if a changed way is connected to one of its pillar nodes
+ * and its geometry can be updated if a pillar node is moved.
+ * <p>
+ * @author Peter Karich
+ */
+public class OSMIdStorage implements Storable<OSMIdStorage>
+{
+    // per pillar node the OSM id, latitude, longitude and elevation
+    private static final int PILLAR_SIZE = 20;
+    private final DataAccess nodeIds;
+    private final DataAccess wayIds;
+    // per edge the pointer to its pillar nodes, 0 if it has none
+    private final DataAccess edgePillars;
+    // the number of pillar nodes followed by their entries
+    private final DataAccess pillars;
+    private long nextPillarPointer;
+
+    public OSMIdStorage( Directory dir )
+    {
+        this.nodeIds = dir.find("osm_node_ids");
+        this.wayIds = dir.find("osm_way_ids");
+        this.edgePillars = dir.find("osm_edge_pillars");
+        this.pillars = dir.find("osm_pillars");
+    }
+
+    public void setNodeOsmId( int nodeId, long osmId )
+    {
+        setLong(nodeIds, nodeId, osmId);
+    }
+
+    /**
+     * @return the OSM id of the specified tower node or 0 if unknown
+     */
+    public long getNodeOsmId( int nodeId )
+    {
+        return getLong(nodeIds, nodeId);
+    }
+
+    public void setWayOsmId( int edgeId, long osmWayId )
+    {
+        setLong(wayIds, edgeId, osmWayId);
+    }
+
+    /**
+     * @return the id of the OSM way the specified edge was created from or 0 if unknown
+     */
+    public long getWayOsmId( int edgeId )
+    {
+        return getLong(wayIds, edgeId);
+    }
+
+    /**
+     * Stores the pillar nodes of the specified edge in the direction of the edge, i.e. from its
+     * base to its adjacent node.
+     * <p>
+     * @param osmIds the OSM ids of the pillar nodes
+     * @param points the coordinates of the pillar nodes
+     */
+    public void setPillarNodes( int edgeId, TLongList osmIds, PointList points )
+    {
+        int count = osmIds.size();
+        if (count != points.getSize())
+            throw new IllegalArgumentException("Pillar ids " + count + " and points " + points.getSize() + " do not match");
+
+        if (count == 0)
+        {
+            setLong(edgePillars, edgeId, 0);
+            return;
+        }
+
+        // the first 4 bytes are unused so that 0 means no pillar nodes
+        long pointer = Math.max(4, nextPillarPointer);
+        pillars.ensureCapacity(pointer + 4 + (long) count * PILLAR_SIZE);
+        pillars.setInt(pointer, count);
+        long entry = pointer + 4;
+        for (int i = 0; i < count; i++, entry += PILLAR_SIZE)
+        {
+            long osmId = osmIds.get(i);
+            pillars.setInt(entry, (int) (osmId >>> 32));
+            pillars.setInt(entry + 4, (int) osmId);
+            pillars.setInt(entry + 8, Helper.degreeToInt(points.getLatitude(i)));
+            pillars.setInt(entry + 12, Helper.degreeToInt(points.getLongitude(i)));
+            pillars.setInt(entry + 16, points.is3D() ? Helper.eleToInt(points.getElevation(i)) : 0);
+        }
+        nextPillarPointer = entry;
+        setLong(edgePillars, edgeId, pointer);
+    }
+
+    /**
+     * Fills the specified point list with the coordinates of the pillar nodes stored for the
+     * specified edge.
+     * <p>
+     * @return the OSM ids of the pillar nodes, empty if the edge has none
+     */
+    public TLongList getPillarNodes( int edgeId, PointList points )
+    {
+        points.clear();
+        long pointer = getLong(edgePillars, edgeId);
+        if (pointer == 0)
+            return new TLongArrayList(0);
+
+        int count = pillars.getInt(pointer);
+        TLongList osmIds = new TLongArrayList(count);
+        long entry = pointer + 4;
+        for (int i = 0; i < count; i++, entry += PILLAR_SIZE)
+        {
+            osmIds.add((long) pillars.getInt(entry) << 32 | pillars.getInt(entry + 4) & 0xFFFFFFFFL);
+            double lat = Helper.intToDegree(pillars.getInt(entry + 8));
+            double lon = Helper.intToDegree(pillars.getInt(entry + 12));
+            if (points.is3D())
+                points.add(lat, lon, Helper.intToEle(pillars.getInt(entry + 16)));
+            else
+                points.add(lat, lon);
+        }
+        return osmIds;
+    }
+
+    private static void setLong( DataAccess da, int index, long value )
+    {
+        long pointer = (long) index * 8;
+        da.ensureCapacity(pointer + 8);
+        da.setInt(pointer, (int) (value >>> 32));
+        da.setInt(pointer + 4, (int) value);
+    }
+
+    private static long getLong( DataAccess da, int index )
+    {
+        long pointer = (long) index * 8;
+        if (pointer + 8 > da.getCapacity())
+            return 0;
+
+        return (long) da.getInt(pointer) << 32 | da.getInt(pointer + 4) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!nodeIds.loadExisting())
+            return false;
+
+        for (DataAccess da : new DataAccess[]
+        {
+            wayIds, edgePillars, pillars
+        })
+        {
+            if (!da.loadExisting())
+                throw new IllegalStateException("Cannot load " + da.getName() + " although " + nodeIds.getName() + " exists");
+        }
+
+        nextPillarPointer = (long) pillars.getHeader(0) << 32 | pillars.getHeader(4) & 0xFFFFFFFFL;
+        return true;
+    }
+
+    @Override
+    public OSMIdStorage create( long byteCount )
+    {
+        nodeIds.create(byteCount);
+        wayIds.create(byteCount);
+        edgePillars.create(byteCount);
+        pillars.create(byteCount);
+        return this;
+    }
+
+    @Override
+    public void flush()
+    {
+        pillars.setHeader(0, (int) (nextPillarPointer >>> 32));
+        pillars.setHeader(4, (int) nextPillarPointer);
+        nodeIds.flush();
+        wayIds.flush();
+        edgePillars.flush();
+        pillars.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        nodeIds.close();
+        wayIds.close();
+        edgePillars.close();
+        pillars.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return nodeIds.isClosed() && wayIds.isClosed() && edgePillars.isClosed() && pillars.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return nodeIds.getCapacity() + wayIds.getCapacity() + edgePillars.getCapacity() + pillars.getCapacity();
+    }
+}
@@ -26,6 +26,8 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -45,14 +47,18 @@ public class OSMInputFile implements Sink, Closeable
     private XMLStreamReader parser;
     // for pbf parsing
     private boolean binary = false;
-    private final BlockingQueue<OSMElement> itemQueue;
+    // the decoded blocks of the pbf file, one block contains up to 8000 elements
+    private final BlockingQueue<List<OSMElement>> itemQueue;
+    private List<OSMElement> currentBlock = Collections.emptyList();
+    private int currentIndex;
     private boolean hasIncomingData;
     private int workerThreads = -1;
+    private boolean nodeBlocks = false;
 
     public OSMInputFile( File file ) throws IOException
     {
         bis = decode(file);
-        itemQueue = new LinkedBlockingQueue<OSMElement>(50000);
+        itemQueue = new LinkedBlockingQueue<List<OSMElement>>(8);
     }
 
     public OSMInputFile open() throws XMLStreamException
@@ -76,6 +82,17 @@ public class OSMInputFile implements Sink, Closeable
         return this;
     }
 
+    /**
+     * If true the dense nodes of a pbf file are returned as OSMNodeBlock from getNext, which avoids
+     * creating objects for nodes which are skipped anyway. Xml files always return single nodes, so
+     * the caller has to handle both. Default is false.
+     */
+    public OSMInputFile setNodeBlocks( boolean nodeBlocks )
+    {
+        this.nodeBlocks = nodeBlocks;
+        return this;
+    }
+
     @SuppressWarnings("unchecked")
     private InputStream decode( File file ) throws IOException
     {
@@ -249,25 +266,22 @@ public class OSMInputFile implements Sink, Closeable
         if (workerThreads <= 0)
             workerThreads = 2;
 
-        PbfReader reader = new PbfReader(stream, this, workerThreads);
+        PbfReader reader = new PbfReader(stream, this, workerThreads).setNodeBlocks(nodeBlocks);
         pbfReaderThread = new Thread(reader, "PBF Reader");
         pbfReaderThread.start();
     }
 
     @Override
-    public void process( OSMElement item )
+    public void process( List<OSMElement> items )
     {
         try
         {
             // blocks if full
-            itemQueue.put(item);
+            itemQueue.put(items);
         } catch (InterruptedException ex)
         {
             throw new RuntimeException(ex);
         }
-
-        // throw exception if full
-        // itemQueue.add(item);
     }
 
     @Override
@@ -278,26 +292,30 @@ public class OSMInputFile implements Sink, Closeable
 
     private OSMElement getNextPBF()
     {
-        OSMElement next = null;
-        while (next == null)
+        while (currentIndex >= currentBlock.size())
         {
             if (!hasIncomingData && itemQueue.isEmpty())
             {
                 // we are done, stop polling
                 eof = true;
-                break;
+                return null;
             }
 
             try
             {
                 // we cannot use "itemQueue.take()" as it blocks and hasIncomingData can change
-                next = itemQueue.poll(10, TimeUnit.MILLISECONDS);
+                List<OSMElement> block = itemQueue.poll(10, TimeUnit.MILLISECONDS);
+                if (block != null)
+                {
+                    currentBlock = block;
+                    currentIndex = 0;
+                }
             } catch (InterruptedException ex)
             {
                 eof = true;
-                break;
+                return null;
             }
         }
-        return next;
+        return currentBlock.get(currentIndex++);
     }
 }
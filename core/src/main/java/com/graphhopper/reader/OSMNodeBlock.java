@@ -0,0 +1,119 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import java.util.Arrays;
+
+/**
+ * Many nodes of a PBF block stored in primitive arrays. The tags are stored as indices into the
+ * string table of the block, so the nodes which are not needed can be skipped without creating any
+ * object. Use createNode to get a normal OSMNode. The id of the block itself is the id of its first
+ * node.
+ * <p>
+ * @author Peter Karich
+ */
+public class OSMNodeBlock extends OSMElement
+{
+    private final long[] ids;
+    private final double[] lats;
+    private final double[] lons;
+    // the tags of node i are stored in keysVals from tagOffsets[i] to tagOffsets[i + 1]
+    private final int[] tagOffsets;
+    private final int[] keysVals;
+    private final String[] strings;
+    private final int size;
+
+    /**
+     * @param keysVals the key and value string indices of all nodes one after the other
+     * @param tagOffsets the start of the tags of every node in keysVals, with size + 1 entries
+     * @param strings the string table of the block
+     */
+    public OSMNodeBlock( long[] ids, double[] lats, double[] lons, int size, int[] keysVals, int[] tagOffsets,
+                         String[] strings )
+    {
+        super(size > 0 ? ids[0] : -1, NODE_BLOCK);
+        if (ids.length < size || lats.length < size || lons.length < size || tagOffsets.length <= size)
+            throw new IllegalArgumentException("arrays must contain at least " + size + " nodes");
+
+        this.ids = ids;
+        this.lats = lats;
+        this.lons = lons;
+        this.size = size;
+        this.keysVals = keysVals;
+        this.tagOffsets = tagOffsets;
+        this.strings = strings;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public long getNodeId( int index )
+    {
+        return ids[index];
+    }
+
+    public double getLat( int index )
+    {
+        return lats[index];
+    }
+
+    public double getLon( int index )
+    {
+        return lons[index];
+    }
+
+    public boolean hasTags( int index )
+    {
+        return tagOffsets[index + 1] > tagOffsets[index];
+    }
+
+    /**
+     * @return the tag value of the node at the specified index or null if the node has no such tag
+     */
+    public String getTag( int index, String key )
+    {
+        for (int i = tagOffsets[index]; i < tagOffsets[index + 1]; i += 2)
+        {
+            if (key.equals(strings[keysVals[i]]))
+                return strings[keysVals[i + 1]];
+        }
+        return null;
+    }
+
+    /**
+     * Creates the OSMNode for the specified index including its tags.
+     */
+    public OSMNode createNode( int index )
+    {
+        OSMNode node = new OSMNode(ids[index], lats[index], lons[index]);
+        for (int i = tagOffsets[index]; i < tagOffsets[index + 1]; i += 2)
+        {
+            node.setTag(strings[keysVals[i]], strings[keysVals[i + 1]]);
+        }
+        return node;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "NodeBlock: " + size + " nodes, ids=" + Arrays.toString(Arrays.copyOf(ids, Math.min(size, 5)))
+                + (size > 5 ? "..." : "");
+    }
+}
@@ -20,7 +20,9 @@ package com.graphhopper.reader;
 import static com.graphhopper.util.Helper.nf;
 
 import com.graphhopper.util.SimpleKalmanFilter;
+import gnu.trove.list.TIntList;
 import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.TIntLongMap;
 import gnu.trove.map.TLongLongMap;
@@ -52,6 +54,12 @@ import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class parses an OSM xml or pbf file and creates a graph from it. It does so in a two phase
@@ -91,6 +99,11 @@ public class OSMReader implements DataReader
     private final NodeAccess nodeAccess;
     private EncodingManager encodingManager = null;
     private int workerThreads = -1;
+    private int importThreads = 1;
+    private long preProcessWayCounter = 1;
+    // the number of nodes or ways which are prepared together, see prepareBatch
+    int batchSize = 10000;
+    private ExecutorService importPool;
     protected long zeroCounter = 0;
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
@@ -121,6 +134,7 @@ public class OSMReader implements DataReader
     private String smoothingFilter = "";
     private final boolean exitOnlyPillarNodeException = true;
     private File osmFile;
+    private OSMIdStorage osmIdStorage;
     private final Map<FlagEncoder, EdgeExplorer> outExplorerMap = new HashMap<FlagEncoder, EdgeExplorer>();
     private final Map<FlagEncoder, EdgeExplorer> inExplorerMap = new HashMap<FlagEncoder, EdgeExplorer>();
 
@@ -148,18 +162,307 @@ public class OSMReader implements DataReader
         if (!osmFile.exists())
             throw new IllegalStateException("Your specified OSM file does not exist:" + osmFile.getAbsolutePath());
 
+        if (importThreads > 1)
+            importPool = Executors.newFixedThreadPool(importThreads);
+
         StopWatch sw1 = new StopWatch().start();
-        preProcess(osmFile);
-        sw1.stop();
+        StopWatch sw2 = new StopWatch();
+        try
+        {
+            preProcess(osmFile);
+            sw1.stop();
 
-        StopWatch sw2 = new StopWatch().start();
-        writeOsm2Graph(osmFile);
-        sw2.stop();
+            sw2.start();
+            writeOsm2Graph(osmFile);
+            sw2.stop();
+        } finally
+        {
+            if (importPool != null)
+            {
+                importPool.shutdown();
+                importPool = null;
+            }
+        }
 
         logger.info("time(pass1): " + (int) sw1.getSeconds() + " pass2: " + (int) sw2.getSeconds() + " total:"
                 + ((int) (sw1.getSeconds() + sw2.getSeconds())));
     }
 
+    /**
+     * Applies an OSM change file to the already imported graph, which requires the OSM ids stored
+     * via setOSMIdStorage while the import. As edges cannot be removed the edges of modified and
+     * deleted ways are blocked for all vehicles and the modified and created ways are added as new
+     * edges. The new edges can be connected to any node of the graph: an existing edge is split
+     * at a pillar node used by a changed way. Moved tower and pillar nodes get their new
+     * coordinates. Ways referencing nodes which are neither in the graph nor in the change file
+     * are logged. Relations are ignored, so turn restrictions and route relations are not updated.
+     */
+    public void applyChanges( File changeFile ) throws IOException
+    {
+        if (encodingManager == null)
+            throw new IllegalStateException("Encoding manager was not set.");
+
+        if (osmIdStorage == null)
+            throw new IllegalStateException("Changes can only be applied if the OSM ids of the graph are stored");
+
+        StopWatch sw = new StopWatch().start();
+        // keep the last version of every element in the order of the file
+        Map<Long, OSMNode> changedNodes = new LinkedHashMap<Long, OSMNode>();
+        Map<Long, OSMWay> changedWays = new LinkedHashMap<Long, OSMWay>();
+        TLongSet touchedWays = new TLongHashSet();
+        int relations = 0;
+        OSMChangeFile in = null;
+        try
+        {
+            in = new OSMChangeFile(changeFile).open();
+            OSMElement item;
+            while ((item = in.getNext()) != null)
+            {
+                boolean delete = in.getAction() == OSMChangeFile.Action.DELETE;
+                if (item.isType(OSMElement.NODE))
+                {
+                    changedNodes.remove(item.getId());
+                    if (!delete)
+                        changedNodes.put(item.getId(), (OSMNode) item);
+                } else if (item.isType(OSMElement.WAY))
+                {
+                    touchedWays.add(item.getId());
+                    changedWays.remove(item.getId());
+                    if (!delete)
+                        changedWays.put(item.getId(), (OSMWay) item);
+                } else
+                {
+                    relations++;
+                }
+            }
+        } catch (XMLStreamException ex)
+        {
+            throw new RuntimeException("Couldn't parse change file " + changeFile, ex);
+        } finally
+        {
+            Helper.close(in);
+        }
+
+        for (OSMWay way : changedWays.values())
+        {
+            if (!filterWay(way))
+                continue;
+
+            TLongList wayNodes = way.getNodes();
+            for (int index = 0; index < wayNodes.size(); index++)
+            {
+                prepareHighwayNode(wayNodes.get(index));
+            }
+        }
+
+        // the existing tower nodes used by the changed ways or nodes keep their ids
+        nextTowerId = graph.getNodes();
+        for (int node = 0; node < nextTowerId; node++)
+        {
+            long osmId = osmIdStorage.getNodeOsmId(node);
+            if (osmId != 0 && (getNodeMap().get(osmId) != EMPTY || changedNodes.containsKey(osmId)))
+                getNodeMap().put(osmId, -node - 3);
+        }
+
+        // Edges of changed ways are blocked, their pillar nodes can still be used by the changed
+        // ways and need the stored coordinates. Other edges are split if a changed way uses one
+        // of their pillar nodes and updated if one of their pillar nodes was moved.
+        int blockedEdges = 0;
+        List<OSMNode> nodeBatch = new ArrayList<OSMNode>();
+        TLongSet resolvedNodes = new TLongHashSet();
+        TIntList updateEdges = new TIntArrayList();
+        PointList pillarPoints = new PointList(10, nodeAccess.is3D());
+        AllEdgesIterator edgeIter = graph.getAllEdges();
+        while (edgeIter.next())
+        {
+            if (edgeIter.getFlags() == 0)
+                continue;
+
+            int edge = edgeIter.getEdge();
+            boolean touched = touchedWays.contains(osmIdStorage.getWayOsmId(edge));
+            TLongList pillarIds = osmIdStorage.getPillarNodes(edge, pillarPoints);
+            boolean update = false;
+            for (int i = 0; i < pillarIds.size(); i++)
+            {
+                long osmId = pillarIds.get(i);
+                if (touched)
+                {
+                    if (getNodeMap().get(osmId) != EMPTY && !changedNodes.containsKey(osmId) && resolvedNodes.add(osmId))
+                        nodeBatch.add(new OSMNode(osmId, pillarPoints.getLatitude(i), pillarPoints.getLongitude(i)));
+                } else if (getNodeMap().get(osmId) != EMPTY || changedNodes.containsKey(osmId))
+                {
+                    update = true;
+                }
+            }
+
+            if (touched)
+            {
+                edgeIter.setFlags(0);
+                blockedEdges++;
+            } else if (update)
+            {
+                updateEdges.add(edge);
+            }
+        }
+
+        int splitEdges = 0;
+        for (int i = 0; i < updateEdges.size(); i++)
+        {
+            EdgeIteratorState edge = graph.getEdgeIteratorState(updateEdges.get(i), Integer.MIN_VALUE);
+            if (replaceEdge(edge, pillarPoints, changedNodes) > 1)
+                splitEdges++;
+        }
+
+        int movedNodes = 0;
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (OSMNode node : changedNodes.values())
+        {
+            int tmpNode = getNodeMap().get(node.getId());
+            if (tmpNode < TOWER_NODE)
+            {
+                if (moveTowerNode(explorer, -tmpNode - 3, node))
+                    movedNodes++;
+            } else if (tmpNode != EMPTY)
+            {
+                nodeBatch.add(node);
+            }
+        }
+        processNodes(nodeBatch);
+
+        int incompleteWays = 0;
+        for (OSMWay way : changedWays.values())
+        {
+            if (filterWay(way) && !checkWayNodes(way, changedNodes, resolvedNodes))
+                incompleteWays++;
+        }
+
+        int edgesBefore = graph.getAllEdges().getMaxId();
+        processWays(new ArrayList<OSMWay>(changedWays.values()));
+        int newEdges = graph.getAllEdges().getMaxId() - edgesBefore;
+        finishedReading();
+        logger.info("applied " + changeFile + " in " + (int) sw.stop().getSeconds() + "s, ways: " + changedWays.size()
+                + ", blocked edges: " + blockedEdges + ", new edges: " + newEdges
+                + ", updated edges: " + updateEdges.size() + ", split edges: " + splitEdges
+                + ", moved tower nodes: " + movedNodes + ", incomplete ways: " + incompleteWays
+                + ", ignored relations: " + relations);
+    }
+
+    /**
+     * Logs the way if it references nodes which are neither in the graph nor in the change file.
+     * These nodes are skipped like for a normal import, so the way is truncated or split.
+     * <p>
+     * @return false if nodes are missing
+     */
+    private boolean checkWayNodes( OSMWay way, Map<Long, OSMNode> changedNodes, TLongSet resolvedNodes )
+    {
+        TLongList missing = new TLongArrayList();
+        TLongList wayNodes = way.getNodes();
+        for (int i = 0; i < wayNodes.size(); i++)
+        {
+            long osmId = wayNodes.get(i);
+            if (getNodeMap().get(osmId) >= TOWER_NODE && !changedNodes.containsKey(osmId) && !resolvedNodes.contains(osmId))
+                missing.add(osmId);
+        }
+
+        if (missing.isEmpty())
+            return true;
+
+        logger.warn("way " + way.getId() + " references the unknown nodes " + missing + ", it is truncated or split");
+        return false;
+    }
+
+    /**
+     * Blocks the specified edge and creates new edges with its properties instead. The pillar
+     * nodes used by changed ways become tower nodes, i.e. the edge is split there, and moved pillar
+     * nodes get their new coordinates.
+     * <p>
+     * @return the number of new edges
+     */
+    private int replaceEdge( EdgeIteratorState edge, PointList pillarPoints, Map<Long, OSMNode> changedNodes )
+    {
+        long wayOsmId = osmIdStorage.getWayOsmId(edge.getEdge());
+        long flags = edge.getFlags();
+        TLongList pillarIds = osmIdStorage.getPillarNodes(edge.getEdge(), pillarPoints);
+        List<EdgeIteratorState> newEdges = new ArrayList<EdgeIteratorState>();
+        PointList pointList = new PointList(pillarIds.size() + 2, nodeAccess.is3D());
+        TLongList pointOsmIds = new TLongArrayList();
+        int fromNode = edge.getBaseNode();
+        pointList.add(nodeAccess, fromNode);
+        for (int i = 0; i < pillarIds.size(); i++)
+        {
+            long osmId = pillarIds.get(i);
+            double lat = pillarPoints.getLatitude(i);
+            double lon = pillarPoints.getLongitude(i);
+            double ele = pillarPoints.is3D() ? pillarPoints.getElevation(i) : Double.NaN;
+            OSMNode movedNode = changedNodes.get(osmId);
+            if (movedNode != null)
+            {
+                lat = movedNode.getLat();
+                lon = movedNode.getLon();
+                if (nodeAccess.is3D())
+                    ele = getElevation(movedNode);
+            }
+
+            int tmpNode = getNodeMap().get(osmId);
+            if (tmpNode == EMPTY)
+            {
+                if (pointList.is3D())
+                    pointList.add(lat, lon, ele);
+                else
+                    pointList.add(lat, lon);
+                pointOsmIds.add(osmId);
+                continue;
+            }
+
+            // a changed way uses this pillar node
+            if (tmpNode >= TOWER_NODE)
+                tmpNode = addTowerNode(osmId, lat, lon, ele);
+
+            int towerNode = -tmpNode - 3;
+            pointList.add(nodeAccess, towerNode);
+            newEdges.add(addEdge(fromNode, towerNode, pointList, pointOsmIds, flags, wayOsmId));
+            pointList.clear();
+            pointList.add(nodeAccess, towerNode);
+            pointOsmIds.clear();
+            fromNode = towerNode;
+        }
+        pointList.add(nodeAccess, edge.getAdjNode());
+        newEdges.add(addEdge(fromNode, edge.getAdjNode(), pointList, pointOsmIds, flags, wayOsmId));
+
+        for (EdgeIteratorState newEdge : newEdges)
+        {
+            newEdge.setName(edge.getName());
+            if (graph.getExtension().isRequireEdgeField())
+                newEdge.setAdditionalField(edge.getAdditionalField());
+        }
+        edge.setFlags(0);
+        return newEdges.size();
+    }
+
+    /**
+     * Sets the new coordinates of an existing tower node and updates the distances of its edges.
+     * <p>
+     * @return false if the coordinates did not change
+     */
+    private boolean moveTowerNode( EdgeExplorer explorer, int node, OSMNode osmNode )
+    {
+        if (Math.abs(nodeAccess.getLatitude(node) - osmNode.getLat()) < 1e-6
+                && Math.abs(nodeAccess.getLongitude(node) - osmNode.getLon()) < 1e-6)
+            return false;
+
+        if (nodeAccess.is3D())
+            nodeAccess.setNode(node, osmNode.getLat(), osmNode.getLon(), getElevation(osmNode));
+        else
+            nodeAccess.setNode(node, osmNode.getLat(), osmNode.getLon());
+
+        EdgeIterator iter = explorer.setBaseNode(node);
+        while (iter.next())
+        {
+            iter.setDistance(Math.max(iter.fetchWayGeometry(3).calcDistance(distCalc), 0.0001));
+        }
+        return true;
+    }
+
     /**
      * Preprocessing of OSM file to select nodes which are used for highways. This allows a more
      * compact graph data structure.
@@ -169,33 +472,23 @@ public class OSMReader implements DataReader
         OSMInputFile in = null;
         try
         {
-            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+            // nodes are not needed in this pass, so let them arrive as blocks to skip them cheaply
+            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).setNodeBlocks(true).open();
 
-            long tmpWayCounter = 1;
             long tmpRelationCounter = 1;
+            List<OSMWay> wayBatch = new ArrayList<OSMWay>(batchSize);
             OSMElement item;
             while ((item = in.getNext()) != null)
             {
                 if (item.isType(OSMElement.WAY))
                 {
-                    final OSMWay way = (OSMWay) item;
-                    boolean valid = filterWay(way);
-                    if (valid)
-                    {
-                        TLongList wayNodes = way.getNodes();
-                        int s = wayNodes.size();
-                        for (int index = 0; index < s; index++)
-                        {
-                            prepareHighwayNode(wayNodes.get(index));
-                        }
-
-                        if (++tmpWayCounter % 5000000 == 0)
-                        {
-                            logger.info(nf(tmpWayCounter) + " (preprocess), osmIdMap:" + nf(getNodeMap().getSize()) + " ("
-                                    + getNodeMap().getMemoryUsage() + "MB) " + Helper.getMemInfo());
-                        }
-                    }
+                    wayBatch.add((OSMWay) item);
+                    if (wayBatch.size() >= batchSize)
+                        preProcessWays(wayBatch);
+                    continue;
                 }
+
+                preProcessWays(wayBatch);
                 if (item.isType(OSMElement.RELATION))
                 {
                     final OSMRelation relation = (OSMRelation) item;
@@ -213,6 +506,7 @@ public class OSMReader implements DataReader
 
                 }
             }
+            preProcessWays(wayBatch);
         } catch (Exception ex)
         {
             throw new RuntimeException("Problem while parsing file", ex);
@@ -222,6 +516,46 @@ public class OSMReader implements DataReader
         }
     }
 
+    /**
+     * Filters the ways of the batch concurrently and collects the nodes of the accepted ways in the
+     * order of the file. The batch is cleared afterwards.
+     */
+    private void preProcessWays( final List<OSMWay> wayBatch )
+    {
+        if (wayBatch.isEmpty())
+            return;
+
+        final boolean[] valid = new boolean[wayBatch.size()];
+        prepareBatch(wayBatch.size(), new BatchTask()
+        {
+            @Override
+            public void prepare( int index )
+            {
+                valid[index] = filterWay(wayBatch.get(index));
+            }
+        });
+
+        for (int i = 0; i < valid.length; i++)
+        {
+            if (!valid[i])
+                continue;
+
+            TLongList wayNodes = wayBatch.get(i).getNodes();
+            int s = wayNodes.size();
+            for (int index = 0; index < s; index++)
+            {
+                prepareHighwayNode(wayNodes.get(index));
+            }
+
+            if (++preProcessWayCounter % 5000000 == 0)
+            {
+                logger.info(nf(preProcessWayCounter) + " (preprocess), osmIdMap:" + nf(getNodeMap().getSize()) + " ("
+                        + getNodeMap().getMemoryUsage() + "MB) " + Helper.getMemInfo());
+            }
+        }
+        wayBatch.clear();
+    }
+
     private void prepareRestrictionRelation( OSMRelation relation )
     {
         OSMTurnRelation turnRelation = createTurnRelation(relation);
@@ -281,8 +615,11 @@ public class OSMReader implements DataReader
         OSMInputFile in = null;
         try
         {
-            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
+            in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).setNodeBlocks(true).open();
             LongIntMap nodeFilter = getNodeMap();
+            // nodes and ways are prepared in batches, the batches are written in the order of the file
+            List<OSMNode> nodeBatch = new ArrayList<OSMNode>(batchSize);
+            List<OSMWay> wayBatch = new ArrayList<OSMWay>(batchSize);
 
             OSMElement item;
             while ((item = in.getNext()) != null)
@@ -292,7 +629,25 @@ public class OSMReader implements DataReader
                     case OSMElement.NODE:
                         if (nodeFilter.get(item.getId()) != -1)
                         {
-                            processNode((OSMNode) item);
+                            processWays(wayBatch);
+                            nodeBatch.add((OSMNode) item);
+                            if (nodeBatch.size() >= batchSize)
+                                processNodes(nodeBatch);
+                        }
+                        break;
+
+                    case OSMElement.NODE_BLOCK:
+                        OSMNodeBlock block = (OSMNodeBlock) item;
+                        for (int i = 0; i < block.getSize(); i++)
+                        {
+                            // only create objects for nodes which are part of a way
+                            if (nodeFilter.get(block.getNodeId(i)) != -1)
+                            {
+                                processWays(wayBatch);
+                                nodeBatch.add(block.createNode(i));
+                                if (nodeBatch.size() >= batchSize)
+                                    processNodes(nodeBatch);
+                            }
                         }
                         break;
 
@@ -302,7 +657,10 @@ public class OSMReader implements DataReader
                             logger.info(nf(counter) + ", now parsing WAYS");
                             wayStart = counter;
                         }
-                        processWay((OSMWay) item);
+                        processNodes(nodeBatch);
+                        wayBatch.add((OSMWay) item);
+                        if (wayBatch.size() >= batchSize)
+                            processWays(wayBatch);
                         break;
                     case OSMElement.RELATION:
                         if (relationStart < 0)
@@ -310,6 +668,8 @@ public class OSMReader implements DataReader
                             logger.info(nf(counter) + ", now parsing relations");
                             relationStart = counter;
                         }
+                        processNodes(nodeBatch);
+                        processWays(wayBatch);
                         processRelation((OSMRelation) item);
                         break;
                 }
@@ -319,6 +679,8 @@ public class OSMReader implements DataReader
                 }
             }
 
+            processNodes(nodeBatch);
+            processWays(wayBatch);
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex)
         {
@@ -333,26 +695,64 @@ public class OSMReader implements DataReader
             throw new IllegalStateException("osm must not be empty. read " + counter + " lines and " + locations + " locations");
     }
 
+    /**
+     * Prepares the ways of the batch concurrently and then creates their edges in the order of the
+     * file. The batch is cleared afterwards.
+     */
+    private void processWays( final List<OSMWay> wayBatch )
+    {
+        if (wayBatch.isEmpty())
+            return;
+
+        final PreparedWay[] prepared = new PreparedWay[wayBatch.size()];
+        prepareBatch(wayBatch.size(), new BatchTask()
+        {
+            @Override
+            public void prepare( int index )
+            {
+                prepared[index] = prepareWay(wayBatch.get(index));
+            }
+        });
+
+        for (int i = 0; i < prepared.length; i++)
+        {
+            if (prepared[i] != null)
+                addWay(wayBatch.get(i), prepared[i]);
+        }
+        wayBatch.clear();
+    }
+
     /**
      * Process properties, encode flags and create edges for the way.
      */
     void processWay( OSMWay way )
+    {
+        PreparedWay prepared = prepareWay(way);
+        if (prepared != null)
+            addWay(way, prepared);
+    }
+
+    /**
+     * Encodes the flags of the way and smoothes the elevation of its nodes. This method only reads
+     * the graph and can be called concurrently for different ways as long as no way or node is added.
+     * <p>
+     * @return null if the way is not accepted
+     */
+    PreparedWay prepareWay( OSMWay way )
     {
         if (way.getNodes().size() < 2)
-            return;
+            return null;
 
         // ignore multipolygon geometry
         if (!way.hasTags())
-            return;
-
-        long wayOsmId = way.getId();
+            return null;
 
         long includeWay = encodingManager.acceptWay(way);
         if (includeWay == 0)
-            return;
+            return null;
 
         long relationFlags = getRelFlagsMap().get(way.getId());
-
+        double[] tmpDistances = null;
         // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
         TLongList osmNodeIds = way.getNodes();
         // Estimate length of ways containing a route tag e.g. for ferry speed calculation
@@ -371,19 +771,11 @@ public class OSMReader implements DataReader
                 way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
             }
 
-            //Smoothing filter for elevation on ways
+            //Smoothing filter for elevation on ways, the distances only depend on the coordinates
             if(smoothingFilter.equalsIgnoreCase("kalman") || smoothingFilter.equalsIgnoreCase("mean")) {
 
-                double[] tmpElevations = new double[osmNodeIds.size()];
-                double[] tmpDistances = new double[osmNodeIds.size()-1];
-
-                int osmNodeId = getNodeMap().get(osmNodeIds.get(0));
-                tmpElevations[0] = getElevation(osmNodeId);
-
-                for (int i = 1; i < tmpElevations.length; i++) {
-                    osmNodeId = getNodeMap().get(osmNodeIds.get(i));
-                    tmpElevations[i] = getElevation(osmNodeId);
-
+                tmpDistances = new double[osmNodeIds.size()-1];
+                for (int i = 1; i < osmNodeIds.size(); i++) {
                     int firstNode = getNodeMap().get(osmNodeIds.get(i-1));
                     int lastNode = getNodeMap().get(osmNodeIds.get(i));
                     double firstNodeLat = getTmpLatitude(firstNode), firstNodeLon = getTmpLongitude(firstNode);
@@ -395,20 +787,6 @@ public class OSMReader implements DataReader
                         tmpDistances[i-1] = tmpDist;
                     }
                 }
-
-                SmoothingFilter filter;
-
-                if(smoothingFilter.equalsIgnoreCase("mean"))
-                    filter = new MeanFilter(tmpDistances, 100);
-                else
-                    filter = new SimpleKalmanFilter(SimpleKalmanFilter.COMBINED, 6, tmpDistances, 60);
-
-                double[] estimatedElevations = filter.smooth(tmpElevations);
-
-                for (int i = 0; i < estimatedElevations.length; i++) {
-                    osmNodeId = getNodeMap().get(osmNodeIds.get(i));
-                    updateTmpElevation(osmNodeId, estimatedElevations[i], (i == 0 || i == estimatedElevations.length - 1));
-                }
             }
         }
 
@@ -427,9 +805,24 @@ public class OSMReader implements DataReader
         }
 
         long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
+        return new PreparedWay(wayFlags, tmpDistances);
+    }
+
+    /**
+     * Smoothes the elevation of the way nodes and creates the edges of the prepared way. This method
+     * modifies the graph and must not be called concurrently.
+     */
+    void addWay( OSMWay way, PreparedWay prepared )
+    {
+        TLongList osmNodeIds = way.getNodes();
+        if (prepared.distances != null)
+            smoothElevation(osmNodeIds, prepared.distances);
+
+        long wayFlags = prepared.wayFlags;
         if (wayFlags == 0)
             return;
 
+        long wayOsmId = way.getId();
         List<EdgeIteratorState> createdEdges = new ArrayList<EdgeIteratorState>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -498,6 +891,34 @@ public class OSMReader implements DataReader
         }
     }
 
+    /**
+     * Smoothes the elevations which were stored with the nodes instead of fetching them again from
+     * the elevation provider. A node shared by several ways is smoothed once per way.
+     */
+    private void smoothElevation( TLongList osmNodeIds, double[] tmpDistances )
+    {
+        // pillar nodes of previous ways could have become tower nodes, so fetch the current ids
+        int[] nodeIds = new int[osmNodeIds.size()];
+        double[] tmpElevations = new double[nodeIds.length];
+        for (int i = 0; i < nodeIds.length; i++)
+        {
+            nodeIds[i] = getNodeMap().get(osmNodeIds.get(i));
+            tmpElevations[i] = getTmpElevation(nodeIds[i]);
+        }
+
+        SmoothingFilter filter;
+        if (smoothingFilter.equalsIgnoreCase("mean"))
+            filter = new MeanFilter(tmpDistances, 100);
+        else
+            filter = new SimpleKalmanFilter(SimpleKalmanFilter.COMBINED, 6, tmpDistances, 60);
+
+        double[] estimatedElevations = filter.smooth(tmpElevations);
+        for (int i = 0; i < estimatedElevations.length; i++)
+        {
+            updateTmpElevation(nodeIds[i], estimatedElevations[i], (i == 0 || i == estimatedElevations.length - 1));
+        }
+    }
+
     public void processRelation( OSMRelation relation ) throws XMLStreamException
     {
         if (relation.hasTag("type", "restriction"))
@@ -659,30 +1080,61 @@ public class OSMReader implements DataReader
             return Double.NaN;
     }
 
-    private void processNode( OSMNode node )
+    /**
+     * Fetches the elevation and the barrier flags of the nodes of the batch concurrently and then
+     * adds the nodes in the order of the file. The batch is cleared afterwards.
+     */
+    private void processNodes( final List<OSMNode> nodeBatch )
     {
-        if (isInBounds(node))
-        {
-            addNode(node);
+        if (nodeBatch.isEmpty())
+            return;
 
-            // analyze node tags for barriers
-            if (node.hasTags())
+        final boolean[] inBounds = new boolean[nodeBatch.size()];
+        final double[] elevations = new double[nodeBatch.size()];
+        final long[] nodeFlags = new long[nodeBatch.size()];
+        prepareBatch(nodeBatch.size(), new BatchTask()
+        {
+            @Override
+            public void prepare( int index )
             {
-                long nodeFlags = encodingManager.handleNodeTags(node);
-                if (nodeFlags != 0)
-                    getNodeFlagsMap().put(node.getId(), nodeFlags);
+                OSMNode node = nodeBatch.get(index);
+                inBounds[index] = isInBounds(node);
+                if (!inBounds[index])
+                    return;
+
+                elevations[index] = getElevation(node);
+                // analyze node tags for barriers
+                if (node.hasTags())
+                    nodeFlags[index] = encodingManager.handleNodeTags(node);
             }
+        });
 
-            locations++;
-        } else
+        for (int i = 0; i < inBounds.length; i++)
         {
-            skippedLocations++;
+            if (inBounds[i])
+            {
+                OSMNode node = nodeBatch.get(i);
+                addNode(node, elevations[i]);
+                if (nodeFlags[i] != 0)
+                    getNodeFlagsMap().put(node.getId(), nodeFlags[i]);
+
+                locations++;
+            } else
+            {
+                skippedLocations++;
+            }
         }
+        nodeBatch.clear();
     }
 
     //TODO update node elevation with Kalman
 
     boolean addNode( OSMNode node )
+    {
+        return addNode(node, getElevation(node));
+    }
+
+    private boolean addNode( OSMNode node, double ele )
     {
         int nodeType = getNodeMap().get(node.getId());
         if (nodeType == EMPTY)
@@ -690,7 +1142,6 @@ public class OSMReader implements DataReader
 
         double lat = node.getLat();
         double lon = node.getLon();
-        double ele = getElevation(node);
         if (nodeType == TOWER_NODE)
         {
             addTowerNode(node.getId(), lat, lon, ele);
@@ -708,13 +1159,6 @@ public class OSMReader implements DataReader
         return eleProvider.getEle(node.getLat(), node.getLon());
     }
 
-    protected double getElevation( int osmNodeId ){
-        double lat = getTmpLatitude(osmNodeId);
-        double lon = getTmpLongitude(osmNodeId);
-
-        return eleProvider.getEle(lat, lon);
-    }
-
     void prepareWaysWithRelationInfo( OSMRelation osmRelation )
     {
         // is there at least one tag interesting for the registed encoders?
@@ -762,6 +1206,9 @@ public class OSMReader implements DataReader
         else
             nodeAccess.setNode(nextTowerId, lat, lon);
 
+        if (osmIdStorage != null)
+            osmIdStorage.setNodeOsmId(nextTowerId, osmId);
+
         int id = -(nextTowerId + 3);
         getNodeMap().put(osmId, id);
         nextTowerId++;
@@ -774,6 +1221,8 @@ public class OSMReader implements DataReader
     Collection<EdgeIteratorState> addOSMWay( final TLongList osmNodeIds, final long flags, final long wayOsmId )
     {
         PointList pointList = new PointList(osmNodeIds.size(), nodeAccess.is3D());
+        // the OSM ids of the pillar nodes in the point list
+        TLongList pillarOsmIds = new TLongArrayList();
         List<EdgeIteratorState> newEdges = new ArrayList<EdgeIteratorState>(5);
         int firstNode = -1;
         int lastIndex = osmNodeIds.size() - 1;
@@ -802,13 +1251,18 @@ public class OSMReader implements DataReader
                         tmpNode = lastInBoundsPillarNode;
                         tmpNode = handlePillarNode(tmpNode, osmId, null, true);
                         tmpNode = -tmpNode - 3;
+                        // the last pillar node of the point list is now the tower node
+                        if (!pillarOsmIds.isEmpty() && pillarOsmIds.size() == pointList.getSize() - 1)
+                            pillarOsmIds.removeAt(pillarOsmIds.size() - 1);
+
                         if (pointList.getSize() > 1 && firstNode >= 0)
                         {
                             // TOWER node
-                            newEdges.add(addEdge(firstNode, tmpNode, pointList, flags, wayOsmId));
+                            newEdges.add(addEdge(firstNode, tmpNode, pointList, pillarOsmIds, flags, wayOsmId));
                             pointList.clear();
                             pointList.add(nodeAccess, tmpNode);
                         }
+                        pillarOsmIds.clear();
                         firstNode = tmpNode;
                         lastInBoundsPillarNode = -1;
                     }
@@ -828,6 +1282,8 @@ public class OSMReader implements DataReader
 
                     // PILLAR node, but convert to towerNode if end-standing
                     tmpNode = handlePillarNode(tmpNode, osmId, pointList, convertToTowerNode);
+                    if (!convertToTowerNode)
+                        pillarOsmIds.add(osmId);
                 }
 
                 if (tmpNode < TOWER_NODE)
@@ -837,10 +1293,11 @@ public class OSMReader implements DataReader
                     pointList.add(nodeAccess, tmpNode);
                     if (firstNode >= 0)
                     {
-                        newEdges.add(addEdge(firstNode, tmpNode, pointList, flags, wayOsmId));
+                        newEdges.add(addEdge(firstNode, tmpNode, pointList, pillarOsmIds, flags, wayOsmId));
                         pointList.clear();
                         pointList.add(nodeAccess, tmpNode);
                     }
+                    pillarOsmIds.clear();
                     firstNode = tmpNode;
                 }
             }
@@ -853,7 +1310,12 @@ public class OSMReader implements DataReader
         return newEdges;
     }
 
-    EdgeIteratorState addEdge( int fromIndex, int toIndex, PointList pointList, long flags, long wayOsmId )
+    /**
+     * @param pillarOsmIds the OSM ids of the pillar nodes of the point list, i.e. without the tower
+     * nodes at both ends. Used to store the pillar nodes if OSM ids are stored.
+     */
+    EdgeIteratorState addEdge( int fromIndex, int toIndex, PointList pointList, TLongList pillarOsmIds,
+                               long flags, long wayOsmId )
     {
         // sanity checks
         if (fromIndex < 0 || toIndex < 0)
@@ -905,6 +1367,15 @@ public class OSMReader implements DataReader
         }
 
         EdgeIteratorState iter = graph.edge(fromIndex, toIndex).setDistance(towerNodeDistance).setFlags(flags);
+        if (osmIdStorage != null)
+        {
+            osmIdStorage.setWayOsmId(iter.getEdge(), wayOsmId);
+            // store the pillar nodes before they are simplified
+            if (pillarOsmIds.size() == pillarNodes.getSize())
+                osmIdStorage.setPillarNodes(iter.getEdge(), pillarOsmIds, pillarNodes);
+            else
+                logger.warn("Cannot store the pillar nodes of edge " + iter.getEdge() + ", osm way " + wayOsmId);
+        }
 
         if (nodes > 2)
         {
@@ -1097,6 +1568,19 @@ public class OSMReader implements DataReader
         return this;
     }
 
+    /**
+     * Specifies the number of threads which encode the flags and fetch the elevation of the nodes
+     * and ways. The graph itself is always written by the reading thread.
+     */
+    public OSMReader setImportThreads( int importThreads )
+    {
+        if (importThreads < 1)
+            throw new IllegalArgumentException("import threads must be at least 1 but was " + importThreads);
+
+        this.importThreads = importThreads;
+        return this;
+    }
+
     public OSMReader setElevationProvider( ElevationProvider eleProvider )
     {
         if (eleProvider == null)
@@ -1121,6 +1605,96 @@ public class OSMReader implements DataReader
         return this;
     }
 
+    /**
+     * Stores the OSM ids of the created tower nodes and edges into the specified storage. It is
+     * required for applyChanges.
+     */
+    public OSMReader setOSMIdStorage( OSMIdStorage osmIdStorage )
+    {
+        this.osmIdStorage = osmIdStorage;
+        return this;
+    }
+
+    /**
+     * Calls the task for every index from 0 to size - 1, concurrently if more than one import thread
+     * was specified.
+     */
+    private void prepareBatch( final int size, final BatchTask task )
+    {
+        int workers = Math.min(importThreads, size);
+        if (importPool == null || workers <= 1)
+        {
+            for (int index = 0; index < size; index++)
+            {
+                task.prepare(index);
+            }
+            return;
+        }
+
+        // hand out small chunks to keep all threads busy even if some ways are expensive
+        final int chunk = Math.max(1, size / (workers * 8));
+        final AtomicInteger nextIndex = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<Callable<Object>>(workers);
+        for (int i = 0; i < workers; i++)
+        {
+            callables.add(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    int start;
+                    while ((start = nextIndex.getAndAdd(chunk)) < size)
+                    {
+                        int end = Math.min(size, start + chunk);
+                        for (int index = start; index < end; index++)
+                        {
+                            task.prepare(index);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Object> future : importPool.invokeAll(callables))
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Import failed", ex.getCause());
+        }
+    }
+
+    private interface BatchTask
+    {
+        void prepare( int index );
+    }
+
+    /**
+     * The result of prepareWay which is needed to create the edges of the way.
+     */
+    static class PreparedWay
+    {
+        final long wayFlags;
+        // the distances between the way nodes for the smoothing filter or null if not used
+        final double[] distances;
+
+        PreparedWay( long wayFlags, double[] distances )
+        {
+            this.wayFlags = wayFlags;
+            this.distances = distances;
+        }
+    }
+
     private void printInfo( String str )
     {
         logger.info("finished " + str + " processing." + " nodes: " + graph.getNodes()
@@ -28,8 +28,6 @@ import com.graphhopper.util.Helper;
 import java.awt.image.Raster;
 import java.io.*;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -59,7 +57,15 @@ public class CGIARProvider implements ElevationProvider
     private static final int WIDTH = 6000;
     private Downloader downloader = new Downloader("GraphHopper CGIARReader").setTimeout(10000);
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final Map<String, HeightTile> cacheData = new HashMap<String, HeightTile>();
+    private final HeightTileCache<String> cacheData = new HeightTileCache<String>();
+    private final HeightTileCache.TileLoader<String> tileLoader = new HeightTileCache.TileLoader<String>()
+    {
+        @Override
+        public HeightTile load( String name, double lat, double lon )
+        {
+            return loadTile(name, lat, lon);
+        }
+    };
     private File cacheDir = new File("/tmp/cgiar");
     // for alternatives see #346
     private String baseUrl = "http://srtm.csi.cgiar.org/SRT-ZIP/SRTM_V41/SRTM_Data_GeoTiff";
@@ -135,6 +141,13 @@ public class CGIARProvider implements ElevationProvider
         return this;
     }
 
+    @Override
+    public ElevationProvider setMaxCacheBytes( long maxCacheBytes )
+    {
+        cacheData.setMaxBytes(maxCacheBytes);
+        return this;
+    }
+
     @Override
     public double getEle( double lat, double lon )
     {
@@ -144,130 +157,130 @@ public class CGIARProvider implements ElevationProvider
 
         lat = (int) (lat * precision) / precision;
         lon = (int) (lon * precision) / precision;
-        String name = getFileName(lat, lon);
-        HeightTile demProvider = cacheData.get(name);
-        if (demProvider == null)
+        return cacheData.getHeight(getFileName(lat, lon), lat, lon, tileLoader);
+    }
+
+    private HeightTile loadTile( String name, double lat, double lon )
+    {
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+
+        int minLat = down(lat);
+        int minLon = down(lon);
+        // less restrictive against boundary checking
+        HeightTile demProvider = new HeightTile(minLat, minLon, WIDTH, degree * precision, degree);
+        demProvider.setCalcMean(calcMean);
+
+        DataAccess heights = getDirectory().find(name + ".gh");
+        demProvider.setHeights(heights);
+        boolean loadExisting = false;
+        try
         {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            int minLat = down(lat);
-            int minLon = down(lon);
-            // less restrictive against boundary checking
-            demProvider = new HeightTile(minLat, minLon, WIDTH, degree * precision, degree);
-            demProvider.setCalcMean(calcMean);
-
-            cacheData.put(name, demProvider);
-            DataAccess heights = getDirectory().find(name + ".gh");
-            demProvider.setHeights(heights);
-            boolean loadExisting = false;
-            try
-            {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex)
-            {
-                logger.warn("cannot load " + name + ", error:" + ex.getMessage());
-            }
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex)
+        {
+            logger.warn("cannot load " + name + ", error:" + ex.getMessage());
+        }
 
-            if (!loadExisting)
-            {
-                String tifName = name + ".tif";
-                String zippedURL = baseUrl + "/" + name + ".zip";
-                File file = new File(cacheDir, new File(zippedURL).getName());
+        // a sea level tile is stored with a few bytes only, detect it by its size too as reading
+        // heights from it would fail
+        if (loadExisting && heights.getCapacity() < 2 * WIDTH * WIDTH)
+            demProvider.setSeaLevel(true);
 
-                // get zip file if not already in cacheDir - unzip later and in-memory only!
-                if (!file.exists())
+        if (!loadExisting)
+        {
+            String tifName = name + ".tif";
+            String zippedURL = baseUrl + "/" + name + ".zip";
+            File file = new File(cacheDir, new File(zippedURL).getName());
+
+            // get zip file if not already in cacheDir - unzip later and in-memory only!
+            if (!file.exists())
+            {
+                try
                 {
-                    try
+                    for (int i = 0; i < 3; i++)
                     {
-                        for (int i = 0; i < 3; i++)
+                        try
                         {
-                            try
-                            {
-                                downloader.downloadFile(zippedURL, file.getAbsolutePath());
-                                break;
-                            } catch (SocketTimeoutException ex)
-                            {
-                                // just try again after a little nap
-                                Thread.sleep(2000);
-                                continue;
-                            } catch (IOException ex)
-                            {
-                                demProvider.setSeaLevel(true);
-                                // use small size on disc and in-memory
-                                heights.setSegmentSize(100).create(10).
-                                        flush();
-                                return 0;
-                            }
+                            downloader.downloadFile(zippedURL, file.getAbsolutePath());
+                            break;
+                        } catch (SocketTimeoutException ex)
+                        {
+                            // just try again after a little nap
+                            Thread.sleep(2000);
+                            continue;
+                        } catch (IOException ex)
+                        {
+                            demProvider.setSeaLevel(true);
+                            // use small size on disc and in-memory
+                            heights.setSegmentSize(100).create(10).
+                                    flush();
+                            return demProvider;
                         }
-                    } catch (Exception ex)
-                    {
-                        throw new RuntimeException(ex);
                     }
+                } catch (Exception ex)
+                {
+                    throw new RuntimeException(ex);
                 }
+            }
 
-                // short == 2 bytes
-                heights.create(2 * WIDTH * WIDTH);
+            // short == 2 bytes
+            heights.create(2 * WIDTH * WIDTH);
 
-                // logger.info("start decoding");
-                // decode tiff data
-                Raster raster;
-                SeekableStream ss = null;
-                try
-                {
-                    InputStream is = new FileInputStream(file);
-                    ZipInputStream zis = new ZipInputStream(is);
-                    // find tif file in zip
-                    ZipEntry entry = zis.getNextEntry();
-                    while (entry != null && !entry.getName().equals(tifName))
-                    {
-                        entry = zis.getNextEntry();
-                    }
-                    
-                    ss = SeekableStream.wrapInputStream(zis, true);
-                    TIFFImageDecoder imageDecoder = new TIFFImageDecoder(ss, new TIFFDecodeParam());
-                    raster = imageDecoder.decodeAsRaster();
-                } catch (Exception e)
-                {
-                    throw new RuntimeException("Can't decode " + tifName, e);
-                } finally
+            // logger.info("start decoding");
+            // decode tiff data
+            Raster raster;
+            SeekableStream ss = null;
+            try
+            {
+                InputStream is = new FileInputStream(file);
+                ZipInputStream zis = new ZipInputStream(is);
+                // find tif file in zip
+                ZipEntry entry = zis.getNextEntry();
+                while (entry != null && !entry.getName().equals(tifName))
                 {
-                    if (ss != null)
-                        Helper.close(ss);
+                    entry = zis.getNextEntry();
                 }
+                
+                ss = SeekableStream.wrapInputStream(zis, true);
+                TIFFImageDecoder imageDecoder = new TIFFImageDecoder(ss, new TIFFDecodeParam());
+                raster = imageDecoder.decodeAsRaster();
+            } catch (Exception e)
+            {
+                throw new RuntimeException("Can't decode " + tifName, e);
+            } finally
+            {
+                if (ss != null)
+                    Helper.close(ss);
+            }
 
-                // logger.info("start converting to our format");           
-                final int height = raster.getHeight();
-                final int width = raster.getWidth();
-                int x = 0, y = 0;
-                try
+            // logger.info("start converting to our format");           
+            final int height = raster.getHeight();
+            final int width = raster.getWidth();
+            int x = 0, y = 0;
+            try
+            {
+                for (y = 0; y < height; y++)
                 {
-                    for (y = 0; y < height; y++)
+                    for (x = 0; x < width; x++)
                     {
-                        for (x = 0; x < width; x++)
-                        {
-                            short val = (short) raster.getPixel(x, y, (int[]) null)[0];
-                            if (val < -1000 || val > 12000)
-                                val = Short.MIN_VALUE;
+                        short val = (short) raster.getPixel(x, y, (int[]) null)[0];
+                        if (val < -1000 || val > 12000)
+                            val = Short.MIN_VALUE;
 
-                            heights.setShort(2 * (y * WIDTH + x), val);
-                        }
+                        heights.setShort(2 * (y * WIDTH + x), val);
                     }
-                    heights.flush();
-
-                    //demProvider.toImage("x" + name + ".png");
-                    // TODO remove tifName and zip?
-                } catch (Exception ex)
-                {
-                    throw new RuntimeException("Problem at x:" + x + ", y:" + y, ex);
                 }
-            } // loadExisting
-        }
-
-        if (demProvider.isSeaLevel())
-            return 0;
+                heights.flush();
 
-        return demProvider.getHeight(lat, lon);
+                //demProvider.toImage("x" + name + ".png");
+                // TODO remove tifName and zip?
+            } catch (Exception ex)
+            {
+                throw new RuntimeException("Problem at x:" + x + ", y:" + y, ex);
+            }
+        } // loadExisting
+        return demProvider;
     }
 
     int down( double val )
@@ -23,6 +23,9 @@ import com.graphhopper.storage.DAType;
 import java.io.File;
 
 /**
+ * Provides the elevation of a location. The getEle method has to be thread safe as it is called
+ * from several threads while the import.
+ * <p>
  * @author Peter Karich
  */
 public interface ElevationProvider
@@ -49,6 +52,12 @@ public interface ElevationProvider
      */
     ElevationProvider setDAType( DAType daType );
 
+    /**
+     * Specifies how many bytes of elevation data are kept open. If more is needed the least
+     * recently used data is closed and loaded again if necessary. Default is unlimited.
+     */
+    ElevationProvider setMaxCacheBytes( long maxCacheBytes );
+
     /**
      * Configuration option to include surrounding elevation points when fetching the elevation. Has
      * only an effect if called before the first getEle call. Turned off by default.
@@ -92,6 +101,12 @@ public interface ElevationProvider
             return this;
         }
 
+        @Override
+        public ElevationProvider setMaxCacheBytes( long maxCacheBytes )
+        {
+            return this;
+        }
+
         @Override
         public void release()
         {
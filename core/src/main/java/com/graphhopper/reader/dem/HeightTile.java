@@ -44,6 +44,8 @@ public class HeightTile
     private final double higherBound;
     private boolean calcMean;
     private boolean calcMedian;
+    // see HeightTileCache
+    volatile long lastAccess;
 
     public HeightTile( int minLat, int minLon, int width, double precision, int degree )
     {
@@ -85,6 +87,11 @@ public class HeightTile
         this.heights = da;
     }
 
+    DataAccess getHeights()
+    {
+        return heights;
+    }
+
     public double getHeight( double lat, double lon )
     {
         double deltaLat = Math.abs(lat - minLat);
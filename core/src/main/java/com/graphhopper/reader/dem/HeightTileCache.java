@@ -0,0 +1,190 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Holds the loaded height tiles of an elevation provider and can be used from several threads.
+ * Lookups of loaded tiles only need the read lock, loading a tile blocks all other threads. If the
+ * tiles need more bytes than the configured maximum the least recently used tiles are closed. An
+ * evicted memory mapped tile is cheap to load again as its unpacked file stays in the cache
+ * directory.
+ * <p>
+ * @author Peter Karich
+ */
+public class HeightTileCache<K>
+{
+    /**
+     * Creates the tile for a key which is not in the cache.
+     */
+    public interface TileLoader<K>
+    {
+        /**
+         * @param lat the latitude of a location inside the tile
+         * @param lon the longitude of a location inside the tile
+         * @return the loaded tile or null if there is no data for this key
+         */
+        HeightTile load( K key, double lat, double lon );
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<K, HeightTile> tiles = new HashMap<K, HeightTile>();
+    private final AtomicLong clock = new AtomicLong();
+    private long maxBytes = Long.MAX_VALUE;
+    private long bytes;
+
+    /**
+     * Specifies the maximum number of bytes of all loaded tiles. At least the last loaded tile is
+     * always kept. Default is unlimited.
+     */
+    public void setMaxBytes( long maxBytes )
+    {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maximum bytes cannot be negative but was " + maxBytes);
+
+        lock.writeLock().lock();
+        try
+        {
+            this.maxBytes = maxBytes;
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the height at the specified location from the tile of the specified key. Returns 0 if
+     * the loader has no data for the key or if the tile is sea level.
+     */
+    public double getHeight( K key, double lat, double lon, TileLoader<K> loader )
+    {
+        lock.readLock().lock();
+        try
+        {
+            HeightTile tile = tiles.get(key);
+            if (tile != null)
+                return getHeight(tile, lat, lon);
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            // another thread could have loaded the tile in the meantime
+            HeightTile tile = tiles.get(key);
+            if (tile == null)
+            {
+                tile = loader.load(key, lat, lon);
+                if (tile == null)
+                    return 0;
+
+                tiles.put(key, tile);
+                bytes += tile.getHeights().getCapacity();
+                evict(key);
+            }
+            return getHeight(tile, lat, lon);
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private double getHeight( HeightTile tile, double lat, double lon )
+    {
+        tile.lastAccess = clock.incrementAndGet();
+        if (tile.isSeaLevel())
+            return 0;
+
+        return tile.getHeight(lat, lon);
+    }
+
+    /**
+     * Closes the least recently used tiles except the one with the specified key until the byte
+     * limit is met. Must be called with the write lock.
+     */
+    private void evict( K keep )
+    {
+        while (bytes > maxBytes && tiles.size() > 1)
+        {
+            K oldestKey = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<K, HeightTile> entry : tiles.entrySet())
+            {
+                if (entry.getValue().lastAccess < oldestAccess && !entry.getKey().equals(keep))
+                {
+                    oldestKey = entry.getKey();
+                    oldestAccess = entry.getValue().lastAccess;
+                }
+            }
+
+            HeightTile tile = tiles.remove(oldestKey);
+            bytes -= tile.getHeights().getCapacity();
+            tile.getHeights().close();
+        }
+    }
+
+    public int getSize()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return tiles.size();
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes of all loaded tiles
+     */
+    public long getBytes()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return bytes;
+        } finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets all tiles without closing them, see ElevationProvider.release.
+     */
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            tiles.clear();
+            bytes = 0;
+        } finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+}
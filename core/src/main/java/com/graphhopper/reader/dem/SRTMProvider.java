@@ -21,7 +21,6 @@ package com.graphhopper.reader.dem;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Downloader;
-import gnu.trove.map.hash.TIntObjectHashMap;
 import java.io.*;
 import java.net.SocketTimeoutException;
 import java.util.zip.ZipInputStream;
@@ -49,7 +48,15 @@ public abstract class SRTMProvider implements ElevationProvider
     private Downloader downloader = new Downloader("GraphHopper SRTMReader").setTimeout(10000);
     private File cacheDir = new File("/tmp/srtm");
     // use a map as an array is not quite useful if we want to hold only parts of the world
-    protected final TIntObjectHashMap<HeightTile> cacheData = new TIntObjectHashMap<HeightTile>();
+    protected final HeightTileCache<Integer> cacheData = new HeightTileCache<Integer>();
+    private final HeightTileCache.TileLoader<Integer> tileLoader = new HeightTileCache.TileLoader<Integer>()
+    {
+        @Override
+        public HeightTile load( Integer intKey, double lat, double lon )
+        {
+            return loadTile(intKey, lat, lon);
+        }
+    };
     protected final double precision = 1e7;
     protected final double invPrecision = 1 / precision;
     // mirror: base = "http://mirror.ufs.ac.za/datasets/SRTM3/"
@@ -113,6 +120,13 @@ public abstract class SRTMProvider implements ElevationProvider
         return this;
     }
 
+    @Override
+    public ElevationProvider setMaxCacheBytes( long maxCacheBytes )
+    {
+        cacheData.setMaxBytes(maxCacheBytes);
+        return this;
+    }
+
     int down( double val )
     {
         int intVal = (int) val;
@@ -128,56 +142,54 @@ public abstract class SRTMProvider implements ElevationProvider
     {
         lat = (int) (lat * precision) / precision;
         lon = (int) (lon * precision) / precision;
-        int intKey = calcIntKey(lat, lon);
-        HeightTile demProvider = cacheData.get(intKey);
-        if (demProvider == null)
+        return cacheData.getHeight(calcIntKey(lat, lon), lat, lon, tileLoader);
+    }
+
+    private HeightTile loadTile( int intKey, double lat, double lon )
+    {
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
+
+        String fileDetails = getFileString(lat, lon);
+        if (fileDetails == null)
+            return null;
+
+        int minLat = down(lat);
+        int minLon = down(lon);
+        HeightTile demProvider = new HeightTile(minLat, minLon, WIDTH, precision, 1);
+        demProvider.setCalcMean(calcMean);
+        demProvider.setCalcMedian(calcMedian);
+        DataAccess heights = getDirectory().find("dem" + intKey);
+        demProvider.setHeights(heights);
+        boolean loadExisting = false;
+
+        try
         {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            String fileDetails = getFileString(lat, lon);
-            if (fileDetails == null)
-                return 0;
-
-            int minLat = down(lat);
-            int minLon = down(lon);
-            demProvider = new HeightTile(minLat, minLon, WIDTH, precision, 1);
-            demProvider.setCalcMean(calcMean);
-            demProvider.setCalcMedian(calcMedian);
-            cacheData.put(intKey, demProvider);
-            DataAccess heights = getDirectory().find("dem" + intKey);
-            demProvider.setHeights(heights);
-            boolean loadExisting = false;
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex)
+        {
+            logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
+        }
 
+        if (!loadExisting)
+        {
+            byte[] bytes = new byte[2 * WIDTH * WIDTH];
+            heights.create(bytes.length);
             try
             {
-                loadExisting = heights.loadExisting();
+                File file = downloadFile(fileDetails);
+
+                processFile(heights, bytes, file);
+
+                //demProvider.toImage("x" + file.getName() + ".png");
+                //System.out.println("x" + file.getName() + ".png");
+                // TODO remove hgt and zip?
             } catch (Exception ex)
             {
-                logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
+                throw new RuntimeException(ex);
             }
-
-            if (!loadExisting)
-            {
-                byte[] bytes = new byte[2 * WIDTH * WIDTH];
-                heights.create(bytes.length);
-                try
-                {
-                    File file = downloadFile(fileDetails);
-
-                    processFile(heights, bytes, file);
-
-                    //demProvider.toImage("x" + file.getName() + ".png");
-                    //System.out.println("x" + file.getName() + ".png");
-                    // TODO remove hgt and zip?
-                } catch (Exception ex)
-                {
-                    throw new RuntimeException(ex);
-                }
-            } // loadExisting
-        }
-
-        return demProvider.getHeight(lat, lon);
+        } // loadExisting
+        return demProvider;
     }
 
     private File downloadFile(String fileDetails) throws IOException, InterruptedException {
@@ -4,6 +4,7 @@ package com.graphhopper.reader.pbf;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.graphhopper.reader.OSMElement;
 import com.graphhopper.reader.OSMNode;
+import com.graphhopper.reader.OSMNodeBlock;
 import com.graphhopper.reader.OSMRelation;
 import com.graphhopper.reader.OSMWay;
 import org.openstreetmap.osmosis.osmbinary.Fileformat;
@@ -31,6 +32,7 @@ public class PbfBlobDecoder implements Runnable
     private final String blobType;
     private final byte[] rawBlob;
     private final PbfBlobDecoderListener listener;
+    private final boolean nodeBlocks;
     private List<OSMElement> decodedEntities;
 
     /**
@@ -41,10 +43,22 @@ public class PbfBlobDecoder implements Runnable
      * @param listener The listener for receiving decoding results.
      */
     public PbfBlobDecoder( String blobType, byte[] rawBlob, PbfBlobDecoderListener listener )
+    {
+        this(blobType, rawBlob, listener, false);
+    }
+
+    /**
+     * Creates a new instance.
+     * <p>
+     * @param nodeBlocks If true dense nodes are decoded into one OSMNodeBlock per primitive group
+     * instead of one OSMNode per node.
+     */
+    public PbfBlobDecoder( String blobType, byte[] rawBlob, PbfBlobDecoderListener listener, boolean nodeBlocks )
     {
         this.blobType = blobType;
         this.rawBlob = rawBlob;
         this.listener = listener;
+        this.nodeBlocks = nodeBlocks;
     }
 
     private byte[] readBlobContent() throws IOException
@@ -165,6 +179,52 @@ public class PbfBlobDecoder implements Runnable
         }
     }
 
+    private void processNodeBlock( Osmformat.DenseNodes nodes, PbfFieldDecoder fieldDecoder )
+    {
+        int size = nodes.getIdCount();
+        if (size == 0)
+            return;
+
+        long[] ids = new long[size];
+        double[] lats = new double[size];
+        double[] lons = new double[size];
+        int[] tagOffsets = new int[size + 1];
+        // the keys and values without the delimiters are never longer than the original list
+        int keysValsCount = nodes.getKeysValsCount();
+        int[] keysVals = new int[keysValsCount];
+        int keysValsIndex = 0;
+        int tagCount = 0;
+
+        long nodeId = 0;
+        long latitude = 0;
+        long longitude = 0;
+        for (int i = 0; i < size; i++)
+        {
+            // Delta decode node fields.
+            nodeId += nodes.getId(i);
+            latitude += nodes.getLat(i);
+            longitude += nodes.getLon(i);
+            ids[i] = nodeId;
+            lats[i] = ((double) latitude) / 10000000;
+            lons[i] = ((double) longitude) / 10000000;
+
+            // The tags of every node are delimited by a key index of 0.
+            tagOffsets[i] = tagCount;
+            while (keysValsIndex < keysValsCount)
+            {
+                int keyIndex = nodes.getKeysVals(keysValsIndex++);
+                if (keyIndex == 0)
+                    break;
+
+                keysVals[tagCount++] = keyIndex;
+                keysVals[tagCount++] = nodes.getKeysVals(keysValsIndex++);
+            }
+        }
+        tagOffsets[size] = tagCount;
+
+        decodedEntities.add(new OSMNodeBlock(ids, lats, lons, size, keysVals, tagOffsets, fieldDecoder.getStrings()));
+    }
+
     private void processNodes( Osmformat.DenseNodes nodes, PbfFieldDecoder fieldDecoder )
     {
         List<Long> idList = nodes.getIdList();
@@ -365,7 +425,10 @@ public class PbfBlobDecoder implements Runnable
         for (Osmformat.PrimitiveGroup primitiveGroup : block.getPrimitivegroupList())
         {
             log.debug("Processing OSM primitive group.");
-            processNodes(primitiveGroup.getDense(), fieldDecoder);
+            if (nodeBlocks)
+                processNodeBlock(primitiveGroup.getDense(), fieldDecoder);
+            else
+                processNodes(primitiveGroup.getDense(), fieldDecoder);
             processNodes(primitiveGroup.getNodesList(), fieldDecoder);
             processWays(primitiveGroup.getWaysList(), fieldDecoder);
             processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
@@ -25,6 +25,7 @@ public class PbfDecoder implements Runnable
     private final ExecutorService executorService;
     private final int maxPendingBlobs;
     private final Sink sink;
+    private final boolean nodeBlocks;
     private final Lock lock;
     private final Condition dataWaitCondition;
     private final Queue<PbfBlobResult> blobResults;
@@ -39,11 +40,23 @@ public class PbfDecoder implements Runnable
      */
     public PbfDecoder( PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
                        Sink sink )
+    {
+        this(streamSplitter, executorService, maxPendingBlobs, sink, false);
+    }
+
+    /**
+     * Creates a new instance.
+     * <p>
+     * @param nodeBlocks If true dense nodes are sent as OSMNodeBlock instead of single nodes.
+     */
+    public PbfDecoder( PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
+                       Sink sink, boolean nodeBlocks )
     {
         this.streamSplitter = streamSplitter;
         this.executorService = executorService;
         this.maxPendingBlobs = maxPendingBlobs;
         this.sink = sink;
+        this.nodeBlocks = nodeBlocks;
 
         // Create the thread synchronisation primitives.
         lock = new ReentrantLock();
@@ -96,16 +109,14 @@ public class PbfDecoder implements Runnable
                 throw new RuntimeException("A PBF decoding worker thread failed, aborting.", blobResult.getException());
             }
 
-            // Send the processed entities to the sink. We can release the lock
-            // for the duration of processing to allow worker threads to post
-            // their results.
+            // Send the processed entities to the sink in one go. We can release
+            // the lock for the duration of processing to allow worker threads
+            // to post their results.
             lock.unlock();
             try
             {
-                for (OSMElement entity : blobResult.getEntities())
-                {
-                    sink.process(entity);
-                }
+                if (!blobResult.getEntities().isEmpty())
+                    sink.process(blobResult.getEntities());
             } finally
             {
                 lock.lock();
@@ -163,7 +174,8 @@ public class PbfDecoder implements Runnable
             };
 
             // Create the blob decoder itself and execute it on a worker thread.
-            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
+            PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener,
+                    nodeBlocks);
             executorService.execute(blobDecoder);
 
             // If the number of pending blobs has reached capacity we must begin
@@ -83,4 +83,12 @@ public class PbfFieldDecoder
     {
         return strings[rawString];
     }
+
+    /**
+     * @return the string table of the block, indexed by the raw string values
+     */
+    String[] getStrings()
+    {
+        return strings;
+    }
 }
@@ -16,6 +16,7 @@ public class PbfReader implements Runnable
     private InputStream inputStream;
     private Sink sink;
     private int workers;
+    private boolean nodeBlocks;
 
     /**
      * Creates a new instance.
@@ -30,6 +31,15 @@ public class PbfReader implements Runnable
         this.workers = workers;
     }
 
+    /**
+     * Sends dense nodes as OSMNodeBlock instead of single nodes to the sink.
+     */
+    public PbfReader setNodeBlocks( boolean nodeBlocks )
+    {
+        this.nodeBlocks = nodeBlocks;
+        return this;
+    }
+
     @Override
     public void run()
     {
@@ -45,7 +55,8 @@ public class PbfReader implements Runnable
             // immediately ready for processing when a worker thread completes.
             // The main thread is responsible for splitting blobs from the
             // request stream, and sending decoded entities to the sink.
-            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
+            PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink,
+                    nodeBlocks);
             pbfDecoder.run();
 
         } catch (Exception e)
@@ -19,12 +19,17 @@ package com.graphhopper.reader.pbf;
 
 import com.graphhopper.reader.OSMElement;
 
+import java.util.List;
+
 /**
  * @author Nop
  */
 public interface Sink
 {
-    void process( OSMElement item );
+    /**
+     * Receives all elements of one decoded block in the order of the file.
+     */
+    void process( List<OSMElement> items );
 
     void complete();
 }
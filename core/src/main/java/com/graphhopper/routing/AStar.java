@@ -104,6 +104,9 @@ public class AStar extends AbstractRoutingAlgorithm
             if (finished())
                 break;
 
+            if (isSearchLimitExceeded())
+                return createEmptyPath();
+
             EdgeIterator iter = explorer.setBaseNode(currVertex);
             while (iter.next())
             {
@@ -18,12 +18,11 @@
 package com.graphhopper.routing;
 
 import com.graphhopper.routing.util.*;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
 
 import java.util.PriorityQueue;
 
 import com.graphhopper.routing.AStar.AStarEdge;
+import com.graphhopper.routing.BidirSearchState.EntryMap;
 import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.*;
@@ -56,18 +55,30 @@ import com.graphhopper.util.*;
 public class AStarBidirection extends AbstractBidirAlgo
 {
     private ConsistentWeightApproximator weightApprox;
+    private final BidirSearchState.Pool searchStatePool;
+    private BidirSearchState<AStarEdge> searchState;
     private PriorityQueue<AStarEdge> prioQueueOpenSetFrom;
-    private TIntObjectMap<AStarEdge> bestWeightMapFrom;
+    private EntryMap<AStarEdge> bestWeightMapFrom;
     private PriorityQueue<AStarEdge> prioQueueOpenSetTo;
-    private TIntObjectMap<AStarEdge> bestWeightMapTo;
-    private TIntObjectMap<AStarEdge> bestWeightMapOther;
+    private EntryMap<AStarEdge> bestWeightMapTo;
+    private EntryMap<AStarEdge> bestWeightMapOther;
     protected AStarEdge currFrom;
     protected AStarEdge currTo;
     protected PathBidirRef bestPath;
 
     public AStarBidirection( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        this(graph, encoder, weighting, tMode, null);
+    }
+
+    /**
+     * @param searchStatePool the pool of the collections, can be null
+     */
+    public AStarBidirection( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode,
+                             BidirSearchState.Pool searchStatePool )
     {
         super(graph, encoder, weighting, tMode);
+        this.searchStatePool = searchStatePool;
         int nodes = Math.max(20, graph.getNodes());
         initCollections(nodes);
         BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
@@ -77,11 +88,24 @@ public class AStarBidirection extends AbstractBidirAlgo
 
     protected void initCollections( int size )
     {
-        prioQueueOpenSetFrom = new PriorityQueue<AStarEdge>(size / 10);
-        bestWeightMapFrom = new TIntObjectHashMap<AStarEdge>(size / 10);
+        searchState = BidirSearchState.acquire(searchStatePool, size / 10);
+        prioQueueOpenSetFrom = searchState.getOpenSetFrom();
+        bestWeightMapFrom = searchState.getBestWeightMapFrom();
+
+        prioQueueOpenSetTo = searchState.getOpenSetTo();
+        bestWeightMapTo = searchState.getBestWeightMapTo();
+    }
+
+    @Override
+    void releaseCollections()
+    {
+        if (searchState == null)
+            return;
 
-        prioQueueOpenSetTo = new PriorityQueue<AStarEdge>(size / 10);
-        bestWeightMapTo = new TIntObjectHashMap<AStarEdge>(size / 10);
+        BidirSearchState.release(searchStatePool, searchState);
+        searchState = null;
+        prioQueueOpenSetFrom = prioQueueOpenSetTo = null;
+        bestWeightMapFrom = bestWeightMapTo = bestWeightMapOther = null;
     }
 
     /**
@@ -237,7 +261,7 @@ public class AStarBidirection extends AbstractBidirAlgo
     }
 
     private void fillEdges( AStarEdge currEdge, PriorityQueue<AStarEdge> prioQueueOpenSet,
-                            TIntObjectMap<AStarEdge> bestWeightMap, EdgeExplorer explorer, boolean reverse )
+                            EntryMap<AStarEdge> bestWeightMap, EdgeExplorer explorer, boolean reverse )
     {
 
         int currNode = currEdge.adjNode;
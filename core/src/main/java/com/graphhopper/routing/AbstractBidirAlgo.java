@@ -48,6 +48,11 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm
 
     abstract boolean fillEdgesTo();
 
+    /**
+     * Gives the collections back to the pool after the path was extracted.
+     */
+    abstract void releaseCollections();
+
     public AbstractBidirAlgo( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
     {
         super(graph, encoder, weighting, tMode);
@@ -57,16 +62,25 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm
     public Path calcPath( int from, int to )
     {
         checkAlreadyRun();
-        createAndInitPath();
-        initFrom(from, 0);
-        initTo(to, 0);
-        runAlgo();
-        return extractPath();
+        try
+        {
+            createAndInitPath();
+            initFrom(from, 0);
+            initTo(to, 0);
+            runAlgo();
+            if (isMaxVisitedNodesExceeded() || isDeadlineExceeded())
+                return createEmptyPath();
+
+            return extractPath();
+        } finally
+        {
+            releaseCollections();
+        }
     }
 
     protected void runAlgo()
     {
-        while (!finished() && !isWeightLimitExceeded())
+        while (!finished() && !isWeightLimitExceeded() && !isSearchLimitExceeded())
         {
             if (!finishedFrom)
                 finishedFrom = !fillEdgesFrom();
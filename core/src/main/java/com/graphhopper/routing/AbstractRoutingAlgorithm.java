@@ -39,6 +39,12 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
     protected final FlagEncoder flagEncoder;
     protected final TraversalMode traversalMode;
     protected double weightLimit = Double.MAX_VALUE;
+    protected int maxVisitedNodes = Integer.MAX_VALUE;
+    private boolean hasDeadline;
+    private long deadline;
+    private int deadlineChecks;
+    private boolean maxVisitedNodesExceeded;
+    private boolean deadlineExceeded;
     private boolean alreadyRun;
 
     /**
@@ -64,6 +70,47 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         this.weightLimit = weight;
     }
 
+    @Override
+    public void setMaxVisitedNodes( int maxVisitedNodes )
+    {
+        this.maxVisitedNodes = maxVisitedNodes;
+    }
+
+    @Override
+    public void setDeadline( long deadline )
+    {
+        this.deadline = deadline;
+        this.hasDeadline = true;
+    }
+
+    @Override
+    public boolean isMaxVisitedNodesExceeded()
+    {
+        return maxVisitedNodesExceeded;
+    }
+
+    @Override
+    public boolean isDeadlineExceeded()
+    {
+        return deadlineExceeded;
+    }
+
+    /**
+     * Call this once per visited node in the main loop of the algorithm. The clock is only read
+     * every 1024th call as this is not for free.
+     * <p>
+     * @return true if the search has to be stopped
+     */
+    protected boolean isSearchLimitExceeded()
+    {
+        if (getVisitedNodes() > maxVisitedNodes)
+            maxVisitedNodesExceeded = true;
+        else if (hasDeadline && (++deadlineChecks & 0x3FF) == 0 && System.nanoTime() - deadline > 0)
+            deadlineExceeded = true;
+
+        return maxVisitedNodesExceeded || deadlineExceeded;
+    }
+
     public RoutingAlgorithm setEdgeFilter( EdgeFilter additionalEdgeFilter )
     {
         this.additionalEdgeFilter = additionalEdgeFilter;
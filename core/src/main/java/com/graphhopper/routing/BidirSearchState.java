@@ -0,0 +1,191 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.EdgeEntry;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * The collections of a bidirectional search: the open sets and the best entry per traversal id of
+ * both directions. Instead of creating new collections for every request the states can be
+ * pooled, see Pool. The entries are stored in arrays indexed by the traversal id, so a state which
+ * was grown to the size of the graph stays allocated for the next search.
+ * <p>
+ * @author Peter Karich
+ */
+public class BidirSearchState<E extends EdgeEntry>
+{
+    private final PriorityQueue<E> openSetFrom;
+    private final PriorityQueue<E> openSetTo;
+    private final EntryMap<E> bestWeightMapFrom;
+    private final EntryMap<E> bestWeightMapTo;
+
+    BidirSearchState( int capacity )
+    {
+        openSetFrom = new PriorityQueue<E>(Math.max(1, capacity));
+        openSetTo = new PriorityQueue<E>(Math.max(1, capacity));
+        bestWeightMapFrom = new EntryMap<E>(capacity);
+        bestWeightMapTo = new EntryMap<E>(capacity);
+    }
+
+    /**
+     * @param pool the pool to take the state from, can be null
+     * @param capacity the initial capacity if no pooled state is available
+     * @return an empty state which should be released after the search
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends EdgeEntry> BidirSearchState<E> acquire( Pool pool, int capacity )
+    {
+        // the entry types are erased and a released state is empty
+        BidirSearchState<E> state = pool == null ? null : pool.states.poll();
+        if (state == null)
+            state = new BidirSearchState<E>(capacity);
+        return state;
+    }
+
+    /**
+     * Clears the specified state and makes it available for the next search if the pool is not
+     * full. The state must not be used afterwards.
+     */
+    public static void release( Pool pool, BidirSearchState<?> state )
+    {
+        if (pool == null)
+            return;
+
+        state.clear();
+        pool.states.offer(state);
+    }
+
+    void clear()
+    {
+        openSetFrom.clear();
+        openSetTo.clear();
+        bestWeightMapFrom.clear();
+        bestWeightMapTo.clear();
+    }
+
+    public PriorityQueue<E> getOpenSetFrom()
+    {
+        return openSetFrom;
+    }
+
+    public PriorityQueue<E> getOpenSetTo()
+    {
+        return openSetTo;
+    }
+
+    public EntryMap<E> getBestWeightMapFrom()
+    {
+        return bestWeightMapFrom;
+    }
+
+    public EntryMap<E> getBestWeightMapTo()
+    {
+        return bestWeightMapTo;
+    }
+
+    /**
+     * Keeps at most maxStates released states. A pool belongs to an algorithm factory, so the
+     * states are garbage collected together with the factory, e.g. if the graph is closed.
+     */
+    public static class Pool
+    {
+        private final Queue<BidirSearchState> states;
+
+        public Pool( int maxStates )
+        {
+            if (maxStates < 1)
+                throw new IllegalArgumentException("maxStates has to be positive but was " + maxStates);
+
+            states = new ArrayBlockingQueue<BidirSearchState>(maxStates);
+        }
+
+        public int size()
+        {
+            return states.size();
+        }
+    }
+
+    /**
+     * Maps a traversal id to its best entry. The ids of the put entries are remembered, so clear
+     * only removes these entries. The arrays grow with the largest traversal id and are never
+     * shrunk.
+     */
+    public static class EntryMap<E extends EdgeEntry>
+    {
+        private EdgeEntry[] entries;
+        private final TIntArrayList usedIds = new TIntArrayList();
+
+        EntryMap( int capacity )
+        {
+            entries = new EdgeEntry[Math.max(1, capacity)];
+        }
+
+        @SuppressWarnings("unchecked")
+        public E get( int traversalId )
+        {
+            if (traversalId >= entries.length)
+                return null;
+
+            return (E) entries[traversalId];
+        }
+
+        public void put( int traversalId, E entry )
+        {
+            if (traversalId >= entries.length)
+                entries = Arrays.copyOf(entries, Math.max(traversalId + 1, (int) (entries.length * 1.5f)));
+
+            if (entries[traversalId] == null)
+                usedIds.add(traversalId);
+            entries[traversalId] = entry;
+        }
+
+        public int size()
+        {
+            return usedIds.size();
+        }
+
+        public boolean isEmpty()
+        {
+            return usedIds.isEmpty();
+        }
+
+        /**
+         * Removes all entries so that the entries of the search are not referenced anymore.
+         */
+        public void clear()
+        {
+            int size = usedIds.size();
+            for (int i = 0; i < size; i++)
+            {
+                entries[usedIds.get(i)] = null;
+            }
+            usedIds.resetQuick();
+        }
+
+        int getCapacity()
+        {
+            return entries.length;
+        }
+    }
+}
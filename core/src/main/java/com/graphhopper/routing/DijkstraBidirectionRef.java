@@ -17,8 +17,7 @@
  */
 package com.graphhopper.routing;
 
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import com.graphhopper.routing.BidirSearchState.EntryMap;
 
 import java.util.PriorityQueue;
 
@@ -41,29 +40,54 @@ import com.graphhopper.util.GHUtility;
  */
 public class DijkstraBidirectionRef extends AbstractBidirAlgo
 {
+    private final BidirSearchState.Pool searchStatePool;
+    private BidirSearchState<EdgeEntry> searchState;
     private PriorityQueue<EdgeEntry> openSetFrom;
     private PriorityQueue<EdgeEntry> openSetTo;
-    private TIntObjectMap<EdgeEntry> bestWeightMapFrom;
-    private TIntObjectMap<EdgeEntry> bestWeightMapTo;
-    protected TIntObjectMap<EdgeEntry> bestWeightMapOther;
+    private EntryMap<EdgeEntry> bestWeightMapFrom;
+    private EntryMap<EdgeEntry> bestWeightMapTo;
+    protected EntryMap<EdgeEntry> bestWeightMapOther;
     protected EdgeEntry currFrom;
     protected EdgeEntry currTo;
     protected PathBidirRef bestPath;
     private boolean updateBestPath = true;
 
     public DijkstraBidirectionRef( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        this(graph, encoder, weighting, tMode, null);
+    }
+
+    /**
+     * @param searchStatePool the pool of the collections, can be null
+     */
+    public DijkstraBidirectionRef( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode,
+                                   BidirSearchState.Pool searchStatePool )
     {
         super(graph, encoder, weighting, tMode);
+        this.searchStatePool = searchStatePool;
         initCollections(1000);
     }
 
     protected void initCollections( int nodes )
     {
-        openSetFrom = new PriorityQueue<EdgeEntry>(nodes / 10);
-        bestWeightMapFrom = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+        searchState = BidirSearchState.acquire(searchStatePool, nodes / 10);
+        openSetFrom = searchState.getOpenSetFrom();
+        bestWeightMapFrom = searchState.getBestWeightMapFrom();
+
+        openSetTo = searchState.getOpenSetTo();
+        bestWeightMapTo = searchState.getBestWeightMapTo();
+    }
+
+    @Override
+    void releaseCollections()
+    {
+        if (searchState == null)
+            return;
 
-        openSetTo = new PriorityQueue<EdgeEntry>(nodes / 10);
-        bestWeightMapTo = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+        BidirSearchState.release(searchStatePool, searchState);
+        searchState = null;
+        openSetFrom = openSetTo = null;
+        bestWeightMapFrom = bestWeightMapTo = bestWeightMapOther = null;
     }
 
     @Override
@@ -191,7 +215,7 @@ public class DijkstraBidirectionRef extends AbstractBidirAlgo
     }
 
     void fillEdges( EdgeEntry currEdge, PriorityQueue<EdgeEntry> prioQueue,
-                    TIntObjectMap<EdgeEntry> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
+                    EntryMap<EdgeEntry> shortestWeightMap, EdgeExplorer explorer, boolean reverse )
     {        
         EdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
         while (iter.next())
@@ -264,17 +288,17 @@ public class DijkstraBidirectionRef extends AbstractBidirAlgo
         }
     }
 
-    TIntObjectMap<EdgeEntry> getBestFromMap()
+    EntryMap<EdgeEntry> getBestFromMap()
     {
         return bestWeightMapFrom;
     }
 
-    TIntObjectMap<EdgeEntry> getBestToMap()
+    EntryMap<EdgeEntry> getBestToMap()
     {
         return bestWeightMapTo;
     }
 
-    void setBestOtherMap( TIntObjectMap<EdgeEntry> other )
+    void setBestOtherMap( EntryMap<EdgeEntry> other )
     {
         bestWeightMapOther = other;
     }
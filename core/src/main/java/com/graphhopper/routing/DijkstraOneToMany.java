@@ -39,7 +39,7 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
     private static final int EMPTY_PARENT = -1;
     private static final int NOT_FOUND = -1;
     protected double[] weights;
-    private final TIntArrayListWithCap changedNodes;
+    private TIntArrayListWithCap changedNodes;
     private int[] parents;
     private int[] edgeIds;
     private IntDoubleBinHeap heap;
@@ -67,6 +67,38 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         changedNodes = new TIntArrayListWithCap();
     }
 
+    /**
+     * Creates an algorithm for the specified graph which takes over the data structures of the
+     * specified algorithm instead of allocating them. This avoids allocating arrays of the graph
+     * size for every search e.g. if every request has its own QueryGraph. The specified algorithm
+     * must not be used afterwards.
+     */
+    public DijkstraOneToMany( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode,
+                              DijkstraOneToMany reuse )
+    {
+        super(graph, encoder, weighting, tMode);
+
+        reuse.resetChangedNodes();
+        int nodes = graph.getNodes();
+        parents = reuse.parents;
+        edgeIds = reuse.edgeIds;
+        weights = reuse.weights;
+        if (weights.length < nodes)
+        {
+            int oldLength = weights.length;
+            parents = Arrays.copyOf(parents, nodes);
+            Arrays.fill(parents, oldLength, nodes, EMPTY_PARENT);
+            edgeIds = Arrays.copyOf(edgeIds, nodes);
+            Arrays.fill(edgeIds, oldLength, nodes, EdgeIterator.NO_EDGE);
+            weights = Arrays.copyOf(weights, nodes);
+            Arrays.fill(weights, oldLength, nodes, Double.MAX_VALUE);
+        }
+
+        heap = reuse.heap;
+        changedNodes = reuse.changedNodes;
+        reuse.close();
+    }
+
     public DijkstraOneToMany setLimitVisitedNodes( int nodes )
     {
         this.limitVisitedNodes = nodes;
@@ -94,6 +126,22 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         return p.setEndNode(endNode).extract();
     }
 
+    /**
+     * Extracts the path to the specified node found by the last findEndNode call. As the search
+     * space is kept for the same start node this can be used to get the paths to many nodes
+     * without starting a new search for every node.
+     */
+    public Path extractPath( int from, int endNode )
+    {
+        PathNative p = new PathNative(graph, flagEncoder, parents, edgeIds);
+        p.setFromNode(from);
+        if (endNode < 0)
+            return p;
+
+        p.setWeight(weights[endNode]);
+        return p.setEndNode(endNode).extract();
+    }
+
     /**
      * Call clear if you have a different start node and need to clear the cache.
      */
@@ -117,17 +165,7 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         if (doClear)
         {
             doClear = false;
-            int vn = changedNodes.size();
-            for (int i = 0; i < vn; i++)
-            {
-                int n = changedNodes.get(i);
-                weights[n] = Double.MAX_VALUE;
-                parents[n] = EMPTY_PARENT;
-                edgeIds[n] = EdgeIterator.NO_EDGE;
-            }
-
-            heap.clear();
-            changedNodes.reset();
+            resetChangedNodes();
 
             currNode = from;
             if (!traversalMode.isEdgeBased())
@@ -186,7 +224,8 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
                 }
             }
 
-            if (heap.isEmpty() || visitedNodes >= limitVisitedNodes || isWeightLimitExceeded())
+            if (heap.isEmpty() || visitedNodes >= limitVisitedNodes || isWeightLimitExceeded()
+                    || isSearchLimitExceeded())
                 return NOT_FOUND;
 
             // calling just peek and not poll is important if the next query is cached
@@ -198,6 +237,21 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         }
     }
 
+    private void resetChangedNodes()
+    {
+        int vn = changedNodes.size();
+        for (int i = 0; i < vn; i++)
+        {
+            int n = changedNodes.get(i);
+            weights[n] = Double.MAX_VALUE;
+            parents[n] = EMPTY_PARENT;
+            edgeIds[n] = EdgeIterator.NO_EDGE;
+        }
+
+        heap.clear();
+        changedNodes.reset();
+    }
+
     @Override
     public boolean finished()
     {
@@ -216,6 +270,7 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         parents = null;
         edgeIds = null;
         heap = null;
+        changedNodes = null;
     }
 
     @Override
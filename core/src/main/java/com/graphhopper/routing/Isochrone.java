@@ -0,0 +1,184 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.SpeedProvider;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.NotThreadSafe;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Finds all nodes reachable from one start node within a time limit. It is a single Dijkstra with
+ * the specified weighting, i.e. the nodes are reached via the same paths as a route would use, but
+ * instead of a weight limit it stops exploring at nodes whose travel time exceeds the limit. The
+ * time of an edge is calculated like for a Path.
+ * <p>
+ * The arrays are only reset for the nodes of the last search and are kept for the next one, so
+ * reuse instances to avoid allocating memory for every node of the graph per search. A graph with
+ * more nodes than the last one, e.g. another QueryGraph, just increases the capacity.
+ * <p>
+ * @author Peter Karich
+ */
+@NotThreadSafe
+public class Isochrone
+{
+    private double[] weights = new double[0];
+    private long[] times = new long[0];
+    private int[] edgeIds = new int[0];
+    private boolean[] settled = new boolean[0];
+    private final TIntArrayList changedNodes = new TIntArrayList();
+    // the reached nodes in the order of their weight
+    private final TIntArrayList reachedNodes = new TIntArrayList();
+    private final IntDoubleBinHeap heap = new IntDoubleBinHeap();
+    private int visitedNodes;
+
+    /**
+     * Explores the graph from the start node until all nodes reachable within the time limit are
+     * found.
+     * <p>
+     * @param speedProvider calculates the speed of an edge, if null the speed of the encoder is
+     * used
+     * @param timeLimit the maximum time in milliseconds
+     */
+    public Isochrone search( Graph graph, Weighting weighting, SpeedProvider speedProvider, int startNode, long timeLimit )
+    {
+        clear();
+        ensureCapacity(graph.getNodes());
+
+        FlagEncoder encoder = weighting.getFlagEncoder();
+        EdgeExplorer explorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        setNode(startNode, 0, 0, EdgeIterator.NO_EDGE);
+        heap.insert_(0, startNode);
+        while (!heap.isEmpty())
+        {
+            int currNode = heap.poll_element();
+            // the heap does not support an efficient update so better weights are inserted again
+            if (settled[currNode])
+                continue;
+
+            settled[currNode] = true;
+            reachedNodes.add(currNode);
+            visitedNodes++;
+            EdgeIterator iter = explorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                int adjNode = iter.getAdjNode();
+                if (settled[adjNode])
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter, false, edgeIds[currNode]) + weights[currNode];
+                if (Double.isInfinite(tmpWeight) || tmpWeight >= weights[adjNode])
+                    continue;
+
+                double speed = speedProvider == null ? encoder.getSpeed(iter.getFlags()) : speedProvider.calcSpeed(iter, false);
+                if (speed <= 0)
+                    continue;
+
+                long tmpTime = times[currNode] + (long) (iter.getDistance() * 3600 / speed);
+                if (tmpTime > timeLimit)
+                    continue;
+
+                setNode(adjNode, tmpWeight, tmpTime, iter.getEdge());
+                heap.insert_(tmpWeight, adjNode);
+            }
+        }
+        return this;
+    }
+
+    private void setNode( int node, double weight, long time, int edgeId )
+    {
+        if (weights[node] == Double.MAX_VALUE)
+            changedNodes.add(node);
+
+        weights[node] = weight;
+        times[node] = time;
+        edgeIds[node] = edgeId;
+    }
+
+    private void ensureCapacity( int nodes )
+    {
+        if (nodes <= weights.length)
+            return;
+
+        int oldLength = weights.length;
+        weights = Arrays.copyOf(weights, nodes);
+        Arrays.fill(weights, oldLength, nodes, Double.MAX_VALUE);
+        times = Arrays.copyOf(times, nodes);
+        edgeIds = Arrays.copyOf(edgeIds, nodes);
+        Arrays.fill(edgeIds, oldLength, nodes, EdgeIterator.NO_EDGE);
+        settled = Arrays.copyOf(settled, nodes);
+    }
+
+    private void clear()
+    {
+        int size = changedNodes.size();
+        for (int i = 0; i < size; i++)
+        {
+            int node = changedNodes.get(i);
+            weights[node] = Double.MAX_VALUE;
+            edgeIds[node] = EdgeIterator.NO_EDGE;
+            settled[node] = false;
+        }
+        changedNodes.resetQuick();
+        reachedNodes.resetQuick();
+        heap.clear();
+        visitedNodes = 0;
+    }
+
+    /**
+     * @return the nodes found by the last search, sorted by weight
+     */
+    public TIntArrayList getReachedNodes()
+    {
+        return reachedNodes;
+    }
+
+    /**
+     * @return the time in milliseconds to reach the specified node of the last search
+     */
+    public long getTime( int node )
+    {
+        return times[node];
+    }
+
+    public double getWeight( int node )
+    {
+        return weights[node];
+    }
+
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    /**
+     * @return the number of nodes the arrays can hold without growing
+     */
+    public int getCapacity()
+    {
+        return weights.length;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.ProfileSpeedProvider;
+import com.graphhopper.routing.util.SpeedProvider;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.profiles.ProfileManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Calculates a many-to-many matrix with one DijkstraOneToMany search per row. The search space of
+ * a row is reused for all of its columns, i.e. a row costs roughly one search to the farthest to
+ * node. The rows are independent and are calculated in parallel if an ExecutorService is
+ * specified, every thread uses its own algorithm instance. The data structures of these instances
+ * have the size of the graph, so they are taken from and returned to a pool if one is specified.
+ * <p>
+ * The graph is only read, so one QueryGraph containing all from and to nodes can be shared by all
+ * threads.
+ * <p>
+ * @author Peter Karich
+ */
+public class MatrixCalculator
+{
+    private final Graph graph;
+    private final FlagEncoder encoder;
+    private final Weighting weighting;
+    private double weightLimit = Double.MAX_VALUE;
+    private SpeedProvider speedProvider;
+    private ExecutorService executorService;
+    private int threads = 1;
+    private Queue<DijkstraOneToMany> algoPool;
+    private final AtomicLong visitedNodes = new AtomicLong();
+
+    public MatrixCalculator( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        this.graph = graph;
+        this.encoder = encoder;
+        this.weighting = weighting;
+    }
+
+    /**
+     * Entries with a bigger weight are treated as not found.
+     */
+    public MatrixCalculator setWeightLimit( double weightLimit )
+    {
+        this.weightLimit = weightLimit;
+        return this;
+    }
+
+    /**
+     * The profile used to calculate the times, can be null.
+     */
+    public MatrixCalculator setProfileManager( ProfileManager profileManager )
+    {
+        // one speed provider is shared by all paths of the matrix
+        this.speedProvider = profileManager == null ? null : new ProfileSpeedProvider(encoder, profileManager);
+        return this;
+    }
+
+    /**
+     * Calculates the rows with the specified number of threads of the executor. Without executor
+     * all rows are calculated in the calling thread.
+     */
+    public MatrixCalculator setExecutorService( ExecutorService executorService, int threads )
+    {
+        this.executorService = executorService;
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * The finished algorithms are offered to this pool and the algorithms of later matrices reuse
+     * their data structures, even if those matrices are calculated on a different graph. Use a
+     * bounded queue to limit the memory kept.
+     */
+    public MatrixCalculator setAlgoPool( Queue<DijkstraOneToMany> algoPool )
+    {
+        this.algoPool = algoPool;
+        return this;
+    }
+
+    /**
+     * @return the number of visited nodes of all searches
+     */
+    public long getVisitedNodes()
+    {
+        return visitedNodes.get();
+    }
+
+    /**
+     * Fills the initialized response with the entries from every from node (row) to every to node
+     * (column).
+     */
+    public void calcMatrix( final int[] fromNodes, final int[] toNodes, final GHMatrixResponse rsp )
+    {
+        int workers = Math.min(threads, fromNodes.length);
+        if (executorService == null || workers <= 1)
+        {
+            DijkstraOneToMany algo = createAlgo();
+            try
+            {
+                for (int row = 0; row < fromNodes.length; row++)
+                {
+                    calcRow(algo, fromNodes[row], row, toNodes, rsp);
+                }
+            } finally
+            {
+                releaseAlgo(algo);
+            }
+            return;
+        }
+
+        final AtomicInteger nextRow = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<Callable<Object>>(workers);
+        for (int i = 0; i < workers; i++)
+        {
+            callables.add(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    // the algorithm is expensive to create for big graphs so use one per thread
+                    DijkstraOneToMany algo = createAlgo();
+                    try
+                    {
+                        int row;
+                        while ((row = nextRow.getAndIncrement()) < fromNodes.length)
+                        {
+                            calcRow(algo, fromNodes[row], row, toNodes, rsp);
+                        }
+                    } finally
+                    {
+                        releaseAlgo(algo);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Object> future : executorService.invokeAll(callables))
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Matrix calculation was interrupted", ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Matrix calculation failed", ex.getCause());
+        }
+    }
+
+    private DijkstraOneToMany createAlgo()
+    {
+        DijkstraOneToMany pooled = algoPool == null ? null : algoPool.poll();
+        DijkstraOneToMany algo = pooled == null
+                ? new DijkstraOneToMany(graph, encoder, weighting, TraversalMode.NODE_BASED)
+                : new DijkstraOneToMany(graph, encoder, weighting, TraversalMode.NODE_BASED, pooled);
+        algo.setWeightLimit(weightLimit);
+        return algo;
+    }
+
+    private void releaseAlgo( DijkstraOneToMany algo )
+    {
+        // if the pool is full the algorithm is garbage collected
+        if (algoPool != null)
+            algoPool.offer(algo);
+    }
+
+    private void calcRow( DijkstraOneToMany algo, int from, int row, int[] toNodes, GHMatrixResponse rsp )
+    {
+        long rowVisitedNodes = 0;
+        // force a new search as the cached search space belongs to the previous from node
+        algo.clear();
+        for (int column = 0; column < toNodes.length; column++)
+        {
+            int to = toNodes[column];
+            // the cached search space cannot be used for the start node itself
+            if (from == to)
+            {
+                rsp.setEntry(row, column, 0, 0, 0);
+                continue;
+            }
+
+            int endNode = algo.findEndNode(from, to);
+            rowVisitedNodes += algo.getVisitedNodes();
+            if (endNode != to || algo.getWeight(endNode) > weightLimit)
+                continue;
+
+            Path path = algo.extractPath(from, endNode);
+            path.setSpeedProvider(speedProvider);
+            path.updateTime();
+            rsp.setEntry(row, column, path.getWeight(), path.getDistance(), path.getTime());
+        }
+        visitedNodes.addAndGet(rowVisitedNodes);
+    }
+}
@@ -184,6 +184,16 @@ public class Path
         return this;
     }
 
+    /**
+     * Sets the speed provider which is used to update the time while the points or instructions
+     * are calculated. The provider can be shared between the paths of one request.
+     */
+    public Path setSpeedProvider( SpeedProvider speedProvider )
+    {
+        this.speedProvider = speedProvider;
+        return this;
+    }
+
     /**
      * Extracts the Path from the shortest-path-tree determined by edgeEntry.
      */
@@ -302,18 +312,38 @@ public class Path
         int len = edgeIds.size();
         for (int i = 0; i < len; i++)
         {
-            EdgeIteratorState edgeBase = graph.getEdgeIteratorState(edgeIds.get(i), tmpNode);
+            // fetch the edge in its stored direction and only fetch it again if it has to be
+            // reversed, more efficient swap, currently not implemented for virtual edges: detach(true)
+            EdgeIteratorState edgeBase = graph.getEdgeIteratorState(edgeIds.get(i), Integer.MIN_VALUE);
             if (edgeBase == null)
                 throw new IllegalStateException("Edge " + edgeIds.get(i) + " was empty when requested with node " + tmpNode
                         + ", array index:" + i + ", edges:" + edgeIds.size());
 
-            tmpNode = edgeBase.getBaseNode();
-            // more efficient swap, currently not implemented for virtual edges: visitor.next(edgeBase.detach(true), i);
-            edgeBase = graph.getEdgeIteratorState(edgeBase.getEdge(), tmpNode);
+            if (edgeBase.getBaseNode() != tmpNode)
+            {
+                if (edgeBase.getAdjNode() != tmpNode)
+                    throw new IllegalStateException("Edge " + edgeIds.get(i) + " does not contain node " + tmpNode
+                            + ", array index:" + i + ", edges:" + edgeIds.size());
+
+                edgeBase = graph.getEdgeIteratorState(edgeBase.getEdge(), edgeBase.getBaseNode());
+            }
+            tmpNode = edgeBase.getAdjNode();
             visitor.next(edgeBase, i);
         }
     }
 
+    /**
+     * @return the time of the specified edge in millis via the speed provider if set or the speed
+     * of the encoder otherwise
+     */
+    private long calcEdgeMillis( EdgeIteratorState edge )
+    {
+        if (speedProvider != null)
+            return calcMillis(edge, false);
+
+        return calcMillis(edge.getDistance(), edge.getFlags(), false);
+    }
+
     /**
      * Returns the list of all edges.
      */
@@ -363,13 +393,15 @@ public class Path
     }
 
     /**
-     * This method calculated a list of points for this path
+     * This method calculated a list of points for this path. If a speed provider is set the time is
+     * updated in the same pass, so updateTime is not necessary.
      * <p>
      * @return this path its geometry
      */
     public PointList calcPoints()
     {
-        final PointList points = new PointList(edgeIds.size() + 1, nodeAccess.is3D());
+        // most edges have a few pillar nodes, avoid growing the list several times
+        final PointList points = new PointList(edgeIds.size() * 4 + 1, nodeAccess.is3D());
         if (edgeIds.isEmpty())
         {
             if (isFound())
@@ -381,6 +413,7 @@ public class Path
 
         int tmpNode = getFromNode();
         points.add(nodeAccess, tmpNode);
+        final long[] millis = new long[1];
         forEveryEdge(new EdgeVisitor()
         {
             @Override
@@ -391,11 +424,18 @@ public class Path
                 {
                     points.add(pl, j);
                 }
+                if (speedProvider != null)
+                    millis[0] += calcMillis(eb, false);
             }
         });
+        if (speedProvider != null)
+            time = millis[0];
         return points;
     }
 
+    /**
+     * Updates the time via the speed provider if no points or instructions are calculated.
+     */
     public void updateTime(){
 
         if(speedProvider == null)
@@ -415,10 +455,14 @@ public class Path
     }
 
     /**
+     * Calculates the instructions including their points, distance and time. If a speed provider
+     * is set the time of this path is updated in the same pass, so updateTime is not necessary.
+     * <p>
      * @return the list of instructions for this path.
      */
     public InstructionList calcInstructions( final Translation tr )
     {
+        final long[] millis = new long[1];
         final InstructionList ways = new InstructionList(edgeIds.size() / 4, tr);
         if (edgeIds.isEmpty())
         {
@@ -669,15 +713,14 @@ public class Path
                 }
                 double newDist = edge.getDistance();
                 prevInstruction.setDistance(newDist + prevInstruction.getDistance());
-                if(speedProvider != null) {
-                    prevInstruction.setTime(calcMillis(edge, false) + prevInstruction.getTime());
-                } else {
-                    long flags = edge.getFlags();
-                    prevInstruction.setTime(calcMillis(newDist, flags, false) + prevInstruction.getTime());
-                }
+                long edgeMillis = calcEdgeMillis(edge);
+                prevInstruction.setTime(edgeMillis + prevInstruction.getTime());
+                millis[0] += edgeMillis;
             }
         });
 
+        if (speedProvider != null)
+            time = millis[0];
         return ways;
     }
 
@@ -39,6 +39,12 @@ import java.util.*;
  * introducing virtual nodes and edges. It is lightweight in order to be created every time a new
  * query comes in, which makes the behaviour thread safe.
  * <p>
+ * After lookup the virtual nodes and edges are not changed anymore and reading this graph, e.g.
+ * via createEdgeExplorer or getEdgeIteratorState, is safe from concurrent threads. Only the
+ * heading enforcement modifies the virtual edges. To enforce different headings from different
+ * threads every thread uses its own view, see createView, which shares the base graph and the
+ * lookup with this graph.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -94,6 +100,55 @@ public class QueryGraph implements Graph
         mainEdges = superQueryGraph.mainEdges;
     }
 
+    /**
+     * See createView
+     */
+    private QueryGraph( QueryGraph parent )
+    {
+        mainGraph = parent.mainGraph;
+        mainNodeAccess = parent.mainNodeAccess;
+        mainNodes = parent.mainNodes;
+        mainEdges = parent.mainEdges;
+        // only reads the query results which are shared
+        wrappedExtension = parent.wrappedExtension;
+        queryResults = parent.queryResults;
+        virtualNodes = parent.virtualNodes;
+
+        // the same edge state can be the adjacent edge of one and the base edge of the next virtual node
+        Map<VirtualEdgeIteratorState, VirtualEdgeIteratorState> copies
+                = new IdentityHashMap<VirtualEdgeIteratorState, VirtualEdgeIteratorState>(parent.virtualEdges.size());
+        virtualEdges = new ArrayList<VirtualEdgeIteratorState>(parent.virtualEdges.size());
+        for (VirtualEdgeIteratorState edge : parent.virtualEdges)
+        {
+            VirtualEdgeIteratorState copy = copies.get(edge);
+            if (copy == null)
+            {
+                copy = edge.copy();
+                copies.put(edge, copy);
+            }
+            virtualEdges.add(copy);
+        }
+
+        baseGraph = new QueryGraph(mainGraph.getBaseGraph(), this);
+        baseGraph.virtualEdges = virtualEdges;
+        baseGraph.virtualNodes = virtualNodes;
+        baseGraph.queryResults = queryResults;
+    }
+
+    /**
+     * Creates a graph with the same virtual nodes and edges as this graph but with its own heading
+     * enforcements. Only the virtual edge states are copied so creating a view is cheap compared
+     * to a new lookup. Views of one QueryGraph can be used concurrently from different threads
+     * where every thread enforces headings only in its own view.
+     */
+    public QueryGraph createView()
+    {
+        if (!isInitialized())
+            throw new IllegalStateException("Call lookup before creating a view");
+
+        return new QueryGraph(this);
+    }
+
     /**
      * Convenient method to initialize this QueryGraph with the two specified query results.
      */
@@ -451,6 +506,7 @@ public class QueryGraph implements Graph
         {
             edge.setVirtualEdgePreference(false);
         }
+        modifiedEdges.clear();
     }
 
     @Override
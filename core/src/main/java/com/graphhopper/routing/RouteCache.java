@@ -0,0 +1,254 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.PointList;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe cache of route responses. The least recently used responses are evicted if the
+ * maximum number of entries or the maximum memory is exceeded. The memory of a response is only
+ * estimated from its points and instructions. Responses older than the time to live are not
+ * returned anymore.
+ * <p>
+ * A response calculated with instructions is returned for a request with or without instructions,
+ * so the key must not contain the instructions flag. A copy of the response is stored and every
+ * hit returns a new copy, so callers can modify the responses.
+ * <p>
+ * @author Peter Karich
+ */
+public class RouteCache
+{
+    private final int maxEntries;
+    private final long maxBytes;
+    private long timeToLive;
+    // access ordered, guarded by this
+    private final Map<Object, CacheEntry> entries = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true);
+    // guarded by this
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public RouteCache( int maxEntries, long maxBytes )
+    {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Route cache size must be positive but was " + maxEntries);
+        if (maxBytes < 1)
+            throw new IllegalArgumentException("Route cache memory must be positive but was " + maxBytes);
+
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Specifies the time in milliseconds a response is returned after it was calculated. Use 0 to
+     * keep responses until they are evicted.
+     */
+    public RouteCache setTimeToLive( long timeToLive )
+    {
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("Time to live cannot be negative " + timeToLive);
+
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    /**
+     * @param instructions true if the response must contain instructions
+     * @return the cached response for the specified key or null if it is not cached or expired
+     */
+    public GHResponse get( Object key, boolean instructions )
+    {
+        CacheEntry entry;
+        synchronized (this)
+        {
+            entry = entries.get(key);
+            if (entry != null && isExpired(entry))
+            {
+                remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+
+        if (entry == null || instructions && !entry.instructions)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.response.copy();
+    }
+
+    /**
+     * Caches a copy of the specified response. A response is not cached if it is bigger than the
+     * maximum memory.
+     * <p>
+     * @param instructions true if the response was calculated with instructions
+     */
+    public void put( Object key, GHResponse response, boolean instructions )
+    {
+        long responseBytes = estimateBytes(response, instructions);
+        if (responseBytes > maxBytes)
+            return;
+
+        CacheEntry entry = new CacheEntry(response.copy(), instructions, responseBytes, System.currentTimeMillis());
+        synchronized (this)
+        {
+            CacheEntry old = entries.put(key, entry);
+            if (old != null)
+                bytes -= old.bytes;
+
+            bytes += responseBytes;
+            Iterator<CacheEntry> iter = entries.values().iterator();
+            while (entries.size() > maxEntries || bytes > maxBytes)
+            {
+                CacheEntry eldest = iter.next();
+                iter.remove();
+                bytes -= eldest.bytes;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int getSize()
+    {
+        return entries.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxEntries;
+    }
+
+    /**
+     * @return the estimated memory of the cached responses
+     */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of responses removed due to the entry or memory limit
+     */
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of responses removed as their time to live was exceeded
+     */
+    public long getExpirations()
+    {
+        return expirations.get();
+    }
+
+    private boolean isExpired( CacheEntry entry )
+    {
+        return timeToLive > 0 && System.currentTimeMillis() - entry.created > timeToLive;
+    }
+
+    private void remove( Object key )
+    {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null)
+            bytes -= entry.bytes;
+    }
+
+    /**
+     * Estimates the memory of the specified response including some overhead for the entry and
+     * its key.
+     */
+    static long estimateBytes( GHResponse response, boolean instructions )
+    {
+        long sum = 500 + estimateBytes(response.getPoints());
+        if (instructions)
+        {
+            for (Instruction instruction : response.getInstructions())
+            {
+                String name = instruction.getName();
+                sum += 100 + (name == null ? 0 : 2 * name.length()) + estimateBytes(instruction.getPoints());
+            }
+        }
+        return sum;
+    }
+
+    private static long estimateBytes( PointList points )
+    {
+        if (points == null)
+            return 0;
+
+        return 50 + points.getSize() * (points.is3D() ? 24 : 16);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "size:" + getSize() + "/" + maxEntries + ", MB:" + getBytes() / Helper.MB + "/" + maxBytes / Helper.MB
+                + ", hits:" + getHits() + ", misses:" + getMisses() + ", evictions:" + getEvictions()
+                + ", expirations:" + getExpirations();
+    }
+
+    private static class CacheEntry
+    {
+        final GHResponse response;
+        final boolean instructions;
+        final long bytes;
+        final long created;
+
+        CacheEntry( GHResponse response, boolean instructions, long bytes, long created )
+        {
+            this.response = response;
+            this.instructions = instructions;
+            this.bytes = bytes;
+            this.created = created;
+        }
+    }
+}
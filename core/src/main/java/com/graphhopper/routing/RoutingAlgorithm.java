@@ -40,6 +40,28 @@ public interface RoutingAlgorithm
      */
     void setWeightLimit( double weight );
 
+    /**
+     * Stops the search if it visited more than the specified nodes. The default value is
+     * Integer.MAX_VALUE.
+     */
+    void setMaxVisitedNodes( int maxVisitedNodes );
+
+    /**
+     * Stops the search if it is still running at the specified time in nanoseconds as returned by
+     * System.nanoTime. The default is no deadline.
+     */
+    void setDeadline( long deadline );
+
+    /**
+     * @return true if the search was stopped as it visited more nodes than allowed
+     */
+    boolean isMaxVisitedNodesExceeded();
+
+    /**
+     * @return true if the search was stopped at its deadline
+     */
+    boolean isDeadlineExceeded();
+
     /**
      * @return name of this algorithm
      */
@@ -30,20 +30,25 @@ import com.graphhopper.util.Helper;
  */
 public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory
 {
+    // the collections of the bidirectional algorithms are reused for the requests of this factory
+    private final BidirSearchState.Pool searchStatePool = new BidirSearchState.Pool(
+            Runtime.getRuntime().availableProcessors());
+
     @Override
     public RoutingAlgorithm createAlgo( Graph g, AlgorithmOptions opts )
     {
         String algoStr = opts.getAlgorithm();
         if (AlgorithmOptions.DIJKSTRA_BI.equalsIgnoreCase(algoStr))
         {
-            return new DijkstraBidirectionRef(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode());
+            return new DijkstraBidirectionRef(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode(),
+                    searchStatePool);
         } else if (AlgorithmOptions.DIJKSTRA.equalsIgnoreCase(algoStr))
         {
             return new Dijkstra(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode());
         } else if (AlgorithmOptions.ASTAR_BI.equalsIgnoreCase(algoStr))
         {
             AStarBidirection aStarBi = new AStarBidirection(g, opts.getFlagEncoder(), opts.getWeighting(),
-                    opts.getTraversalMode());
+                    opts.getTraversalMode(), searchStatePool);
             aStarBi.setApproximation(getApproximation(AlgorithmOptions.ASTAR_BI, opts, g.getNodeAccess()));
             return aStarBi;
         } else if (AlgorithmOptions.DIJKSTRA_ONE_TO_MANY.equalsIgnoreCase(algoStr))
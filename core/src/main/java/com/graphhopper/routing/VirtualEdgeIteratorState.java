@@ -162,6 +162,15 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState, CHEdgeIterat
         this.unfavored = unfavored;
     }
 
+    /**
+     * @return a new edge state with the same properties but favored. The point list is shared.
+     */
+    VirtualEdgeIteratorState copy()
+    {
+        return new VirtualEdgeIteratorState(originalTraversalKey, edgeId, baseNode, adjNode, distance, flags,
+                name, pointList);
+    }
+
     @Override
     public String toString()
     {
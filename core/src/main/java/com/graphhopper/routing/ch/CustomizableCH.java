@@ -0,0 +1,320 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.CHEdgeExplorer;
+import com.graphhopper.util.CHEdgeIterator;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * The metric independent part of a customizable contraction hierarchy. The CHGraph has to be
+ * prepared via PrepareContractionHierarchies.setCustomizable, i.e. every pair of higher neighbors
+ * of a node is connected via exactly one shortcut. Then the weights of the shortcuts for an
+ * arbitrary metric can be calculated with customize in one pass over all nodes without any witness
+ * search, see "Customizable Contraction Hierarchies" by Dibbelt, Strasser and Wagner.
+ * <p>
+ * An arc is a pair of adjacent nodes in the CHGraph. The arc of a shortcut has the index
+ * shortcut-edgeId minus the number of base edges, arcs which are only made of base edges follow
+ * afterwards. The weight of an arc going from the node with the lower level to the node with the
+ * higher level is called 'up' and the other one 'down'.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * <p>
+ * @see CustomizedMetric
+ */
+public class CustomizableCH
+{
+    private final CHGraph chGraph;
+    private final FlagEncoder encoder;
+    private final int baseEdges;
+    private final int shortcutArcs;
+    private final int arcs;
+    private final int[] levels;
+    // nodes sorted by level, lowest first
+    private final int[] order;
+    // the higher neighbors and the corresponding arcs of every node, sorted by neighbor
+    private final int[] upStart;
+    private final int[] upNodes;
+    private final int[] upArcs;
+
+    public CustomizableCH( CHGraph chGraph, FlagEncoder encoder )
+    {
+        this.chGraph = chGraph;
+        this.encoder = encoder;
+        this.baseEdges = chGraph.getBaseGraph().getAllEdges().getMaxId();
+        int nodes = chGraph.getNodes();
+        levels = new int[nodes];
+        order = new int[nodes];
+        Arrays.fill(order, -1);
+        for (int node = 0; node < nodes; node++)
+        {
+            int level = levels[node] = chGraph.getLevel(node);
+            if (level < 1 || level > nodes || order[level - 1] >= 0)
+                throw new IllegalStateException("CHGraph is not prepared for customization, node " + node
+                        + " has level " + level + ", nodes: " + nodes);
+
+            order[level - 1] = node;
+        }
+
+        upStart = new int[nodes + 1];
+        TIntArrayList tmpUpNodes = new TIntArrayList(nodes * 2);
+        TIntArrayList tmpUpArcs = new TIntArrayList(nodes * 2);
+        int baseArcs = 0;
+        int maxShortcutArc = -1;
+        long[] neighbors = new long[16];
+        CHEdgeExplorer explorer = chGraph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, true));
+        for (int node = 0; node < nodes; node++)
+        {
+            upStart[node] = tmpUpNodes.size();
+            int count = 0;
+            CHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                int adj = iter.getAdjNode();
+                // base edges are not disconnected from the higher node
+                if (adj == node || levels[adj] < levels[node] && !iter.isShortcut())
+                    continue;
+
+                if (levels[adj] < levels[node])
+                    throw new IllegalStateException("CHGraph is not prepared for customization, shortcut " + iter.getEdge()
+                            + " " + node + "->" + adj + " is not disconnected from the higher node");
+
+                if (count == neighbors.length)
+                    neighbors = Arrays.copyOf(neighbors, count * 2);
+
+                neighbors[count++] = (long) adj << 32 | iter.getEdge();
+            }
+
+            Arrays.sort(neighbors, 0, count);
+            for (int i = 0; i < count;)
+            {
+                int adj = (int) (neighbors[i] >>> 32);
+                int arc = -1;
+                for (; i < count && (int) (neighbors[i] >>> 32) == adj; i++)
+                {
+                    int edge = (int) neighbors[i];
+                    if (edge < baseEdges)
+                        continue;
+
+                    if (arc >= 0)
+                        throw new IllegalStateException("CHGraph is not prepared for customization, multiple shortcuts "
+                                + node + "->" + adj);
+
+                    arc = edge - baseEdges;
+                    maxShortcutArc = Math.max(maxShortcutArc, arc);
+                }
+
+                // arcs without shortcut get their final index after all shortcuts are known
+                if (arc < 0)
+                    arc = -(++baseArcs);
+
+                tmpUpNodes.add(adj);
+                tmpUpArcs.add(arc);
+            }
+        }
+        upStart[nodes] = tmpUpNodes.size();
+        upNodes = tmpUpNodes.toArray();
+        upArcs = tmpUpArcs.toArray();
+
+        shortcutArcs = maxShortcutArc + 1;
+        arcs = shortcutArcs + baseArcs;
+        for (int i = 0; i < upArcs.length; i++)
+        {
+            if (upArcs[i] < 0)
+                upArcs[i] = shortcutArcs - upArcs[i] - 1;
+        }
+    }
+
+    /**
+     * Calculates the weights of all shortcuts for the specified weighting. This is done bottom up
+     * where the weight of a shortcut is the minimum of its base edges and of all its lower
+     * triangles.
+     */
+    public CustomizedMetric customize( Weighting weighting )
+    {
+        if (weighting.getFlagEncoder() != encoder)
+            throw new IllegalArgumentException("Weighting " + weighting + " does not match encoder " + encoder);
+
+        float[] up = new float[arcs];
+        float[] down = new float[arcs];
+        Arrays.fill(up, Float.POSITIVE_INFINITY);
+        Arrays.fill(down, Float.POSITIVE_INFINITY);
+        int[] upMiddle = new int[shortcutArcs];
+        int[] downMiddle = new int[shortcutArcs];
+        Arrays.fill(upMiddle, -1);
+        Arrays.fill(downMiddle, -1);
+
+        CHEdgeExplorer explorer = chGraph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, true));
+        for (int v : order)
+        {
+            // all triangles below v are already done, so the base edges complete the arcs of v
+            CHEdgeIterator iter = explorer.setBaseNode(v);
+            while (iter.next())
+            {
+                if (iter.isShortcut() || iter.getAdjNode() == v || levels[iter.getAdjNode()] < levels[v])
+                    continue;
+
+                int arc = findArc(v, iter.getAdjNode());
+                if (iter.isForward(encoder))
+                {
+                    float weight = (float) weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
+                    if (weight < up[arc])
+                    {
+                        up[arc] = weight;
+                        if (arc < shortcutArcs)
+                            upMiddle[arc] = -1;
+                    }
+                }
+
+                if (iter.isBackward(encoder))
+                {
+                    float weight = (float) weighting.calcWeight(iter, true, EdgeIterator.NO_EDGE);
+                    if (weight < down[arc])
+                    {
+                        down[arc] = weight;
+                        if (arc < shortcutArcs)
+                            downMiddle[arc] = -1;
+                    }
+                }
+            }
+
+            // v is the lowest node of the triangle u-v-w
+            int end = upStart[v + 1];
+            for (int i = upStart[v]; i < end; i++)
+            {
+                int first = upArcs[i];
+                int u = upNodes[i];
+                for (int j = i + 1; j < end; j++)
+                {
+                    int second = upArcs[j];
+                    int w = upNodes[j];
+                    // u->v->w and w->v->u
+                    float uwWeight = down[first] + up[second];
+                    float wuWeight = down[second] + up[first];
+                    int arc;
+                    if (levels[u] < levels[w])
+                    {
+                        arc = findTriangleArc(u, w, v);
+                    } else
+                    {
+                        arc = findTriangleArc(w, u, v);
+                        float tmp = uwWeight;
+                        uwWeight = wuWeight;
+                        wuWeight = tmp;
+                    }
+
+                    if (uwWeight < up[arc])
+                    {
+                        up[arc] = uwWeight;
+                        upMiddle[arc] = v;
+                    }
+                    if (wuWeight < down[arc])
+                    {
+                        down[arc] = wuWeight;
+                        downMiddle[arc] = v;
+                    }
+                }
+            }
+        }
+
+        return new CustomizedMetric(this, Arrays.copyOf(up, shortcutArcs), Arrays.copyOf(down, shortcutArcs),
+                upMiddle, downMiddle);
+    }
+
+    private int findTriangleArc( int low, int high, int middle )
+    {
+        int arc = findArc(low, high);
+        if (arc < 0 || arc >= shortcutArcs)
+            throw new IllegalStateException("CHGraph is not prepared for customization, no shortcut "
+                    + low + "->" + high + " for the triangle via " + middle);
+        return arc;
+    }
+
+    /**
+     * @return the arc between the specified nodes or -1 if they are not adjacent
+     */
+    public int findArc( int node1, int node2 )
+    {
+        if (levels[node1] > levels[node2])
+        {
+            int tmp = node1;
+            node1 = node2;
+            node2 = tmp;
+        }
+
+        int index = Arrays.binarySearch(upNodes, upStart[node1], upStart[node1 + 1], node2);
+        return index < 0 ? -1 : upArcs[index];
+    }
+
+    /**
+     * @return the arc of the specified shortcut
+     */
+    public int getShortcutArc( int shortcutEdge )
+    {
+        return shortcutEdge - baseEdges;
+    }
+
+    /**
+     * @return true if the arc contains a shortcut and so its weights depend on the metric
+     */
+    public boolean isShortcutArc( int arc )
+    {
+        return arc < shortcutArcs;
+    }
+
+    /**
+     * @return true if traversing an arc from node 'from' to node 'to' uses the 'up' weight
+     */
+    public boolean isUpward( int from, int to )
+    {
+        return levels[from] < levels[to];
+    }
+
+    public int getShortcutArcs()
+    {
+        return shortcutArcs;
+    }
+
+    public int getArcs()
+    {
+        return arcs;
+    }
+
+    public CHGraph getGraph()
+    {
+        return chGraph;
+    }
+
+    public FlagEncoder getFlagEncoder()
+    {
+        return encoder;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CCH|" + chGraph + ", arcs:" + arcs + ", shortcut arcs:" + shortcutArcs;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+/**
+ * The shortcut weights of a CustomizableCH for one metric, e.g. for the weighting of one rider
+ * profile. For every direction of a shortcut the middle node of the best lower triangle is stored
+ * to unpack it, -1 if a base edge is the best.
+ * <p>
+ * This class does not reference the weighting it was created from and instances are immutable and
+ * can be shared between threads.
+ * <p>
+ * @see CustomizedWeighting
+ */
+public class CustomizedMetric
+{
+    private final CustomizableCH cch;
+    private final float[] upWeights;
+    private final float[] downWeights;
+    private final int[] upMiddleNodes;
+    private final int[] downMiddleNodes;
+
+    CustomizedMetric( CustomizableCH cch, float[] upWeights, float[] downWeights,
+                      int[] upMiddleNodes, int[] downMiddleNodes )
+    {
+        this.cch = cch;
+        this.upWeights = upWeights;
+        this.downWeights = downWeights;
+        this.upMiddleNodes = upMiddleNodes;
+        this.downMiddleNodes = downMiddleNodes;
+    }
+
+    /**
+     * @return the weight of the specified shortcut when traversing it from node 'from' to node 'to'
+     */
+    public double getShortcutWeight( int shortcutEdge, int from, int to )
+    {
+        int arc = cch.getShortcutArc(shortcutEdge);
+        return cch.isUpward(from, to) ? upWeights[arc] : downWeights[arc];
+    }
+
+    /**
+     * @return the middle node to unpack the specified arc when traversing it from node 'from' to
+     * node 'to' or -1 if it has to be replaced by a base edge
+     */
+    public int getMiddleNode( int arc, int from, int to )
+    {
+        if (!cch.isShortcutArc(arc))
+            return -1;
+
+        return cch.isUpward(from, to) ? upMiddleNodes[arc] : downMiddleNodes[arc];
+    }
+
+    public CustomizableCH getCustomizableCH()
+    {
+        return cch;
+    }
+
+    /**
+     * @return the number of bytes used for the weights and middle nodes
+     */
+    public long getCapacity()
+    {
+        return 16L * upWeights.length;
+    }
+}
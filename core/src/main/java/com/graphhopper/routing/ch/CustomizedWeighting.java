@@ -0,0 +1,86 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Takes the weight of shortcuts from a CustomizedMetric and of all other edges from the user
+ * weighting the metric was customized for.
+ * <p>
+ * @see PrepareContractionHierarchies#getCustomizedWeighting
+ */
+public class CustomizedWeighting implements Weighting
+{
+    private final Weighting userWeighting;
+    private final CustomizedMetric metric;
+
+    public CustomizedWeighting( Weighting userWeighting, CustomizedMetric metric )
+    {
+        if (userWeighting.getFlagEncoder() != metric.getCustomizableCH().getFlagEncoder())
+            throw new IllegalArgumentException("Weighting " + userWeighting + " does not match the encoder of " + metric.getCustomizableCH());
+
+        this.userWeighting = userWeighting;
+        this.metric = metric;
+    }
+
+    @Override
+    public final double getMinWeight( double distance )
+    {
+        return userWeighting.getMinWeight(distance);
+    }
+
+    @Override
+    public double calcWeight( EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId )
+    {
+        if (edgeState instanceof CHEdgeIteratorState && ((CHEdgeIteratorState) edgeState).isShortcut())
+        {
+            if (reverse)
+                return metric.getShortcutWeight(edgeState.getEdge(), edgeState.getAdjNode(), edgeState.getBaseNode());
+
+            return metric.getShortcutWeight(edgeState.getEdge(), edgeState.getBaseNode(), edgeState.getAdjNode());
+        }
+
+        return userWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+    }
+
+    public Weighting getUserWeighting()
+    {
+        return userWeighting;
+    }
+
+    public CustomizedMetric getMetric()
+    {
+        return metric;
+    }
+
+    @Override
+    public FlagEncoder getFlagEncoder()
+    {
+        return userWeighting.getFlagEncoder();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CUSTOMIZED+" + userWeighting.toString();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.PathBidirRef;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CHEdgeExplorer;
+import com.graphhopper.util.CHEdgeIterator;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Recursively unpacks shortcuts via the middle nodes of a CustomizedMetric as the skipped edges
+ * stored in the CHGraph are not valid for every metric.
+ * <p>
+ * @see Path4CH
+ */
+public class Path4CustomizedCH extends PathBidirRef
+{
+    private final Graph routingGraph;
+    private final FlagEncoder flagEncoder;
+    private final CustomizableCH cch;
+    private final CustomizedMetric metric;
+    private final Weighting userWeighting;
+    private final CHEdgeExplorer explorer;
+
+    public Path4CustomizedCH( Graph routingGraph, Graph baseGraph, FlagEncoder encoder, CustomizedWeighting weighting )
+    {
+        super(baseGraph, encoder);
+        this.routingGraph = routingGraph;
+        this.flagEncoder = encoder;
+        this.metric = weighting.getMetric();
+        this.userWeighting = weighting.getUserWeighting();
+        this.cch = metric.getCustomizableCH();
+        this.explorer = cch.getGraph().createEdgeExplorer(new DefaultEdgeFilter(encoder, true, true));
+    }
+
+    @Override
+    protected final void processEdge( int tmpEdge, int endNode )
+    {
+        EdgeIteratorState edgeState = routingGraph.getEdgeIteratorState(tmpEdge, endNode);
+        if (edgeState instanceof CHEdgeIteratorState && ((CHEdgeIteratorState) edgeState).isShortcut())
+        {
+            expandArc(cch.getShortcutArc(tmpEdge), edgeState.getBaseNode(), edgeState.getAdjNode());
+            return;
+        }
+
+        double dist = edgeState.getDistance();
+        distance += dist;
+        time += calcMillis(dist, edgeState.getFlags(), false);
+        addEdge(tmpEdge);
+    }
+
+    private void expandArc( int arc, int from, int to )
+    {
+        int middle = metric.getMiddleNode(arc, from, to);
+        if (middle < 0)
+        {
+            addBestBaseEdge(from, to);
+            return;
+        }
+
+        int firstArc = cch.findArc(from, middle);
+        int secondArc = cch.findArc(middle, to);
+        if (reverseOrder)
+        {
+            expandArc(secondArc, middle, to);
+            expandArc(firstArc, from, middle);
+        } else
+        {
+            expandArc(firstArc, from, middle);
+            expandArc(secondArc, middle, to);
+        }
+    }
+
+    /**
+     * Picks the same base edge as the customization: the cheapest one in the direction from->to.
+     * Base edges are only available at the node with the lower level.
+     */
+    private void addBestBaseEdge( int from, int to )
+    {
+        boolean reverse = !cch.isUpward(from, to);
+        int lowNode = reverse ? to : from;
+        int highNode = reverse ? from : to;
+        int bestEdge = EdgeIterator.NO_EDGE;
+        double bestWeight = Double.POSITIVE_INFINITY;
+        double bestDist = 0;
+        long bestFlags = 0;
+        CHEdgeIterator iter = explorer.setBaseNode(lowNode);
+        while (iter.next())
+        {
+            if (iter.isShortcut() || iter.getAdjNode() != highNode)
+                continue;
+
+            if (reverse ? !iter.isBackward(flagEncoder) : !iter.isForward(flagEncoder))
+                continue;
+
+            double weight = (float) userWeighting.calcWeight(iter, reverse, EdgeIterator.NO_EDGE);
+            if (weight < bestWeight)
+            {
+                bestWeight = weight;
+                bestEdge = iter.getEdge();
+                bestDist = iter.getDistance();
+                bestFlags = iter.getFlags();
+            }
+        }
+
+        if (bestEdge == EdgeIterator.NO_EDGE)
+            throw new IllegalStateException("Cannot unpack " + from + "->" + to + ", no base edge found");
+
+        distance += bestDist;
+        time += calcMillis(bestDist, bestFlags, reverse);
+        addEdge(bestEdge);
+    }
+}
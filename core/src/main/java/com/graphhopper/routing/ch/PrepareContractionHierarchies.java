@@ -17,7 +17,7 @@
  */
 package com.graphhopper.routing.ch;
 
-import com.graphhopper.coll.GHTreeMapComposed;
+import com.graphhopper.coll.IndexedIntIntBinHeap;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.util.AbstractAlgoPreparation;
 import com.graphhopper.routing.util.DefaultEdgeFilter;
@@ -27,8 +27,15 @@ import com.graphhopper.routing.util.Weighting;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.*;
+import gnu.trove.list.array.TIntArrayList;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +50,11 @@ import org.slf4j.LoggerFactory;
  * The only difference is that we use two skipped edges instead of one skipped node for faster
  * unpacking.
  * <p>
+ * If setCustomizable is enabled no witness searches are done and every pair of uncontracted
+ * neighbors gets a shortcut. The resulting graph does not depend on the weighting anymore and the
+ * weights of the shortcuts are calculated per metric via getCustomizedWeighting, see
+ * CustomizableCH.
+ * <p>
  * @author Peter Karich
  */
 public class PrepareContractionHierarchies extends AbstractAlgoPreparation implements RoutingAlgorithmFactory
@@ -51,29 +63,28 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private final PreparationWeighting prepareWeighting;
     private final FlagEncoder prepareFlagEncoder;
     private final TraversalMode traversalMode;
-    private CHEdgeExplorer vehicleInExplorer;
     private CHEdgeExplorer vehicleOutExplorer;
     private CHEdgeExplorer vehicleAllExplorer;
     private CHEdgeExplorer vehicleAllTmpExplorer;
-    private CHEdgeExplorer calcPrioAllExplorer;
     private final LevelEdgeFilter levelFilter;
     private int maxLevel;
     private final GraphHopperStorage ghStorage;
     private final CHGraphImpl prepareGraph;
 
     // the most important nodes comes last
-    private GHTreeMapComposed sortedNodes;
+    private IndexedIntIntBinHeap sortedNodes;
     private int oldPriorities[];
+    private static final int PARALLEL_BATCH_SIZE = 64;
     private final DataAccess originalEdges;
-    private final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
-    private IgnoreNodeFilter ignoreNodeFilter;
-    private DijkstraOneToMany prepareAlgo;
+    // one contractor per thread, the first one is used for the sequential parts
+    private List<NodeContractor> contractors;
+    private NodeContractor contractor;
+    private int contractionThreads = 1;
+    private ExecutorService contractionPool;
     private long counter;
     private int newShortcuts;
-    private long dijkstraCount;
     private double meanDegree;
     private final Random rand = new Random(123);
-    private StopWatch dijkstraSW = new StopWatch();
     private final StopWatch allSW = new StopWatch();
     private int periodicUpdatesPercentage = 20;
     private int lastNodesLazyUpdatePercentage = 10;
@@ -85,7 +96,18 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private double periodTime;
     private double lazyTime;
     private double neighborTime;
+    private double selectTime;
+    private double insertTime;
     private int maxEdgesCount;
+    private boolean customizable;
+    private CustomizableCH customizableCH;
+    private CustomizedMetric defaultMetric;
+    // least recently used metrics are removed if the cached metrics exceed maxMetricBytes
+    private final LinkedHashMap<Object, CustomizedMetric> customizedMetrics = new LinkedHashMap<Object, CustomizedMetric>(16, 0.75f, true);
+    private long metricBytes;
+    private long maxMetricBytes = 256L * Helper.MB;
+    private final BidirSearchState.Pool searchStatePool = new BidirSearchState.Pool(
+            Runtime.getRuntime().availableProcessors());
 
     public PrepareContractionHierarchies( Directory dir, GraphHopperStorage ghStorage, CHGraph chGraph,
                                           FlagEncoder encoder, Weighting weighting, TraversalMode traversalMode )
@@ -187,6 +209,85 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         this.initialCollectionSize = initialCollectionSize;
     }
 
+    /**
+     * Creates a metric independent hierarchy which can be customized for different metrics of the
+     * same vehicle like the weightings of different rider profiles. The preparation is faster as
+     * no witness searches are necessary but more shortcuts are created.
+     */
+    public PrepareContractionHierarchies setCustomizable( boolean customizable )
+    {
+        this.customizable = customizable;
+        return this;
+    }
+
+    public boolean isCustomizable()
+    {
+        return customizable;
+    }
+
+    /**
+     * Limits the memory of the cached customized metrics, each needs 16 bytes per shortcut. A
+     * metric larger than this limit is not cached at all.
+     */
+    public PrepareContractionHierarchies setMaxMetricBytes( long maxMetricBytes )
+    {
+        if (maxMetricBytes < 0)
+            throw new IllegalArgumentException("maxMetricBytes cannot be negative " + maxMetricBytes);
+
+        synchronized (customizedMetrics)
+        {
+            this.maxMetricBytes = maxMetricBytes;
+            removeEldestMetrics();
+        }
+        return this;
+    }
+
+    public long getMaxMetricBytes()
+    {
+        return maxMetricBytes;
+    }
+
+    /**
+     * @return the number of cached customized metrics, excluding the metric of this preparation
+     */
+    public int getCachedMetrics()
+    {
+        synchronized (customizedMetrics)
+        {
+            return customizedMetrics.size();
+        }
+    }
+
+    public long getCachedMetricBytes()
+    {
+        synchronized (customizedMetrics)
+        {
+            return metricBytes;
+        }
+    }
+
+    /**
+     * Contracts the nodes with the specified number of threads. With more than one thread the
+     * nodes are contracted in rounds: every round picks the uncontracted nodes with a smaller
+     * priority than all of their uncontracted neighbors, does the witness searches of these
+     * independent nodes in parallel and then updates the priorities of their neighbors in
+     * parallel. Periodic, lazy and the random neighbor updates are not used then. Every thread
+     * needs its own search structures, i.e. roughly 20 bytes per node.
+     */
+    public PrepareContractionHierarchies setContractionThreads( int contractionThreads )
+    {
+        if (contractionThreads < 1)
+            throw new IllegalArgumentException("contractionThreads has to be at least 1 but was " + contractionThreads);
+
+        this.contractionThreads = contractionThreads;
+        return this;
+    }
+
+    public int getContractionThreads()
+    {
+        return contractionThreads;
+    }
+
     @Override
     public void doWork()
     {
@@ -196,14 +297,30 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         if (prepareWeighting == null)
             throw new IllegalStateException("No weight calculation set.");
 
+        if (customizable && nodesContractedPercentage < 100)
+            throw new IllegalStateException("All nodes have to be contracted for a customizable preparation");
+
         allSW.start();
         super.doWork();
 
         initFromGraph();
-        if (!prepareNodes())
-            return;
+        if (contractionThreads > 1)
+            contractionPool = Executors.newFixedThreadPool(contractionThreads);
 
-        contractNodes();
+        try
+        {
+            if (!prepareNodes())
+                return;
+
+            if (contractionThreads > 1)
+                contractNodesInParallel();
+            else
+                contractNodes();
+        } finally
+        {
+            if (contractionPool != null)
+                contractionPool.shutdown();
+        }
     }
 
     boolean prepareNodes()
@@ -214,10 +331,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             prepareGraph.setLevel(node, maxLevel);
         }
 
+        if (contractionPool != null)
+        {
+            // the parallel contraction does not need the sorted nodes
+            runInParallel(nodes, new NodeTask()
+            {
+                @Override
+                public void run( NodeContractor nodeContractor, int node )
+                {
+                    oldPriorities[node] = nodeContractor.calculatePriority(node);
+                }
+            });
+            return nodes > 0;
+        }
+
         for (int node = 0; node < nodes; node++)
         {
             int priority = oldPriorities[node] = calculatePriority(node);
-            sortedNodes.insert(node, priority);
+            sortedNodes.insert_(priority, node);
         }
 
         if (sortedNodes.isEmpty())
@@ -276,7 +407,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                         continue;
 
                     int priority = oldPriorities[node] = calculatePriority(node);
-                    sortedNodes.insert(node, priority);
+                    sortedNodes.insert_(priority, node);
                 }
                 periodSW.stop();
                 updateCounter++;
@@ -286,7 +417,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
             if (counter % logSize == 0)
             {
-                dijkstraTime += dijkstraSW.getSeconds();
+                dijkstraTime += contractor.dijkstraSW.getSeconds();
                 periodTime += periodSW.getSeconds();
                 lazyTime += lazySW.getSeconds();
                 neighborTime += neighborSW.getSeconds();
@@ -294,28 +425,28 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 logger.info(Helper.nf(counter) + ", updates:" + updateCounter
                         + ", nodes: " + Helper.nf(sortedNodes.getSize())
                         + ", shortcuts:" + Helper.nf(newShortcuts)
-                        + ", dijkstras:" + Helper.nf(dijkstraCount)
+                        + ", dijkstras:" + Helper.nf(getDijkstraCount())
                         + ", " + getTimesAsString()
                         + ", meanDegree:" + (long) meanDegree
-                        + ", algo:" + prepareAlgo.getMemoryUsageAsString()
+                        + ", algo:" + contractor.prepareAlgo.getMemoryUsageAsString()
                         + ", " + Helper.getMemInfo());
 
-                dijkstraSW = new StopWatch();
+                contractor.dijkstraSW = new StopWatch();
                 periodSW = new StopWatch();
                 lazySW = new StopWatch();
                 neighborSW = new StopWatch();
             }
 
             counter++;
-            int polledNode = sortedNodes.pollKey();
+            int polledNode = sortedNodes.poll_element();
             if (!sortedNodes.isEmpty() && sortedNodes.getSize() < lastNodesLazyUpdates)
             {
                 lazySW.start();
                 int priority = oldPriorities[polledNode] = calculatePriority(polledNode);
-                if (priority > sortedNodes.peekValue())
+                if (priority > sortedNodes.peek_key())
                 {
                     // current node got more important => insert as new value and contract it later
-                    sortedNodes.insert(polledNode, priority);
+                    sortedNodes.insert_(priority, polledNode);
                     lazySW.stop();
                     continue;
                 }
@@ -344,7 +475,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                     int oldPrio = oldPriorities[nn];
                     int priority = oldPriorities[nn] = calculatePriority(nn);
                     if (priority != oldPrio)
-                        sortedNodes.update(nn, oldPrio, priority);
+                        sortedNodes.update_(priority, nn);
 
                     neighborSW.stop();
                 }
@@ -357,7 +488,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         // The preparation object itself has to be intact to create the algorithm.
         close();
 
-        dijkstraTime += dijkstraSW.getSeconds();
+        dijkstraTime += contractor.dijkstraSW.getSeconds();
         periodTime += periodSW.getSeconds();
         lazyTime += lazySW.getSeconds();
         neighborTime += neighborSW.getSeconds();
@@ -365,7 +496,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", new shortcuts: " + Helper.nf(newShortcuts)
                 + ", " + prepareWeighting
                 + ", " + prepareFlagEncoder
-                + ", dijkstras:" + dijkstraCount
+                + ", dijkstras:" + getDijkstraCount()
                 + ", " + getTimesAsString()
                 + ", meanDegree:" + (long) meanDegree
                 + ", initSize:" + initSize
@@ -375,8 +506,242 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", " + Helper.getMemInfo());
     }
 
+    /**
+     * Contracts independent sets of nodes in rounds, see setContractionThreads. Only the witness
+     * searches and the priority calculations run in parallel, the graph is changed by the calling
+     * thread only.
+     */
+    void contractNodesInParallel()
+    {
+        meanDegree = prepareGraph.getAllEdges().getMaxId() / prepareGraph.getNodes();
+        final int nodes = prepareGraph.getNodes();
+        int level = 1;
+        counter = 0;
+        int rounds = 0;
+        long logSize = Math.round(Math.max(10, nodes / 100 * logMessagesPercentage));
+        if (logMessagesPercentage == 0)
+            logSize = Integer.MAX_VALUE;
+
+        long nodesToAvoidContract = Math.round((100 - nodesContractedPercentage) / 100 * nodes);
+        int remainingSize = nodes;
+        final int[] remaining = new int[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            remaining[node] = node;
+        }
+
+        // the round in which a node was last collected as neighbor, to update it only once
+        int[] neighborRounds = new int[nodes];
+        TIntArrayList neighbors = new TIntArrayList();
+        StopWatch selectSW = new StopWatch();
+        StopWatch insertSW = new StopWatch();
+        StopWatch neighborSW = new StopWatch();
+        while (remainingSize > nodesToAvoidContract)
+        {
+            rounds++;
+            selectSW.start();
+            final boolean[] selected = new boolean[remainingSize];
+            runInParallel(remainingSize, new NodeTask()
+            {
+                @Override
+                public void run( NodeContractor nodeContractor, int index )
+                {
+                    selected[index] = nodeContractor.isLocalMinimum(remaining[index]);
+                }
+            });
+
+            int roundSize = 0;
+            long[] sortedRound = new long[remainingSize];
+            for (int i = 0; i < remainingSize; i++)
+            {
+                if (selected[i])
+                    sortedRound[roundSize++] = (long) oldPriorities[remaining[i]] << 32 | remaining[i];
+            }
+
+            // contract the round in the order of the priorities, this assigns the same levels as a
+            // sequential contraction of these nodes
+            Arrays.sort(sortedRound, 0, roundSize);
+            roundSize = (int) Math.min(roundSize, remainingSize - nodesToAvoidContract);
+            final int[] round = new int[roundSize];
+            for (int i = 0; i < roundSize; i++)
+            {
+                round[i] = (int) sortedRound[i];
+                prepareGraph.setLevel(round[i], level);
+                level++;
+            }
+
+            int newRemainingSize = 0;
+            for (int i = 0; i < remainingSize; i++)
+            {
+                if (prepareGraph.getLevel(remaining[i]) == maxLevel)
+                    remaining[newRemainingSize++] = remaining[i];
+            }
+            remainingSize = newRemainingSize;
+            selectSW.stop();
+
+            // the witness searches avoid all nodes of the round as their levels are already set
+            final ShortcutTable[] roundShortcuts = new ShortcutTable[roundSize];
+            final long[] roundDegrees = new long[roundSize];
+            if (!customizable)
+            {
+                runInParallel(roundSize, new NodeTask()
+                {
+                    @Override
+                    public void run( NodeContractor nodeContractor, int index )
+                    {
+                        roundShortcuts[index] = nodeContractor.findAddShortcuts(round[index]).copy();
+                        roundDegrees[index] = nodeContractor.lastDegree;
+                    }
+                });
+            }
+
+            // nodes of one round can share neighbors, so their shortcuts are inserted sequentially
+            insertSW.start();
+            neighbors.clear();
+            for (int i = 0; i < roundSize; i++)
+            {
+                int node = round[i];
+                if (customizable)
+                {
+                    newShortcuts += contractor.addCustomizableShortcuts(node);
+                } else
+                {
+                    updateMeanDegree(roundDegrees[i]);
+                    newShortcuts += insertShortcuts(roundShortcuts[i]);
+                }
+
+                CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(node);
+                while (iter.next())
+                {
+                    int nn = iter.getAdjNode();
+                    if (prepareGraph.getLevel(nn) != maxLevel)
+                        continue;
+
+                    if (neighborRounds[nn] != rounds)
+                    {
+                        neighborRounds[nn] = rounds;
+                        neighbors.add(nn);
+                    }
+
+                    prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
+                }
+            }
+            insertSW.stop();
+
+            neighborSW.start();
+            final int[] tmpNeighbors = neighbors.toArray();
+            runInParallel(tmpNeighbors.length, new NodeTask()
+            {
+                @Override
+                public void run( NodeContractor nodeContractor, int index )
+                {
+                    oldPriorities[tmpNeighbors[index]] = nodeContractor.calculatePriority(tmpNeighbors[index]);
+                }
+            });
+            neighborSW.stop();
+
+            long prevCounter = counter;
+            counter += roundSize;
+            if (prevCounter / logSize != counter / logSize)
+                logger.info(Helper.nf(counter) + ", rounds:" + rounds
+                        + ", nodes: " + Helper.nf(remainingSize)
+                        + ", shortcuts:" + Helper.nf(newShortcuts)
+                        + ", dijkstras:" + Helper.nf(getDijkstraCount())
+                        + ", t(dijk):" + Helper.round2(getContractorsDijkstraTime())
+                        + ", t(select):" + Helper.round2(selectSW.getSeconds())
+                        + ", t(insert):" + Helper.round2(insertSW.getSeconds())
+                        + ", t(neighbor):" + Helper.round2(neighborSW.getSeconds())
+                        + ", meanDegree:" + (long) meanDegree
+                        + ", " + Helper.getMemInfo());
+        }
+
+        close();
+
+        dijkstraTime = getContractorsDijkstraTime();
+        selectTime = selectSW.getSeconds();
+        insertTime = insertSW.getSeconds();
+        neighborTime = neighborSW.getSeconds();
+        logger.info("took:" + (int) allSW.stop().getSeconds()
+                + ", new shortcuts: " + Helper.nf(newShortcuts)
+                + ", " + prepareWeighting
+                + ", " + prepareFlagEncoder
+                + ", dijkstras:" + getDijkstraCount()
+                + ", " + getTimesAsString()
+                + ", meanDegree:" + (long) meanDegree
+                + ", initSize:" + nodes
+                + ", threads:" + contractionThreads
+                + ", rounds:" + rounds
+                + ", " + Helper.getMemInfo());
+    }
+
+    private double getContractorsDijkstraTime()
+    {
+        double time = 0;
+        for (NodeContractor nodeContractor : contractors)
+        {
+            time += nodeContractor.dijkstraSW.getSeconds();
+        }
+        return time;
+    }
+
+    /**
+     * Runs the task for all indices in [0, size) with one NodeContractor per thread and waits
+     * until all are done.
+     */
+    private void runInParallel( final int size, final NodeTask task )
+    {
+        final AtomicInteger nextIndex = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<Callable<Object>>(contractors.size());
+        for (final NodeContractor nodeContractor : contractors)
+        {
+            callables.add(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    // small batches as the work per node varies a lot
+                    int start;
+                    while ((start = nextIndex.getAndAdd(PARALLEL_BATCH_SIZE)) < size)
+                    {
+                        int end = Math.min(size, start + PARALLEL_BATCH_SIZE);
+                        for (int index = start; index < end; index++)
+                        {
+                            task.run(nodeContractor, index);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Object> future : contractionPool.invokeAll(callables))
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Contraction was interrupted", ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException("Contraction failed", ex.getCause());
+        }
+    }
+
     public long getDijkstraCount()
     {
+        if (contractors == null)
+            return 0;
+
+        long dijkstraCount = 0;
+        for (NodeContractor nodeContractor : contractors)
+        {
+            dijkstraCount += nodeContractor.dijkstraCount;
+        }
         return dijkstraCount;
     }
 
@@ -400,6 +765,24 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return neighborTime;
     }
 
+    /**
+     * @return the seconds spent to select the independent nodes of every round, 0 if the nodes
+     * were contracted by one thread
+     */
+    public double getSelectTime()
+    {
+        return selectTime;
+    }
+
+    /**
+     * @return the seconds spent to insert the shortcuts of every round, 0 if the nodes were
+     * contracted by one thread
+     */
+    public double getInsertTime()
+    {
+        return insertTime;
+    }
+
     public Weighting getWeighting()
     {
         return prepareGraph.getWeighting();
@@ -407,23 +790,118 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     public void close()
     {
-        prepareAlgo.close();
+        for (NodeContractor nodeContractor : contractors)
+        {
+            nodeContractor.close();
+        }
         originalEdges.close();
         sortedNodes = null;
         oldPriorities = null;
     }
 
-    AddShortcutHandler addScHandler = new AddShortcutHandler();
-    CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
+    /**
+     * @return the metric independent part of the customizable preparation, created on the first
+     * call
+     */
+    public synchronized CustomizableCH getCustomizableCH()
+    {
+        if (!customizable)
+            throw new IllegalStateException("Preparation is not customizable " + prepareWeighting);
+
+        if (customizableCH == null)
+        {
+            StopWatch sw = new StopWatch().start();
+            customizableCH = new CustomizableCH(prepareGraph, prepareFlagEncoder);
+            logger.info("created " + customizableCH + ", took:" + sw.stop().getSeconds());
+        }
+        return customizableCH;
+    }
+
+    /**
+     * Creates a weighting with the shortcut weights customized for the specified user weighting.
+     * The customization is cached per metricKey, e.g. the ProfileManager of a rider, until the cache
+     * exceeds maxMetricBytes. If metricKey is null the user weighting has to calculate the same
+     * weights as the weighting of this preparation.
+     */
+    public CustomizedWeighting getCustomizedWeighting( Weighting userWeighting, Object metricKey )
+    {
+        CustomizedMetric metric;
+        if (metricKey == null)
+        {
+            synchronized (this)
+            {
+                if (defaultMetric == null)
+                    defaultMetric = customize(prepareGraph.getWeighting());
+                metric = defaultMetric;
+            }
+        } else
+        {
+            synchronized (customizedMetrics)
+            {
+                metric = customizedMetrics.get(metricKey);
+            }
+
+            if (metric == null)
+            {
+                // customize outside of the lock to avoid blocking requests for other metrics
+                CustomizedMetric newMetric = customize(userWeighting);
+                synchronized (customizedMetrics)
+                {
+                    metric = customizedMetrics.get(metricKey);
+                    if (metric == null)
+                    {
+                        metric = newMetric;
+                        if (metric.getCapacity() <= maxMetricBytes)
+                        {
+                            customizedMetrics.put(metricKey, metric);
+                            metricBytes += metric.getCapacity();
+                            removeEldestMetrics();
+                        }
+                    }
+                }
+            }
+        }
+        return new CustomizedWeighting(userWeighting, metric);
+    }
+
+    private void removeEldestMetrics()
+    {
+        Iterator<CustomizedMetric> iter = customizedMetrics.values().iterator();
+        while (metricBytes > maxMetricBytes && iter.hasNext())
+        {
+            metricBytes -= iter.next().getCapacity();
+            iter.remove();
+        }
+    }
+
+    private CustomizedMetric customize( Weighting weighting )
+    {
+        StopWatch sw = new StopWatch().start();
+        CustomizedMetric metric = getCustomizableCH().customize(weighting);
+        logger.info("customized " + weighting + ", took:" + sw.stop().getSeconds()
+                + ", " + metric.getCapacity() / Helper.MB + "MB");
+        return metric;
+    }
 
     private String getTimesAsString()
     {
+        if (contractionThreads > 1)
+            return "t(dijk):" + Helper.round2(dijkstraTime)
+                    + ", t(select):" + Helper.round2(selectTime)
+                    + ", t(insert):" + Helper.round2(insertTime)
+                    + ", t(neighbor):" + Helper.round2(neighborTime);
+
         return "t(dijk):" + Helper.round2(dijkstraTime)
                 + ", t(period):" + Helper.round2(periodTime)
                 + ", t(lazy):" + Helper.round2(lazyTime)
                 + ", t(neighbor):" + Helper.round2(neighborTime);
     }
 
+    interface NodeTask
+    {
+        void run( NodeContractor nodeContractor, int index );
+    }
+
     interface ShortcutHandler
     {
         void foundShortcut( int u_fromNode, int w_toNode,
@@ -467,6 +945,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     class AddShortcutHandler implements ShortcutHandler
     {
+        final ShortcutTable shortcuts = new ShortcutTable();
         int node;
 
         public AddShortcutHandler()
@@ -497,195 +976,113 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             // and also in the graph for u->w. If existing AND identical weight => update setProperties.
             // Hint: shortcuts are always one-way due to distinct level of every node but we don't
             // know yet the levels so we need to determine the correct direction or if both directions
-            Shortcut sc = new Shortcut(u_fromNode, w_toNode, existingDirectWeight, existingDistSum);
-            if (shortcuts.containsKey(sc))
+            if (shortcuts.find(u_fromNode, w_toNode, existingDirectWeight) >= 0)
                 return;
 
-            Shortcut tmpSc = new Shortcut(w_toNode, u_fromNode, existingDirectWeight, existingDistSum);
-            Shortcut tmpRetSc = shortcuts.get(tmpSc);
-            if (tmpRetSc != null)
+            int reverseSc = shortcuts.find(w_toNode, u_fromNode, existingDirectWeight);
+            if (reverseSc >= 0)
             {
                 // overwrite flags only if skipped edges are identical
-                if (tmpRetSc.skippedEdge2 == skippedEdge1 && tmpRetSc.skippedEdge1 == outgoingEdges.getEdge())
+                if (shortcuts.getSkippedEdge2(reverseSc) == skippedEdge1
+                        && shortcuts.getSkippedEdge1(reverseSc) == outgoingEdges.getEdge())
                 {
-                    tmpRetSc.flags = PrepareEncoder.getScDirMask();
+                    shortcuts.setFlags(reverseSc, PrepareEncoder.getScDirMask());
                     return;
                 }
             }
 
-            shortcuts.put(sc, sc);
-            sc.skippedEdge1 = skippedEdge1;
-            sc.skippedEdge2 = outgoingEdges.getEdge();
-            sc.originalEdges = incomingEdgeOrigCount + getOrigEdgeCount(outgoingEdges.getEdge());
+            int sc = shortcuts.add(u_fromNode, w_toNode, existingDirectWeight, existingDistSum);
+            shortcuts.setSkippedEdges(sc, skippedEdge1, outgoingEdges.getEdge());
+            shortcuts.setOriginalEdges(sc, incomingEdgeOrigCount + getOrigEdgeCount(outgoingEdges.getEdge()));
         }
     }
 
     Set<Shortcut> testFindShortcuts( int node )
     {
-        findShortcuts(addScHandler.setNode(node));
-        return shortcuts.keySet();
+        ShortcutTable table = contractor.findAddShortcuts(node);
+        Set<Shortcut> result = new HashSet<Shortcut>();
+        for (int index = 0; index < table.size(); index++)
+        {
+            Shortcut sc = new Shortcut(table.getFrom(index), table.getTo(index), table.getWeight(index), table.getDistance(index));
+            sc.skippedEdge1 = table.getSkippedEdge1(index);
+            sc.skippedEdge2 = table.getSkippedEdge2(index);
+            sc.originalEdges = table.getOriginalEdges(index);
+            sc.flags = table.getFlags(index);
+            result.add(sc);
+        }
+        return result;
     }
 
     /**
-     * Calculates the priority of adjNode v without changing the graph. Warning: the calculated
-     * priority must NOT depend on priority(v) and therefor findShortcuts should also not depend on
-     * the priority(v). Otherwise updating the priority before contracting in contractNodes() could
-     * lead to a slowishor even endless loop.
+     * Calculates the priority of adjNode v without changing the graph.
      */
     int calculatePriority( int v )
     {
-        // set of shortcuts that would be added if adjNode v would be contracted next.
-        findShortcuts(calcScHandler.setNode(v));
-
-//        System.out.println(v + "\t " + tmpShortcuts);
-        // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
-        //
-        // every adjNode has an 'original edge' number associated. initially it is r=1
-        // when a new shortcut is introduced then r of the associated edges is summed up:
-        // r(u,w)=r(u,v)+r(v,w) now we can define
-        // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
-        int originalEdgesCount = calcScHandler.originalEdgesCount;
-//        for (Shortcut sc : tmpShortcuts) {
-//            originalEdgesCount += sc.originalEdges;
-//        }
-
-        // # lowest influence on preparation speed or shortcut creation count 
-        // (but according to paper should speed up queries)
-        //
-        // number of already contracted neighbors of v
-        int contractedNeighbors = 0;
-        int degree = 0;
-        CHEdgeIterator iter = calcPrioAllExplorer.setBaseNode(v);
-        while (iter.next())
-        {
-            degree++;
-            if (iter.isShortcut())
-                contractedNeighbors++;
-        }
-
-        // from shortcuts we can compute the edgeDifference
-        // # low influence: with it the shortcut creation is slightly faster
-        //
-        // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
-        // meanDegree is used instead of outDegree+inDegree as if one adjNode is in both directions
-        // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
-        int edgeDifference = calcScHandler.shortcuts - degree;
-
-        // according to the paper do a simple linear combination of the properties to get the priority.
-        // this is the current optimum for unterfranken:
-        return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        return contractor.calculatePriority(v);
     }
 
     /**
-     * Finds shortcuts, does not change the underlying graph.
+     * Introduces the necessary shortcuts for adjNode v in the graph.
      */
-    void findShortcuts( ShortcutHandler sch )
-    {
-        long tmpDegreeCounter = 0;
-        EdgeIterator incomingEdges = vehicleInExplorer.setBaseNode(sch.getNode());
-        // collect outgoing nodes (goal-nodes) only once
-        while (incomingEdges.next())
-        {
-            int u_fromNode = incomingEdges.getAdjNode();
-            // accept only uncontracted nodes
-            if (prepareGraph.getLevel(u_fromNode) != maxLevel)
-                continue;
-
-            double v_u_dist = incomingEdges.getDistance();
-            double v_u_weight = prepareWeighting.calcWeight(incomingEdges, true, EdgeIterator.NO_EDGE);
-            int skippedEdge1 = incomingEdges.getEdge();
-            int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
-            // collect outgoing nodes (goal-nodes) only once
-            EdgeIterator outgoingEdges = vehicleOutExplorer.setBaseNode(sch.getNode());
-            // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
-            prepareAlgo.clear();
-            tmpDegreeCounter++;
-            while (outgoingEdges.next())
-            {
-                int w_toNode = outgoingEdges.getAdjNode();
-                // add only uncontracted nodes
-                if (prepareGraph.getLevel(w_toNode) != maxLevel || u_fromNode == w_toNode)
-                    continue;
-
-                // Limit weight as ferries or forbidden edges can increase local search too much.
-                // If we decrease the correct weight we only explore less and introduce more shortcuts.
-                // I.e. no change to accuracy is made.
-                double existingDirectWeight = v_u_weight + prepareWeighting.calcWeight(outgoingEdges, false, incomingEdges.getEdge());
-                if (Double.isNaN(existingDirectWeight))
-                    throw new IllegalStateException("Weighting should never return NaN values"
-                            + ", in:" + getCoords(incomingEdges, prepareGraph) + ", out:" + getCoords(outgoingEdges, prepareGraph)
-                            + ", dist:" + outgoingEdges.getDistance());
-
-                if (Double.isInfinite(existingDirectWeight))
-                    continue;
-
-                double existingDistSum = v_u_dist + outgoingEdges.getDistance();
-                prepareAlgo.setWeightLimit(existingDirectWeight);
-                prepareAlgo.setLimitVisitedNodes((int) meanDegree * 100)
-                        .setEdgeFilter(ignoreNodeFilter.setAvoidNode(sch.getNode()));
-
-                dijkstraSW.start();
-                dijkstraCount++;
-                int endNode = prepareAlgo.findEndNode(u_fromNode, w_toNode);
-                dijkstraSW.stop();
+    int addShortcuts( int v )
+    {
+        if (customizable)
+            return contractor.addCustomizableShortcuts(v);
 
-                // compare end node as the limit could force dijkstra to finish earlier
-                if (endNode == w_toNode && prepareAlgo.getWeight(endNode) <= existingDirectWeight)
-                    // FOUND witness path, so do not add shortcut                
-                    continue;
+        ShortcutTable tmpShortcuts = contractor.findAddShortcuts(v);
+        updateMeanDegree(contractor.lastDegree);
+        return insertShortcuts(tmpShortcuts);
+    }
 
-                sch.foundShortcut(u_fromNode, w_toNode,
-                        existingDirectWeight, existingDistSum,
-                        outgoingEdges,
-                        skippedEdge1, incomingEdgeOrigCount);
-            }
-        }
-        if (sch instanceof AddShortcutHandler)
-        {
-            // sliding mean value when using "*2" => slower changes
-            meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
-            // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
-        }
+    private void updateMeanDegree( long degree )
+    {
+        // sliding mean value when using "*2" => slower changes
+        meanDegree = (meanDegree * 2 + degree) / 3;
+        // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
     }
 
     /**
-     * Introduces the necessary shortcuts for adjNode v in the graph.
+     * Adds the shortcuts to the graph or updates existing ones if the new weight is smaller.
      */
-    int addShortcuts( int v )
+    private int insertShortcuts( ShortcutTable tmpShortcuts )
     {
-        shortcuts.clear();
-        findShortcuts(addScHandler.setNode(v));
         int tmpNewShortcuts = 0;
         NEXT_SC:
-        for (Shortcut sc : shortcuts.keySet())
+        for (int sc = 0; sc < tmpShortcuts.size(); sc++)
         {
+            int scFrom = tmpShortcuts.getFrom(sc);
+            int scTo = tmpShortcuts.getTo(sc);
+            long scFlags = tmpShortcuts.getFlags(sc);
+            double scWeight = tmpShortcuts.getWeight(sc);
+            int scSkippedEdge1 = tmpShortcuts.getSkippedEdge1(sc);
+            int scSkippedEdge2 = tmpShortcuts.getSkippedEdge2(sc);
             boolean updatedInGraph = false;
             // check if we need to update some existing shortcut in the graph
-            CHEdgeIterator iter = vehicleOutExplorer.setBaseNode(sc.from);
+            CHEdgeIterator iter = vehicleOutExplorer.setBaseNode(scFrom);
             while (iter.next())
             {
-                if (iter.isShortcut() && iter.getAdjNode() == sc.to && iter.canBeOverwritten(sc.flags))
+                if (iter.isShortcut() && iter.getAdjNode() == scTo && iter.canBeOverwritten(scFlags))
                 {
-                    if (sc.weight >= prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE))
+                    if (scWeight >= prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE))
                         continue NEXT_SC;
 
-                    if (iter.getEdge() == sc.skippedEdge1 || iter.getEdge() == sc.skippedEdge2)
+                    if (iter.getEdge() == scSkippedEdge1 || iter.getEdge() == scSkippedEdge2)
                     {
                         throw new IllegalStateException("Shortcut cannot update itself! " + iter.getEdge()
-                                + ", skipEdge1:" + sc.skippedEdge1 + ", skipEdge2:" + sc.skippedEdge2
+                                + ", skipEdge1:" + scSkippedEdge1 + ", skipEdge2:" + scSkippedEdge2
                                 + ", edge " + iter + ":" + getCoords(iter, prepareGraph)
-                                + ", sc:" + sc
-                                + ", skippedEdge1: " + getCoords(prepareGraph.getEdgeIteratorState(sc.skippedEdge1, sc.from), prepareGraph)
-                                + ", skippedEdge2: " + getCoords(prepareGraph.getEdgeIteratorState(sc.skippedEdge2, sc.to), prepareGraph)
+                                + ", sc:" + scFrom + "->" + scTo + ", weight:" + scWeight
+                                + ", skippedEdge1: " + getCoords(prepareGraph.getEdgeIteratorState(scSkippedEdge1, scFrom), prepareGraph)
+                                + ", skippedEdge2: " + getCoords(prepareGraph.getEdgeIteratorState(scSkippedEdge2, scTo), prepareGraph)
                                 + ", neighbors:" + GHUtility.getNeighbors(iter));
                     }
 
                     // note: flags overwrite weight => call first
-                    iter.setFlags(sc.flags);
-                    iter.setWeight(sc.weight);
-                    iter.setDistance(sc.dist);
-                    iter.setSkippedEdges(sc.skippedEdge1, sc.skippedEdge2);
-                    setOrigEdgeCount(iter.getEdge(), sc.originalEdges);
+                    iter.setFlags(scFlags);
+                    iter.setWeight(scWeight);
+                    iter.setDistance(tmpShortcuts.getDistance(sc));
+                    iter.setSkippedEdges(scSkippedEdge1, scSkippedEdge2);
+                    setOrigEdgeCount(iter.getEdge(), tmpShortcuts.getOriginalEdges(sc));
                     updatedInGraph = true;
                     break;
                 }
@@ -693,13 +1090,13 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
             if (!updatedInGraph)
             {
-                CHEdgeIteratorState edgeState = prepareGraph.shortcut(sc.from, sc.to);
+                CHEdgeIteratorState edgeState = prepareGraph.shortcut(scFrom, scTo);
                 // note: flags overwrite weight => call first
-                edgeState.setFlags(sc.flags);
-                edgeState.setWeight(sc.weight);
-                edgeState.setDistance(sc.dist);
-                edgeState.setSkippedEdges(sc.skippedEdge1, sc.skippedEdge2);
-                setOrigEdgeCount(edgeState.getEdge(), sc.originalEdges);
+                edgeState.setFlags(scFlags);
+                edgeState.setWeight(scWeight);
+                edgeState.setDistance(tmpShortcuts.getDistance(sc));
+                edgeState.setSkippedEdges(scSkippedEdge1, scSkippedEdge2);
+                setOrigEdgeCount(edgeState.getEdge(), tmpShortcuts.getOriginalEdges(sc));
                 tmpNewShortcuts++;
             }
         }
@@ -719,7 +1116,6 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     {
         ghStorage.freeze();
         maxEdgesCount = ghStorage.getAllEdges().getMaxId();
-        vehicleInExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
         vehicleOutExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
         final EdgeFilter allFilter = new DefaultEdgeFilter(prepareFlagEncoder, true, true);
 
@@ -737,19 +1133,21 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         };
 
         maxLevel = prepareGraph.getNodes() + 1;
-        ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph, maxLevel);
         vehicleAllExplorer = prepareGraph.createEdgeExplorer(allFilter);
         vehicleAllTmpExplorer = prepareGraph.createEdgeExplorer(allFilter);
-        calcPrioAllExplorer = prepareGraph.createEdgeExplorer(accessWithLevelFilter);
-
-        // Use an alternative to PriorityQueue as it has some advantages: 
-        //   1. Gets automatically smaller if less entries are stored => less total RAM used. 
-        //      Important because Graph is increasing until the end.
-        //   2. is slightly faster
-        //   but we need the additional oldPriorities array to keep the old value which is necessary for the update method
-        sortedNodes = new GHTreeMapComposed();
+        contractors = new ArrayList<NodeContractor>(contractionThreads);
+        for (int i = 0; i < contractionThreads; i++)
+        {
+            contractors.add(new NodeContractor(allFilter, accessWithLevelFilter));
+        }
+        contractor = contractors.get(0);
+
+        // Use a primitive heap with the position of every node instead of a PriorityQueue or a TreeMap:
+        //   1. Does not create an object per entry which keeps the GC pauses short on large graphs.
+        //   2. update is O(log n) without searching the node
+        //   the oldPriorities array is still necessary to know if the priority of a node changed
+        sortedNodes = new IndexedIntIntBinHeap(prepareGraph.getNodes());
         oldPriorities = new int[prepareGraph.getNodes()];
-        prepareAlgo = new DijkstraOneToMany(prepareGraph, prepareFlagEncoder, prepareWeighting, traversalMode);
         return this;
     }
 
@@ -758,6 +1156,345 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return newShortcuts;
     }
 
+    /**
+     * Holds the explorers and the witness search of one thread. Apart from addCustomizableShortcuts
+     * the methods do not change the graph and can be called from different threads for different
+     * nodes as long as no other thread changes the graph.
+     */
+    class NodeContractor
+    {
+        private final CHEdgeExplorer vehicleInExplorer;
+        private final CHEdgeExplorer vehicleOutExplorer;
+        private final CHEdgeExplorer vehicleAllExplorer;
+        private final CHEdgeExplorer calcPrioAllExplorer;
+        private final IgnoreNodeFilter ignoreNodeFilter;
+        private final DijkstraOneToMany prepareAlgo;
+        private final AddShortcutHandler addScHandler = new AddShortcutHandler();
+        private final CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
+        private StopWatch dijkstraSW = new StopWatch();
+        private long dijkstraCount;
+        private long lastDegree;
+        private CHEdgeExplorer customizableExplorer;
+        private CHEdgeExplorer customizableTmpExplorer;
+        private int[] neighborMarkers;
+        private int neighborMarker;
+        private int neighborCount;
+        private int[] neighborNodes = new int[16];
+        private int[] neighborEdges = new int[16];
+        private int[] neighborOrigEdges = new int[16];
+        private double[] neighborWeights = new double[16];
+        private double[] neighborDists = new double[16];
+
+        NodeContractor( EdgeFilter allFilter, EdgeFilter accessWithLevelFilter )
+        {
+            vehicleInExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
+            vehicleOutExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
+            vehicleAllExplorer = prepareGraph.createEdgeExplorer(allFilter);
+            calcPrioAllExplorer = prepareGraph.createEdgeExplorer(accessWithLevelFilter);
+            ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph, maxLevel);
+            prepareAlgo = new DijkstraOneToMany(prepareGraph, prepareFlagEncoder, prepareWeighting, traversalMode);
+            if (customizable)
+            {
+                customizableExplorer = prepareGraph.createEdgeExplorer(allFilter);
+                customizableTmpExplorer = prepareGraph.createEdgeExplorer(allFilter);
+                neighborMarkers = new int[prepareGraph.getNodes()];
+            }
+        }
+
+        /**
+         * Calculates the priority of adjNode v without changing the graph. Warning: the calculated
+         * priority must NOT depend on priority(v) and therefor findShortcuts should also not depend on
+         * the priority(v). Otherwise updating the priority before contracting in contractNodes() could
+         * lead to a slowishor even endless loop.
+         */
+        int calculatePriority( int v )
+        {
+            if (customizable)
+                return calculateCustomizablePriority(v);
+
+            // set of shortcuts that would be added if adjNode v would be contracted next.
+            findShortcuts(calcScHandler.setNode(v));
+
+//        System.out.println(v + "\t " + tmpShortcuts);
+            // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
+            //
+            // every adjNode has an 'original edge' number associated. initially it is r=1
+            // when a new shortcut is introduced then r of the associated edges is summed up:
+            // r(u,w)=r(u,v)+r(v,w) now we can define
+            // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
+            int originalEdgesCount = calcScHandler.originalEdgesCount;
+//        for (Shortcut sc : tmpShortcuts) {
+//            originalEdgesCount += sc.originalEdges;
+//        }
+
+            // # lowest influence on preparation speed or shortcut creation count 
+            // (but according to paper should speed up queries)
+            //
+            // number of already contracted neighbors of v
+            int contractedNeighbors = 0;
+            int degree = 0;
+            CHEdgeIterator iter = calcPrioAllExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                degree++;
+                if (iter.isShortcut())
+                    contractedNeighbors++;
+            }
+
+            // from shortcuts we can compute the edgeDifference
+            // # low influence: with it the shortcut creation is slightly faster
+            //
+            // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
+            // meanDegree is used instead of outDegree+inDegree as if one adjNode is in both directions
+            // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
+            int edgeDifference = calcScHandler.shortcuts - degree;
+
+            // according to the paper do a simple linear combination of the properties to get the priority.
+            // this is the current optimum for unterfranken:
+            return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        }
+
+        /**
+         * Same as calculatePriority but only counts the missing shortcuts between the uncontracted
+         * neighbors, i.e. the fill-in, as there are no witness paths.
+         */
+        int calculateCustomizablePriority( int v )
+        {
+            collectNeighbors(v);
+            int shortcutCount = 0;
+            int originalEdgesCount = 0;
+            for (int i = 0; i < neighborCount; i++)
+            {
+                markShortcutNeighbors(neighborNodes[i]);
+                for (int j = i + 1; j < neighborCount; j++)
+                {
+                    if (neighborMarkers[neighborNodes[j]] == neighborMarker)
+                        continue;
+
+                    shortcutCount++;
+                    originalEdgesCount += neighborOrigEdges[i] + neighborOrigEdges[j];
+                }
+            }
+
+            int contractedNeighbors = 0;
+            int degree = 0;
+            CHEdgeIterator iter = calcPrioAllExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                degree++;
+                if (iter.isShortcut())
+                    contractedNeighbors++;
+            }
+
+            int edgeDifference = shortcutCount - degree;
+            return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        }
+
+        /**
+         * Collects the distinct uncontracted neighbors of v and the edge with the smallest weight to
+         * each of them.
+         */
+        private void collectNeighbors( int v )
+        {
+            neighborCount = 0;
+            CHEdgeIterator iter = customizableExplorer.setBaseNode(v);
+            NEXT_EDGE:
+            while (iter.next())
+            {
+                int adj = iter.getAdjNode();
+                if (adj == v || prepareGraph.getLevel(adj) != maxLevel)
+                    continue;
+
+                double weight = Double.POSITIVE_INFINITY;
+                if (iter.isForward(prepareFlagEncoder))
+                    weight = prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE);
+                if (iter.isBackward(prepareFlagEncoder))
+                    weight = Math.min(weight, prepareWeighting.calcWeight(iter, true, EdgeIterator.NO_EDGE));
+
+                for (int i = 0; i < neighborCount; i++)
+                {
+                    if (neighborNodes[i] != adj)
+                        continue;
+
+                    if (weight < neighborWeights[i])
+                        setNeighbor(i, iter, weight);
+                    continue NEXT_EDGE;
+                }
+
+                if (neighborCount == neighborNodes.length)
+                {
+                    int newSize = neighborCount * 2;
+                    neighborNodes = Arrays.copyOf(neighborNodes, newSize);
+                    neighborEdges = Arrays.copyOf(neighborEdges, newSize);
+                    neighborOrigEdges = Arrays.copyOf(neighborOrigEdges, newSize);
+                    neighborWeights = Arrays.copyOf(neighborWeights, newSize);
+                    neighborDists = Arrays.copyOf(neighborDists, newSize);
+                }
+
+                neighborNodes[neighborCount] = adj;
+                setNeighbor(neighborCount, iter, weight);
+                neighborCount++;
+            }
+        }
+
+        private void setNeighbor( int index, EdgeIteratorState edge, double weight )
+        {
+            neighborEdges[index] = edge.getEdge();
+            neighborOrigEdges[index] = getOrigEdgeCount(edge.getEdge());
+            neighborWeights[index] = weight;
+            neighborDists[index] = edge.getDistance();
+        }
+
+        /**
+         * Marks all uncontracted nodes which are already connected to u via a shortcut. Base edges do
+         * not count as the customized weight of a shortcut can be smaller than the one of the edge.
+         */
+        private void markShortcutNeighbors( int u )
+        {
+            neighborMarker++;
+            CHEdgeIterator iter = customizableTmpExplorer.setBaseNode(u);
+            while (iter.next())
+            {
+                if (iter.isShortcut())
+                    neighborMarkers[iter.getAdjNode()] = neighborMarker;
+            }
+        }
+
+        /**
+         * Finds shortcuts, does not change the underlying graph. The degree of the node is stored in
+         * lastDegree as the mean degree has to be updated by the contracting thread only.
+         */
+        void findShortcuts( ShortcutHandler sch )
+        {
+            long tmpDegreeCounter = 0;
+            EdgeIterator incomingEdges = vehicleInExplorer.setBaseNode(sch.getNode());
+            // collect outgoing nodes (goal-nodes) only once
+            while (incomingEdges.next())
+            {
+                int u_fromNode = incomingEdges.getAdjNode();
+                // accept only uncontracted nodes
+                if (prepareGraph.getLevel(u_fromNode) != maxLevel)
+                    continue;
+
+                double v_u_dist = incomingEdges.getDistance();
+                double v_u_weight = prepareWeighting.calcWeight(incomingEdges, true, EdgeIterator.NO_EDGE);
+                int skippedEdge1 = incomingEdges.getEdge();
+                int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
+                // collect outgoing nodes (goal-nodes) only once
+                EdgeIterator outgoingEdges = vehicleOutExplorer.setBaseNode(sch.getNode());
+                // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
+                prepareAlgo.clear();
+                tmpDegreeCounter++;
+                while (outgoingEdges.next())
+                {
+                    int w_toNode = outgoingEdges.getAdjNode();
+                    // add only uncontracted nodes
+                    if (prepareGraph.getLevel(w_toNode) != maxLevel || u_fromNode == w_toNode)
+                        continue;
+
+                    // Limit weight as ferries or forbidden edges can increase local search too much.
+                    // If we decrease the correct weight we only explore less and introduce more shortcuts.
+                    // I.e. no change to accuracy is made.
+                    double existingDirectWeight = v_u_weight + prepareWeighting.calcWeight(outgoingEdges, false, incomingEdges.getEdge());
+                    if (Double.isNaN(existingDirectWeight))
+                        throw new IllegalStateException("Weighting should never return NaN values"
+                                + ", in:" + getCoords(incomingEdges, prepareGraph) + ", out:" + getCoords(outgoingEdges, prepareGraph)
+                                + ", dist:" + outgoingEdges.getDistance());
+
+                    if (Double.isInfinite(existingDirectWeight))
+                        continue;
+
+                    double existingDistSum = v_u_dist + outgoingEdges.getDistance();
+                    prepareAlgo.setWeightLimit(existingDirectWeight);
+                    prepareAlgo.setLimitVisitedNodes((int) meanDegree * 100)
+                            .setEdgeFilter(ignoreNodeFilter.setAvoidNode(sch.getNode()));
+
+                    dijkstraSW.start();
+                    dijkstraCount++;
+                    int endNode = prepareAlgo.findEndNode(u_fromNode, w_toNode);
+                    dijkstraSW.stop();
+
+                    // compare end node as the limit could force dijkstra to finish earlier
+                    if (endNode == w_toNode && prepareAlgo.getWeight(endNode) <= existingDirectWeight)
+                        // FOUND witness path, so do not add shortcut                
+                        continue;
+
+                    sch.foundShortcut(u_fromNode, w_toNode,
+                            existingDirectWeight, existingDistSum,
+                            outgoingEdges,
+                            skippedEdge1, incomingEdgeOrigCount);
+                }
+            }
+            lastDegree = tmpDegreeCounter;
+        }
+
+        /**
+         * Finds the shortcuts necessary to contract v, does not change the underlying graph.
+         */
+        ShortcutTable findAddShortcuts( int v )
+        {
+            findShortcuts(addScHandler.setNode(v));
+            return addScHandler.shortcuts;
+        }
+
+        /**
+         * @return true if v has a smaller priority than all of its uncontracted neighbors. Nodes with
+         * the same priority are ordered by their id.
+         */
+        boolean isLocalMinimum( int v )
+        {
+            int priority = oldPriorities[v];
+            CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                int adj = iter.getAdjNode();
+                if (adj == v || prepareGraph.getLevel(adj) != maxLevel)
+                    continue;
+
+                int adjPriority = oldPriorities[adj];
+                if (adjPriority < priority || adjPriority == priority && adj < v)
+                    return false;
+            }
+            return true;
+        }
+
+        void close()
+        {
+            prepareAlgo.close();
+            neighborMarkers = null;
+        }
+
+        /**
+         * Connects every pair of uncontracted neighbors of v via a shortcut in both directions if not
+         * already done. The weight and the skipped edges of the shortcut are only valid for the
+         * undirected preparation weighting, the real ones are calculated when customizing.
+         */
+        int addCustomizableShortcuts( int v )
+        {
+            collectNeighbors(v);
+            int tmpNewShortcuts = 0;
+            for (int i = 0; i < neighborCount; i++)
+            {
+                markShortcutNeighbors(neighborNodes[i]);
+                for (int j = i + 1; j < neighborCount; j++)
+                {
+                    if (neighborMarkers[neighborNodes[j]] == neighborMarker)
+                        continue;
+
+                    CHEdgeIteratorState edgeState = prepareGraph.shortcut(neighborNodes[i], neighborNodes[j]);
+                    // note: flags overwrite weight => call first
+                    edgeState.setFlags(PrepareEncoder.getScDirMask());
+                    edgeState.setWeight(neighborWeights[i] + neighborWeights[j]);
+                    edgeState.setDistance(neighborDists[i] + neighborDists[j]);
+                    edgeState.setSkippedEdges(neighborEdges[i], neighborEdges[j]);
+                    setOrigEdgeCount(edgeState.getEdge(), neighborOrigEdges[i] + neighborOrigEdges[j]);
+                    tmpNewShortcuts++;
+                }
+            }
+            return tmpNewShortcuts;
+        }
+    }
+
     static class IgnoreNodeFilter implements EdgeFilter
     {
         int avoidNode;
@@ -816,10 +1553,28 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     @Override
     public RoutingAlgorithm createAlgo( Graph graph, AlgorithmOptions opts )
     {
+        final Weighting algoWeighting;
+        final CustomizedWeighting customizedWeighting;
+        if (customizable)
+        {
+            // use the metric of the request if it was customized via getCustomizedWeighting
+            if (opts.getWeighting() instanceof CustomizedWeighting
+                    && ((CustomizedWeighting) opts.getWeighting()).getMetric().getCustomizableCH() == getCustomizableCH())
+                customizedWeighting = (CustomizedWeighting) opts.getWeighting();
+            else
+                customizedWeighting = getCustomizedWeighting(prepareGraph.getWeighting(), null);
+            algoWeighting = customizedWeighting;
+        } else
+        {
+            customizedWeighting = null;
+            algoWeighting = prepareWeighting;
+        }
+
         AbstractBidirAlgo algo;
         if (AlgorithmOptions.ASTAR_BI.equals(opts.getAlgorithm()))
         {
-            AStarBidirection astarBi = new AStarBidirection(graph, prepareFlagEncoder, prepareWeighting, traversalMode)
+            AStarBidirection astarBi = new AStarBidirection(graph, prepareFlagEncoder, algoWeighting, traversalMode,
+                    searchStatePool)
             {
                 @Override
                 protected void initCollections( int nodes )
@@ -848,7 +1603,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 @Override
                 protected Path createAndInitPath()
                 {
-                    bestPath = new Path4CH(graph, graph.getBaseGraph(), flagEncoder);
+                    bestPath = createPath(graph, flagEncoder, customizedWeighting);
                     return bestPath;
                 }
 
@@ -862,13 +1617,14 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
                 public String toString()
                 {
-                    return getName() + "|" + prepareWeighting;
+                    return getName() + "|" + algoWeighting;
                 }
             };
             algo = astarBi;
         } else if (AlgorithmOptions.DIJKSTRA_BI.equals(opts.getAlgorithm()))
         {
-            algo = new DijkstraBidirectionRef(graph, prepareFlagEncoder, prepareWeighting, traversalMode)
+            algo = new DijkstraBidirectionRef(graph, prepareFlagEncoder, algoWeighting, traversalMode,
+                    searchStatePool)
             {
                 @Override
                 protected void initCollections( int nodes )
@@ -897,7 +1653,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 @Override
                 protected Path createAndInitPath()
                 {
-                    bestPath = new Path4CH(graph, graph.getBaseGraph(), flagEncoder);
+                    bestPath = createPath(graph, flagEncoder, customizedWeighting);
                     return bestPath;
                 }
 
@@ -910,7 +1666,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 @Override
                 public String toString()
                 {
-                    return getName() + "|" + prepareWeighting;
+                    return getName() + "|" + algoWeighting;
                 }
             };
         } else
@@ -922,28 +1678,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return algo;
     }
 
-    private static class PriorityNode implements Comparable<PriorityNode>
+    private static PathBidirRef createPath( Graph graph, FlagEncoder encoder, CustomizedWeighting customizedWeighting )
     {
-        int node;
-        int priority;
+        if (customizedWeighting != null)
+            return new Path4CustomizedCH(graph, graph.getBaseGraph(), encoder, customizedWeighting);
 
-        public PriorityNode( int node, int priority )
-        {
-            this.node = node;
-            this.priority = priority;
-        }
-
-        @Override
-        public String toString()
-        {
-            return node + " (" + priority + ")";
-        }
-
-        @Override
-        public int compareTo( PriorityNode o )
-        {
-            return priority - o.priority;
-        }
+        return new Path4CH(graph, graph.getBaseGraph(), encoder);
     }
 
     class Shortcut
@@ -0,0 +1,261 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import java.util.Arrays;
+
+/**
+ * Collects the shortcuts found while contracting one node without creating an object per
+ * shortcut. The properties of the shortcuts are stored in primitive arrays and accessed via their
+ * index which follows the insertion order. Like the former Shortcut map a shortcut is identified
+ * by from, to and weight: an open addressing table maps the long key from|to to the most recently
+ * added shortcut, shortcuts with the same nodes but a different weight are chained.
+ * <p>
+ * The table is reused for every node, so clear only resets the used slots.
+ */
+final class ShortcutTable
+{
+    private static final int NO_ENTRY = -1;
+    private long[] slotKeys;
+    private int[] slotHeads;
+    private int slotMask;
+    private int[] usedSlots;
+    private int usedSlotCount;
+    private int size;
+    private int[] from;
+    private int[] to;
+    private int[] next;
+    private int[] skippedEdge1;
+    private int[] skippedEdge2;
+    private int[] originalEdges;
+    private double[] weight;
+    private double[] dist;
+    private long[] flags;
+
+    ShortcutTable()
+    {
+        this(16);
+    }
+
+    ShortcutTable( int capacity )
+    {
+        capacity = Math.max(4, capacity);
+        int slots = Integer.highestOneBit(capacity * 2 - 1) * 2;
+        slotKeys = new long[slots];
+        slotHeads = new int[slots];
+        Arrays.fill(slotHeads, NO_ENTRY);
+        slotMask = slots - 1;
+        usedSlots = new int[slots];
+        from = new int[capacity];
+        to = new int[capacity];
+        next = new int[capacity];
+        skippedEdge1 = new int[capacity];
+        skippedEdge2 = new int[capacity];
+        originalEdges = new int[capacity];
+        weight = new double[capacity];
+        dist = new double[capacity];
+        flags = new long[capacity];
+    }
+
+    void clear()
+    {
+        for (int i = 0; i < usedSlotCount; i++)
+        {
+            slotHeads[usedSlots[i]] = NO_ENTRY;
+        }
+        usedSlotCount = 0;
+        size = 0;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the index of the shortcut with the identical nodes and weight or -1 if not found
+     */
+    int find( int fromNode, int toNode, double scWeight )
+    {
+        int slot = findSlot(toKey(fromNode, toNode));
+        long weightBits = Double.doubleToLongBits(scWeight);
+        for (int index = slotHeads[slot]; index != NO_ENTRY; index = next[index])
+        {
+            if (Double.doubleToLongBits(weight[index]) == weightBits)
+                return index;
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Adds a new shortcut without checking if an identical one exists.
+     *
+     * @return the index of the new shortcut
+     */
+    int add( int fromNode, int toNode, double scWeight, double scDist )
+    {
+        if (size == from.length)
+            grow();
+
+        long key = toKey(fromNode, toNode);
+        int slot = findSlot(key);
+        if (slotHeads[slot] == NO_ENTRY)
+        {
+            slotKeys[slot] = key;
+            usedSlots[usedSlotCount++] = slot;
+        }
+
+        int index = size++;
+        from[index] = fromNode;
+        to[index] = toNode;
+        weight[index] = scWeight;
+        dist[index] = scDist;
+        flags[index] = PrepareEncoder.getScFwdDir();
+        next[index] = slotHeads[slot];
+        slotHeads[slot] = index;
+        return index;
+    }
+
+    private static long toKey( int fromNode, int toNode )
+    {
+        return (long) fromNode << 32 | (toNode & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the slot of the specified key or the empty slot where it has to be added
+     */
+    private int findSlot( long key )
+    {
+        // mix the bits as neighboring node ids are common
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ hash >>> 32) & slotMask;
+        while (slotHeads[slot] != NO_ENTRY && slotKeys[slot] != key)
+        {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    private void grow()
+    {
+        int capacity = from.length * 2;
+        from = Arrays.copyOf(from, capacity);
+        to = Arrays.copyOf(to, capacity);
+        next = Arrays.copyOf(next, capacity);
+        skippedEdge1 = Arrays.copyOf(skippedEdge1, capacity);
+        skippedEdge2 = Arrays.copyOf(skippedEdge2, capacity);
+        originalEdges = Arrays.copyOf(originalEdges, capacity);
+        weight = Arrays.copyOf(weight, capacity);
+        dist = Arrays.copyOf(dist, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+
+        // keep the load factor of the slots below 0.5
+        int slots = slotKeys.length * 2;
+        slotKeys = new long[slots];
+        slotHeads = new int[slots];
+        Arrays.fill(slotHeads, NO_ENTRY);
+        slotMask = slots - 1;
+        usedSlots = new int[slots];
+        usedSlotCount = 0;
+        for (int index = 0; index < size; index++)
+        {
+            long key = toKey(from[index], to[index]);
+            int slot = findSlot(key);
+            if (slotHeads[slot] == NO_ENTRY)
+            {
+                slotKeys[slot] = key;
+                usedSlots[usedSlotCount++] = slot;
+            }
+            next[index] = slotHeads[slot];
+            slotHeads[slot] = index;
+        }
+    }
+
+    /**
+     * @return a copy of this table which is not changed when this table is reused
+     */
+    ShortcutTable copy()
+    {
+        ShortcutTable copy = new ShortcutTable(size);
+        for (int index = 0; index < size; index++)
+        {
+            int copyIndex = copy.add(from[index], to[index], weight[index], dist[index]);
+            copy.skippedEdge1[copyIndex] = skippedEdge1[index];
+            copy.skippedEdge2[copyIndex] = skippedEdge2[index];
+            copy.originalEdges[copyIndex] = originalEdges[index];
+            copy.flags[copyIndex] = flags[index];
+        }
+        return copy;
+    }
+
+    int getFrom( int index )
+    {
+        return from[index];
+    }
+
+    int getTo( int index )
+    {
+        return to[index];
+    }
+
+    double getWeight( int index )
+    {
+        return weight[index];
+    }
+
+    double getDistance( int index )
+    {
+        return dist[index];
+    }
+
+    int getSkippedEdge1( int index )
+    {
+        return skippedEdge1[index];
+    }
+
+    int getSkippedEdge2( int index )
+    {
+        return skippedEdge2[index];
+    }
+
+    void setSkippedEdges( int index, int edge1, int edge2 )
+    {
+        skippedEdge1[index] = edge1;
+        skippedEdge2[index] = edge2;
+    }
+
+    int getOriginalEdges( int index )
+    {
+        return originalEdges[index];
+    }
+
+    void setOriginalEdges( int index, int value )
+    {
+        originalEdges[index] = value;
+    }
+
+    long getFlags( int index )
+    {
+        return flags[index];
+    }
+
+    void setFlags( int index, long value )
+    {
+        flags[index] = value;
+    }
+}
@@ -40,6 +40,7 @@ public class DynamicWeighting implements Weighting
     protected SpeedProvider speedProvider;
     protected PreferenceProvider preferenceProvider;
     protected ProfileManager profileManager;
+    private DynamicWeightingTable weightingTable;
 
     /**
      * For now used only in BikeGenericFlagEncoder
@@ -67,6 +68,14 @@ public class DynamicWeighting implements Weighting
             this.speedProvider = new EncoderSpeedProvider(encoder);
             this.preferenceProvider = new GenericPreferenceProvider();
         }
+
+        if (encoder instanceof BikeGenericFlagEncoder) {
+            BikeGenericFlagEncoder bikeEncoder = (BikeGenericFlagEncoder) encoder;
+            if (profileManager != null)
+                this.weightingTable = profileManager.getWeightingTable(bikeEncoder);
+            else
+                this.weightingTable = new DynamicWeightingTable(bikeEncoder, null);
+        }
     }
 
     public DynamicWeighting(FlagEncoder encoder)
@@ -74,9 +83,36 @@ public class DynamicWeighting implements Weighting
         this(encoder, new PMap(0), null);
     }
 
+    /**
+     * Specifies the precomputed table used to calculate the weight. Use null to calculate the
+     * weight via the speed and preference providers instead.
+     */
+    public DynamicWeighting setWeightingTable( DynamicWeightingTable weightingTable )
+    {
+        if (weightingTable != null && weightingTable.getFlagEncoder() != flagEncoder)
+            throw new IllegalArgumentException("Weighting table was created for " + weightingTable.getFlagEncoder()
+                    + " and not for " + flagEncoder);
+
+        this.weightingTable = weightingTable;
+        return this;
+    }
+
+    public DynamicWeightingTable getWeightingTable()
+    {
+        return weightingTable;
+    }
+
     @Override
     public double calcWeight( EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId )
     {
+        if (weightingTable != null)
+        {
+            // add direction penalties at start/stop/via points
+            boolean penalizeEdge = edgeState.getBoolean(EdgeIteratorState.K_UNFAVORED_EDGE, reverse, false);
+            return weightingTable.calcWeight(edgeState.getFlags(), edgeState.getDistance(), reverse,
+                    penalizeEdge ? heading_penalty : 0);
+        }
+
         double speed = speedProvider.calcSpeed(edgeState, reverse);
 
         if (speed == 0)
@@ -97,7 +133,7 @@ public class DynamicWeighting implements Weighting
         int wayType = (int) flagEncoder.getDouble(edgeState.getFlags(), DynamicWeighting.WAY_TYPE_KEY);
         int priority = PriorityCode.UNCHANGED.getValue();
         double incDistPercentage = flagEncoder.getDouble(edgeState.getFlags(), DynamicWeighting.INC_DIST_PERCENTAGE_KEY) / 100;
-        boolean pavedSurface = ((wayType >= 1 && wayType <= 4) || wayType == 7 || wayType == 13);
+        boolean pavedSurface = isPavedSurface(wayType);
 
         double incSlope;
         double incDist2DSum;
@@ -124,6 +160,11 @@ public class DynamicWeighting implements Weighting
 
     }
 
+    static boolean isPavedSurface( int wayType )
+    {
+        return (wayType >= 1 && wayType <= 4) || wayType == 7 || wayType == 13;
+    }
+
     @Override
     public double getMinWeight(double distance) {
         return distance / flagEncoder.getMaxSpeed();
@@ -0,0 +1,171 @@
+package com.graphhopper.routing.util;
+
+import com.graphhopper.util.profiles.ProfileManager;
+import com.graphhopper.util.profiles.RidersProfile;
+
+import static com.graphhopper.util.Helper.keepIn;
+
+/**
+ * Compiled form of the speed and preference providers of the DynamicWeighting for one rider
+ * profile. The speed factors per way type and slope and the final priority per way type, slope
+ * combination and slope distance class are precomputed into flat arrays, so that calculating the
+ * weight of an edge only needs a few bit extractions and array reads.
+ * <p>
+ * The speed of an edge is linear in the speed stored in the flags, so only the factors for the
+ * inclining and declining part of an edge are stored and not the speed itself. The slope
+ * preference only depends on the distance via GenericPreferenceProvider.MIN_SLOPE_DISTANCE.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class DynamicWeightingTable {
+
+    private final BikeGenericFlagEncoder encoder;
+    private final EncodedValue wayTypeEncoder;
+    private final EncodedDoubleValue inclineSlopeEncoder;
+    private final EncodedDoubleValue declineSlopeEncoder;
+    private final EncodedDoubleValue inclineDistancePercentageEncoder;
+    private final int slopeValues;
+    // if false a zero speed in the flags results in the minimum speed and not in a blocked edge
+    private final boolean blockZeroSpeed;
+    // indexed by wayType * slopeValues + slope
+    private final double[] inclineSpeedFactors;
+    private final double[] declineSpeedFactors;
+    // indexed by ((wayType * slopeValues + inclineSlope) * slopeValues + declineSlope) * 4 + distance class
+    private final byte[] priorities;
+    // indexed by priority
+    private final double[] priorityDivisors;
+
+    public DynamicWeightingTable(BikeGenericFlagEncoder encoder, ProfileManager profileManager){
+        if (!encoder.isRegistered())
+            throw new IllegalStateException("Make sure you add the FlagEncoder " + encoder + " to an EncodingManager before using it elsewhere");
+
+        this.encoder = encoder;
+        this.wayTypeEncoder = encoder.wayTypeEncoder;
+        this.inclineSlopeEncoder = encoder.inclineSlopeEncoder;
+        this.declineSlopeEncoder = encoder.declineSlopeEncoder;
+        this.inclineDistancePercentageEncoder = encoder.inclineDistancePercentageEncoder;
+        this.slopeValues = (int) Math.max(inclineSlopeEncoder.getMaxValue(), declineSlopeEncoder.getMaxValue()) + 1;
+
+        int wayTypes = (int) wayTypeEncoder.getMaxValue() + 1;
+        boolean hasProfile = profileManager != null && profileManager.hasProfile();
+        boolean filteredSpeeds = hasProfile && profileManager.hasFilteredSpeeds();
+        this.blockZeroSpeed = !filteredSpeeds;
+
+        inclineSpeedFactors = new double[wayTypes * slopeValues];
+        declineSpeedFactors = new double[wayTypes * slopeValues];
+        for (int wayType = 0; wayType < wayTypes; wayType++) {
+            for (int slope = 0; slope < slopeValues; slope++) {
+                int index = wayType * slopeValues + slope;
+                if (filteredSpeeds) {
+                    int incIndex = slope > RidersProfile.SLOPES / 2 ? RidersProfile.SLOPES : RidersProfile.SLOPES / 2 + slope;
+                    int decIndex = slope > RidersProfile.SLOPES / 2 ? 0 : RidersProfile.SLOPES / 2 - slope;
+                    inclineSpeedFactors[index] = profileManager.getSpeedPerSlope(wayType, incIndex, 1, encoder);
+                    declineSpeedFactors[index] = profileManager.getSpeedPerSlope(wayType, decIndex, 1, encoder);
+                } else {
+                    inclineSpeedFactors[index] = EncoderSpeedProvider.calcInclineFactor((double) slope / 100);
+                    declineSpeedFactors[index] = EncoderSpeedProvider.calcDeclineFactor((double) slope / 100);
+                }
+            }
+        }
+
+        PreferenceProvider preferenceProvider = hasProfile
+                ? new ProfilePreferenceProvider(profileManager) : new GenericPreferenceProvider();
+        double shortDistance = 0;
+        double longDistance = GenericPreferenceProvider.MIN_SLOPE_DISTANCE + 1;
+        priorities = new byte[wayTypes * slopeValues * slopeValues * 4];
+        for (int wayType = 0; wayType < wayTypes; wayType++) {
+            boolean pavedSurface = DynamicWeighting.isPavedSurface(wayType);
+            int wayTypePriority = PriorityCode.UNCHANGED.getValue()
+                    + preferenceProvider.calcWayTypePreference(wayType)
+                    + preferenceProvider.calcSurfacePreference(pavedSurface);
+            for (int incSlope = 0; incSlope < slopeValues; incSlope++) {
+                for (int decSlope = 0; decSlope < slopeValues; decSlope++) {
+                    int index = getPriorityIndex(wayType, incSlope, decSlope, false, false);
+                    for (int distanceClass = 0; distanceClass < 4; distanceClass++) {
+                        double incDist = (distanceClass & 2) != 0 ? longDistance : shortDistance;
+                        double decDist = (distanceClass & 1) != 0 ? longDistance : shortDistance;
+                        int priority = wayTypePriority + preferenceProvider.calcSlopePreference(wayType,
+                                (double) incSlope / 100, incDist, (double) decSlope / 100, decDist);
+                        priorities[index + distanceClass] = (byte) keepIn(priority,
+                                PriorityCode.WORST.getValue(), PriorityCode.BEST.getValue());
+                    }
+                }
+            }
+        }
+
+        priorityDivisors = new double[PriorityCode.BEST.getValue() + 1];
+        for (int priority = 0; priority < priorityDivisors.length; priority++) {
+            priorityDivisors[priority] = Math.pow(0.5 + (double) priority / PriorityCode.BEST.getValue(), 2);
+        }
+    }
+
+    /**
+     * @return the weight of an edge with the specified flags and distance, heading penalty in
+     * seconds is added to the time
+     */
+    public double calcWeight(long flags, double distance, boolean reverse, double headingPenalty){
+        double baseSpeed = encoder.getSpeed(flags);
+        if (baseSpeed == 0 && blockZeroSpeed)
+            return Double.POSITIVE_INFINITY;
+
+        int wayType = (int) wayTypeEncoder.getValue(flags);
+        int incSlope;
+        int decSlope;
+        double incDistPercentage = inclineDistancePercentageEncoder.getDoubleValue(flags) / 100;
+        if (reverse) {
+            incSlope = (int) declineSlopeEncoder.getDoubleValue(flags);
+            decSlope = (int) inclineSlopeEncoder.getDoubleValue(flags);
+            incDistPercentage = 1.0 - incDistPercentage;
+        } else {
+            incSlope = (int) inclineSlopeEncoder.getDoubleValue(flags);
+            decSlope = (int) declineSlopeEncoder.getDoubleValue(flags);
+        }
+
+        double speed = calcSpeed(baseSpeed, wayType, incSlope, decSlope, incDistPercentage);
+        double time = distance / speed * DynamicWeighting.SPEED_CONV + headingPenalty;
+
+        double incDist = distance * incDistPercentage;
+        double decDist = distance - incDist;
+        int index = getPriorityIndex(wayType, incSlope, decSlope,
+                incDist > GenericPreferenceProvider.MIN_SLOPE_DISTANCE,
+                decDist > GenericPreferenceProvider.MIN_SLOPE_DISTANCE);
+        return time / priorityDivisors[priorities[index]];
+    }
+
+    /**
+     * @return the speed in km/h for the edge with the specified flags
+     */
+    public double calcSpeed(long flags, boolean reverse){
+        double baseSpeed = encoder.getSpeed(flags);
+        if (baseSpeed == 0 && blockZeroSpeed)
+            return 0;
+
+        int wayType = (int) wayTypeEncoder.getValue(flags);
+        double incDistPercentage = inclineDistancePercentageEncoder.getDoubleValue(flags) / 100;
+        if (reverse)
+            return calcSpeed(baseSpeed, wayType, (int) declineSlopeEncoder.getDoubleValue(flags),
+                    (int) inclineSlopeEncoder.getDoubleValue(flags), 1.0 - incDistPercentage);
+
+        return calcSpeed(baseSpeed, wayType, (int) inclineSlopeEncoder.getDoubleValue(flags),
+                (int) declineSlopeEncoder.getDoubleValue(flags), incDistPercentage);
+    }
+
+    private double calcSpeed(double baseSpeed, int wayType, int incSlope, int decSlope, double incDistPercentage){
+        double factor = inclineSpeedFactors[wayType * slopeValues + incSlope] * incDistPercentage
+                + declineSpeedFactors[wayType * slopeValues + decSlope] * (1 - incDistPercentage);
+        return keepIn(baseSpeed * factor, BikeGenericFlagEncoder.PUSHING_SECTION_SPEED / 2, 50);
+    }
+
+    private int getPriorityIndex(int wayType, int incSlope, int decSlope, boolean longIncline, boolean longDecline){
+        int index = ((wayType * slopeValues + incSlope) * slopeValues + decSlope) << 2;
+        if (longIncline)
+            index |= 2;
+        if (longDecline)
+            index |= 1;
+        return index;
+    }
+
+    public BikeGenericFlagEncoder getFlagEncoder(){
+        return encoder;
+    }
+}
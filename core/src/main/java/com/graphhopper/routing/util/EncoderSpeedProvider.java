@@ -40,10 +40,8 @@ public class EncoderSpeedProvider implements SpeedProvider {
 
 
         // use weighted mean so that longer incline infuences speed more than shorter
-        double fwdFaster = 1 + 30 * keepIn(decElevation, 0, 0.2);
-        fwdFaster = Math.sqrt(fwdFaster);
-        double fwdSlower = 1 - 5 * keepIn(incElevation, 0, 0.2);
-        fwdSlower = fwdSlower * fwdSlower;
+        double fwdFaster = calcDeclineFactor(decElevation);
+        double fwdSlower = calcInclineFactor(incElevation);
         double incDist2DSum = edgeState.getDistance() * incDistPercentage;
         double decDist2DSum = edgeState.getDistance() - incDist2DSum;
         adjustedSpeed = keepIn(speed * (fwdSlower * incDist2DSum + fwdFaster * decDist2DSum) / edgeState.getDistance(), BikeGenericFlagEncoder.PUSHING_SECTION_SPEED / 2, 50);
@@ -51,4 +49,19 @@ public class EncoderSpeedProvider implements SpeedProvider {
         return adjustedSpeed;
     }
 
+    /**
+     * @return the factor the speed is multiplied with on the declining part of an edge
+     */
+    static double calcDeclineFactor(double decElevation) {
+        return Math.sqrt(1 + 30 * keepIn(decElevation, 0, 0.2));
+    }
+
+    /**
+     * @return the factor the speed is multiplied with on the inclining part of an edge
+     */
+    static double calcInclineFactor(double incElevation) {
+        double fwdSlower = 1 - 5 * keepIn(incElevation, 0, 0.2);
+        return fwdSlower * fwdSlower;
+    }
+
 }
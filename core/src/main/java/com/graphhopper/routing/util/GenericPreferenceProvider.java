@@ -3,6 +3,11 @@ package com.graphhopper.routing.util;
 
 public class GenericPreferenceProvider implements PreferenceProvider {
 
+    /**
+     * The slope of an inclining or declining part shorter than this distance in meter is ignored
+     */
+    public static final double MIN_SLOPE_DISTANCE = 10;
+
     @Override
     public int calcWayTypePreference(int wayType) {
         int preference = 0;
@@ -78,16 +83,16 @@ public class GenericPreferenceProvider implements PreferenceProvider {
         int preference = 0;
 
         if(wayType >= 8 && wayType <=12){
-            if(incDist > 10 && incSlope > 0.03) {
+            if(incDist > MIN_SLOPE_DISTANCE && incSlope > 0.03) {
                 preference = -2;
             }
 
-            if(decDist > 10 && decSlope > 0.2) {
+            if(decDist > MIN_SLOPE_DISTANCE && decSlope > 0.2) {
                 preference = -2;
             }
         }
 
-        if(incDist > 10 && incSlope > 0.2) {
+        if(incDist > MIN_SLOPE_DISTANCE && incSlope > 0.2) {
             preference = -2;
         }
 
@@ -45,6 +45,7 @@ public class PrepareRoutingSubnetworks
     private int minNetworkSize = 200;
     private int minOneWayNetworkSize = 0;
     private int subnetworks = -1;
+    private boolean keepNodeIds = false;
     private final AtomicInteger maxEdgesPerNode = new AtomicInteger(0);
     private final List<FlagEncoder> encoders;
 
@@ -66,6 +67,16 @@ public class PrepareRoutingSubnetworks
         return this;
     }
 
+    /**
+     * If true the edges of small subnetworks are only blocked and no node is removed, so the node
+     * ids stay the same. Default is false.
+     */
+    public PrepareRoutingSubnetworks setKeepNodeIds( boolean keepNodeIds )
+    {
+        this.keepNodeIds = keepNodeIds;
+        return this;
+    }
+
     public void doWork()
     {
         if (minNetworkSize <= 0 && minOneWayNetworkSize <= 0)
@@ -85,6 +96,12 @@ public class PrepareRoutingSubnetworks
             logger.info(components.size() + " subnetworks found for " + encoder + ", " + Helper.getMemInfo());
         }
 
+        if (keepNodeIds)
+        {
+            logger.info("blocked subnetworks (" + subnetworks + "), unvisited-dead-end-nodes (" + unvisitedDeadEnds + ")");
+            return;
+        }
+
         markNodesRemovedIfUnreachable();
 
         logger.info("optimize to remove subnetworks (" + subnetworks + "), "
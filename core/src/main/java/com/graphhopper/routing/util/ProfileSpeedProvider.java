@@ -9,14 +9,20 @@ import static com.graphhopper.util.Helper.keepIn;
 public class ProfileSpeedProvider extends EncoderSpeedProvider {
 
     private ProfileManager profileManager;
+    private DynamicWeightingTable weightingTable;
 
     public ProfileSpeedProvider(FlagEncoder flagEncoder, ProfileManager profileManager){
         super(flagEncoder);
         this.profileManager = profileManager;
+        if (flagEncoder instanceof BikeGenericFlagEncoder)
+            this.weightingTable = profileManager.getWeightingTable((BikeGenericFlagEncoder) flagEncoder);
     }
 
     @Override
     public double calcSpeed(EdgeIteratorState edgeIteratorState, boolean reverse) {
+        if (weightingTable != null)
+            return weightingTable.calcSpeed(edgeIteratorState.getFlags(), reverse);
+
         return getUserSpeed(edgeIteratorState, reverse);
     }
 
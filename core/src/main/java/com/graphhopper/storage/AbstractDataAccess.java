@@ -239,6 +239,12 @@ public abstract class AbstractDataAccess implements DataAccess
         return true;
     }
 
+    @Override
+    public boolean loadSegment( int segment )
+    {
+        return false;
+    }
+
     public boolean isStoring()
     {
         return true;
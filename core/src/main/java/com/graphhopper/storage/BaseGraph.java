@@ -76,6 +76,8 @@ class BaseGraph implements Graph
     // as we use integer index in 'egdes' area => 'geometry' area is limited to 2GB (currently ~311M for world wide)
     final DataAccess wayGeometry;
     private int maxGeoRef;
+    // since geometry version 4 the pillar nodes are stored as deltas in variable-length format
+    boolean compressedGeometry = true;
     final NameIndex nameIndex;
     final BitUtil bitUtil;
     private final Directory dir;
@@ -371,6 +373,14 @@ class BaseGraph implements Graph
         listener.freeze();
     }
 
+    /**
+     * Allows to modify the graph again, the CHGraphs on top have to discard their shortcuts.
+     */
+    synchronized void unfreeze()
+    {
+        frozen = false;
+    }
+
     synchronized boolean isFrozen()
     {
         return frozen;
@@ -596,10 +606,16 @@ class BaseGraph implements Graph
         // name
         nameIndex.copyTo(clonedG.nameIndex);
 
-        // geometry
-        setWayGeometryHeader();
-        wayGeometry.copyTo(clonedG.wayGeometry);
-        clonedG.loadWayGeometryHeader();
+        // geometry, the format of the copy is defined by the geometry.version it was created with
+        if (clonedG.compressedGeometry == compressedGeometry)
+        {
+            setWayGeometryHeader();
+            wayGeometry.copyTo(clonedG.wayGeometry);
+            clonedG.loadWayGeometryHeader();
+        } else
+        {
+            copyWayGeometryTo(clonedG);
+        }
 
         // extStorage
         extStorage.copyTo(clonedG.extStorage);
@@ -610,6 +626,21 @@ class BaseGraph implements Graph
             clonedG.removedNodes = removedNodes.copyTo(new GHBitSetImpl());
     }
 
+    /**
+     * Writes the geometry of all edges in the format of the specified graph, e.g. if a graph with
+     * uncompressed geometry is copied into a new storage. The edges have to be copied already.
+     */
+    private void copyWayGeometryTo( BaseGraph clonedG )
+    {
+        clonedG.maxGeoRef = 4;
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            long edgePointer = (long) edge * edgeEntryBytes;
+            if (edges.getInt(edgePointer + E_GEO) > 0)
+                clonedG.setWayGeometry_(fetchWayGeometry_(edgePointer, false, 0, 0, 0), edgePointer, false);
+        }
+    }
+
     protected void trimToSize()
     {
         long nodeCap = (long) nodeCount * nodeEntryBytes;
@@ -822,39 +853,91 @@ class BaseGraph implements Graph
                 throw new IllegalArgumentException("Cannot use pointlist which is " + pillarNodes.getDimension()
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
-            int len = pillarNodes.getSize();
-            int dim = nodeAccess.getDimension();
-            int tmpRef = nextGeoRef(len * dim);
-            edges.setInt(edgePointer + E_GEO, tmpRef);
-            long geoRef = (long) tmpRef * 4;
-            byte[] bytes = new byte[len * dim * 4 + 4];
-            ensureGeometry(geoRef, bytes.length);
-            bitUtil.fromInt(bytes, len, 0);
             if (reverse)
                 pillarNodes.reverse();
 
-            int tmpOffset = 4;
-            boolean is3D = nodeAccess.is3D();
-            for (int i = 0; i < len; i++)
+            if (compressedGeometry)
+                setCompressedWayGeometry(pillarNodes, edgePointer);
+            else
+                setUncompressedWayGeometry(pillarNodes, edgePointer);
+        } else
+        {
+            edges.setInt(edgePointer + E_GEO, 0);
+        }
+    }
+
+    private void setUncompressedWayGeometry( PointList pillarNodes, long edgePointer )
+    {
+        int len = pillarNodes.getSize();
+        int dim = nodeAccess.getDimension();
+        int tmpRef = nextGeoRef(len * dim);
+        edges.setInt(edgePointer + E_GEO, tmpRef);
+        long geoRef = (long) tmpRef * 4;
+        byte[] bytes = new byte[len * dim * 4 + 4];
+        ensureGeometry(geoRef, bytes.length);
+        bitUtil.fromInt(bytes, len, 0);
+
+        int tmpOffset = 4;
+        boolean is3D = nodeAccess.is3D();
+        for (int i = 0; i < len; i++)
+        {
+            double lat = pillarNodes.getLatitude(i);
+            bitUtil.fromInt(bytes, Helper.degreeToInt(lat), tmpOffset);
+            tmpOffset += 4;
+            bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
+            tmpOffset += 4;
+
+            if (is3D)
             {
-                double lat = pillarNodes.getLatitude(i);
-                bitUtil.fromInt(bytes, Helper.degreeToInt(lat), tmpOffset);
+                bitUtil.fromInt(bytes, Helper.eleToInt(pillarNodes.getElevation(i)), tmpOffset);
                 tmpOffset += 4;
-                bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
-                tmpOffset += 4;
-
-                if (is3D)
-                {
-                    bitUtil.fromInt(bytes, Helper.eleToInt(pillarNodes.getElevation(i)), tmpOffset);
-                    tmpOffset += 4;
-                }
             }
+        }
 
-            wayGeometry.setBytes(geoRef, bytes, bytes.length);
-        } else
+        wayGeometry.setBytes(geoRef, bytes, bytes.length);
+    }
+
+    /**
+     * Stores the byte count, then the point count and the first point followed by the differences
+     * to the previous point, all as variable-length values. Neighbouring pillar nodes are close
+     * together so most differences need only one or two bytes instead of four. The entry is
+     * padded to full integers as the geoRef in the edges is an integer index.
+     */
+    private void setCompressedWayGeometry( PointList pillarNodes, long edgePointer )
+    {
+        int len = pillarNodes.getSize();
+        boolean is3D = nodeAccess.is3D();
+        VLongStorage vlong = new VLongStorage(4 + len * nodeAccess.getDimension() * 3);
+        // reserve the byte count
+        vlong.seek(4);
+        vlong.writeVLong(len);
+        int prevLat = 0, prevLon = 0, prevEle = 0;
+        for (int i = 0; i < len; i++)
         {
-            edges.setInt(edgePointer + E_GEO, 0);
+            int lat = Helper.degreeToInt(pillarNodes.getLatitude(i));
+            int lon = Helper.degreeToInt(pillarNodes.getLongitude(i));
+            vlong.writeSignedVLong(lat - prevLat);
+            vlong.writeSignedVLong(lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D)
+            {
+                int ele = Helper.eleToInt(pillarNodes.getElevation(i));
+                vlong.writeSignedVLong(ele - prevEle);
+                prevEle = ele;
+            }
         }
+
+        int byteCount = (int) vlong.getPosition();
+        byte[] bytes = vlong.getBytes();
+        bitUtil.fromInt(bytes, byteCount - 4, 0);
+        int ints = (byteCount + 3) / 4;
+        // nextGeoRef reserves one more integer for the size
+        int tmpRef = nextGeoRef(ints - 1);
+        edges.setInt(edgePointer + E_GEO, tmpRef);
+        long geoRef = (long) tmpRef * 4;
+        ensureGeometry(geoRef, ints * 4);
+        wayGeometry.setBytes(geoRef, bytes, byteCount);
     }
 
     private PointList fetchWayGeometry_( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode )
@@ -862,14 +945,22 @@ class BaseGraph implements Graph
         long geoRef = edges.getInt(edgePointer + E_GEO);
         int count = 0;
         byte[] bytes = null;
+        VLongStorage vlong = null;
         if (geoRef > 0)
         {
             geoRef *= 4;
-            count = wayGeometry.getInt(geoRef);
-
-            geoRef += 4;
-            bytes = new byte[count * nodeAccess.getDimension() * 4];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
+            if (compressedGeometry)
+            {
+                bytes = new byte[wayGeometry.getInt(geoRef)];
+                wayGeometry.getBytes(geoRef + 4, bytes, bytes.length);
+                vlong = new VLongStorage(bytes);
+                count = (int) vlong.readVLong();
+            } else
+            {
+                count = wayGeometry.getInt(geoRef);
+                bytes = new byte[count * nodeAccess.getDimension() * 4];
+                wayGeometry.getBytes(geoRef + 4, bytes, bytes.length);
+            }
         } else if (mode == 0)
             return PointList.EMPTY;
 
@@ -884,20 +975,40 @@ class BaseGraph implements Graph
                 pillarNodes.add(nodeAccess, baseNode);
         }
 
-        int index = 0;
-        for (int i = 0; i < count; i++)
+        if (vlong != null)
         {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D())
+            // decode the differences directly into the point list
+            int lat = 0, lon = 0, ele = 0;
+            for (int i = 0; i < count; i++)
             {
-                pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
-                index += 4;
-            } else
+                lat += (int) vlong.readSignedVLong();
+                lon += (int) vlong.readSignedVLong();
+                if (nodeAccess.is3D())
+                {
+                    ele += (int) vlong.readSignedVLong();
+                    pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.intToEle(ele));
+                } else
+                {
+                    pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+                }
+            }
+        } else
+        {
+            int index = 0;
+            for (int i = 0; i < count; i++)
             {
-                pillarNodes.add(lat, lon);
+                double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
+                index += 4;
+                double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
+                index += 4;
+                if (nodeAccess.is3D())
+                {
+                    pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
+                    index += 4;
+                } else
+                {
+                    pillarNodes.add(lat, lon);
+                }
             }
         }
 
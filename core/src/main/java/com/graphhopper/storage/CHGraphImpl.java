@@ -281,6 +281,15 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph>
         }
     }
 
+    /**
+     * Discards all shortcuts. The edge refs and levels are initialized again on freeze and on
+     * preparation.
+     */
+    void _unfreeze()
+    {
+        shortcutCount = 0;
+    }
+
     String toDetailsString()
     {
         return toString() + ", shortcuts:" + nf(shortcutCount) + ", nodesCH:(" + nodesCH.getCapacity() / Helper.MB + "MB)";
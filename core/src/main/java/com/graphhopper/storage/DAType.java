@@ -53,7 +53,9 @@ public class DAType
      */
     public static final DAType MMAP_RO = new DAType(MemRef.MMAP, true, false, false, false);
     /**
-     * Experimental API. Do not use yet.
+     * The DA object is hold entirely off-heap in native memory, so the garbage collector does not
+     * need to mark it. It will load from disc and flush to it like RAM_STORE. See
+     * UnsafeDataAccess.
      */
     public static final DAType UNSAFE_STORE = new DAType(MemRef.UNSAFE, true, false, true, false);
 
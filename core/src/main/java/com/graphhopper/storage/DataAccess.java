@@ -127,6 +127,14 @@ public interface DataAccess extends Storable<DataAccess>
      */
     int getSegments();
 
+    /**
+     * Reads the specified segment into memory if it is not already there, to avoid slow first
+     * accesses of memory mapped data. Does nothing for in-memory types.
+     * <p>
+     * @return true if the segment was not completely in memory before
+     */
+    boolean loadSegment( int segment );
+
     /**
      * @return the data access type of this object.
      */
@@ -37,6 +37,8 @@ public class GHDirectory implements Directory
     protected final String location;
     private final DAType defaultType;
     private final ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private int lockStripes = SynchedDAWrapper.DEFAULT_STRIPES;
+    private boolean checkBounds = true;
 
     public GHDirectory( String _location, DAType defaultType )
     {
@@ -77,6 +79,29 @@ public class GHDirectory implements Directory
         return byteOrder;
     }
 
+    /**
+     * Specifies the number of locks of a synchronized DataAccess object, see SynchedDAWrapper. Use
+     * 1 for a single lock per object.
+     */
+    public GHDirectory setLockStripes( int lockStripes )
+    {
+        if (lockStripes < 1)
+            throw new IllegalArgumentException("lockStripes must be positive but was " + lockStripes);
+
+        this.lockStripes = lockStripes;
+        return this;
+    }
+
+    /**
+     * Specifies if the off-heap DataAccess objects check every access against their capacity, see
+     * UnsafeDataAccess. Only disable it after testing as an invalid access might crash the JVM.
+     */
+    public GHDirectory setCheckBounds( boolean checkBounds )
+    {
+        this.checkBounds = checkBounds;
+        return this;
+    }
+
     public Directory put( String name, DAType type )
     {
         types.put(name, type);
@@ -97,7 +122,8 @@ public class GHDirectory implements Directory
     public DataAccess find( String name, DAType type )
     {
         DataAccess da = map.get(name);
-        if (da != null)
+        // a closed object cannot be loaded again so replace it with a new one
+        if (da != null && !da.isClosed())
         {
             if (!type.equals(da.getType()))
                 throw new IllegalStateException("Found existing DataAccess object '" + name
@@ -125,11 +151,11 @@ public class GHDirectory implements Directory
             da = new MMapDataAccess(name, location, byteOrder, type.isAllowWrites());
         } else
         {
-            da = new UnsafeDataAccess(name, location, byteOrder);
+            da = new UnsafeDataAccess(name, location, byteOrder, checkBounds);
         }
 
         if (type.isSynched())
-            da = new SynchedDAWrapper(da);
+            da = new SynchedDAWrapper(da, lockStripes);
 
         map.put(name, da);
         return da;
@@ -18,6 +18,7 @@
 package com.graphhopper.storage;
 
 import com.graphhopper.routing.util.*;
+import com.graphhopper.util.Constants;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.shapes.BBox;
@@ -273,6 +274,8 @@ public final class GraphHopperStorage implements GraphStorage, Graph
             if (!bytesForFlags.equalsIgnoreCase("" + encodingManager.getBytesForFlags()))
                 throw new IllegalStateException("Configured graph.bytesForFlags (" + encodingManager.getBytesForFlags() + ") is not equal to loaded " + bytesForFlags);
 
+            baseGraph.compressedGeometry = !properties.get("geometry.version").
+                    equals("" + Constants.VERSION_GEOMETRY_UNCOMPRESSED);
             String dim = properties.get("graph.dimension");
             baseGraph.loadExisting(dim);
 
@@ -345,6 +348,22 @@ public final class GraphHopperStorage implements GraphStorage, Graph
             baseGraph.freeze();
     }
 
+    /**
+     * Removes all shortcuts of the ch graphs and allows to modify the base graph again, e.g. to
+     * apply OSM changes. The ch graphs have to be prepared again before they can be used.
+     */
+    public synchronized void unfreeze()
+    {
+        if (!baseGraph.isFrozen())
+            return;
+
+        for (CHGraphImpl cg : chGraphs)
+        {
+            cg._unfreeze();
+        }
+        baseGraph.unfreeze();
+    }
+
     boolean isFrozen()
     {
         return baseGraph.isFrozen();
@@ -391,6 +391,23 @@ public class MMapDataAccess extends AbstractDataAccess
         return segments.size();
     }
 
+    @Override
+    public boolean loadSegment( int segment )
+    {
+        ByteBuffer bb = segments.get(segment);
+        if (!(bb instanceof MappedByteBuffer))
+            return false;
+
+        // isLoaded is only a hint but cheap as it asks the OS which pages are resident
+        MappedByteBuffer mbb = (MappedByteBuffer) bb;
+        if (mbb.isLoaded())
+            return false;
+
+        // advises the OS to read the whole segment and touches every page
+        mbb.load();
+        return true;
+    }
+
     /**
      * Cleans up MappedByteBuffers. Be sure you bring the segments list in a consistent state
      * afterwards.
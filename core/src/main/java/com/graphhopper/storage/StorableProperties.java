@@ -156,7 +156,8 @@ public class StorableProperties implements Storable<StorableProperties>
         if (!check("edges", Constants.VERSION_EDGE, silent))
             return false;
 
-        if (!check("geometry", Constants.VERSION_GEOMETRY, silent))
+        if (!check("geometry", Constants.VERSION_GEOMETRY, true)
+                && !check("geometry", Constants.VERSION_GEOMETRY_UNCOMPRESSED, silent))
             return false;
 
         if (!check("locationIndex", Constants.VERSION_LOCATION_IDX, silent))
@@ -0,0 +1,327 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.ProgressListener;
+import com.graphhopper.util.StopWatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the segments of memory mapped storages into memory before they are used. Otherwise the
+ * first requests after loading a graph are slow as every page is read on its first access. The
+ * storages are selected by name in the order of their priority. If the byte limit is reached the
+ * storages with the lowest priority are skipped. A name ending with '*' selects all storages with
+ * this prefix, e.g. 'shortcuts_*' for the shortcuts of all CH weightings. In-memory storages are
+ * skipped.
+ * <p>
+ * @author Peter Karich
+ */
+public class StorageWarmup
+{
+    /**
+     * The default storages which are accessed for every route.
+     */
+    public static final String DEFAULT_STORAGES = "location_index,nodes,edges,nodes_ch_*,shortcuts_*,geometry";
+    private int threads = 2;
+    private int threadPriority = Thread.MIN_PRIORITY;
+    private long maxBytes = Long.MAX_VALUE;
+    private ProgressListener progressListener;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private volatile boolean stopped;
+    private Thread backgroundThread;
+
+    /**
+     * Specifies how many segments are read in parallel.
+     */
+    public StorageWarmup setThreads( int threads )
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive but was " + threads);
+
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Specifies the priority of the reading threads, e.g. Thread.MIN_PRIORITY to not slow down
+     * requests which are served while warming up.
+     */
+    public StorageWarmup setThreadPriority( int threadPriority )
+    {
+        if (threadPriority < Thread.MIN_PRIORITY || threadPriority > Thread.MAX_PRIORITY)
+            throw new IllegalArgumentException("Invalid thread priority " + threadPriority);
+
+        this.threadPriority = threadPriority;
+        return this;
+    }
+
+    /**
+     * Specifies the maximum bytes to be read, e.g. the free memory of the server.
+     */
+    public StorageWarmup setMaxBytes( long maxBytes )
+    {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * The listener is called with the bytes processed so far after every segment.
+     */
+    public StorageWarmup setProgressListener( ProgressListener progressListener )
+    {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Starts the warm up of the specified storages in a background thread with the configured
+     * priority and returns immediately. Requests can be served meanwhile, they read the missing
+     * pages on their own. Call stop before the storages are closed.
+     */
+    public synchronized Future<Stats> warmupInBackground( final Directory dir, final String storageNames )
+    {
+        if (backgroundThread != null)
+            throw new IllegalStateException("A warm up is already running");
+
+        stopped = false;
+        FutureTask<Stats> task = new FutureTask<Stats>(new Callable<Stats>()
+        {
+            @Override
+            public Stats call()
+            {
+                try
+                {
+                    Stats stats = warmup(dir, storageNames);
+                    logger.info("warmed up " + dir.getLocation() + (stopped ? " (stopped)" : "") + ", " + stats);
+                    return stats;
+                } catch (RuntimeException ex)
+                {
+                    logger.error("Couldn't warm up " + dir.getLocation(), ex);
+                    throw ex;
+                }
+            }
+        });
+        backgroundThread = new Thread(task, "storage-warmup");
+        backgroundThread.setDaemon(true);
+        backgroundThread.setPriority(threadPriority);
+        backgroundThread.start();
+        return task;
+    }
+
+    /**
+     * Stops a warm up started via warmupInBackground and waits until no segment is read anymore.
+     */
+    public void stop()
+    {
+        Thread thread;
+        synchronized (this)
+        {
+            thread = backgroundThread;
+            backgroundThread = null;
+        }
+        if (thread == null)
+            return;
+
+        // the remaining segments are skipped, only the segments currently read are finished
+        stopped = true;
+        try
+        {
+            thread.join();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the storages with the specified names (comma separated) of the directory into
+     * memory.
+     */
+    public Stats warmup( Directory dir, String storageNames )
+    {
+        List<DataAccess> storages = new ArrayList<DataAccess>();
+        for (String name : storageNames.split(","))
+        {
+            name = name.trim();
+            if (name.isEmpty())
+                continue;
+
+            for (DataAccess da : dir.getAll())
+            {
+                if (storages.contains(da) || da.isClosed() || !da.getType().isMMap())
+                    continue;
+
+                if (name.endsWith("*") ? da.getName().startsWith(name.substring(0, name.length() - 1))
+                        : da.getName().equals(name))
+                    storages.add(da);
+            }
+        }
+        return warmup(storages);
+    }
+
+    /**
+     * Reads the specified storages into memory, the first storage has the highest priority.
+     */
+    public Stats warmup( List<DataAccess> storages )
+    {
+        final Stats stats = new Stats();
+        StopWatch sw = new StopWatch().start();
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        long bytes = 0;
+        for (final DataAccess da : storages)
+        {
+            int segments = da.getSegments();
+            final long segmentBytes = da.getSegmentSize();
+            if (segments == 0 || bytes + segmentBytes > maxBytes)
+            {
+                stats.skippedStorages++;
+                continue;
+            }
+
+            stats.storages++;
+            for (int i = 0; i < segments && bytes + segmentBytes <= maxBytes; i++)
+            {
+                bytes += segmentBytes;
+                final int segment = i;
+                tasks.add(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (stopped)
+                            return;
+
+                        if (da.loadSegment(segment))
+                            stats.loadedSegments.incrementAndGet();
+
+                        stats.segments.incrementAndGet();
+                        long tmp = stats.bytes.addAndGet(segmentBytes);
+                        if (progressListener != null)
+                            progressListener.update(tmp);
+                    }
+                });
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread(r, "storage-warmup-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(threadPriority);
+                return thread;
+            }
+        });
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+            for (Runnable task : tasks)
+            {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        } catch (Exception ex)
+        {
+            throw new RuntimeException("Couldn't warm up storages", ex);
+        } finally
+        {
+            executor.shutdown();
+        }
+        stats.seconds = sw.stop().getSeconds();
+        return stats;
+    }
+
+    public static class Stats
+    {
+        private int storages;
+        private int skippedStorages;
+        private final AtomicInteger segments = new AtomicInteger();
+        private final AtomicInteger loadedSegments = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private float seconds;
+
+        /**
+         * @return the number of storages which were read completely or partially
+         */
+        public int getStorages()
+        {
+            return storages;
+        }
+
+        /**
+         * @return the number of storages which were skipped due to the byte limit
+         */
+        public int getSkippedStorages()
+        {
+            return skippedStorages;
+        }
+
+        public int getSegments()
+        {
+            return segments.get();
+        }
+
+        /**
+         * @return the number of segments which were not in memory and had to be read from disc.
+         * This is an estimation of the page faults which the warm up saved.
+         */
+        public int getLoadedSegments()
+        {
+            return loadedSegments.get();
+        }
+
+        public long getBytes()
+        {
+            return bytes.get();
+        }
+
+        public float getSeconds()
+        {
+            return seconds;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "storages:" + storages + " (skipped:" + skippedStorages + "), segments:" + getSegments()
+                    + " (not in memory:" + getLoadedSegments() + "), MB:" + getBytes() / Helper.MB
+                    + ", took:" + seconds + "s";
+        }
+    }
+}
@@ -17,140 +17,396 @@
  */
 package com.graphhopper.storage;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
- * A simple wrapper to synchronize every DataAccess object.
+ * A wrapper to make every DataAccess object thread safe. Instead of one lock for all accesses the
+ * segments are guarded by striped locks: the segment of a position is guarded by the lock
+ * 'segment % stripes'. So threads accessing different segments do not block each other, e.g. the
+ * threads of the CH preparation or of the import.
+ * <p>
+ * Memory visibility: all values written to a segment before the lock of the segment is released
+ * are visible to every thread accessing the same segment afterwards. There is no ordering
+ * guarantee between different segments, a reader which needs the writes of several segments has
+ * to synchronize with the writer itself, e.g. via Thread.join or an ExecutorService. Operations
+ * changing the structure (create, loadExisting, ensureCapacity, trimTo, flush, close, ...)
+ * acquire all locks and are visible to every subsequent access. The header has its own lock.
+ * <p>
+ * With one stripe this behaves like a single global lock.
  * <p>
  * @author Peter Karich
  */
 class SynchedDAWrapper implements DataAccess
 {
+    static final int DEFAULT_STRIPES = 64;
     private final DataAccess inner;
     private final DAType type;
+    private final ReentrantLock[] locks;
+    private final int stripeMask;
+    private final Object headerLock = new Object();
+    private volatile int segmentSizePower;
+    private volatile long capacity;
 
     public SynchedDAWrapper( DataAccess inner )
     {
+        this(inner, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes the number of locks, will be rounded up to a power of 2
+     */
+    public SynchedDAWrapper( DataAccess inner, int stripes )
+    {
+        if (stripes < 1)
+            throw new IllegalArgumentException("stripes must be positive but was " + stripes);
+
         this.inner = inner;
         this.type = new DAType(inner.getType(), true);
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes)
+            size <<= 1;
+
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+        stripeMask = size - 1;
+        update();
+    }
+
+    int getStripes()
+    {
+        return locks.length;
+    }
+
+    /**
+     * Caches the values which are read without a lock. Must be called while holding all locks.
+     */
+    private void update()
+    {
+        segmentSizePower = Integer.numberOfTrailingZeros(inner.getSegmentSize());
+        capacity = inner.getCapacity();
+    }
+
+    private ReentrantLock lockFor( long bytePos )
+    {
+        ReentrantLock lock = locks[(int) (bytePos >>> segmentSizePower) & stripeMask];
+        lock.lock();
+        return lock;
+    }
+
+    private void lockAll()
+    {
+        for (ReentrantLock lock : locks)
+        {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll()
+    {
+        for (int i = locks.length - 1; i >= 0; i--)
+        {
+            locks[i].unlock();
+        }
+    }
+
+    /**
+     * Locks the stripes of the segments of the first and the last byte in ascending order to avoid
+     * dead locks. Like the underlying implementations the range may cover at most two segments.
+     */
+    private void lockRange( long bytePos, int length )
+    {
+        int first = (int) (bytePos >>> segmentSizePower) & stripeMask;
+        int last = (int) ((bytePos + Math.max(length, 1) - 1) >>> segmentSizePower) & stripeMask;
+        locks[Math.min(first, last)].lock();
+        if (first != last)
+            locks[Math.max(first, last)].lock();
+    }
+
+    private void unlockRange( long bytePos, int length )
+    {
+        int first = (int) (bytePos >>> segmentSizePower) & stripeMask;
+        int last = (int) ((bytePos + Math.max(length, 1) - 1) >>> segmentSizePower) & stripeMask;
+        if (first != last)
+            locks[Math.max(first, last)].unlock();
+        locks[Math.min(first, last)].unlock();
     }
 
     @Override
-    public synchronized String getName()
+    public String getName()
     {
         return inner.getName();
     }
 
     @Override
-    public synchronized void rename( String newName )
+    public void rename( String newName )
     {
-        inner.rename(newName);
+        lockAll();
+        try
+        {
+            inner.rename(newName);
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized void setInt( long bytePos, int value )
+    public void setInt( long bytePos, int value )
     {
-        inner.setInt(bytePos, value);
+        ReentrantLock lock = lockFor(bytePos);
+        try
+        {
+            inner.setInt(bytePos, value);
+        } finally
+        {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized int getInt( long bytePos )
+    public int getInt( long bytePos )
     {
-        return inner.getInt(bytePos);
+        ReentrantLock lock = lockFor(bytePos);
+        try
+        {
+            return inner.getInt(bytePos);
+        } finally
+        {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized void setShort( long bytePos, short value )
+    public void setShort( long bytePos, short value )
     {
-        inner.setShort(bytePos, value);
+        ReentrantLock lock = lockFor(bytePos);
+        try
+        {
+            inner.setShort(bytePos, value);
+        } finally
+        {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized short getShort( long bytePos )
+    public short getShort( long bytePos )
     {
-        return inner.getShort(bytePos);
+        ReentrantLock lock = lockFor(bytePos);
+        try
+        {
+            return inner.getShort(bytePos);
+        } finally
+        {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized void setBytes( long bytePos, byte[] values, int length )
+    public void setBytes( long bytePos, byte[] values, int length )
     {
-        inner.setBytes(bytePos, values, length);
+        lockRange(bytePos, length);
+        try
+        {
+            inner.setBytes(bytePos, values, length);
+        } finally
+        {
+            unlockRange(bytePos, length);
+        }
     }
 
     @Override
-    public synchronized void getBytes( long bytePos, byte[] values, int length )
+    public void getBytes( long bytePos, byte[] values, int length )
     {
-        inner.getBytes(bytePos, values, length);
+        lockRange(bytePos, length);
+        try
+        {
+            inner.getBytes(bytePos, values, length);
+        } finally
+        {
+            unlockRange(bytePos, length);
+        }
     }
 
     @Override
-    public synchronized void setHeader( int bytePos, int value )
+    public void setHeader( int bytePos, int value )
     {
-        inner.setHeader(bytePos, value);
+        synchronized (headerLock)
+        {
+            inner.setHeader(bytePos, value);
+        }
     }
 
     @Override
-    public synchronized int getHeader( int bytePos )
+    public int getHeader( int bytePos )
     {
-        return inner.getHeader(bytePos);
+        synchronized (headerLock)
+        {
+            return inner.getHeader(bytePos);
+        }
     }
 
     @Override
-    public synchronized DataAccess create( long bytes )
+    public DataAccess create( long bytes )
     {
-        return inner.create(bytes);
+        lockAll();
+        try
+        {
+            inner.create(bytes);
+            update();
+            return this;
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized boolean ensureCapacity( long bytes )
+    public boolean ensureCapacity( long bytes )
     {
-        return inner.ensureCapacity(bytes);
+        // the capacity only grows while accessed concurrently, avoid locking all stripes
+        if (bytes <= capacity)
+            return false;
+
+        lockAll();
+        try
+        {
+            boolean res = inner.ensureCapacity(bytes);
+            update();
+            return res;
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized void trimTo( long bytes )
+    public void trimTo( long bytes )
     {
-        inner.trimTo(bytes);
+        lockAll();
+        try
+        {
+            inner.trimTo(bytes);
+            update();
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized DataAccess copyTo( DataAccess da )
+    public DataAccess copyTo( DataAccess da )
     {
-        return inner.copyTo(da);
+        if (da instanceof SynchedDAWrapper)
+        {
+            SynchedDAWrapper target = (SynchedDAWrapper) da;
+            target.lockAll();
+            try
+            {
+                copyTo(target.inner);
+                target.update();
+                return da;
+            } finally
+            {
+                target.unlockAll();
+            }
+        }
+
+        lockAll();
+        try
+        {
+            synchronized (headerLock)
+            {
+                return inner.copyTo(da);
+            }
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized DataAccess setSegmentSize( int bytes )
+    public DataAccess setSegmentSize( int bytes )
     {
-        return inner.setSegmentSize(bytes);
+        lockAll();
+        try
+        {
+            inner.setSegmentSize(bytes);
+            update();
+            return this;
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized int getSegmentSize()
+    public int getSegmentSize()
     {
-        return inner.getSegmentSize();
+        return 1 << segmentSizePower;
     }
 
     @Override
-    public synchronized int getSegments()
+    public int getSegments()
     {
-        return inner.getSegments();
+        lockAll();
+        try
+        {
+            return inner.getSegments();
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized boolean loadExisting()
+    public boolean loadExisting()
     {
-        return inner.loadExisting();
+        lockAll();
+        try
+        {
+            synchronized (headerLock)
+            {
+                boolean res = inner.loadExisting();
+                update();
+                return res;
+            }
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized void flush()
+    public void flush()
     {
-        inner.flush();
+        lockAll();
+        try
+        {
+            synchronized (headerLock)
+            {
+                inner.flush();
+            }
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
-    public synchronized void close()
+    public void close()
     {
-        inner.close();
+        lockAll();
+        try
+        {
+            inner.close();
+        } finally
+        {
+            unlockAll();
+        }
     }
 
     @Override
@@ -160,9 +416,9 @@ class SynchedDAWrapper implements DataAccess
     }
 
     @Override
-    public synchronized long getCapacity()
+    public long getCapacity()
     {
-        return inner.getCapacity();
+        return capacity;
     }
 
     @Override
@@ -170,4 +426,24 @@ class SynchedDAWrapper implements DataAccess
     {
         return type;
     }
+
+    @Override
+    public boolean loadSegment( int segment )
+    {
+        ReentrantLock lock = locks[segment & stripeMask];
+        lock.lock();
+        try
+        {
+            return inner.loadSegment(segment);
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return inner.toString();
+    }
 }
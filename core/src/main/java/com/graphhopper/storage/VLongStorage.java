@@ -168,6 +168,25 @@ public class VLongStorage
         throw new RuntimeException("Invalid vLong detected (negative values disallowed)");
     }
 
+    /**
+     * Writes a long which can be negative in a variable-length format. The value is zig-zag encoded
+     * first so that small negative values take few bytes too, e.g. for delta compression. The
+     * absolute value must be smaller than 2^62.
+     */
+    public final void writeSignedVLong( long i )
+    {
+        writeVLong((i << 1) ^ (i >> 63));
+    }
+
+    /**
+     * Reads a long written via writeSignedVLong.
+     */
+    public long readSignedVLong()
+    {
+        long i = readVLong();
+        return (i >>> 1) ^ -(i & 1);
+    }
+
     public void trimToSize()
     {
         if (bytes.length > pointer)
@@ -55,7 +55,9 @@ public class Constants
     public static final int VERSION_NODE = 4;
     public static final int VERSION_EDGE = 12;
     public static final int VERSION_SHORTCUT = 1;
-    public static final int VERSION_GEOMETRY = 3;
+    public static final int VERSION_GEOMETRY = 4;
+    // graphs with the uncompressed geometry of this version can still be loaded
+    public static final int VERSION_GEOMETRY_UNCOMPRESSED = 3;
     public static final int VERSION_LOCATION_IDX = 2;
     public static final int VERSION_NAME_IDX = 2;
     /**
@@ -0,0 +1,115 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Calculates the convex hull of 2D points via the monotone chain algorithm of Andrew in O(n log n).
+ * Longitude and latitude are treated as plane coordinates which is fine for the small areas of an
+ * isochrone.
+ * <p>
+ * Calling calcHull is thread safe.
+ * <p>
+ * @author Peter Karich
+ */
+public class ConvexHull
+{
+    /**
+     * @return the counter clockwise hull starting at the most south western point. The first point
+     * is not repeated at the end. Duplicate points are removed, so less than three points are
+     * returned for degenerated input.
+     */
+    public PointList calcHull( PointList points )
+    {
+        int size = points.getSize();
+        Integer[] indices = new Integer[size];
+        for (int i = 0; i < size; i++)
+        {
+            indices[i] = i;
+        }
+        final PointList tmpPoints = points;
+        Arrays.sort(indices, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer o1, Integer o2 )
+            {
+                int res = Double.compare(tmpPoints.getLongitude(o1), tmpPoints.getLongitude(o2));
+                if (res != 0)
+                    return res;
+                return Double.compare(tmpPoints.getLatitude(o1), tmpPoints.getLatitude(o2));
+            }
+        });
+
+        // the indices of the lower and then the upper chain
+        int[] order = new int[2 * size];
+        int hullSize = 0;
+        for (int i = 0; i < size; i++)
+        {
+            int index = indices[i];
+            while (hullSize >= 2 && cross(points, order[hullSize - 2], order[hullSize - 1], index) <= 0)
+            {
+                hullSize--;
+            }
+            order[hullSize++] = index;
+        }
+
+        int lowerSize = hullSize + 1;
+        for (int i = size - 2; i >= 0; i--)
+        {
+            int index = indices[i];
+            while (hullSize >= lowerSize && cross(points, order[hullSize - 2], order[hullSize - 1], index) <= 0)
+            {
+                hullSize--;
+            }
+            order[hullSize++] = index;
+        }
+
+        // the last point is the first one again
+        if (size > 1)
+            hullSize--;
+
+        PointList hull = new PointList(hullSize, false);
+        for (int i = 0; i < hullSize; i++)
+        {
+            int index = order[i];
+            if (i > 0 && isSame(points, order[i - 1], index))
+                continue;
+
+            hull.add(points.getLatitude(index), points.getLongitude(index));
+        }
+        return hull;
+    }
+
+    private static boolean isSame( PointList points, int index1, int index2 )
+    {
+        return points.getLatitude(index1) == points.getLatitude(index2)
+                && points.getLongitude(index1) == points.getLongitude(index2);
+    }
+
+    /**
+     * @return a positive value if o, a, b make a counter clockwise turn
+     */
+    private static double cross( PointList points, int o, int a, int b )
+    {
+        double oLon = points.getLongitude(o), oLat = points.getLatitude(o);
+        return (points.getLongitude(a) - oLon) * (points.getLatitude(b) - oLat)
+                - (points.getLatitude(a) - oLat) * (points.getLongitude(b) - oLon);
+    }
+}
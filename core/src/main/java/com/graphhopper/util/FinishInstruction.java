@@ -38,6 +38,12 @@ public class FinishInstruction extends Instruction
                 pointAccess.is3D() ? pointAccess.getElevation(node) : 0);
     }
 
+    @Override
+    public FinishInstruction copy()
+    {
+        return copyValues(new FinishInstruction(getFirstLat(), getFirstLon(), getFirstEle()));
+    }
+
     @Override
     public String getTurnDescription( Translation tr )
     {
@@ -24,6 +24,7 @@ import com.graphhopper.routing.util.AllCHEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.*;
+import com.graphhopper.util.shapes.BBox;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 
@@ -240,29 +241,147 @@ public class GHUtility
         return createSortedGraph(g, sortedGraph, list);
     }
 
+    /**
+     * Sorts the nodes in breadth first order. Compared to sortDFS the neighbours of a node get
+     * closer ids which is better if a route explores all neighbours of a node.
+     */
+    public static Graph sortBFS( Graph g, Graph sortedGraph )
+    {
+        final TIntList list = new TIntArrayList(g.getNodes(), -1);
+        int nodes = g.getNodes();
+        list.fill(0, nodes, -1);
+        final GHBitSetImpl bitset = new GHBitSetImpl(nodes);
+        final AtomicInteger ref = new AtomicInteger(-1);
+        EdgeExplorer explorer = g.createEdgeExplorer();
+        for (int startNode = 0; startNode >= 0 && startNode < nodes;
+                startNode = bitset.nextClear(startNode + 1))
+        {
+            new BreadthFirstSearch()
+            {
+                @Override
+                protected GHBitSet createBitSet()
+                {
+                    return bitset;
+                }
+
+                @Override
+                protected boolean goFurther( int nodeId )
+                {
+                    list.set(nodeId, ref.incrementAndGet());
+                    return super.goFurther(nodeId);
+                }
+            }.start(explorer, startNode);
+        }
+        return createSortedGraph(g, sortedGraph, list);
+    }
+
+    /**
+     * Sorts the nodes along a Hilbert curve through the bounds of the graph. Nodes which are close
+     * together get close ids independent of the connections, so also the index and the nodes of
+     * a whole area are stored together.
+     */
+    public static Graph sortHilbert( Graph g, Graph sortedGraph )
+    {
+        int nodes = g.getNodes();
+        NodeAccess na = g.getNodeAccess();
+        BBox bounds = g.getBounds();
+        int side = 1 << 16;
+        double latFactor = (side - 1) / Math.max(bounds.maxLat - bounds.minLat, 1e-9);
+        double lonFactor = (side - 1) / Math.max(bounds.maxLon - bounds.minLon, 1e-9);
+        // the curve index needs 32 bits so it can be combined with the node id and sorted at once
+        long[] keys = new long[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            int x = (int) Math.round((na.getLongitude(node) - bounds.minLon) * lonFactor);
+            int y = (int) Math.round((na.getLatitude(node) - bounds.minLat) * latFactor);
+            x = Math.max(0, Math.min(side - 1, x));
+            y = Math.max(0, Math.min(side - 1, y));
+            keys[node] = getHilbertIndex(side, x, y) << 31 | node;
+        }
+        Arrays.sort(keys);
+
+        TIntList list = new TIntArrayList(nodes, -1);
+        list.fill(0, nodes, -1);
+        for (int i = 0; i < nodes; i++)
+        {
+            list.set((int) (keys[i] & Integer.MAX_VALUE), i);
+        }
+        return createSortedGraph(g, sortedGraph, list);
+    }
+
+    /**
+     * @param side the side length of the grid which has to be a power of two
+     * @return the position of the specified grid cell on the Hilbert curve
+     */
+    static long getHilbertIndex( int side, int x, int y )
+    {
+        long index = 0;
+        for (int s = side / 2; s > 0; s /= 2)
+        {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0)
+            {
+                if (rx == 1)
+                {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Creates the nodes in the order of the specified list and then the edges in the order of
+     * their first node. This way also the edges of a node get close ids and are stored together.
+     */
     static Graph createSortedGraph( Graph fromGraph, Graph toSortedGraph, final TIntList oldToNewNodeList )
     {
-        AllEdgesIterator eIter = fromGraph.getAllEdges();
-        while (eIter.next())
+        int nodes = fromGraph.getNodes();
+        int[] newToOld = new int[nodes];
+        Arrays.fill(newToOld, -1);
+        for (int old = 0; old < nodes; old++)
         {
-            int base = eIter.getBaseNode();
-            int newBaseIndex = oldToNewNodeList.get(base);
-            int adj = eIter.getAdjNode();
-            int newAdjIndex = oldToNewNodeList.get(adj);
+            int newIndex = oldToNewNodeList.get(old);
+            if (newIndex >= 0)
+                newToOld[newIndex] = old;
+        }
 
-            // ignore empty entries
-            if (newBaseIndex < 0 || newAdjIndex < 0)
+        EdgeExplorer explorer = fromGraph.createEdgeExplorer();
+        GHBitSet copiedEdges = new GHBitSetImpl(fromGraph.getAllEdges().getMaxId());
+        for (int newBaseIndex = 0; newBaseIndex < nodes; newBaseIndex++)
+        {
+            int base = newToOld[newBaseIndex];
+            if (base < 0)
                 continue;
 
-            eIter.copyPropertiesTo(toSortedGraph.edge(newBaseIndex, newAdjIndex));
+            EdgeIterator eIter = explorer.setBaseNode(base);
+            while (eIter.next())
+            {
+                int newAdjIndex = oldToNewNodeList.get(eIter.getAdjNode());
+                // ignore empty entries
+                if (newAdjIndex < 0 || copiedEdges.contains(eIter.getEdge()))
+                    continue;
+
+                copiedEdges.add(eIter.getEdge());
+                eIter.copyPropertiesTo(toSortedGraph.edge(newBaseIndex, newAdjIndex));
+            }
         }
 
-        int nodes = fromGraph.getNodes();
         NodeAccess na = fromGraph.getNodeAccess();
         NodeAccess sna = toSortedGraph.getNodeAccess();
         for (int old = 0; old < nodes; old++)
         {
             int newIndex = oldToNewNodeList.get(old);
+            if (newIndex < 0)
+                continue;
+
             if (sna.is3D())
                 sna.setNode(newIndex, na.getLatitude(old), na.getLongitude(old), na.getElevation(old));
             else
@@ -153,6 +153,29 @@ public class Instruction
         return points;
     }
 
+    /**
+     * @return a copy of this instruction which does not share the points
+     */
+    public Instruction copy()
+    {
+        return copyValues(new Instruction(sign, name, annotation, copyPoints()));
+    }
+
+    PointList copyPoints()
+    {
+        return points == PointList.EMPTY ? points : points.clone(false);
+    }
+
+    <T extends Instruction> T copyValues( T copy )
+    {
+        copy.rawName = rawName;
+        copy.sign = sign;
+        copy.name = name;
+        copy.distance = distance;
+        copy.time = time;
+        return copy;
+    }
+
     /**
      * This method returns a list of gpx entries where the time (in time) is relative to the first
      * which is 0. It does NOT contain the last point which is the first of the next instruction.
@@ -17,6 +17,9 @@
  */
 package com.graphhopper.util;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -58,6 +61,22 @@ public class InstructionList implements Iterable<Instruction>
         instructions.add(instr);
     }
 
+    /**
+     * @return a copy of this list containing copies of the instructions
+     */
+    public InstructionList copy()
+    {
+        if (this == EMPTY)
+            return this;
+
+        InstructionList copy = new InstructionList(instructions.size(), tr);
+        for (Instruction instr : instructions)
+        {
+            copy.add(instr.copy());
+        }
+        return copy;
+    }
+
     public int getSize()
     {
         return instructions.size();
@@ -79,10 +98,7 @@ public class InstructionList implements Iterable<Instruction>
             instrList.add(instrJson);
 
             InstructionAnnotation ia = instruction.getAnnotation();
-            String str = instruction.getTurnDescription(tr);
-            if (Helper.isEmpty(str))
-                str = ia.getMessage();
-            instrJson.put("text", Helper.firstBig(str));
+            instrJson.put("text", createText(instruction));
             if (!ia.isEmpty())
             {
                 instrJson.put("annotation_text", ia.getMessage());
@@ -107,6 +123,18 @@ public class InstructionList implements Iterable<Instruction>
         return instrList;
     }
 
+    /**
+     * @return the text of the specified instruction which is shown to the user. If the instruction
+     * has no turn description the message of its annotation is used.
+     */
+    public String createText( Instruction instruction )
+    {
+        String str = instruction.getTurnDescription(tr);
+        if (Helper.isEmpty(str))
+            str = instruction.getAnnotation().getMessage();
+        return Helper.firstBig(str);
+    }
+
     public boolean isEmpty()
     {
         return instructions.isEmpty();
@@ -177,82 +205,130 @@ public class InstructionList implements Iterable<Instruction>
     }
 
     public String createGPX( String trackName, long startTimeMillis, boolean includeElevation )
+    {
+        StringWriter writer = new StringWriter();
+        try
+        {
+            createGPX(writer, trackName, startTimeMillis, includeElevation);
+        } catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the GPX directly to the specified writer instead of creating it in memory, e.g. to
+     * stream a long route into a response.
+     */
+    public void createGPX( Writer writer, String trackName, long startTimeMillis, boolean includeElevation )
+            throws IOException
     {
         SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
         formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
 
-        String header = "<?xml version='1.0' encoding='UTF-8' standalone='no' ?>"
-                + "<gpx xmlns='http://www.topografix.com/GPX/1/1' xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'"
-                + " creator='Graphhopper' version='1.1'"
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\" ?>"
+                + "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " creator=\"Graphhopper\" version=\"1.1\""
                 // This xmlns:gh acts only as ID, no valid URL necessary.
                 // Use a separate namespace for custom extensions to make basecamp happy.
-                + " xmlns:gh='https://graphhopper.com/public/schema/gpx/1.1'>"
+                + " xmlns:gh=\"https://graphhopper.com/public/schema/gpx/1.1\">"
                 + "\n<metadata>"
                 + "<copyright author=\"OpenStreetMap contributors\"/>"
-                + "<link href='http://graphhopper.com'>"
+                + "<link href=\"http://graphhopper.com\">"
                 + "<text>GraphHopper GPX</text>"
                 + "</link>"
                 + "<time>" + formatter.format(startTimeMillis) + "</time>"
-                + "</metadata>";
-        StringBuilder track = new StringBuilder(header);
+                + "</metadata>");
         if (!isEmpty())
         {
-            track.append("\n<rte>");
+            writer.write("\n<rte>");
             Instruction nextInstr = null;
             for (Instruction currInstr : instructions)
             {
                 if (null != nextInstr)
-                    createRteptBlock(track, nextInstr, currInstr);
+                    createRteptBlock(writer, nextInstr, currInstr);
 
                 nextInstr = currInstr;
             }
-            createRteptBlock(track, nextInstr, null);
-            track.append("</rte>");
+            createRteptBlock(writer, nextInstr, null);
+            writer.write("</rte>");
         }
 
-        track.append("\n<trk><name>").append(trackName).append("</name>");
+        writer.write("\n<trk><name>");
+        writer.write(trackName);
+        writer.write("</name>");
 
-        track.append("<trkseg>");
+        writer.write("<trkseg>");
         for (GPXEntry entry : createGPXList())
         {
-            track.append("\n<trkpt lat='").append(Helper.round6(entry.getLat()));
-            track.append("' lon='").append(Helper.round6(entry.getLon())).append("'>");
+            writer.write("\n<trkpt lat=\"");
+            writer.write(Double.toString(Helper.round6(entry.getLat())));
+            writer.write("\" lon=\"");
+            writer.write(Double.toString(Helper.round6(entry.getLon())));
+            writer.write("\">");
             if (includeElevation)
-                track.append("<ele>").append(Helper.round2(entry.getEle())).append("</ele>");
-            track.append("<time>").append(formatter.format(startTimeMillis + entry.getTime())).append("</time>");
-            track.append("</trkpt>");
+            {
+                writer.write("<ele>");
+                writer.write(Double.toString(Helper.round2(entry.getEle())));
+                writer.write("</ele>");
+            }
+            writer.write("<time>");
+            writer.write(formatter.format(startTimeMillis + entry.getTime()));
+            writer.write("</time>");
+            writer.write("</trkpt>");
         }
-        track.append("</trkseg>");
-        track.append("</trk>");
+        writer.write("</trkseg>");
+        writer.write("</trk>");
 
         // we could now use 'wpt' for via points
-        track.append("</gpx>");
-        return track.toString().replaceAll("\\'", "\"");
+        writer.write("</gpx>");
     }
 
-    private void createRteptBlock( StringBuilder output, Instruction instruction, Instruction nextI )
+    private void createRteptBlock( Writer output, Instruction instruction, Instruction nextI ) throws IOException
     {
-        output.append("\n<rtept lat=\"").append(Helper.round6(instruction.getFirstLat())).
-                append("\" lon=\"").append(Helper.round6(instruction.getFirstLon())).append("\">");
+        output.write("\n<rtept lat=\"");
+        output.write(Double.toString(Helper.round6(instruction.getFirstLat())));
+        output.write("\" lon=\"");
+        output.write(Double.toString(Helper.round6(instruction.getFirstLon())));
+        output.write("\">");
 
         if (!instruction.getName().isEmpty())
-            output.append("<desc>").append(instruction.getTurnDescription(tr)).append("</desc>");
+        {
+            output.write("<desc>");
+            output.write(instruction.getTurnDescription(tr));
+            output.write("</desc>");
+        }
 
-        output.append("<extensions>");
-        output.append("<gh:distance>").append(Helper.round(instruction.getDistance(), 1)).append("</gh:distance>");
-        output.append("<gh:time>").append(instruction.getTime()).append("</gh:time>");
+        output.write("<extensions>");
+        output.write("<gh:distance>");
+        output.write(Double.toString(Helper.round(instruction.getDistance(), 1)));
+        output.write("</gh:distance>");
+        output.write("<gh:time>");
+        output.write(Long.toString(instruction.getTime()));
+        output.write("</gh:time>");
 
         String direction = instruction.calcDirection(nextI);
         if (!direction.isEmpty())
-            output.append("<gh:direction>").append(direction).append("</gh:direction>");
+        {
+            output.write("<gh:direction>");
+            output.write(direction);
+            output.write("</gh:direction>");
+        }
 
         double azimuth = instruction.calcAzimuth(nextI);
         if (!Double.isNaN(azimuth))
-            output.append("<gh:azimuth>").append(Helper.round2(azimuth)).append("</gh:azimuth>");
+        {
+            output.write("<gh:azimuth>");
+            output.write(Double.toString(Helper.round2(azimuth)));
+            output.write("</gh:azimuth>");
+        }
 
-        output.append("<gh:sign>").append(instruction.getSign()).append("</gh:sign>");
-        output.append("</extensions>");
-        output.append("</rtept>");
+        output.write("<gh:sign>");
+        output.write(Integer.toString(instruction.getSign()));
+        output.write("</gh:sign>");
+        output.write("</extensions>");
+        output.write("</rtept>");
     }
 
     /**
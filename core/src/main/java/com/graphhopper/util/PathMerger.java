@@ -36,28 +36,11 @@ public class PathMerger
     private DouglasPeucker douglasPeucker;
     private boolean calcPoints = true;
 
-    private void calcAscendDescend( final GHResponse rsp, final PointList pointList )
-    {
-        double ascendMeters = 0;
-        double descendMeters = 0;
-        double lastEle = pointList.getElevation(0);
-        for (int i = 1; i < pointList.size(); ++i)
-        {
-            double ele = pointList.getElevation(i);
-            double diff = Math.abs(ele - lastEle);
-
-            if (ele > lastEle)
-                ascendMeters += diff;
-            else
-                descendMeters += diff;
-
-            lastEle = ele;
-
-        }
-        rsp.setAscend(ascendMeters);
-        rsp.setDescend(descendMeters);
-    }
-
+    /**
+     * Merges the paths into the response. Every path is walked once: the time (if the path has a
+     * speed provider), the points and the instructions are calculated in the same pass, the
+     * elevation differences are summed up while the points are merged.
+     */
     public void doWork( GHResponse rsp, List<Path> paths, Translation tr )
     {
         int origPoints = 0;
@@ -65,35 +48,42 @@ public class PathMerger
         double fullWeight = 0;
         double fullDistance = 0;
         boolean allFound = true;
+        double ascendMeters = 0;
+        double descendMeters = 0;
 
         InstructionList fullInstructions = new InstructionList(tr);
         PointList fullPoints = PointList.EMPTY;
         for (int pathIndex = 0; pathIndex < paths.size(); pathIndex++)
         {
             Path path = paths.get(pathIndex);
-            fullTimeInMillis += path.getTime();
-            fullDistance += path.getDistance();
-            fullWeight += path.getWeight();
+            int pointsBefore = fullPoints.getSize();
             if (enableInstructions)
             {
                 InstructionList il = path.calcInstructions(tr);
 
                 if (!il.isEmpty())
                 {
-                    if (fullPoints.isEmpty())
+                    if (simplifyResponse)
                     {
-                        PointList pl = il.get(0).getPoints();
-                        // do a wild guess about the total number of points to avoid reallocation a bit
-                        fullPoints = new PointList(il.size() * Math.min(10, pl.size()), pl.is3D());
+                        for (Instruction i : il)
+                        {
+                            origPoints += i.getPoints().size();
+                            douglasPeucker.simplify(i.getPoints());
+                        }
                     }
 
-                    for (Instruction i : il)
+                    if (fullPoints.isEmpty())
                     {
-                        if (simplifyResponse)
+                        int size = 0;
+                        for (Instruction i : il)
                         {
-                            origPoints += i.getPoints().size();
-                            douglasPeucker.simplify(i.getPoints());
+                            size += i.getPoints().size();
                         }
+                        fullPoints = new PointList(size, il.get(0).getPoints().is3D());
+                    }
+
+                    for (Instruction i : il)
+                    {
                         fullInstructions.add(i);
                         fullPoints.add(i.getPoints());
                     }
@@ -119,8 +109,31 @@ public class PathMerger
                     douglasPeucker.simplify(tmpPoints);
                 }
                 fullPoints.add(tmpPoints);
+            } else
+            {
+                path.updateTime();
+            }
+
+            if (fullPoints.is3D && !fullPoints.isEmpty())
+            {
+                // the merged points are only read once for the elevation differences
+                double lastEle = fullPoints.getElevation(Math.max(0, pointsBefore - 1));
+                for (int i = Math.max(1, pointsBefore); i < fullPoints.getSize(); i++)
+                {
+                    double ele = fullPoints.getElevation(i);
+                    if (ele > lastEle)
+                        ascendMeters += ele - lastEle;
+                    else
+                        descendMeters += lastEle - ele;
+
+                    lastEle = ele;
+                }
             }
 
+            // the time is final after the points or instructions are calculated
+            fullTimeInMillis += path.getTime();
+            fullDistance += path.getDistance();
+            fullWeight += path.getWeight();
             allFound = allFound && path.isFound();
         }
 
@@ -129,7 +142,10 @@ public class PathMerger
             String debug = rsp.getDebugInfo() + ", simplify (" + origPoints + "->" + fullPoints.getSize() + ")";
             rsp.setDebugInfo(debug);
             if (fullPoints.is3D)
-                calcAscendDescend(rsp, fullPoints);
+            {
+                rsp.setAscend(ascendMeters);
+                rsp.setDescend(descendMeters);
+            }
         }
 
         if (enableInstructions)
@@ -109,6 +109,17 @@ public class RoundaboutInstruction extends Instruction
         return this;
     }
 
+    @Override
+    public RoundaboutInstruction copy()
+    {
+        RoundaboutInstruction copy = copyValues(new RoundaboutInstruction(sign, name, annotation, copyPoints()));
+        copy.exitNumber = exitNumber;
+        copy.clockwise = clockwise;
+        copy.exited = exited;
+        copy.radian = radian;
+        return copy;
+    }
+
     @Override
     public Map<String, Object> getExtraInfoJSON()
     {
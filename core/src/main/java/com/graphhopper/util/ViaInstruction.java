@@ -47,6 +47,14 @@ public class ViaInstruction extends Instruction
         return viaPosition;
     }
 
+    @Override
+    public ViaInstruction copy()
+    {
+        ViaInstruction copy = copyValues(new ViaInstruction(name, annotation, copyPoints()));
+        copy.viaPosition = viaPosition;
+        return copy;
+    }
+
     @Override
     public String getTurnDescription( Translation tr )
     {
@@ -0,0 +1,205 @@
+package com.graphhopper.util.profiles;
+
+import com.graphhopper.routing.util.BikeGenericFlagEncoder;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe, size bounded cache of fully initialized ProfileManager instances keyed by the
+ * profile name. The least recently used profile is evicted if the cache is full. A cached profile
+ * is reloaded if the modification time of its file changed, this is checked at most once per
+ * check interval to keep a cache hit as cheap as a map lookup.
+ */
+public class ProfileCache {
+
+    private final BikeGenericFlagEncoder encoder;
+    private final String profilesDir;
+    private final int maxSize;
+    // shared so that its weighting table is only created once
+    private final ProfileManager emptyProfile;
+    private long checkInterval = 10000;
+    // access ordered, guarded by this
+    private final Map<String, CacheEntry> entries;
+    // striped by the profile name so that a profile is only loaded once at a time, a fixed number
+    // avoids one lock per name a client sends
+    private final Object[] loadLocks = new Object[64];
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loadTimeNanos = new AtomicLong();
+
+    public ProfileCache(BikeGenericFlagEncoder encoder, int maxSize){
+        this(encoder, "profiles/", maxSize);
+    }
+
+    public ProfileCache(BikeGenericFlagEncoder encoder, String profilesDir, final int maxSize){
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Profile cache size must be positive but was " + maxSize);
+
+        this.encoder = encoder;
+        this.profilesDir = profilesDir;
+        this.maxSize = maxSize;
+        this.emptyProfile = new ProfileManager(new ProfileRepository(profilesDir));
+        for (int i = 0; i < loadLocks.length; i++) {
+            loadLocks[i] = new Object();
+        }
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Specifies the minimum time in milliseconds between two checks of the profile file for
+     * modifications. Use 0 to check on every access.
+     */
+    public ProfileCache setCheckInterval(long checkInterval){
+        this.checkInterval = checkInterval;
+        return this;
+    }
+
+    /**
+     * @return the initialized ProfileManager for the specified name. The returned instance must not
+     * be modified as it is shared. For an unknown name the shared empty profile is returned, which
+     * is not cached so that arbitrary names do not fill the cache.
+     */
+    public ProfileManager get(String name){
+        if (name == null || name.isEmpty())
+            return emptyProfile;
+
+        CacheEntry entry = getEntry(name);
+        if (entry != null && isValid(entry)) {
+            hits.incrementAndGet();
+            return entry.profileManager;
+        }
+
+        Object lock = getLoadLock(name);
+        synchronized (lock) {
+            // another thread could have loaded it in the meantime
+            entry = getEntry(name);
+            if (entry != null && isValid(entry)) {
+                hits.incrementAndGet();
+                return entry.profileManager;
+            }
+
+            misses.incrementAndGet();
+            entry = load(name);
+            if (!entry.profileManager.hasProfile()) {
+                // the file of a cached profile could have been deleted, otherwise it is read on every access
+                synchronized (this) {
+                    entries.remove(name);
+                }
+                return emptyProfile;
+            }
+
+            synchronized (this) {
+                entries.put(name, entry);
+            }
+            return entry.profileManager;
+        }
+    }
+
+    /**
+     * Removes the profile with the specified name so that it is loaded again on the next access.
+     */
+    public synchronized void invalidate(String name){
+        entries.remove(name);
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    public synchronized int getSize(){
+        return entries.size();
+    }
+
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public long getEvictions(){
+        return evictions.get();
+    }
+
+    /**
+     * @return the summed up time in seconds spent for reading and fitting profiles
+     */
+    public double getLoadTime(){
+        return loadTimeNanos.get() / 1e9;
+    }
+
+    private synchronized CacheEntry getEntry(String name){
+        return entries.get(name);
+    }
+
+    private Object getLoadLock(String name){
+        return loadLocks[(name.hashCode() & Integer.MAX_VALUE) % loadLocks.length];
+    }
+
+    private boolean isValid(CacheEntry entry){
+        long now = System.currentTimeMillis();
+        if (now - entry.lastChecked < checkInterval)
+            return true;
+
+        if (entry.file.lastModified() != entry.lastModified)
+            return false;
+
+        entry.lastChecked = now;
+        return true;
+    }
+
+    private CacheEntry load(String name){
+        long start = System.nanoTime();
+        ProfileRepository repository = new ProfileRepository(profilesDir);
+        File file = repository.getProfileFile(name);
+        // fetch the modification time before reading to never miss a concurrent update
+        long lastModified = file.lastModified();
+        if (!file.isFile())
+            return new CacheEntry(emptyProfile, file, lastModified, System.currentTimeMillis());
+
+        ProfileManager profileManager = new ProfileManager(repository).init(name, encoder);
+        // compile the profile already here to keep the first request fast
+        profileManager.getWeightingTable(encoder);
+        loadTimeNanos.addAndGet(System.nanoTime() - start);
+        return new CacheEntry(profileManager, file, lastModified, System.currentTimeMillis());
+    }
+
+    @Override
+    public String toString(){
+        return "size:" + getSize() + "/" + maxSize + ", hits:" + getHits() + ", misses:" + getMisses()
+                + ", evictions:" + getEvictions() + ", loadTime:" + getLoadTime() + "s";
+    }
+
+    private static class CacheEntry {
+        final ProfileManager profileManager;
+        final File file;
+        final long lastModified;
+        volatile long lastChecked;
+
+        CacheEntry(ProfileManager profileManager, File file, long lastModified, long lastChecked){
+            this.profileManager = profileManager;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.lastChecked = lastChecked;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.graphhopper.util.profiles;
 
 
 import com.graphhopper.routing.util.BikeGenericFlagEncoder;
+import com.graphhopper.routing.util.DynamicWeightingTable;
 import org.apache.commons.math3.fitting.WeightedObservedPoint;
 
 import java.util.ArrayList;
@@ -10,23 +11,31 @@ import java.util.Map;
 
 import static com.graphhopper.util.Helper.keepIn;
 
+/**
+ * Fits the speeds of a riders profile per way type. Once init returned the instance is not modified
+ * anymore and can be shared between threads, see ProfileCache.
+ */
 public class ProfileManager {
 
-    private ProfileRepository profileRepository;
+    private final ProfileRepository profileRepository;
     private RidersProfile ridersProfile;
 
     private double totalDistance;
     private int bestFit = -1;
-    private short[] counts = new short[RidersProfile.WAY_TYPES];
-    private double[] distances = new double[RidersProfile.WAY_TYPES];
+    private final short[] counts = new short[RidersProfile.WAY_TYPES];
+    private final double[] distances = new double[RidersProfile.WAY_TYPES];
     private Map<Integer, double[]> userSpeeds;
     private boolean pavedSurfacePerferred;
+    private DynamicWeightingTable weightingTable;
 
     public ProfileManager(ProfileRepository profileRepository){
         this.profileRepository = profileRepository;
     }
 
     public ProfileManager init(String name, BikeGenericFlagEncoder flagEncoder){
+        if(hasProfile())
+            throw new IllegalStateException("ProfileManager was already initialized with a profile");
+
         this.ridersProfile = profileRepository.getProfile(name);
 
         if(hasProfile()){
@@ -85,6 +94,17 @@ public class ProfileManager {
         return distances[wayType] / totalDistance;
     }
 
+    /**
+     * @return the precomputed speeds and preferences of this profile for the DynamicWeighting. The
+     * table is created on the first call and shared afterwards.
+     */
+    public synchronized DynamicWeightingTable getWeightingTable(BikeGenericFlagEncoder flagEncoder){
+        if (weightingTable == null || weightingTable.getFlagEncoder() != flagEncoder)
+            weightingTable = new DynamicWeightingTable(flagEncoder, this);
+
+        return weightingTable;
+    }
+
     public boolean prefersPavedSurface(){
         return pavedSurfacePerferred;
     }
@@ -1,5 +1,6 @@
 package com.graphhopper.util.profiles;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -10,14 +11,31 @@ import java.lang.ClassNotFoundException;
 import java.lang.Object;
 import java.lang.String;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 
 public class ProfileRepository {
 
+    private static final Logger logger = LoggerFactory.getLogger(ProfileRepository.class);
 
     private RidersProfile ridersProfile;
-    private final String base = "profiles/";
+    private final String base;
+
+    public ProfileRepository(){
+        this("profiles/");
+    }
 
-    public ProfileRepository(){}
+    public ProfileRepository(String base){
+        this.base = base;
+    }
+
+    /**
+     * @return the file the profile with the specified name is stored in
+     */
+    public File getProfileFile(String name){
+        return new File(base + name);
+    }
 
     public void createProfile(String name) {
         ridersProfile = new RidersProfile();
@@ -39,18 +57,18 @@ public class ProfileRepository {
 
 
         } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            logger.warn("Profile " + name + " not found in " + base);
         } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            logger.error("Cannot read profile " + name, e);
         } catch (IOException e) {
-            e.printStackTrace();
+            logger.error("Cannot read profile " + name, e);
         } finally {
 
             if(inputStream != null){
                 try {
                     inputStream.close();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    logger.warn("Cannot close profile file " + name, e);
                 }
             }
 
@@ -58,7 +76,7 @@ public class ProfileRepository {
                 try {
                     fileInputStream.close();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    logger.warn("Cannot close profile file " + name, e);
                 }
             }
 
@@ -84,15 +102,15 @@ public class ProfileRepository {
             outputStream = new ObjectOutputStream(fileOutputStream);
             outputStream.writeObject(ridersProfile);
         } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            logger.error("Cannot write profile " + name, e);
         } catch (IOException e) {
-            e.printStackTrace();
+            logger.error("Cannot write profile " + name, e);
         } finally {
             if(outputStream != null) {
                 try {
                     outputStream.close();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    logger.warn("Cannot close profile file " + name, e);
                 }
             }
 
@@ -100,7 +118,7 @@ public class ProfileRepository {
                 try {
                     fileOutputStream.close();
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    logger.warn("Cannot close profile file " + name, e);
                 }
             }
         }
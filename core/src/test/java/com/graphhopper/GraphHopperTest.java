@@ -24,6 +24,7 @@ import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.FinishInstruction;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Instruction;
 import com.graphhopper.util.shapes.GHPoint;
@@ -52,6 +53,10 @@ public class GraphHopperTest
     private static final String ghLoc = "./target/tmp/ghosm";
     private static final String testOsm = "./src/test/resources/com/graphhopper/reader/test-osm.xml";
     private static final String testOsm3 = "./src/test/resources/com/graphhopper/reader/test-osm3.xml";
+    private static final String testOsmChanges = "./src/test/resources/com/graphhopper/reader/test-osm.osc";
+    private static final String testOsmJunction = "./src/test/resources/com/graphhopper/reader/test-osm-junction.osc";
+    private static final String testOsmMovePillar = "./src/test/resources/com/graphhopper/reader/test-osm-move-pillar.osc";
+    private static final String testOsmModifyWay = "./src/test/resources/com/graphhopper/reader/test-osm-modify-way.osc";
     private GraphHopper instance;
 
     @Before
@@ -109,6 +114,206 @@ public class GraphHopperTest
         }
     }
 
+    @Test
+    public void testApplyChanges()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setStoreOSMIds(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 49, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(49, rsp.getPoints().getLatitude(rsp.getPoints().getSize() - 1), 1e-6);
+
+        gh.applyChanges(testOsmChanges);
+        // the new way starts at the moved tower node
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.3, 9.5));
+        assertFalse(rsp.hasErrors());
+        assertEquals(4, rsp.getPoints().getSize());
+        assertEquals(51.21, rsp.getPoints().getLatitude(2), 1e-6);
+        assertEquals(9.41, rsp.getPoints().getLongitude(2), 1e-6);
+        assertEquals(51.3, rsp.getPoints().getLatitude(3), 1e-6);
+
+        // the deleted way is not used anymore
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 49, 10));
+        assertFalse(rsp.hasErrors());
+        assertTrue(rsp.getPoints().getLatitude(rsp.getPoints().getSize() - 1) > 51);
+        double distance = rsp.getDistance();
+        gh.close();
+
+        gh = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(gh.load(ghLoc));
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 49, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(distance, rsp.getDistance(), 1e-3);
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.3, 9.5));
+        assertEquals(4, rsp.getPoints().getSize());
+        gh.close();
+    }
+
+    @Test
+    public void testApplyChangesClearsRouteCache()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setStoreOSMIds(true).
+                setRouteCache(10, 0, Helper.MB).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        GHRequest req = new GHRequest(51.2492152, 9.4317166, 49, 10);
+        GHResponse rsp = gh.route(req);
+        assertEquals(49, rsp.getPoints().getLatitude(rsp.getPoints().getSize() - 1), 1e-6);
+        assertEquals(1, gh.getRouteCache().getSize());
+
+        // the way to 49,10 is deleted, the cached route must not be returned
+        gh.applyChanges(testOsmChanges);
+        assertEquals(0, gh.getRouteCache().getSize());
+        rsp = gh.route(req);
+        assertFalse(rsp.hasErrors());
+        assertTrue(rsp.getPoints().getLatitude(rsp.getPoints().getSize() - 1) > 51);
+        assertEquals(0, gh.getRouteCache().getHits());
+        gh.close();
+    }
+
+    @Test
+    public void testApplyChangesWithJunctionAtPillarNode()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setStoreOSMIds(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        // the new way starts at node 40 which is a pillar node of way 11 and not in the change file
+        gh.applyChanges(testOsmJunction);
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.26, 9.44));
+        assertFalse(rsp.hasErrors());
+        assertEquals(4, rsp.getPoints().getSize());
+        assertEquals(51.25, rsp.getPoints().getLatitude(2), 1e-6);
+        assertEquals(9.43, rsp.getPoints().getLongitude(2), 1e-6);
+        assertEquals(51.26, rsp.getPoints().getLatitude(3), 1e-6);
+
+        // both parts of the split way are still usable
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 49, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(4, rsp.getPoints().getSize());
+        assertEquals(51.25, rsp.getPoints().getLatitude(2), 1e-6);
+        assertEquals(49, rsp.getPoints().getLatitude(3), 1e-6);
+        gh.close();
+    }
+
+    @Test
+    public void testApplyChangesWithCH()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setStoreOSMIds(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        GraphHopper flexible = new GraphHopper().setStoreOnFlush(false).
+                setStoreOSMIds(true).
+                setCHEnable(false).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc + "-flex").
+                setOSMFile(testOsm);
+        flexible.importOrLoad();
+
+        // the new way starts at a pillar node of the split way
+        applyChangesAndCompare(flexible, gh, testOsmJunction, Arrays.asList(
+                new GHRequest(51.2492152, 9.4317166, 51.26, 9.44),
+                new GHRequest(51.2492152, 9.4317166, 49, 10),
+                new GHRequest(51.2492152, 9.4317166, 51.2, 9.4)));
+        // moves a tower node, adds a way and deletes the way to 49,10
+        applyChangesAndCompare(flexible, gh, testOsmChanges, Arrays.asList(
+                new GHRequest(51.2492152, 9.4317166, 51.3, 9.5),
+                new GHRequest(51.2492152, 9.4317166, 49, 10),
+                new GHRequest(51.2492152, 9.4317166, 51.21, 9.41)));
+        gh.close();
+        flexible.close();
+    }
+
+    private void applyChangesAndCompare( GraphHopper flexible, GraphHopper hopper, String changeFile,
+                                         List<GHRequest> requests )
+    {
+        hopper.applyChanges(changeFile);
+        flexible.applyChanges(changeFile);
+        // the routes are calculated without CH until the shortcuts are created again
+        assertSameRoutes(flexible, hopper, requests);
+        hopper.waitForCHPreparation();
+        assertFalse(hopper.isCHOutdated());
+        assertSameRoutes(flexible, hopper, requests);
+    }
+
+    private void assertSameRoutes( GraphHopper expectedHopper, GraphHopper hopper, List<GHRequest> requests )
+    {
+        for (GHRequest req : requests)
+        {
+            GHResponse expected = expectedHopper.route(req);
+            GHResponse rsp = hopper.route(req);
+            assertFalse(expected.getErrors().toString(), expected.hasErrors());
+            assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+            assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+            assertEquals(expected.getPoints().getSize(), rsp.getPoints().getSize());
+            for (int i = 0; i < expected.getPoints().getSize(); i++)
+            {
+                assertEquals(expected.getPoints().getLatitude(i), rsp.getPoints().getLatitude(i), 1e-6);
+                assertEquals(expected.getPoints().getLongitude(i), rsp.getPoints().getLongitude(i), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testApplyChangesToPillarNodes()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setStoreOSMIds(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        gh.applyChanges(testOsmMovePillar);
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 49, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(4, rsp.getPoints().getSize());
+        assertEquals(51.251, rsp.getPoints().getLatitude(2), 1e-6);
+        assertEquals(9.431, rsp.getPoints().getLongitude(2), 1e-6);
+        gh.close();
+
+        // the modified way uses the moved pillar node which is not in the change file
+        gh = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(gh.load(ghLoc));
+        gh.applyChanges(testOsmModifyWay);
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 49, 10));
+        assertFalse(rsp.hasErrors());
+        assertEquals(4, rsp.getPoints().getSize());
+        assertEquals(51.251, rsp.getPoints().getLatitude(2), 1e-6);
+        assertEquals(9.431, rsp.getPoints().getLongitude(2), 1e-6);
+        gh.close();
+    }
+
+    @Test
+    public void testApplyChangesWithoutOSMIds()
+    {
+        instance = new GraphHopper().setStoreOnFlush(false).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        try
+        {
+            instance.applyChanges(testOsmChanges);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+
     @Test
     public void testLoadOSMNoCH()
     {
@@ -134,6 +339,118 @@ public class GraphHopperTest
         gh.close();
     }
 
+    @Test
+    public void testLoadOSMUnsafe()
+    {
+        GraphHopper gh = new GraphHopper().init(new CmdArgs().
+                put("graph.location", ghLoc).
+                put("osmreader.osm", testOsm).
+                put("graph.dataaccess", "UNSAFE_STORE").
+                put("graph.flagEncoders", "CAR"));
+        gh.importOrLoad();
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        gh.close();
+
+        // the graph is loaded into off-heap memory again and can be read via RAM_STORE too
+        gh = new GraphHopper().setUnsafeMemory().setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(gh.load(ghLoc));
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        gh.close();
+
+        gh = new GraphHopper().setStoreOnFlush(true).setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(gh.load(ghLoc));
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        gh.close();
+    }
+
+    @Test
+    public void testSearchLimits()
+    {
+        GraphHopper gh = new GraphHopper().init(new CmdArgs().
+                put("graph.location", ghLoc).
+                put("osmreader.osm", testOsm).
+                put("prepare.chWeighting", "no").
+                put("routing.timeout", "5000").
+                put("routing.maxVisitedNodes.car", "100").
+                put("routing.maxVisitedNodes.car.shortest", "1").
+                put("graph.flagEncoders", "CAR"));
+        assertEquals(5000, gh.getSearchLimit("routing.timeout", "car", "fastest"));
+        assertEquals(0, gh.getSearchLimit("routing.maxVisitedNodes", "foot", "fastest"));
+        assertEquals(100, gh.getSearchLimit("routing.maxVisitedNodes", "car", "fastest"));
+        assertEquals(1, gh.getSearchLimit("routing.maxVisitedNodes", "car", "shortest"));
+
+        gh.importOrLoad();
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setWeighting("shortest"));
+        assertTrue(rsp.hasErrors());
+        assertEquals("No path found due to maximum nodes exceeded 1", rsp.getErrors().get(0).getMessage());
+        gh.close();
+    }
+
+    @Test
+    public void testRouteCache()
+    {
+        GraphHopper gh = new GraphHopper().init(new CmdArgs().
+                put("graph.location", ghLoc).
+                put("osmreader.osm", testOsm).
+                put("routing.cache.size", "10").
+                put("graph.flagEncoders", "CAR"));
+        gh.importOrLoad();
+        RouteCache cache = gh.getRouteCache();
+        GHRequest req = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4);
+        req.getHints().put("instructions", false);
+        GHResponse rspWithoutInstructions = gh.route(req);
+        assertFalse(rspWithoutInstructions.hasErrors());
+        assertEquals(3, rspWithoutInstructions.getPoints().getSize());
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getMisses());
+
+        // a response without instructions cannot be used
+        req.getHints().put("instructions", true);
+        GHResponse rsp = gh.route(req);
+        assertNotSame(rspWithoutInstructions, rsp);
+        assertEquals(1, cache.getSize());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        // a query point snapping to nearly the same point, the output format does not change the route
+        req = new GHRequest(51.2492152, 9.4317166, 51.2000001, 9.4000001);
+        req.getHints().put("type", "gpx").put("instructions", false);
+        GHResponse hit = gh.route(req);
+        assertNotSame(rsp, hit);
+        assertEquals(rsp.getPoints(), hit.getPoints());
+        assertEquals(rsp.getDistance(), hit.getDistance(), 1e-6);
+        assertEquals(1, cache.getHits());
+
+        // a caller modifying its response does not change the next hit
+        int instructions = hit.getInstructions().getSize();
+        hit.getPoints().add(50, 10);
+        hit.getInstructions().get(0).setName("modified");
+        hit.getInstructions().add(new FinishInstruction(50, 10, 0));
+        hit.setDebugInfo("modified");
+        GHResponse nextHit = gh.route(req);
+        assertEquals(rsp.getPoints(), nextHit.getPoints());
+        assertEquals(instructions, nextHit.getInstructions().getSize());
+        assertEquals(rsp.getInstructions().get(0).getName(), nextHit.getInstructions().get(0).getName());
+        assertEquals(rsp.getDebugInfo(), nextHit.getDebugInfo());
+        assertEquals(2, cache.getHits());
+
+        GHResponse rspInvalid = gh.route(new GHRequest(51.2492152, 9.4317166, 80, 9.4));
+        assertTrue(rspInvalid.hasErrors());
+        assertEquals(1, cache.getSize());
+
+        gh.close();
+        assertEquals(0, cache.getSize());
+    }
+
     @Test
     public void testLoadingWithDifferentCHConfig_issue471()
     {
@@ -609,6 +926,131 @@ public class GraphHopperTest
         assertEquals(Instruction.REACHED_VIA, rsp.getInstructions().get(1).getSign());
     }
 
+    @Test
+    public void testViaWithParallelLegs()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                init(new CmdArgs().
+                        put("osmreader.osm", testOsm3).
+                        put("prepare.minNetworkSize", "1").
+                        put("graph.flagEncoders", "CAR").
+                        put("routing.legThreads", "1")).
+                setGraphHopperLocation(ghLoc);
+        instance.importOrLoad();
+        assertEquals(1, instance.getLegThreads());
+
+        GHRequest req = new GHRequest().addPoint(new GHPoint(11.1, 50)).
+                addPoint(new GHPoint(12, 51)).addPoint(new GHPoint(11.2, 51.9));
+        GHResponse serialRsp = instance.route(req);
+        assertFalse(serialRsp.hasErrors());
+
+        instance.setLegThreads(2);
+        GHResponse parallelRsp = instance.route(req);
+        assertFalse(parallelRsp.hasErrors());
+        assertEquals(serialRsp.getDistance(), parallelRsp.getDistance(), 1e-6);
+        assertEquals(serialRsp.getTime(), parallelRsp.getTime());
+        assertEquals(serialRsp.getPoints(), parallelRsp.getPoints());
+        assertEquals(serialRsp.getInstructions().size(), parallelRsp.getInstructions().size());
+        assertEquals(serialRsp.getHints().getLong("visited_nodes.sum", -1),
+                parallelRsp.getHints().getLong("visited_nodes.sum", -2));
+    }
+
+    @Test
+    public void testCalcMatrix()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                init(new CmdArgs().
+                        put("osmreader.osm", testOsm3).
+                        put("prepare.minNetworkSize", "1").
+                        put("graph.flagEncoders", "CAR").
+                        put("routing.matrixThreads", "2")).
+                setGraphHopperLocation(ghLoc);
+        instance.importOrLoad();
+
+        List<GHPoint> points = Arrays.asList(new GHPoint(11.1, 50), new GHPoint(12, 51), new GHPoint(11.2, 51.9));
+        GHMatrixRequest request = new GHMatrixRequest();
+        for (GHPoint point : points)
+        {
+            request.addPoint(point);
+        }
+        GHMatrixResponse rsp = instance.calcMatrix(request);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(3, rsp.getRows());
+        assertEquals(3, rsp.getColumns());
+        assertEquals(147930.5, rsp.getDistance(0, 1), .1);
+        assertEquals(176608.9, rsp.getDistance(1, 2), .1);
+
+        for (int row = 0; row < points.size(); row++)
+        {
+            for (int column = 0; column < points.size(); column++)
+            {
+                if (row == column)
+                {
+                    assertEquals(0, rsp.getDistance(row, column), 1e-6);
+                    assertEquals(0, rsp.getTime(row, column));
+                    continue;
+                }
+
+                GHResponse routeRsp = instance.route(new GHRequest(points.get(row), points.get(column)));
+                assertEquals(routeRsp.getErrors().toString(), !routeRsp.hasErrors(), rsp.isFound(row, column));
+                if (routeRsp.hasErrors())
+                    continue;
+
+                assertEquals(routeRsp.getDistance(), rsp.getDistance(row, column), 1e-3);
+                assertEquals(routeRsp.getTime(), rsp.getTime(row, column), 1);
+            }
+        }
+
+        // unsymmetric matrix and too small weight limit
+        request = new GHMatrixRequest().addFromPoint(points.get(0)).addToPoint(points.get(1)).addToPoint(points.get(2));
+        request.getHints().put("defaultWeightLimit", 10);
+        rsp = instance.calcMatrix(request);
+        assertFalse(rsp.hasErrors());
+        assertEquals(1, rsp.getRows());
+        assertEquals(2, rsp.getColumns());
+        assertFalse(rsp.isFound(0, 0));
+        assertEquals(-1, rsp.getTime(0, 1));
+
+        rsp = instance.calcMatrix(new GHMatrixRequest().addFromPoint(points.get(0)));
+        assertTrue(rsp.hasErrors());
+    }
+
+    @Test
+    public void testCalcIsochrone()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                init(new CmdArgs().
+                        put("osmreader.osm", testOsm3).
+                        put("prepare.minNetworkSize", "1").
+                        put("graph.flagEncoders", "CAR")).
+                setGraphHopperLocation(ghLoc);
+        instance.importOrLoad();
+
+        GHPoint first = new GHPoint(11.1, 50);
+        GHResponse routeRsp = instance.route(new GHRequest(first, new GHPoint(12, 51)));
+        assertFalse(routeRsp.hasErrors());
+
+        GHIsochroneRequest request = new GHIsochroneRequest(first).setTimeLimit(routeRsp.getTime() + 1000).setBuckets(2);
+        GHIsochroneResponse rsp = instance.calcIsochrone(request);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(2, rsp.getBuckets());
+        assertEquals((routeRsp.getTime() + 1000) / 2, rsp.getTimeLimit(0));
+        assertEquals(routeRsp.getTime() + 1000, rsp.getTimeLimit(1));
+        // the start is in the first bucket, the end of the route in the second
+        assertTrue(rsp.getPoints(0).getSize() > 0);
+        assertTrue(rsp.getPoints(1).getSize() > 0);
+        assertTrue(rsp.getPolygon(1).getSize() >= rsp.getPolygon(0).getSize());
+        int reached = rsp.getPoints(0).getSize() + rsp.getPoints(1).getSize();
+
+        // the memory of the previous search is reused
+        rsp = instance.calcIsochrone(request.setTimeLimit(routeRsp.getTime() - 1000).setBuckets(1));
+        assertFalse(rsp.hasErrors());
+        assertTrue(rsp.getPoints(0).getSize() < reached);
+
+        rsp = instance.calcIsochrone(request.setBuckets(0));
+        assertTrue(rsp.hasErrors());
+    }
+
     @Test
     public void testGetPathsDirectionEnforcement1()
     {
@@ -675,11 +1117,21 @@ public class GraphHopperTest
 
         GHRequest req = new GHRequest().addPoint(start).addPoint(via, 0.).addPoint(end);
         GHResponse response = new GHResponse();
+        instance.setLegThreads(1);
         List<Path> paths = instance.getPaths(req, response);
         assertArrayEquals(new int[]
         {
             10, 5, 6, 7, 11
         }, paths.get(0).calcNodes().toArray());
+
+        // every parallel leg enforces the headings in its own view of the QueryGraph
+        instance.setLegThreads(2);
+        List<Path> parallelPaths = instance.getPaths(req, new GHResponse());
+        assertArrayEquals(new int[]
+        {
+            10, 5, 6, 7, 11
+        }, parallelPaths.get(0).calcNodes().toArray());
+        assertArrayEquals(paths.get(1).calcNodes().toArray(), parallelPaths.get(1).calcNodes().toArray());
     }
 
     @Test
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IndexedIntIntBinHeapTest extends AbstractBinHeapTest
+{
+    @Override
+    public BinHeapWrapper<Number, Integer> createHeap( int capacity )
+    {
+        return new IndexedIntIntBinHeap(capacity);
+    }
+
+    @Test
+    public void testSameOrderAsTreeMapComposed()
+    {
+        IndexedIntIntBinHeap heap = new IndexedIntIntBinHeap(10);
+        GHTreeMapComposed treeMap = new GHTreeMapComposed();
+        int[] keys = new int[500];
+        Random rand = new Random(2);
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = rand.nextInt(50) - 25;
+            heap.insert_(keys[i], i);
+            treeMap.insert(i, keys[i]);
+        }
+
+        for (int i = 0; i < 1000; i++)
+        {
+            int element = rand.nextInt(keys.length);
+            if (!heap.contains(element))
+                continue;
+
+            int key = rand.nextInt(50) - 25;
+            heap.update_(key, element);
+            treeMap.update(element, keys[element], key);
+            keys[element] = key;
+            if (i % 3 == 0)
+            {
+                assertEquals(treeMap.peekValue(), heap.peek_key());
+                assertEquals(treeMap.pollKey(), heap.poll_element());
+            }
+        }
+
+        assertEquals(treeMap.getSize(), heap.getSize());
+        while (!treeMap.isEmpty())
+        {
+            assertEquals(treeMap.pollKey(), heap.poll_element());
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testClearAndReinsert()
+    {
+        IndexedIntIntBinHeap heap = new IndexedIntIntBinHeap(10);
+        heap.insert_(5, 20);
+        heap.insert_(3, 30);
+        assertTrue(heap.contains(20));
+        heap.clear();
+        assertFalse(heap.contains(20));
+        assertFalse(heap.contains(30));
+        heap.insert_(1, 30);
+        assertEquals(30, heap.poll_element());
+        assertFalse(heap.contains(30));
+
+        try
+        {
+            heap.insert_(1, 7);
+            heap.insert_(2, 7);
+            fail("elements can be contained only once");
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMInputFileTest
+{
+    @Test
+    public void testNodeBlocks() throws Exception
+    {
+        File file = new File("./files/andorra.osm.pbf");
+        OSMInputFile single = new OSMInputFile(file).setWorkerThreads(2).open();
+        OSMInputFile blocks = new OSMInputFile(file).setWorkerThreads(2).setNodeBlocks(true).open();
+        try
+        {
+            int nodes = 0, nodeBlocks = 0, taggedNodes = 0, others = 0;
+            OSMElement item;
+            while ((item = blocks.getNext()) != null)
+            {
+                if (item.isType(OSMElement.NODE_BLOCK))
+                {
+                    nodeBlocks++;
+                    OSMNodeBlock block = (OSMNodeBlock) item;
+                    for (int i = 0; i < block.getSize(); i++)
+                    {
+                        OSMNode expected = (OSMNode) single.getNext();
+                        assertEquals(expected.getId(), block.getNodeId(i));
+                        assertEquals(expected.getLat(), block.getLat(i), 1e-9);
+                        assertEquals(expected.getLon(), block.getLon(i), 1e-9);
+                        assertEquals(expected.hasTags(), block.hasTags(i));
+
+                        OSMNode node = block.createNode(i);
+                        assertEquals(expected.getTags(), node.getTags());
+                        if (node.hasTags())
+                        {
+                            taggedNodes++;
+                            String key = node.getTags().keySet().iterator().next();
+                            assertEquals(node.getTag(key), block.getTag(i, key));
+                        }
+                        nodes++;
+                    }
+                } else
+                {
+                    OSMElement expected = single.getNext();
+                    assertEquals(expected.getType(), item.getType());
+                    assertEquals(expected.getId(), item.getId());
+                    assertEquals(expected.getTags(), item.getTags());
+                    others++;
+                }
+            }
+            assertNull(single.getNext());
+            assertTrue(nodeBlocks > 0);
+            assertTrue(nodes > nodeBlocks);
+            assertTrue(taggedNodes > 0);
+            assertTrue(others > 0);
+        } finally
+        {
+            single.close();
+            blocks.close();
+        }
+    }
+}
@@ -803,6 +803,68 @@ public class OSMReaderTest
         }
     }
 
+    @Test
+    public void testParallelImport()
+    {
+        for (String file : new String[]
+        {
+            file1, file2, fileBarriers, "test-osm5.xml"
+        })
+        {
+            GraphHopperStorage serial = importWithThreads(file, 1).getGraphHopperStorage();
+            GraphHopperStorage parallel = importWithThreads(file, 3).getGraphHopperStorage();
+            assertEquals(file, serial.getNodes(), parallel.getNodes());
+            assertEquals(file, serial.getAllEdges().getMaxId(), parallel.getAllEdges().getMaxId());
+
+            NodeAccess serialNA = serial.getNodeAccess();
+            NodeAccess parallelNA = parallel.getNodeAccess();
+            for (int node = 0; node < serial.getNodes(); node++)
+            {
+                assertEquals(file, serialNA.getLat(node), parallelNA.getLat(node), 1e-6);
+                assertEquals(file, serialNA.getLon(node), parallelNA.getLon(node), 1e-6);
+                if (serialNA.is3D())
+                    assertEquals(file, serialNA.getEle(node), parallelNA.getEle(node), 1e-6);
+            }
+
+            AllEdgesIterator iter = serial.getAllEdges();
+            while (iter.next())
+            {
+                EdgeIteratorState edge = parallel.getEdgeIteratorState(iter.getEdge(), iter.getAdjNode());
+                assertEquals(file, iter.getBaseNode(), edge.getBaseNode());
+                assertEquals(file, iter.getFlags(), edge.getFlags());
+                assertEquals(file, iter.getDistance(), edge.getDistance(), 1e-6);
+                assertEquals(file, iter.getName(), edge.getName());
+                assertEquals(file, iter.fetchWayGeometry(3), edge.fetchWayGeometry(3));
+            }
+        }
+    }
+
+    private GraphHopper importWithThreads( final String file, final int importThreads )
+    {
+        // only the area of test-osm5.xml is available offline
+        final boolean elevation = "test-osm5.xml".equals(file);
+        GraphHopper hopper = new GraphHopperTest(file)
+        {
+            @Override
+            protected DataReader createReader( GraphHopperStorage tmpGraph )
+            {
+                OSMReader reader = initOSMReader(new OSMReader(tmpGraph));
+                // small batches to mix nodes and ways of several batches
+                reader.batchSize = 2;
+                if (elevation)
+                    reader.setElevationFilter("kalman");
+                return reader.setImportThreads(importThreads);
+            }
+        };
+        if (elevation)
+        {
+            ElevationProvider provider = new LowPrecisionSRTMProvider();
+            provider.setCacheDir(new File("./files"));
+            hopper.setElevationProvider(provider);
+        }
+        return hopper.importOrLoad();
+    }
+
     @Test
     public void testPreferredLanguage()
     {
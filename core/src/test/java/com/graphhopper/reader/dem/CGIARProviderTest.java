@@ -18,7 +18,15 @@
  */
 package com.graphhopper.reader.dem;
 
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Downloader;
+
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -76,4 +84,58 @@ public class CGIARProviderTest
         file.delete();
         zipFile.delete();
     }
+
+    @Test
+    public void testSeaLevelTileAfterEviction()
+    {
+        for (DAType daType : new DAType[]
+        {
+            DAType.MMAP, DAType.RAM_STORE
+        })
+        {
+            final AtomicInteger downloads = new AtomicInteger();
+            CGIARProvider instance = new CGIARProvider();
+            instance.setDAType(daType);
+            instance.setDownloader(new Downloader("test")
+            {
+                @Override
+                public void downloadFile( String url, String toFile ) throws IOException
+                {
+                    downloads.incrementAndGet();
+                    throw new IOException("no tile for " + url);
+                }
+            });
+            File file1 = new File(instance.getCacheDir(), instance.getFileName(46, -20) + ".gh");
+            File file2 = new File(instance.getCacheDir(), instance.getFileName(46, -30) + ".gh");
+            File file3 = new File(instance.getCacheDir(), instance.getFileName(46, -40) + ".gh");
+            file1.delete();
+            file2.delete();
+            file3.delete();
+            try
+            {
+                // only the last loaded tile is kept
+                instance.setMaxCacheBytes(0);
+                assertEquals(0, instance.getEle(46, -20), 1e-6);
+                assertEquals(0, instance.getEle(46, -30), 1e-6);
+                // the evicted sea level tile is loaded from its small file
+                assertEquals(0, instance.getEle(47, -19), 1e-6);
+                assertEquals(0, instance.getEle(46, -30), 1e-6);
+                assertEquals(2, downloads.get());
+
+                // a small file without the sea level flag
+                DataAccess da = new GHDirectory(instance.getCacheDir().getAbsolutePath(), daType).
+                        find(instance.getFileName(46, -40) + ".gh");
+                da.setSegmentSize(100).create(10).flush();
+                da.close();
+                assertEquals(0, instance.getEle(47, -39), 1e-6);
+                assertEquals(2, downloads.get());
+            } finally
+            {
+                instance.release();
+                file1.delete();
+                file2.delete();
+                file3.delete();
+            }
+        }
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader.dem;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.RAMDirectory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class HeightTileCacheTest
+{
+    private final RAMDirectory dir = new RAMDirectory();
+    private final Map<Integer, DataAccess> loaded = new HashMap<Integer, DataAccess>();
+    private final AtomicInteger loadCount = new AtomicInteger();
+    // every tile is one degree wide and all its heights are the key
+    private final HeightTileCache.TileLoader<Integer> loader = new HeightTileCache.TileLoader<Integer>()
+    {
+        @Override
+        public HeightTile load( Integer key, double lat, double lon )
+        {
+            loadCount.incrementAndGet();
+            if (key < 0)
+                return null;
+
+            int width = 10;
+            HeightTile tile = new HeightTile(key, 0, width, 1e7, 1);
+            DataAccess heights = dir.find("tile" + key + "_" + loadCount.get());
+            heights.setSegmentSize(128).create(2 * width * width);
+            for (int i = 0; i < width * width; i++)
+            {
+                heights.setShort(2 * i, key.shortValue());
+            }
+            tile.setHeights(heights);
+            synchronized (loaded)
+            {
+                loaded.put(key, heights);
+            }
+            return tile;
+        }
+    };
+
+    private double getHeight( HeightTileCache<Integer> cache, int key )
+    {
+        return cache.getHeight(key, key + 0.5, 0.5, loader);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        HeightTileCache<Integer> cache = new HeightTileCache<Integer>();
+        assertEquals(1, getHeight(cache, 1), 1e-6);
+        long tileBytes = cache.getBytes();
+        assertTrue(tileBytes > 0);
+        cache.setMaxBytes(2 * tileBytes);
+
+        assertEquals(2, getHeight(cache, 2), 1e-6);
+        assertEquals(1, getHeight(cache, 1), 1e-6);
+        assertEquals(2, loadCount.get());
+
+        // tile 2 is used least recently
+        assertEquals(3, getHeight(cache, 3), 1e-6);
+        assertEquals(2, cache.getSize());
+        assertEquals(2 * tileBytes, cache.getBytes());
+        assertTrue(loaded.get(2).isClosed());
+        assertFalse(loaded.get(1).isClosed());
+
+        assertEquals(1, getHeight(cache, 1), 1e-6);
+        assertEquals(3, loadCount.get());
+        assertEquals(2, getHeight(cache, 2), 1e-6);
+        assertEquals(4, loadCount.get());
+        assertTrue(loaded.get(3).isClosed());
+
+        // the last loaded tile is kept even if it is too big
+        cache.setMaxBytes(0);
+        assertEquals(4, getHeight(cache, 4), 1e-6);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testNoData()
+    {
+        HeightTileCache<Integer> cache = new HeightTileCache<Integer>();
+        assertEquals(0, getHeight(cache, -1), 1e-6);
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception
+    {
+        final HeightTileCache<Integer> cache = new HeightTileCache<Integer>();
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 1000; i++)
+                    {
+                        int key = i % 5;
+                        if (getHeight(cache, key) != key)
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        // every tile was loaded only once
+        assertEquals(5, loadCount.get());
+        assertEquals(5, cache.getSize());
+    }
+}
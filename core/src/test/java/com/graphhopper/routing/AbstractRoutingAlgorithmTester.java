@@ -99,6 +99,23 @@ public abstract class AbstractRoutingAlgorithmTester
         assertEquals(p.toString(), Helper.createTList(), p.calcNodes());
     }
 
+    @Test
+    public void testMaxVisitedNodes()
+    {
+        GraphHopperStorage ghStorage = createTestStorage();
+        RoutingAlgorithm algo = createAlgo(ghStorage);
+        algo.setMaxVisitedNodes(1);
+        Path p = algo.calcPath(0, 7);
+        assertFalse(p.isFound());
+        assertTrue(algo.isMaxVisitedNodesExceeded());
+        assertFalse(algo.isDeadlineExceeded());
+
+        algo = createAlgo(ghStorage);
+        p = algo.calcPath(0, 7);
+        assertTrue(p.isFound());
+        assertFalse(algo.isMaxVisitedNodesExceeded());
+    }
+
     @Test
     public void testWeightLimit_issue380()
     {
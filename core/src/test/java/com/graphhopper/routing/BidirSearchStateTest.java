@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.BidirSearchState.EntryMap;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.util.EdgeIterator;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class BidirSearchStateTest
+{
+    @Test
+    public void testEntryMap()
+    {
+        EntryMap<EdgeEntry> map = new EntryMap<EdgeEntry>(2);
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertNull(map.get(100));
+
+        EdgeEntry entry1 = new EdgeEntry(EdgeIterator.NO_EDGE, 1, 10);
+        EdgeEntry entry2 = new EdgeEntry(EdgeIterator.NO_EDGE, 100, 20);
+        map.put(1, entry1);
+        map.put(100, entry2);
+        assertTrue(map.getCapacity() > 100);
+        assertEquals(2, map.size());
+        assertSame(entry1, map.get(1));
+        assertSame(entry2, map.get(100));
+        assertNull(map.get(2));
+
+        map.put(1, entry2);
+        assertEquals(2, map.size());
+        assertSame(entry2, map.get(1));
+
+        int capacity = map.getCapacity();
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertNull(map.get(100));
+        assertEquals(capacity, map.getCapacity());
+
+        map.put(100, entry1);
+        assertEquals(1, map.size());
+        assertSame(entry1, map.get(100));
+    }
+
+    @Test
+    public void testClearRemovesEntries()
+    {
+        EntryMap<EdgeEntry> map = new EntryMap<EdgeEntry>(10);
+        EdgeEntry entry = new EdgeEntry(EdgeIterator.NO_EDGE, 3, 10);
+        map.put(3, entry);
+        map.put(7, entry);
+        map.clear();
+        // the slots are nulled and not only hidden
+        map.put(7, entry);
+        assertEquals(1, map.size());
+        assertNull(map.get(3));
+    }
+
+    @Test
+    public void testReleaseClearsState()
+    {
+        BidirSearchState.Pool pool = new BidirSearchState.Pool(1);
+        BidirSearchState<EdgeEntry> state = BidirSearchState.acquire(pool, 10);
+        EdgeEntry entry = new EdgeEntry(EdgeIterator.NO_EDGE, 3, 10);
+        state.getOpenSetFrom().add(entry);
+        state.getBestWeightMapFrom().put(3, entry);
+        state.getOpenSetTo().add(entry);
+        state.getBestWeightMapTo().put(3, entry);
+
+        BidirSearchState.release(pool, state);
+        assertEquals(1, pool.size());
+        assertTrue(state.getOpenSetFrom().isEmpty());
+        assertTrue(state.getOpenSetTo().isEmpty());
+        assertTrue(state.getBestWeightMapFrom().isEmpty());
+        assertNull(state.getBestWeightMapTo().get(3));
+
+        BidirSearchState<EdgeEntry> newState = BidirSearchState.acquire(pool, 10);
+        assertSame(state, newState);
+        assertEquals(0, pool.size());
+        assertTrue(newState.getOpenSetFrom().isEmpty());
+        assertTrue(newState.getBestWeightMapFrom().isEmpty());
+    }
+
+    @Test
+    public void testPoolIsBounded()
+    {
+        BidirSearchState.Pool pool = new BidirSearchState.Pool(1);
+        BidirSearchState<EdgeEntry> state1 = BidirSearchState.acquire(pool, 10);
+        BidirSearchState<EdgeEntry> state2 = BidirSearchState.acquire(pool, 10);
+        assertNotSame(state1, state2);
+        BidirSearchState.release(pool, state1);
+        BidirSearchState.release(pool, state2);
+        assertEquals(1, pool.size());
+
+        // without pool a new state is created every time
+        assertNotSame(BidirSearchState.acquire(null, 10), BidirSearchState.acquire(null, 10));
+    }
+}
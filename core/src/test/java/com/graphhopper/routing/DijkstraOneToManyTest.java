@@ -163,6 +163,26 @@ public class DijkstraOneToManyTest extends AbstractRoutingAlgorithmTester
         assertEquals(Helper.createTList(0, 1, 2), p.calcNodes());
     }
 
+    @Test
+    public void testReuseDataStructures()
+    {
+        GraphHopperStorage small = createGHStorage(false);
+        small.edge(0, 1, 1, true);
+        small.edge(1, 2, 1, true);
+        DijkstraOneToMany algo = (DijkstraOneToMany) createAlgo(small);
+        assertEquals(Helper.createTList(2, 1, 0), algo.calcPath(2, 0).calcNodes());
+
+        // the arrays grow to the bigger graph and the old search space is gone
+        GraphHopperStorage g = createTestStorage();
+        DijkstraOneToMany reused = new DijkstraOneToMany(g, carEncoder, defaultOpts.getWeighting(), traversalMode, algo);
+        assertEquals(Helper.createTList(0, 4, 5, 7), reused.calcPath(0, 7).calcNodes());
+        assertEquals(Helper.createTList(0, 1, 2), reused.calcPath(0, 2).calcNodes());
+
+        reused = new DijkstraOneToMany(small, carEncoder, defaultOpts.getWeighting(), traversalMode, reused);
+        assertEquals(Helper.createTList(0, 1, 2), reused.calcPath(0, 2).calcNodes());
+        assertEquals(-1, reused.findEndNode(0, 5));
+    }
+
     @Test
     public void testDifferentEdgeFilter()
     {
@@ -22,6 +22,7 @@ import com.graphhopper.routing.util.*;
 import java.util.Arrays;
 import java.util.Collection;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
@@ -29,6 +30,8 @@ import org.junit.runners.Parameterized.Parameters;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphHopperStorage;
 
+import static org.junit.Assert.*;
+
 /**
  * @author Peter Karich
  */
@@ -69,4 +72,28 @@ public class DijkstraTest extends AbstractRoutingAlgorithmTester
             }
         };
     }
+
+    @Test
+    public void testDeadline()
+    {
+        GraphHopperStorage graph = createGHStorage(false);
+        for (int i = 0; i < 3000; i++)
+        {
+            graph.edge(i, i + 1, 1, true);
+        }
+
+        RoutingAlgorithm algo = createAlgo(graph);
+        algo.setDeadline(System.nanoTime() - 1000);
+        Path p = algo.calcPath(0, 3000);
+        assertFalse(p.isFound());
+        assertTrue(algo.isDeadlineExceeded());
+        // the clock is not read for every node
+        assertTrue(algo.getVisitedNodes() >= 1024);
+        assertTrue(algo.getVisitedNodes() < 3000);
+
+        algo = createAlgo(graph);
+        algo.setDeadline(System.nanoTime() + 60 * 1000000000L);
+        assertTrue(algo.calcPath(0, 3000).isFound());
+        assertFalse(algo.isDeadlineExceeded());
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FastestWeighting;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.ShortestWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.util.Helper;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IsochroneTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+
+    Graph createGraph( int extraNodes )
+    {
+        Graph graph = new GraphBuilder(encodingManager).create();
+        // 4-0-1-2-3
+        //   |
+        //   5 (one way to 0)
+        long flags = carEncoder.setProperties(90, true, true);
+        graph.edge(0, 1).setDistance(1000).setFlags(flags);
+        graph.edge(1, 2).setDistance(1000).setFlags(flags);
+        graph.edge(2, 3).setDistance(1000).setFlags(flags);
+        graph.edge(0, 4).setDistance(500).setFlags(flags);
+        graph.edge(5, 0).setDistance(500).setFlags(carEncoder.setProperties(90, true, false));
+        for (int i = 0; i < extraNodes; i++)
+        {
+            graph.edge(3, 6 + i).setDistance(1000).setFlags(flags);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testSearch()
+    {
+        Graph graph = createGraph(0);
+        Isochrone isochrone = new Isochrone();
+        isochrone.search(graph, new FastestWeighting(carEncoder), null, 0, 100 * 1000);
+        assertEquals(Helper.createTList(0, 4, 1, 2), isochrone.getReachedNodes());
+        assertEquals(0, isochrone.getTime(0));
+        assertEquals(20 * 1000, isochrone.getTime(4));
+        assertEquals(40 * 1000, isochrone.getTime(1));
+        assertEquals(80 * 1000, isochrone.getTime(2));
+        assertEquals(4, isochrone.getVisitedNodes());
+
+        isochrone.search(graph, new FastestWeighting(carEncoder), null, 0, 200 * 1000);
+        assertEquals(Helper.createTList(0, 4, 1, 2, 3), isochrone.getReachedNodes());
+
+        // the node 5 is only reachable in the other direction
+        isochrone.search(graph, new ShortestWeighting(carEncoder), null, 5, 45 * 1000);
+        assertEquals(Helper.createTList(5, 0, 4), isochrone.getReachedNodes());
+        assertEquals(1000, isochrone.getWeight(4), 1e-6);
+    }
+
+    @Test
+    public void testReuse()
+    {
+        Isochrone isochrone = new Isochrone();
+        isochrone.search(createGraph(0), new FastestWeighting(carEncoder), null, 0, 100 * 1000);
+        assertEquals(6, isochrone.getCapacity());
+        assertEquals(4, isochrone.getReachedNodes().size());
+
+        // the state of the previous search must not influence the next one
+        isochrone.search(createGraph(0), new FastestWeighting(carEncoder), null, 3, 50 * 1000);
+        assertEquals(Helper.createTList(3, 2), isochrone.getReachedNodes());
+        assertEquals(40 * 1000, isochrone.getTime(2));
+
+        // a bigger graph increases the capacity
+        isochrone.search(createGraph(4), new FastestWeighting(carEncoder), null, 3, 50 * 1000);
+        assertEquals(10, isochrone.getCapacity());
+        TIntArrayList reachedNodes = new TIntArrayList(isochrone.getReachedNodes());
+        reachedNodes.sort();
+        assertEquals(Helper.createTList(2, 3, 6, 7, 8, 9), reachedNodes);
+    }
+}
@@ -74,6 +74,58 @@ public class PathTest
         g.close();
     }
 
+    @Test
+    public void testTimeWithSpeedProvider()
+    {
+        GraphHopperStorage g = new GraphBuilder(carManager).create();
+        NodeAccess na = g.getNodeAccess();
+        na.setNode(0, 0.0, 0.1);
+        na.setNode(1, 1.0, 0.1);
+        na.setNode(2, 2.0, 0.1);
+        EdgeIteratorState edge1 = g.edge(0, 1).setDistance(1000).setFlags(encoder.setProperties(10, true, true));
+        edge1.setWayGeometry(Helper.createPointList(8, 1, 9, 1));
+        EdgeIteratorState edge2 = g.edge(2, 1).setDistance(2000).setFlags(encoder.setProperties(50, true, true));
+        SpeedProvider speedProvider = new SpeedProvider()
+        {
+            @Override
+            public double calcSpeed( EdgeIteratorState edgeState, boolean reverse )
+            {
+                return 36;
+            }
+        };
+
+        // the time is updated while the instructions, the points or only the time is calculated
+        Path path = createPath(g, edge1, edge2).setSpeedProvider(speedProvider);
+        assertEquals(504000L, path.getTime());
+        InstructionList il = path.calcInstructions(tr);
+        assertEquals(300000L, path.getTime());
+        assertEquals(300000L, il.get(0).getTime());
+
+        path = createPath(g, edge1, edge2).setSpeedProvider(speedProvider);
+        assertEquals(5, path.calcPoints().size());
+        assertEquals(300000L, path.getTime());
+
+        path = createPath(g, edge1, edge2).setSpeedProvider(speedProvider);
+        path.updateTime();
+        assertEquals(300000L, path.getTime());
+
+        // without speed provider the time of the encoder is kept
+        path = createPath(g, edge1, edge2);
+        path.calcInstructions(tr);
+        assertEquals(504000L, path.getTime());
+        g.close();
+    }
+
+    private Path createPath( Graph g, EdgeIteratorState edge1, EdgeIteratorState edge2 )
+    {
+        // 0-1-2
+        Path path = new Path(g, encoder);
+        EdgeEntry e1 = new EdgeEntry(edge2.getEdge(), 2, 1);
+        e1.parent = new EdgeEntry(edge1.getEdge(), 1, 1);
+        e1.parent.parent = new EdgeEntry(-1, 0, 1);
+        return path.setEdgeEntry(e1).extract();
+    }
+
     @Test
     public void testWayList()
     {
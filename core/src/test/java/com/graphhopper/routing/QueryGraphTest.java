@@ -25,10 +25,14 @@ import static com.graphhopper.storage.index.QueryResult.Position.*;
 
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.list.TIntList;
 import gnu.trove.map.TIntObjectMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Test;
@@ -662,6 +666,86 @@ public class QueryGraphTest
         assertEquals(expect, incomingEdgeReverse.getBoolean(EdgeIteratorState.K_UNFAVORED_EDGE, false, !expect));
     }
 
+    @Test
+    public void testCreateView()
+    {
+        initGraph(g);
+        EdgeIterator iter = g.createEdgeExplorer().setBaseNode(1);
+        iter.next();
+        QueryResult res1 = createLocationResult(2, 1.7, iter, 1, PILLAR);
+        QueryResult res2 = createLocationResult(1.5, 2, iter, 0, EDGE);
+        QueryGraph queryGraph = new QueryGraph(g);
+        queryGraph.lookup(Arrays.asList(res1, res2));
+
+        QueryGraph view = queryGraph.createView();
+        assertEquals(queryGraph.getNodes(), view.getNodes());
+        assertEquals(4, getPoints(view, 3, 0).getSize());
+        assertEquals(2, getPoints(view, 3, 4).getSize());
+        assertEquals(2, getPoints(view, 4, 1).getSize());
+        assertNull(GHUtility.getEdge(view, 4, 0));
+        assertEquals(GHUtility.getNeighbors(queryGraph.createEdgeExplorer().setBaseNode(1)),
+                GHUtility.getNeighbors(view.createEdgeExplorer().setBaseNode(1)));
+        assertEquals(GHUtility.getNeighbors(queryGraph.getBaseGraph().createEdgeExplorer().setBaseNode(4)),
+                GHUtility.getNeighbors(view.getBaseGraph().createEdgeExplorer().setBaseNode(4)));
+
+        // the edge 3-4 is the adjacent edge of node 3 and the base edge of node 4 also in the view
+        assertSame(view.virtualEdges.get(QueryGraph.VE_ADJ), view.virtualEdges.get(4 + QueryGraph.VE_BASE));
+        assertNotSame(queryGraph.virtualEdges.get(QueryGraph.VE_ADJ), view.virtualEdges.get(QueryGraph.VE_ADJ));
+
+        // heading enforcement of the view does not change the original graph
+        EdgeIteratorState viewEdge = GHUtility.getEdge(view, 3, 4);
+        assertTrue(view.enforceHeadingByEdgeId(4, viewEdge.getEdge(), true));
+        assertTrue(view.getEdgeIteratorState(viewEdge.getEdge(), 4).getBoolean(EdgeIteratorState.K_UNFAVORED_EDGE, false, false));
+        assertFalse(queryGraph.getEdgeIteratorState(viewEdge.getEdge(), 4).getBoolean(EdgeIteratorState.K_UNFAVORED_EDGE, false, false));
+        assertFalse(queryGraph.createView().getEdgeIteratorState(viewEdge.getEdge(), 4).getBoolean(EdgeIteratorState.K_UNFAVORED_EDGE, false, false));
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception
+    {
+        initGraph(g);
+        EdgeIterator iter = g.createEdgeExplorer().setBaseNode(1);
+        iter.next();
+        QueryResult res1 = createLocationResult(2, 1.7, iter, 1, PILLAR);
+        QueryResult res2 = createLocationResult(1.5, 2, iter, 0, EDGE);
+        final QueryGraph queryGraph = new QueryGraph(g);
+        queryGraph.lookup(Arrays.asList(res1, res2));
+        final TIntList expectedNodes = new Dijkstra(queryGraph, carEncoder, new ShortestWeighting(carEncoder),
+                TraversalMode.NODE_BASED).calcPath(2, 4).calcNodes();
+        assertEquals(Helper.createTList(2, 0, 3, 4), expectedNodes);
+
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++)
+        {
+            final boolean useView = i % 2 == 0;
+            threads.add(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 200; j++)
+                    {
+                        Graph graph = useView ? queryGraph.createView() : queryGraph;
+                        TIntList nodes = new DijkstraBidirectionRef(graph, carEncoder, new ShortestWeighting(carEncoder),
+                                TraversalMode.NODE_BASED).calcPath(2, 4).calcNodes();
+                        if (!expectedNodes.equals(nodes))
+                            failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
     @Test
     public void testInternalAPIOriginalTraversalKey()
     {
@@ -0,0 +1,152 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.FinishInstruction;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionAnnotation;
+import com.graphhopper.util.InstructionList;
+import com.graphhopper.util.PointList;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class RouteCacheTest
+{
+    private GHResponse createResponse( int points )
+    {
+        PointList list = new PointList(points, false);
+        for (int i = 0; i < points; i++)
+        {
+            list.add(50 + i * 1e-3, 10);
+        }
+        return new GHResponse().setPoints(list);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted()
+    {
+        RouteCache cache = new RouteCache(2, Long.MAX_VALUE);
+        GHResponse rsp1 = createResponse(2);
+        GHResponse rsp2 = createResponse(2);
+        cache.put("1", rsp1, false);
+        cache.put("2", rsp2, false);
+        assertEquals(rsp1.getPoints(), cache.get("1", false).getPoints());
+
+        cache.put("3", createResponse(2), false);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("2", false));
+        assertEquals(rsp1.getPoints(), cache.get("1", false).getPoints());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testMaxBytes()
+    {
+        long bytes = RouteCache.estimateBytes(createResponse(100), false);
+        RouteCache cache = new RouteCache(100, 2 * bytes);
+        cache.put("1", createResponse(100), false);
+        cache.put("2", createResponse(100), false);
+        assertEquals(2 * bytes, cache.getBytes());
+
+        cache.put("3", createResponse(100), false);
+        assertEquals(2, cache.getSize());
+        assertEquals(2 * bytes, cache.getBytes());
+        assertNull(cache.get("1", false));
+
+        // replacing a response updates the memory
+        cache.put("3", createResponse(10), false);
+        assertEquals(bytes + RouteCache.estimateBytes(createResponse(10), false), cache.getBytes());
+
+        // too big to be cached
+        cache.put("4", createResponse(300), false);
+        assertNull(cache.get("4", false));
+        assertEquals(2, cache.getSize());
+
+        cache.clear();
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testTimeToLive() throws InterruptedException
+    {
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE).setTimeToLive(20);
+        cache.put("1", createResponse(2), false);
+        assertNotNull(cache.get("1", false));
+
+        Thread.sleep(40);
+        assertNull(cache.get("1", false));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    public void testInstructions()
+    {
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE);
+        GHResponse rsp = createResponse(2);
+        cache.put("1", rsp, false);
+        assertNull(cache.get("1", true));
+        assertEquals(rsp.getPoints(), cache.get("1", false).getPoints());
+    }
+
+    @Test
+    public void testResponsesAreCopied()
+    {
+        RouteCache cache = new RouteCache(10, Long.MAX_VALUE);
+        GHResponse rsp = createResponse(2).setDistance(100);
+        InstructionList instructions = new InstructionList(null);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "street", InstructionAnnotation.EMPTY,
+                rsp.getPoints().clone(false)));
+        instructions.add(new FinishInstruction(50.001, 10, 0));
+        rsp.setInstructions(instructions);
+        cache.put("1", rsp, true);
+
+        // changing the original response does not change the cached one
+        rsp.getPoints().add(51, 11);
+        rsp.setDistance(200);
+        GHResponse hit = cache.get("1", true);
+        assertNotSame(rsp, hit);
+        assertEquals(2, hit.getPoints().getSize());
+        assertEquals(100, hit.getDistance(), 1e-6);
+
+        // changing a returned response does not change the next hit
+        hit.getPoints().add(52, 12);
+        hit.getInstructions().get(0).setName("other");
+        hit.getInstructions().get(0).getPoints().add(52, 12);
+        hit.getInstructions().add(new FinishInstruction(52, 12, 0));
+        hit.getHints().put("foo", "bar");
+        hit.setDebugInfo("modified");
+        hit.addError(new IllegalStateException());
+        GHResponse nextHit = cache.get("1", true);
+        assertFalse(nextHit.hasErrors());
+        assertEquals(2, nextHit.getPoints().getSize());
+        assertEquals(2, nextHit.getInstructions().getSize());
+        assertEquals("street", nextHit.getInstructions().get(0).getName());
+        assertEquals(2, nextHit.getInstructions().get(0).getPoints().getSize());
+        assertFalse(nextHit.getHints().has("foo"));
+        assertEquals("", nextHit.getDebugInfo());
+    }
+}
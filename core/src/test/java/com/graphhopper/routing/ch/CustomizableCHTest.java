@@ -0,0 +1,290 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.profiles.ProfileManager;
+import com.graphhopper.util.profiles.ProfileRepository;
+import com.graphhopper.util.profiles.TrackPart;
+import gnu.trove.list.TIntList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CustomizableCHTest
+{
+    private final String profileDir = "./target/tmp/cch-profiles/";
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+    private TestEncoder encoder;
+    private EncodingManager encodingManager;
+    private Weighting weighting;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(profileDir));
+        new File(profileDir).mkdirs();
+        encoder = new TestEncoder();
+        encodingManager = new EncodingManager(encoder);
+        weighting = new DynamicWeighting(encoder);
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(profileDir));
+    }
+
+    GraphHopperStorage createRandomGraph( long seed )
+    {
+        GraphHopperStorage g = new GraphBuilder(encodingManager).setCHGraph(weighting).create();
+        Random rand = new Random(seed);
+        int size = 12;
+        NodeAccess na = g.getNodeAccess();
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                int node = y * size + x;
+                na.setNode(node, 46 + y * 0.001, 11 + x * 0.001);
+                if (x + 1 < size)
+                    createEdge(g, rand, node, node + 1);
+                if (y + 1 < size)
+                    createEdge(g, rand, node, node + size);
+                if (x + 1 < size && y + 1 < size && rand.nextInt(4) == 0)
+                    createEdge(g, rand, node, node + size + 1);
+            }
+        }
+        // parallel edges
+        createEdge(g, rand, 0, 1);
+        createEdge(g, rand, 30, 31);
+        return g;
+    }
+
+    void createEdge( GraphHopperStorage g, Random rand, int from, int to )
+    {
+        int oneway = rand.nextInt(10);
+        long flags = encoder.createFlags(4 + rand.nextInt(20), oneway != 0, oneway != 1,
+                rand.nextInt(14), rand.nextInt(15), rand.nextInt(15), rand.nextInt(101));
+        g.edge(from, to).setDistance(20 + rand.nextInt(200)).setFlags(flags);
+    }
+
+    PrepareContractionHierarchies prepare( GraphHopperStorage g )
+    {
+        g.freeze();
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                g, g.getGraph(CHGraph.class), encoder, weighting, tMode).setCustomizable(true);
+        prepare.doWork();
+        return prepare;
+    }
+
+    ProfileManager createProfile()
+    {
+        ProfileRepository repository = new ProfileRepository(profileDir);
+        repository.createProfile("rider");
+        List<TrackPart> trackParts = new ArrayList<TrackPart>();
+        for (int slope = -10; slope <= 10; slope++)
+        {
+            TrackPart tp = new TrackPart(null, 2000, slope, 18 - slope * 1.2);
+            tp.setWayType(2);
+            trackParts.add(tp);
+        }
+        repository.getProfile("rider").update(trackParts);
+        repository.saveProfile("rider");
+        return new ProfileManager(new ProfileRepository(profileDir)).init("rider", encoder);
+    }
+
+    @Test
+    public void testSameWeightAsDijkstra()
+    {
+        GraphHopperStorage g = createRandomGraph(1);
+        PrepareContractionHierarchies prepare = prepare(g);
+        assertTrue(prepare.getShortcuts() > 0);
+
+        CustomizedWeighting customizedWeighting = prepare.getCustomizedWeighting(weighting, null);
+        assertSame(customizedWeighting.getMetric(), prepare.getCustomizedWeighting(weighting, null).getMetric());
+        assertSameAsDijkstra(g, prepare, customizedWeighting, 2);
+
+        ProfileManager profileManager = createProfile();
+        assertTrue(profileManager.hasFilteredSpeeds());
+        Weighting profileWeighting = new DynamicWeighting(encoder, new PMap(), profileManager);
+        CustomizedWeighting profileCustomizedWeighting = prepare.getCustomizedWeighting(profileWeighting, profileManager);
+        assertNotSame(customizedWeighting.getMetric(), profileCustomizedWeighting.getMetric());
+        assertSameAsDijkstra(g, prepare, profileCustomizedWeighting, 3);
+    }
+
+    @Test
+    public void testParallelContraction()
+    {
+        GraphHopperStorage g = createRandomGraph(2);
+        g.freeze();
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                g, g.getGraph(CHGraph.class), encoder, weighting, tMode).setCustomizable(true).setContractionThreads(4);
+        prepare.doWork();
+        assertSameAsDijkstra(g, prepare, prepare.getCustomizedWeighting(weighting, null), 7);
+    }
+
+    @Test
+    public void testMetricIsCachedPerKey()
+    {
+        GraphHopperStorage g = createRandomGraph(4);
+        PrepareContractionHierarchies prepare = prepare(g);
+        ProfileManager profileManager = createProfile();
+        Weighting profileWeighting = new DynamicWeighting(encoder, new PMap(), profileManager);
+        CustomizedMetric metric = prepare.getCustomizedWeighting(profileWeighting, profileManager).getMetric();
+        assertSame(metric, prepare.getCustomizedWeighting(new DynamicWeighting(encoder, new PMap(), profileManager),
+                profileManager).getMetric());
+        assertNotSame(metric, prepare.getCustomizedWeighting(profileWeighting, new Object()).getMetric());
+    }
+
+    @Test
+    public void testMetricCacheIsBoundedByBytes()
+    {
+        GraphHopperStorage g = createRandomGraph(7);
+        PrepareContractionHierarchies prepare = prepare(g);
+        ProfileManager profileManager = createProfile();
+        Weighting profileWeighting = new DynamicWeighting(encoder, new PMap(), profileManager);
+        Object key1 = new Object(), key2 = new Object(), key3 = new Object();
+        CustomizedMetric metric1 = prepare.getCustomizedWeighting(profileWeighting, key1).getMetric();
+        long bytes = metric1.getCapacity();
+        assertEquals(bytes, prepare.getCachedMetricBytes());
+
+        // room for two metrics
+        prepare.setMaxMetricBytes(2 * bytes);
+        CustomizedMetric metric2 = prepare.getCustomizedWeighting(profileWeighting, key2).getMetric();
+        // key1 is now the most recently used
+        assertSame(metric1, prepare.getCustomizedWeighting(profileWeighting, key1).getMetric());
+        prepare.getCustomizedWeighting(profileWeighting, key3);
+        assertEquals(2, prepare.getCachedMetrics());
+        assertEquals(2 * bytes, prepare.getCachedMetricBytes());
+        assertSame(metric1, prepare.getCustomizedWeighting(profileWeighting, key1).getMetric());
+        assertNotSame(metric2, prepare.getCustomizedWeighting(profileWeighting, key2).getMetric());
+
+        // metrics larger than the limit are not cached
+        prepare.setMaxMetricBytes(bytes - 1);
+        assertEquals(0, prepare.getCachedMetrics());
+        assertEquals(0, prepare.getCachedMetricBytes());
+        CustomizedMetric metric = prepare.getCustomizedWeighting(profileWeighting, key1).getMetric();
+        assertNotSame(metric, prepare.getCustomizedWeighting(profileWeighting, key1).getMetric());
+        assertEquals(0, prepare.getCachedMetrics());
+    }
+
+    @Test
+    public void testDefaultMetricWithoutCustomizedWeighting()
+    {
+        GraphHopperStorage g = createRandomGraph(5);
+        PrepareContractionHierarchies prepare = prepare(g);
+        CHGraph chGraph = g.getGraph(CHGraph.class);
+        RoutingAlgorithm algo = prepare.createAlgo(chGraph, AlgorithmOptions.start().flagEncoder(encoder).
+                weighting(weighting).traversalMode(tMode).algorithm(AlgorithmOptions.DIJKSTRA_BI).build());
+        Path path = algo.calcPath(0, 143);
+        Path expected = new Dijkstra(g, encoder, weighting, tMode).calcPath(0, 143);
+        assertTrue(expected.isFound());
+        assertEquals(expected.getWeight(), path.getWeight(), expected.getWeight() * 1e-5);
+        assertEquals(expected.calcNodes(), path.calcNodes());
+    }
+
+    @Test
+    public void testNotCustomizable()
+    {
+        GraphHopperStorage g = createRandomGraph(6);
+        g.freeze();
+        new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT), g, g.getGraph(CHGraph.class),
+                encoder, weighting, tMode).doWork();
+        try
+        {
+            new CustomizableCH(g.getGraph(CHGraph.class), encoder).customize(weighting);
+            fail("CHGraph is not customizable");
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+
+    void assertSameAsDijkstra( GraphHopperStorage g, PrepareContractionHierarchies prepare,
+                               CustomizedWeighting customizedWeighting, long seed )
+    {
+        Weighting userWeighting = customizedWeighting.getUserWeighting();
+        CHGraph chGraph = g.getGraph(CHGraph.class);
+        AlgorithmOptions opts = AlgorithmOptions.start().flagEncoder(encoder).weighting(customizedWeighting).
+                traversalMode(tMode).algorithm(AlgorithmOptions.DIJKSTRA_BI).build();
+        Random rand = new Random(seed);
+        int found = 0;
+        for (int i = 0; i < 200; i++)
+        {
+            int from = rand.nextInt(g.getNodes());
+            int to = rand.nextInt(g.getNodes());
+            Path expected = new Dijkstra(g, encoder, userWeighting, tMode).calcPath(from, to);
+            Path path = prepare.createAlgo(chGraph, opts).calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), path.isFound());
+            if (!expected.isFound())
+                continue;
+
+            found++;
+            double delta = expected.getWeight() * 1e-5;
+            assertEquals(from + "->" + to, expected.getWeight(), path.getWeight(), delta);
+
+            // the unpacked edges have to build a connected path with the same weight and distance
+            TIntList nodes = path.calcNodes();
+            assertEquals(from, nodes.get(0));
+            assertEquals(to, nodes.get(nodes.size() - 1));
+            double weight = 0;
+            double distance = 0;
+            int prevNode = from;
+            for (EdgeIteratorState edge : path.calcEdges())
+            {
+                assertEquals(prevNode, edge.getBaseNode());
+                assertTrue(edge.isForward(encoder));
+                weight += userWeighting.calcWeight(edge, false, EdgeIterator.NO_EDGE);
+                distance += edge.getDistance();
+                prevNode = edge.getAdjNode();
+            }
+            assertEquals(from + "->" + to, expected.getWeight(), weight, delta);
+            assertEquals(from + "->" + to, path.getDistance(), distance, 1e-5);
+        }
+        assertTrue(found > 100);
+    }
+
+    static class TestEncoder extends BikeGenericFlagEncoder
+    {
+        long createFlags( double speed, boolean forward, boolean backward,
+                          int wayType, int incSlope, int decSlope, int percentage )
+        {
+            long flags = setProperties(speed, forward, backward);
+            flags = wayTypeEncoder.setValue(flags, wayType);
+            flags = inclineSlopeEncoder.setDoubleValue(flags, incSlope);
+            flags = declineSlopeEncoder.setDoubleValue(flags, decSlope);
+            return inclineDistancePercentageEncoder.setDoubleValue(flags, percentage);
+        }
+    }
+}
@@ -26,8 +26,11 @@ import gnu.trove.list.TIntList;
 import java.util.Arrays;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -658,6 +661,60 @@ public class PrepareContractionHierarchiesTest
         checkPath(ghStorage, bikeWeighting, 9, 5, Helper.createTList(3, 10, 14, 16, 13, 12));
     }
 
+    @Test
+    public void testParallelContraction()
+    {
+        GraphHopperStorage g = createGHStorage();
+        Random rand = new Random(12);
+        int size = 20;
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                int node = y * size + x;
+                g.getNodeAccess().setNode(node, 49 + y * 0.001, 9 + x * 0.001);
+                if (x + 1 < size)
+                    g.edge(node, node + 1, 10 + rand.nextInt(100), rand.nextInt(8) != 0);
+                if (y + 1 < size)
+                    g.edge(node, node + size, 10 + rand.nextInt(100), rand.nextInt(8) != 0);
+            }
+        }
+        g.freeze();
+
+        CHGraph lg = g.getGraph(CHGraph.class);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, g, lg, carEncoder, weighting, tMode).
+                setContractionThreads(3);
+        prepare.doWork();
+        assertTrue(prepare.getShortcuts() > 0);
+        assertTrue(prepare.getDijkstraCount() > 0);
+        assertEquals(0, prepare.getLazyTime(), 1e-10);
+
+        // every node got its own level
+        Set<Integer> levels = new HashSet<Integer>();
+        for (int node = 0; node < lg.getNodes(); node++)
+        {
+            assertTrue(levels.add(lg.getLevel(node)));
+        }
+
+        int found = 0;
+        for (int i = 0; i < 100; i++)
+        {
+            int from = rand.nextInt(g.getNodes());
+            int to = rand.nextInt(g.getNodes());
+            Path expected = new Dijkstra(g, carEncoder, weighting, tMode).calcPath(from, to);
+            Path path = prepare.createAlgo(lg, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI, carEncoder, weighting, tMode)).
+                    calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), path.isFound());
+            if (!expected.isFound())
+                continue;
+
+            found++;
+            assertEquals(from + "->" + to, expected.getWeight(), path.getWeight(), 1e-5);
+            assertEquals(from + "->" + to, expected.getDistance(), path.getDistance(), 1e-5);
+        }
+        assertTrue(found > 50);
+    }
+
     void checkPath( GraphHopperStorage ghStorage, Weighting w, int expShortcuts, double expDistance, TIntList expNodes )
     {
         CHGraph lg = ghStorage.getGraph(CHGraph.class, w);
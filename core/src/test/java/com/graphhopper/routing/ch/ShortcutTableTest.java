@@ -0,0 +1,80 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ShortcutTableTest
+{
+    @Test
+    public void testFind()
+    {
+        ShortcutTable table = new ShortcutTable(4);
+        int sc = table.add(1, 2, 10, 100);
+        assertEquals(0, sc);
+        assertEquals(PrepareEncoder.getScFwdDir(), table.getFlags(sc));
+        // same nodes but different weight is a different shortcut
+        assertEquals(1, table.add(1, 2, 12, 120));
+        assertEquals(0, table.find(1, 2, 10));
+        assertEquals(1, table.find(1, 2, 12));
+        assertEquals(-1, table.find(1, 2, 11));
+        assertEquals(-1, table.find(2, 1, 10));
+
+        table.setSkippedEdges(sc, 3, 4);
+        table.setOriginalEdges(sc, 2);
+        table.setFlags(sc, PrepareEncoder.getScDirMask());
+        assertEquals(3, table.getSkippedEdge1(sc));
+        assertEquals(4, table.getSkippedEdge2(sc));
+        assertEquals(2, table.getOriginalEdges(sc));
+        assertEquals(PrepareEncoder.getScDirMask(), table.getFlags(sc));
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(-1, table.find(1, 2, 10));
+        assertEquals(0, table.add(2, 1, 10, 100));
+        assertEquals(0, table.find(2, 1, 10));
+    }
+
+    @Test
+    public void testGrowAndCopy()
+    {
+        ShortcutTable table = new ShortcutTable(4);
+        for (int i = 0; i < 100; i++)
+        {
+            int sc = table.add(i % 10, i / 10, i, i * 2);
+            table.setSkippedEdges(sc, i, i + 1);
+        }
+        assertEquals(100, table.size());
+
+        ShortcutTable copy = table.copy();
+        table.clear();
+        table.add(0, 0, 0, 0);
+        assertEquals(100, copy.size());
+        for (int i = 0; i < 100; i++)
+        {
+            int sc = copy.find(i % 10, i / 10, i);
+            assertEquals(i, sc);
+            assertEquals(i % 10, copy.getFrom(sc));
+            assertEquals(i / 10, copy.getTo(sc));
+            assertEquals(i * 2, copy.getDistance(sc), 1e-10);
+            assertEquals(i + 1, copy.getSkippedEdge2(sc));
+        }
+    }
+}
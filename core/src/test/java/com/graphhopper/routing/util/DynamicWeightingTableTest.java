@@ -0,0 +1,163 @@
+package com.graphhopper.routing.util;
+
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.profiles.ProfileManager;
+import com.graphhopper.util.profiles.ProfileRepository;
+import com.graphhopper.util.profiles.RidersProfile;
+import com.graphhopper.util.profiles.TrackPart;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DynamicWeightingTableTest
+{
+    private final String dir = "./target/tmp/table-profiles/";
+    private BikeGenericFlagEncoder encoder;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(dir));
+        new File(dir).mkdirs();
+        encoder = new BikeGenericFlagEncoder();
+        new EncodingManager(encoder);
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testSameWeightAsProvidersWithoutProfile()
+    {
+        assertSameWeights(new DynamicWeighting(encoder));
+        assertSameWeights(new DynamicWeighting(encoder, new PMap(), new ProfileManager(new ProfileRepository(dir))));
+    }
+
+    @Test
+    public void testSameWeightAsProvidersWithProfile()
+    {
+        ProfileRepository repository = new ProfileRepository(dir);
+        repository.createProfile("rider");
+        List<TrackPart> trackParts = new ArrayList<TrackPart>();
+        for (int slope = -10; slope <= 10; slope++)
+        {
+            TrackPart tp = new TrackPart(null, 2000, slope, 18 - slope * 0.8);
+            tp.setWayType(2);
+            trackParts.add(tp);
+        }
+        repository.getProfile("rider").update(trackParts);
+        repository.saveProfile("rider");
+
+        ProfileManager profileManager = new ProfileManager(new ProfileRepository(dir)).init("rider", encoder);
+        assertTrue(profileManager.hasFilteredSpeeds());
+        DynamicWeighting weighting = new DynamicWeighting(encoder, new PMap(), profileManager);
+        assertSame(profileManager.getWeightingTable(encoder), weighting.getWeightingTable());
+        assertSameWeights(weighting);
+
+        ProfileSpeedProvider speedProvider = new ProfileSpeedProvider(encoder, profileManager);
+        long flags = createFlags(16, 2, 5, 1, 70);
+        double expected = speedProvider.calcSpeed(createEdge(100, flags), false);
+        assertEquals(expected, profileManager.getWeightingTable(encoder).calcSpeed(flags, false), 1e-8);
+    }
+
+    @Test
+    public void testSpeed0()
+    {
+        DynamicWeighting weighting = new DynamicWeighting(encoder);
+        long flags = createFlags(0, 1, 0, 0, 50);
+        assertEquals(Double.POSITIVE_INFINITY, weighting.calcWeight(createEdge(100, flags), false, EdgeIterator.NO_EDGE), 1e-8);
+    }
+
+    void assertSameWeights( DynamicWeighting weighting )
+    {
+        DynamicWeightingTable table = weighting.getWeightingTable();
+        assertNotNull(table);
+        int[] slopes =
+        {
+            0, 1, 3, 4, 15, 20, 21, 30, 31, 40
+        };
+        int[] percentages =
+        {
+            0, 3, 50, 97, 100
+        };
+        double[] distances =
+        {
+            1, 12, 350
+        };
+        for (int wayType = 0; wayType < RidersProfile.WAY_TYPES; wayType++)
+        {
+            for (int incSlope : slopes)
+            {
+                for (int decSlope : slopes)
+                {
+                    for (int percentage : percentages)
+                    {
+                        for (double distance : distances)
+                        {
+                            long flags = createFlags(16, wayType, incSlope, decSlope, percentage);
+                            EdgeIterator edge = createEdge(distance, flags);
+                            for (boolean reverse : new boolean[]
+                            {
+                                false, true
+                            })
+                            {
+                                weighting.setWeightingTable(null);
+                                double expected = weighting.calcWeight(edge, reverse, EdgeIterator.NO_EDGE);
+                                weighting.setWeightingTable(table);
+                                double weight = weighting.calcWeight(edge, reverse, EdgeIterator.NO_EDGE);
+                                assertEquals("wayType:" + wayType + ", inc:" + incSlope + ", dec:" + decSlope
+                                        + ", percentage:" + percentage + ", distance:" + distance + ", reverse:" + reverse,
+                                        expected, weight, expected * 1e-10);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    long createFlags( double speed, int wayType, int incSlope, int decSlope, int percentage )
+    {
+        long flags = encoder.setProperties(speed, true, true);
+        flags = encoder.wayTypeEncoder.setValue(flags, wayType);
+        flags = encoder.inclineSlopeEncoder.setDoubleValue(flags, incSlope);
+        flags = encoder.declineSlopeEncoder.setDoubleValue(flags, decSlope);
+        return encoder.inclineDistancePercentageEncoder.setDoubleValue(flags, percentage);
+    }
+
+    EdgeIterator createEdge( final double distance, final long flags )
+    {
+        return new GHUtility.DisabledEdgeIterator()
+        {
+            @Override
+            public double getDistance()
+            {
+                return distance;
+            }
+
+            @Override
+            public long getFlags()
+            {
+                return flags;
+            }
+
+            @Override
+            public boolean getBoolean( int key, boolean reverse, boolean _default )
+            {
+                return _default;
+            }
+        };
+    }
+}
@@ -156,6 +156,21 @@ public class PrepareRoutingSubnetworksTest
         assertEquals(9, g.getNodes());
     }
 
+    @Test
+    public void testKeepNodeIds()
+    {
+        GraphHopperStorage g = createSubnetworkTestStorage2(em);
+        PrepareRoutingSubnetworks instance = new PrepareRoutingSubnetworks(g, em.fetchEdgeEncoders());
+        instance.setMinNetworkSize(4).setKeepNodeIds(true);
+        instance.doWork();
+        g.optimize();
+        assertEquals(9, g.getNodes());
+        // the small subnetwork is only blocked
+        EdgeExplorer explorer = g.createEdgeExplorer(new DefaultEdgeFilter(carFlagEncoder));
+        assertEquals(GHUtility.asSet(), GHUtility.getNeighbors(explorer.setBaseNode(4)));
+        assertEquals(GHUtility.asSet(1, 2, 7), GHUtility.getNeighbors(explorer.setBaseNode(3)));
+    }
+
     @Test
     public void testRemoveNode()
     {
@@ -20,6 +20,7 @@ package com.graphhopper.storage;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
+import java.io.File;
 import java.io.IOException;
 
 import static org.junit.Assert.*;
@@ -103,6 +104,110 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester
         checkGraph(graph);
     }
 
+    @Test
+    public void testLoadUncompressedGeometry() throws IOException
+    {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true).create(defaultSize);
+        // write the geometry like the previous version
+        graph.getProperties().put("geometry.version", Constants.VERSION_GEOMETRY_UNCOMPRESSED);
+        ((BaseGraph) graph.getGraph(Graph.class)).compressedGeometry = false;
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, 12, 12, 0.4);
+        graph.edge(0, 1, 100, true).setWayGeometry(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0));
+        graph.edge(0, 2, 200, true).setWayGeometry(Helper.createPointList3D(3.5, 4.5, 0, 5, 6, 0));
+        graph.edge(9, 10, 200, true);
+        graph.edge(9, 11, 200, true);
+        graph.edge(1, 2, 120, false);
+        graph.flush();
+        graph.close();
+
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true);
+        assertTrue(graph.loadExisting());
+        assertFalse(((BaseGraph) graph.getGraph(Graph.class)).compressedGeometry);
+        checkGraph(graph);
+
+        // new geometries of this graph are written in the old format too
+        EdgeIteratorState edge = graph.edge(3, 4, 123, true).setWayGeometry(Helper.createPointList3D(4.4, 5.5, 0, 6.6, 7.7, 0));
+        assertEquals(Helper.createPointList3D(4.4, 5.5, 0, 6.6, 7.7, 0), edge.fetchWayGeometry(0));
+    }
+
+    @Test
+    public void testCopyUncompressedGeometry() throws IOException
+    {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true).create(defaultSize);
+        graph.getProperties().put("geometry.version", Constants.VERSION_GEOMETRY_UNCOMPRESSED);
+        ((BaseGraph) graph.getGraph(Graph.class)).compressedGeometry = false;
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, 12, 12, 0.4);
+        graph.edge(0, 1, 100, true).setWayGeometry(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0));
+        graph.edge(0, 2, 200, true).setWayGeometry(Helper.createPointList3D(3.5, 4.5, 0, 5, 6, 0));
+        graph.edge(9, 10, 200, true);
+        graph.edge(9, 11, 200, true);
+        graph.edge(1, 2, 120, false);
+        graph.flush();
+        graph.close();
+
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true);
+        assertTrue(graph.loadExisting());
+        String copyLoc = defaultGraphLoc + "-copy";
+        Helper.removeDir(new File(copyLoc));
+        GraphHopperStorage copy = newGHStorage(new RAMDirectory(copyLoc, true), true).create(defaultSize);
+        // copying between the base graphs copies the storages directly
+        graph.getGraph(Graph.class).copyTo(copy.getGraph(Graph.class));
+        copy.flush();
+        copy.close();
+
+        // the copy was created with the current geometry version and is written in this format
+        copy = newGHStorage(new RAMDirectory(copyLoc, true), true);
+        assertTrue(copy.loadExisting());
+        assertEquals("" + Constants.VERSION_GEOMETRY, copy.getProperties().get("geometry.version"));
+        assertTrue(((BaseGraph) copy.getGraph(Graph.class)).compressedGeometry);
+        assertEquals(Helper.createPointList3D(1.5, 1, 0, 2, 3, 0), copy.getEdgeIteratorState(0, 1).fetchWayGeometry(0));
+        assertEquals(Helper.createPointList3D(3.5, 4.5, 0, 5, 6, 0), copy.getEdgeIteratorState(1, 2).fetchWayGeometry(0));
+        assertEquals(Helper.createPointList3D(5, 6, 0, 3.5, 4.5, 0), copy.getEdgeIteratorState(1, 0).fetchWayGeometry(0));
+        assertEquals(0, copy.getEdgeIteratorState(4, 2).fetchWayGeometry(0).getSize());
+        copy.close();
+        Helper.removeDir(new File(copyLoc));
+    }
+
+    @Test
+    public void testCompressedGeometry()
+    {
+        PointList pillarNodes = new PointList(8, true);
+        for (int i = 0; i < 8; i++)
+        {
+            pillarNodes.add(49.9 + i * 1e-4, 11.5 - i * 2e-4, 300 + i * 0.5);
+        }
+
+        graph = createGHStorage(defaultGraphLoc, true);
+        EdgeIteratorState edge = graph.edge(0, 1, 100, true).setWayGeometry(pillarNodes);
+        assertEquals(pillarNodes, edge.fetchWayGeometry(0));
+        assertEquals(pillarNodes.clone(true), graph.getEdgeIteratorState(edge.getEdge(), 0).fetchWayGeometry(0));
+        int compressedInts = getGeometryInts(graph);
+        graph.close();
+
+        graph = createGHStorage(defaultGraphLoc, true);
+        ((BaseGraph) graph.getGraph(Graph.class)).compressedGeometry = false;
+        edge = graph.edge(0, 1, 100, true).setWayGeometry(pillarNodes);
+        assertEquals(pillarNodes, edge.fetchWayGeometry(0));
+        // 8 points with 3 integers each
+        assertEquals(1 + 8 * 3, getGeometryInts(graph));
+        // the first point needs 14 bytes and the following points 6 bytes each
+        assertEquals(15, compressedInts);
+    }
+
+    private int getGeometryInts( GraphHopperStorage g )
+    {
+        BaseGraph baseGraph = (BaseGraph) g.getGraph(Graph.class);
+        baseGraph.setWayGeometryHeader();
+        // the first 4 integers are not used
+        return baseGraph.wayGeometry.getHeader(0) - 4;
+    }
+
     @Test
     public void testSave_and_Freeze() throws IOException
     {
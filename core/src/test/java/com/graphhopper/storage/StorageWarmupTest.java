@@ -0,0 +1,137 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.ProgressListener;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class StorageWarmupTest
+{
+    private final String location = "./target/tmp/warmup";
+    private Directory dir;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+        dir = new MMapDirectory(location);
+    }
+
+    @After
+    public void tearDown()
+    {
+        dir.clear();
+        Helper.removeDir(new File(location));
+    }
+
+    private DataAccess create( Directory dir, String name, int segments )
+    {
+        DataAccess da = dir.find(name).setSegmentSize(128).create(segments * 128);
+        for (int i = 0; i < segments * 128; i += 4)
+        {
+            da.setInt(i, i);
+        }
+        return da;
+    }
+
+    @Test
+    public void testSelectStorages()
+    {
+        create(dir, "nodes", 3);
+        create(dir, "edges", 2);
+        create(dir, "shortcuts_fastest_car", 2);
+        create(dir, "shortcuts_shortest_car", 1);
+        create(dir, "names", 4);
+
+        final AtomicLong progress = new AtomicLong();
+        StorageWarmup.Stats stats = new StorageWarmup().setProgressListener(new ProgressListener()
+        {
+            @Override
+            public void update( long val )
+            {
+                progress.set(Math.max(progress.get(), val));
+            }
+        }).warmup(dir, "nodes,shortcuts_*,unknown");
+        assertEquals(3, stats.getStorages());
+        assertEquals(0, stats.getSkippedStorages());
+        assertEquals(6, stats.getSegments());
+        assertEquals(6 * 128, stats.getBytes());
+        assertEquals(6 * 128, progress.get());
+        assertTrue(stats.getLoadedSegments() <= stats.getSegments());
+    }
+
+    @Test
+    public void testMaxBytes()
+    {
+        create(dir, "nodes", 3);
+        create(dir, "edges", 2);
+        create(dir, "geometry", 2);
+
+        // the storages with lower priority are skipped if the limit is reached
+        StorageWarmup.Stats stats = new StorageWarmup().setThreads(3).setMaxBytes(4 * 128).
+                warmup(dir, "edges,nodes,geometry");
+        assertEquals(2, stats.getStorages());
+        assertEquals(1, stats.getSkippedStorages());
+        assertEquals(4, stats.getSegments());
+        assertEquals(4 * 128, stats.getBytes());
+    }
+
+    @Test
+    public void testWarmupInBackground() throws Exception
+    {
+        create(dir, "nodes", 3);
+        create(dir, "edges", 2);
+
+        StorageWarmup warmup = new StorageWarmup();
+        Future<StorageWarmup.Stats> future = warmup.warmupInBackground(dir, "nodes,edges");
+        StorageWarmup.Stats stats = future.get();
+        assertEquals(2, stats.getStorages());
+        assertEquals(5, stats.getSegments());
+        warmup.stop();
+
+        // after stop no segment is read anymore and the storages can be closed
+        future = warmup.warmupInBackground(dir, "nodes,edges");
+        warmup.stop();
+        assertTrue(future.isDone());
+        assertTrue(future.get().getSegments() <= 5);
+    }
+
+    @Test
+    public void testSkipInMemoryStorages()
+    {
+        Directory ramDir = new RAMDirectory();
+        create(ramDir, "nodes", 2);
+        StorageWarmup.Stats stats = new StorageWarmup().warmup(ramDir, StorageWarmup.DEFAULT_STORAGES);
+        assertEquals(0, stats.getStorages());
+        assertEquals(0, stats.getSegments());
+        ramDir.clear();
+    }
+}
@@ -17,6 +17,14 @@
  */
 package com.graphhopper.storage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
 /**
  * @author Peter Karich
  */
@@ -27,4 +35,79 @@ public class SynchedDAWrapperTest extends DataAccessTest
     {
         return new SynchedDAWrapper(new RAMDataAccess(name, directory, true, defaultOrder)).setSegmentSize(128);
     }
+
+    @Test
+    public void testStripes()
+    {
+        DataAccess inner = new RAMDataAccess(name, directory, false, defaultOrder);
+        assertEquals(1, new SynchedDAWrapper(inner, 1).getStripes());
+        assertEquals(8, new SynchedDAWrapper(inner, 5).getStripes());
+        assertEquals(8, new SynchedDAWrapper(inner, 8).getStripes());
+
+        SynchedDAWrapper da = new SynchedDAWrapper(inner, 2);
+        assertSame(da, da.setSegmentSize(128));
+        assertSame(da, da.create(300));
+        assertEquals(128, da.getSegmentSize());
+        assertEquals(3 * 128, da.getCapacity());
+        assertFalse(da.ensureCapacity(200));
+        assertTrue(da.ensureCapacity(500));
+        assertEquals(4 * 128, da.getCapacity());
+
+        // bytes crossing a segment border lock both stripes
+        byte[] bytes = new byte[]
+        {
+            1, 2, 3, 4, 5, 6
+        };
+        da.setBytes(125, bytes, bytes.length);
+        byte[] res = new byte[bytes.length];
+        da.getBytes(125, res, res.length);
+        assertArrayEquals(bytes, res);
+        da.close();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception
+    {
+        final int threadCount = 4;
+        final int intsPerThread = 10000;
+        DataAccess inner = new RAMDataAccess(name, directory, false, defaultOrder);
+        final DataAccess da = new SynchedDAWrapper(inner, 4).setSegmentSize(128);
+        da.create(128);
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++)
+        {
+            final int offset = t;
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    // interleaved positions so that the threads write to the same segments and the
+                    // capacity is increased while the others write
+                    for (int i = 0; i < intsPerThread; i++)
+                    {
+                        long pointer = (long) (i * threadCount + offset) * 4;
+                        da.ensureCapacity(pointer + 4);
+                        da.setInt(pointer, i);
+                        if (da.getInt(pointer) != i)
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        for (int i = 0; i < intsPerThread * threadCount; i++)
+        {
+            assertEquals(i / threadCount, da.getInt((long) i * 4));
+        }
+        da.close();
+    }
 }
@@ -36,16 +36,105 @@ public class UnsafeDataAccessTest extends DataAccessTest
         return new UnsafeDataAccess(name, directory, defaultOrder).setSegmentSize(128);
     }
 
-    @Override
-    public void testExceptionIfNoEnsureCapacityWasCalled()
+    @Test
+    public void testCloseFreesMemory()
     {
-        // SKIP as unsafe failes with SIGSEGV and not with an exception!
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        da.setInt(2 * 4, 321);
+        da.close();
+        assertEquals(0, da.getCapacity());
+        // a second close must not free the memory again
+        da.close();
+        try
+        {
+            da.getInt(2 * 4);
+            assertTrue(false);
+        } catch (ArrayIndexOutOfBoundsException ex)
+        {
+        }
     }
 
-    @Override
-    public void testBoundsCheck()
+    @Test
+    public void testSetGetBytesInChunks()
+    {
+        DataAccess da = createDataAccess(name);
+        da.create(128);
+        // 8 byte chunks and a remainder, at a position which is not aligned
+        byte[] bytes = new byte[21];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) (i + 1);
+        }
+        da.setBytes(3, bytes, bytes.length);
+        byte[] result = new byte[23];
+        da.getBytes(2, result, result.length);
+        assertEquals(0, result[0]);
+        for (int i = 0; i < bytes.length; i++)
+        {
+            assertEquals(bytes[i], result[i + 1]);
+        }
+        assertEquals(0, result[22]);
+        da.close();
+    }
+
+    @Test
+    public void testLoadFromRAMStore()
+    {
+        // all storing types use the same file format
+        RAMDataAccess ramDA = new RAMDataAccess(name, directory, true, defaultOrder);
+        ramDA.setSegmentSize(128).create(300);
+        ramDA.setHeader(4, 123);
+        ramDA.setInt(2 * 4, 321);
+        ramDA.setInt(95 * 4, 1234);
+        ramDA.flush();
+        ramDA.close();
+
+        DataAccess da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(3 * 128, da.getCapacity());
+        assertEquals(123, da.getHeader(4));
+        assertEquals(321, da.getInt(2 * 4));
+        assertEquals(1234, da.getInt(95 * 4));
+
+        // and the other way around after a smaller version was flushed to the same file
+        da.trimTo(128);
+        da.setInt(4, 11);
+        da.flush();
+        da.close();
+        ramDA = new RAMDataAccess(name, directory, true, defaultOrder);
+        assertTrue(ramDA.loadExisting());
+        assertEquals(128, ramDA.getCapacity());
+        assertEquals(11, ramDA.getInt(4));
+        assertEquals(321, ramDA.getInt(2 * 4));
+        ramDA.close();
+    }
+
+    @Test
+    public void testCopyToUnsafe()
+    {
+        DataAccess da = createDataAccess(name);
+        da.create(300);
+        da.setHeader(0, 7);
+        da.setInt(90 * 4, 321);
+        DataAccess copy = new UnsafeDataAccess(name + "_copy", directory, defaultOrder).setSegmentSize(128);
+        da.copyTo(copy);
+        assertEquals(da.getCapacity(), copy.getCapacity());
+        assertEquals(7, copy.getHeader(0));
+        assertEquals(321, copy.getInt(90 * 4));
+        da.close();
+        copy.close();
+    }
+
+    @Test
+    public void testDisableBoundsCheck()
     {
-        // SKIP as unsafe has no bounds checks
+        UnsafeDataAccess da = new UnsafeDataAccess(name, directory, defaultOrder, false);
+        assertFalse(da.isCheckBounds());
+        da.setSegmentSize(128).create(300);
+        da.setInt(2 * 4, 321);
+        assertEquals(321, da.getInt(2 * 4));
+        da.close();
     }
 
     @Test
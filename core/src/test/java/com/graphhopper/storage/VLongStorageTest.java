@@ -63,4 +63,25 @@ public class VLongStorageTest
         assertEquals(7L, store.readVLong());
         assertEquals(777666555L, store.readVLong());
     }
+
+    @Test
+    public void testWriteSigned()
+    {
+        VLongStorage store = new VLongStorage();
+        store.writeSignedVLong(0);
+        store.writeSignedVLong(-1);
+        store.writeSignedVLong(63);
+        store.writeSignedVLong(-64);
+        assertEquals(4, store.getPosition());
+        store.writeSignedVLong(-777666555);
+        store.writeSignedVLong(Integer.MAX_VALUE);
+
+        store.seek(0);
+        assertEquals(0L, store.readSignedVLong());
+        assertEquals(-1L, store.readSignedVLong());
+        assertEquals(63L, store.readSignedVLong());
+        assertEquals(-64L, store.readSignedVLong());
+        assertEquals(-777666555L, store.readSignedVLong());
+        assertEquals(Integer.MAX_VALUE, store.readSignedVLong());
+    }
 }
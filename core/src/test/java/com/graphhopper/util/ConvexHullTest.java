@@ -0,0 +1,78 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ConvexHullTest
+{
+    private final ConvexHull convexHull = new ConvexHull();
+
+    @Test
+    public void testCalcHull()
+    {
+        PointList points = new PointList();
+        // inner points, points on the border and the corners of a square
+        points.add(0.5, 0.5);
+        points.add(1, 1);
+        points.add(0, 0);
+        points.add(0.5, 0);
+        points.add(1, 0);
+        points.add(0, 1);
+        points.add(0.2, 0.7);
+        points.add(1, 1);
+
+        PointList hull = convexHull.calcHull(points);
+        assertEquals(4, hull.getSize());
+        // counter clockwise: lon is x and lat is y
+        assertEquals(0, hull.getLat(0), 1e-6);
+        assertEquals(0, hull.getLon(0), 1e-6);
+        assertEquals(0, hull.getLat(1), 1e-6);
+        assertEquals(1, hull.getLon(1), 1e-6);
+        assertEquals(1, hull.getLat(2), 1e-6);
+        assertEquals(1, hull.getLon(2), 1e-6);
+        assertEquals(1, hull.getLat(3), 1e-6);
+        assertEquals(0, hull.getLon(3), 1e-6);
+    }
+
+    @Test
+    public void testDegenerated()
+    {
+        assertEquals(0, convexHull.calcHull(new PointList()).getSize());
+
+        PointList points = new PointList();
+        points.add(1, 2);
+        assertEquals(1, convexHull.calcHull(points).getSize());
+
+        points.add(1, 2);
+        assertEquals(1, convexHull.calcHull(points).getSize());
+
+        // on one line
+        points.add(2, 3);
+        points.add(3, 4);
+        PointList hull = convexHull.calcHull(points);
+        assertEquals(2, hull.getSize());
+        assertEquals(1, hull.getLat(0), 1e-6);
+        assertEquals(3, hull.getLat(1), 1e-6);
+    }
+}
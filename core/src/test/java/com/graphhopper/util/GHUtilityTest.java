@@ -17,7 +17,9 @@
  */
 package com.graphhopper.util;
 
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FastestWeighting;
 import com.graphhopper.routing.util.FlagEncoder;
@@ -97,6 +99,103 @@ public class GHUtilityTest
         assertEquals(4.6, na.getLatitude(3), 1e-4); // 8        
     }
 
+    @Test
+    public void testSortBFS()
+    {
+        Graph g = initUnsorted(createGraph());
+        Graph newG = GHUtility.sortBFS(g, createGraph());
+        assertEquals(g.getNodes(), newG.getNodes());
+        assertEquals(g.getAllEdges().getMaxId(), newG.getAllEdges().getMaxId());
+        NodeAccess na = newG.getNodeAccess();
+        assertEquals(0, na.getLatitude(0), 1e-4); // 0
+        assertEquals(2.5, na.getLatitude(1), 1e-4); // 1
+        // the neighbours of 1 come before the neighbours of 2
+        assertEquals(GHUtility.asSet(0, 2, 3), GHUtility.getNeighbors(newG.createEdgeExplorer().setBaseNode(1)));
+        assertEquals(4.6, na.getLatitude(2), 1e-4); // 8
+        assertEquals(4.5, na.getLatitude(3), 1e-4); // 2
+    }
+
+    @Test
+    public void testSortHilbert()
+    {
+        Graph g = initUnsorted(createGraph());
+        Graph newG = GHUtility.sortHilbert(g, createGraph());
+        assertEquals(g.getNodes(), newG.getNodes());
+        assertEquals(g.getAllEdges().getMaxId(), newG.getAllEdges().getMaxId());
+        NodeAccess na = newG.getNodeAccess();
+        // the curve starts in the south west corner and ends in the south east corner
+        assertEquals(0, na.getLatitude(0), 1e-4); // 0
+        assertEquals(2.5, na.getLatitude(8), 1e-4); // 1
+
+        // one way edges keep their direction
+        EdgeExplorer outExplorer = newG.createEdgeExplorer(new DefaultEdgeFilter(carEncoder, false, true));
+        int node3 = findNode(newG, 3, 0.5);
+        int node5 = findNode(newG, 4.2, 1.6);
+        int node7 = findNode(newG, 5, 1.5);
+        assertEquals(GHUtility.asSet(node3, node5), GHUtility.getNeighbors(outExplorer.setBaseNode(node7)));
+        assertEquals(0, GHUtility.count(outExplorer.setBaseNode(node3)));
+    }
+
+    @Test
+    public void testSortedEdgesFollowNodes()
+    {
+        Graph g = initUnsorted(createGraph());
+        Graph newG = GHUtility.sortDFS(g, createGraph());
+        // the edges are created in the order of their smaller node
+        AllEdgesIterator iter = newG.getAllEdges();
+        int prevMinNode = -1;
+        while (iter.next())
+        {
+            int minNode = Math.min(iter.getBaseNode(), iter.getAdjNode());
+            assertTrue(minNode >= prevMinNode);
+            prevMinNode = minNode;
+        }
+        assertEquals(1.9, GHUtility.getEdge(newG, 1, 2).getDistance(), 1e-4);
+    }
+
+    @Test
+    public void testHilbertIndex()
+    {
+        // 1 2
+        // 0 3
+        assertEquals(0, GHUtility.getHilbertIndex(2, 0, 0));
+        assertEquals(1, GHUtility.getHilbertIndex(2, 0, 1));
+        assertEquals(2, GHUtility.getHilbertIndex(2, 1, 1));
+        assertEquals(3, GHUtility.getHilbertIndex(2, 1, 0));
+
+        // neighbouring indices are neighbouring cells
+        int side = 16;
+        int[] prev = null;
+        int[][] cells = new int[side * side][];
+        for (int x = 0; x < side; x++)
+        {
+            for (int y = 0; y < side; y++)
+            {
+                cells[(int) GHUtility.getHilbertIndex(side, x, y)] = new int[]
+                {
+                    x, y
+                };
+            }
+        }
+        for (int[] cell : cells)
+        {
+            if (prev != null)
+                assertEquals(1, Math.abs(cell[0] - prev[0]) + Math.abs(cell[1] - prev[1]));
+            prev = cell;
+        }
+    }
+
+    private int findNode( Graph g, double lat, double lon )
+    {
+        NodeAccess na = g.getNodeAccess();
+        for (int node = 0; node < g.getNodes(); node++)
+        {
+            if (Math.abs(na.getLatitude(node) - lat) < 1e-4 && Math.abs(na.getLongitude(node) - lon) < 1e-4)
+                return node;
+        }
+        throw new IllegalArgumentException("no node at " + lat + "," + lon);
+    }
+
     @Test
     public void testSortDirected()
     {
@@ -0,0 +1,122 @@
+package com.graphhopper.util.profiles;
+
+import com.graphhopper.routing.util.BikeGenericFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ProfileCacheTest
+{
+    private final String dir = "./target/tmp/profiles/";
+    private BikeGenericFlagEncoder encoder;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(dir));
+        new File(dir).mkdirs();
+        encoder = new BikeGenericFlagEncoder();
+        new EncodingManager(encoder);
+        ProfileRepository repository = new ProfileRepository(dir);
+        repository.createProfile("a");
+        repository.createProfile("b");
+        repository.createProfile("c");
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(dir));
+    }
+
+    @Test
+    public void testHitAndMiss()
+    {
+        ProfileCache cache = new ProfileCache(encoder, dir, 10);
+        ProfileManager pm = cache.get("a");
+        assertTrue(pm.hasProfile());
+        assertSame(pm, cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertFalse(cache.get("").hasProfile());
+        assertFalse(cache.get("unknown").hasProfile());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testUnknownProfilesAreNotCached()
+    {
+        ProfileCache cache = new ProfileCache(encoder, dir, 10);
+        for (int i = 0; i < 100; i++)
+        {
+            assertFalse(cache.get("unknown" + i).hasProfile());
+        }
+        assertEquals(0, cache.getSize());
+        assertEquals(100, cache.getMisses());
+
+        assertTrue(cache.get("a").hasProfile());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        ProfileCache cache = new ProfileCache(encoder, dir, 2);
+        ProfileManager a = cache.get("a");
+        cache.get("b");
+        // access a to make b the least recently used profile
+        cache.get("a");
+        cache.get("c");
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+
+        assertSame(a, cache.get("a"));
+        assertEquals(3, cache.getMisses());
+        cache.get("b");
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testReloadModifiedProfile()
+    {
+        ProfileCache cache = new ProfileCache(encoder, dir, 10).setCheckInterval(0);
+        ProfileManager pm = cache.get("a");
+        assertSame(pm, cache.get("a"));
+
+        File file = new ProfileRepository(dir).getProfileFile("a");
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        assertNotSame(pm, cache.get("a"));
+        assertEquals(2, cache.getMisses());
+
+        pm = cache.get("a");
+        cache.invalidate("a");
+        assertNotSame(pm, cache.get("a"));
+    }
+
+    @Test
+    public void testDeletedProfileIsRemoved()
+    {
+        ProfileCache cache = new ProfileCache(encoder, dir, 10).setCheckInterval(0);
+        assertTrue(cache.get("a").hasProfile());
+        assertTrue(cache.get("b").hasProfile());
+        assertEquals(2, cache.getSize());
+
+        assertTrue(new ProfileRepository(dir).getProfileFile("a").delete());
+        assertFalse(cache.get("a").hasProfile());
+        assertEquals(1, cache.getSize());
+        assertEquals(3, cache.getMisses());
+
+        // the deleted profile is not kept and the other profile is still cached
+        assertFalse(cache.get("a").hasProfile());
+        assertEquals(1, cache.getSize());
+        assertTrue(cache.get("b").hasProfile());
+        assertEquals(1, cache.getHits());
+    }
+}
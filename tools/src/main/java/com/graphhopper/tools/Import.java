@@ -13,6 +13,10 @@ public class Import
         CmdArgs args = CmdArgs.read(strs);
         GraphHopper hopper = new GraphHopper().init(args);
         hopper.importOrLoad();
+        String changeFile = args.get("osmreader.changes", "");
+        if (!changeFile.isEmpty())
+            hopper.applyChanges(changeFile);
+
         hopper.close();
     }
 }
@@ -23,17 +23,27 @@ import com.graphhopper.GraphHopper;
 import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
 import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import gnu.trove.set.hash.TIntHashSet;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -77,6 +87,7 @@ public class Measurement
         {
             // re-create index to avoid bug as pickNode in locationIndex.prepare could be wrong while indexing if level is not taken into account and assumed to be 0 for pre-initialized graph
             StopWatch sw = new StopWatch().start();
+            long gcTime = getGCTime();
 
             // let algo routing factory convert simple to CH preparation
             putAlgorithmFactory(w, null);
@@ -85,12 +96,33 @@ public class Measurement
 
             setLocationIndex(createLocationIndex(new RAMDirectory()));
             put("prepare.time", sw.stop().getTime());
+            put("prepare.gcTime", getGCTime() - gcTime);
             int edges = getGraphHopperStorage().getAllEdges().getMaxId();
             int edgesAndShortcuts = getGraphHopperStorage().getGraph(CHGraph.class, w).getAllEdges().getMaxId();
             put("prepare.shortcuts", edgesAndShortcuts - edges);
+            PrepareContractionHierarchies pch = (PrepareContractionHierarchies) getAlgorithmFactory(w);
+            put("prepare.time.dijkstra", pch.getDijkstraTime());
+            put("prepare.time.period", pch.getPeriodTime());
+            put("prepare.time.lazy", pch.getLazyTime());
+            put("prepare.time.neighbor", pch.getNeighborTime());
+            put("prepare.time.select", pch.getSelectTime());
+            put("prepare.time.insert", pch.getInsertTime());
         }
     }
 
+    /**
+     * @return the accumulated milliseconds spent in all garbage collectors so far
+     */
+    static long getGCTime()
+    {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
     // creates properties file in the format key=value
     // Every value is one y-value in a separate diagram with an identical x-value for every Measurement.start call
     void start( CmdArgs args )
@@ -129,7 +161,12 @@ public class Measurement
             maxNode = g.getNodes();
             GHBitSet allowedEdges = printGraphDetails(g, vehicleStr);
             printMiscUnitPerfTests(false, g, encoder, count * 100, allowedEdges);
+            printWeightingPerfTests(g, encoder, count * 100, allowedEdges);
             printLocationIndexQuery(g, hopper.getLocationIndex(), count);
+            printSortedGraphs(g, encoder, weighting, args.get("measurement.sortOrders", ""), count / 20);
+            printDataAccessContention(args.get("measurement.contentionThreads", ""), count * 100);
+            printDataAccessTypes(graphLocation, vehicleStr, chWeighting, args.get("measurement.dataAccessTypes", ""),
+                    count / 20);
 
             // Route via dijkstrabi. Normal routing takes a lot of time => smaller query number than CH
             // => values are not really comparable to routingCH as e.g. the mean distance etc is different            
@@ -147,6 +184,8 @@ public class Measurement
             printMiscUnitPerfTests(true, lg, encoder, count * 100, allowedEdges);
             printTimeOfRouteQuery(hopper, count, "routingCH", vehicleStr, true);
             printTimeOfRouteQuery(hopper, count, "routingCH_no_instr", vehicleStr, false);
+            printPathFinalization(hopper, lg, encoder, weighting,
+                    args.getDouble("measurement.finalizeMinDistance", 100) * 1000, count / 20);
             logger.info("store into " + propLocation);
         } catch (Exception ex)
         {
@@ -197,6 +236,260 @@ public class Measurement
         return allowedEdges;
     }
 
+    /**
+     * Compares the node orders of GHUtility with the order of the loaded graph. Java cannot count
+     * cache misses, so the memory blocks touched when a node is expanded are counted instead.
+     */
+    private void printSortedGraphs( GraphHopperStorage g, FlagEncoder encoder, Weighting weighting,
+                                    String sortOrders, int count )
+    {
+        if (Helper.isEmpty(sortOrders))
+            return;
+
+        printLocality("sort.none", g);
+        printTimeOfDijkstraBi("sort.none", g, encoder, weighting, count);
+        for (String order : sortOrders.split(","))
+        {
+            order = order.trim();
+            StopWatch sw = new StopWatch().start();
+            GraphHopperStorage sorted = new GraphHopperStorage(new RAMDirectory(), g.getEncodingManager(),
+                    g.getNodeAccess().is3D(), new GraphExtension.NoOpExtension()).create(g.getNodes());
+            if ("hilbert".equals(order))
+                GHUtility.sortHilbert(g, sorted);
+            else if ("bfs".equals(order))
+                GHUtility.sortBFS(g, sorted);
+            else if ("dfs".equals(order))
+                GHUtility.sortDFS(g, sorted);
+            else
+                throw new IllegalArgumentException("Unknown sort order " + order);
+
+            put("sort." + order + ".time", sw.stop().getTime());
+            printLocality("sort." + order, sorted);
+            printTimeOfDijkstraBi("sort." + order, sorted, encoder, weighting, count);
+            sorted.close();
+        }
+    }
+
+    /**
+     * Measures the throughput of a synchronized DataAccess object with random reads and writes
+     * for the specified numbers of threads, once with a single lock and once with striped locks.
+     */
+    private void printDataAccessContention( String threadCounts, final int count )
+    {
+        if (Helper.isEmpty(threadCounts))
+            return;
+
+        for (int stripes : new int[]
+        {
+            1, 64
+        })
+        {
+            for (String str : threadCounts.split(","))
+            {
+                int threadCount = Integer.parseInt(str.trim());
+                final DataAccess da = new RAMDirectory().setLockStripes(stripes).
+                        find("contention", new DAType(DAType.RAM, true)).setSegmentSize(1 << 16);
+                da.create(1 << 25);
+                final int ints = (int) (da.getCapacity() / 4);
+                Thread[] threads = new Thread[threadCount];
+                for (int t = 0; t < threadCount; t++)
+                {
+                    final Random rand = new Random(seed + t);
+                    threads[t] = new Thread()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            for (int i = 0; i < count; i++)
+                            {
+                                long pointer = (long) rand.nextInt(ints) * 4;
+                                da.setInt(pointer, da.getInt(pointer) + 1);
+                            }
+                        }
+                    };
+                }
+
+                StopWatch sw = new StopWatch().start();
+                try
+                {
+                    for (Thread thread : threads)
+                    {
+                        thread.start();
+                    }
+                    for (Thread thread : threads)
+                    {
+                        thread.join();
+                    }
+                } catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+                float millis = Math.max(sw.stop().getNanos() / 1e6f, 1e-3f);
+                String prefix = "dataaccess.stripes" + stripes + ".threads" + threadCount;
+                put(prefix + ".opsPerMs", 2f * count * threadCount / millis);
+                logger.info(prefix + ": " + properties.get(prefix + ".opsPerMs") + " ops/ms");
+                da.close();
+            }
+        }
+    }
+
+    /**
+     * Loads the graph with every specified DAType, e.g. RAM_STORE,MMAP,UNSAFE_STORE, and compares
+     * the used heap, the duration of a full garbage collection and the routing without CH.
+     */
+    private void printDataAccessTypes( String graphLocation, String vehicleStr, String chWeighting, String types,
+                                       int count )
+    {
+        if (Helper.isEmpty(types))
+            return;
+
+        for (String type : types.split(","))
+        {
+            type = type.trim();
+            String prefix = "dataaccess." + type;
+            System.gc();
+            long heapBefore = getUsedHeap();
+            StopWatch sw = new StopWatch().start();
+            MeasureHopper hopper = new MeasureHopper();
+            hopper.forDesktop().init(new CmdArgs().
+                    put("graph.location", graphLocation).
+                    put("graph.dataaccess", type).
+                    put("graph.flagEncoders", vehicleStr));
+            if (!hopper.load(graphLocation))
+                throw new IllegalStateException("Cannot load existing graph at " + graphLocation);
+
+            hopper.setCHEnable(false);
+            FlagEncoder encoder = hopper.getEncodingManager().getEncoder(vehicleStr);
+            hopper.putAlgorithmFactory(hopper.getWeightingForCH(new WeightingMap(chWeighting), encoder),
+                    new RoutingAlgorithmFactorySimple());
+            put(prefix + ".loadTime", sw.stop().getTime());
+            sw = new StopWatch().start();
+            System.gc();
+            put(prefix + ".fullGCTime", sw.stop().getTime());
+            put(prefix + ".heapMB", (getUsedHeap() - heapBefore) / Helper.MB);
+
+            long gcTime = getGCTime();
+            long gcCount = getGCCount();
+            printTimeOfRouteQuery(hopper, count, prefix + ".routing", vehicleStr, true);
+            put(prefix + ".routing.gcTime", getGCTime() - gcTime);
+            put(prefix + ".routing.gcCount", getGCCount() - gcCount);
+            logger.info(prefix + ": heap " + properties.get(prefix + ".heapMB") + "MB, full gc "
+                    + properties.get(prefix + ".fullGCTime") + "ms");
+            hopper.close();
+        }
+    }
+
+    private static long getUsedHeap()
+    {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long getGCCount()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Compares the duration of the CH search with the duration of the path finalization (time,
+     * points and instructions via PathMerger) for routes longer than the specified distance.
+     */
+    private void printPathFinalization( GraphHopper hopper, CHGraph lg, FlagEncoder encoder, Weighting weighting,
+                                        double minDistance, int count )
+    {
+        Random rand = new Random(seed);
+        Translation tr = hopper.getTranslationMap().getWithFallBack(Locale.US);
+        RoutingAlgorithmFactory factory = hopper.getAlgorithmFactory(weighting);
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(AlgorithmOptions.DIJKSTRA_BI).
+                flagEncoder(encoder).weighting(weighting).build();
+        int nodes = lg.getNodes();
+        long searchNanos = 0;
+        long finalizeNanos = 0;
+        double distanceSum = 0;
+        int routes = 0;
+        // long routes are rare in small areas, give up after some tries
+        for (int i = 0; i < count * 50 && routes < count; i++)
+        {
+            StopWatch sw = new StopWatch().start();
+            Path path = factory.createAlgo(lg, opts).calcPath(rand.nextInt(nodes), rand.nextInt(nodes));
+            sw.stop();
+            if (!path.isFound() || path.getDistance() < minDistance)
+                continue;
+
+            searchNanos += sw.getNanos();
+            sw = new StopWatch().start();
+            new PathMerger().setDouglasPeucker(new DouglasPeucker()).
+                    doWork(new GHResponse(), Collections.singletonList(path), tr);
+            finalizeNanos += sw.stop().getNanos();
+            distanceSum += path.getDistance();
+            routes++;
+        }
+
+        put("finalize.routes", routes);
+        if (routes == 0)
+            return;
+
+        put("finalize.distanceMean", distanceSum / routes);
+        put("finalize.search.mean", searchNanos / 1e6 / routes);
+        put("finalize.merge.mean", finalizeNanos / 1e6 / routes);
+        logger.info("finalize: " + routes + " routes, search " + properties.get("finalize.search.mean")
+                + "ms, finalization " + properties.get("finalize.merge.mean") + "ms");
+    }
+
+    private void printLocality( String prefix, Graph g )
+    {
+        // a block of 64 ids is roughly one page of the nodes or edges storage
+        int blockShift = 6;
+        long idGapSum = 0;
+        long blockSum = 0;
+        int nodes = g.getNodes();
+        EdgeExplorer explorer = g.createEdgeExplorer();
+        TIntHashSet nodeBlocks = new TIntHashSet();
+        TIntHashSet edgeBlocks = new TIntHashSet();
+        for (int node = 0; node < nodes; node++)
+        {
+            nodeBlocks.clear();
+            edgeBlocks.clear();
+            nodeBlocks.add(node >> blockShift);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                idGapSum += Math.abs(iter.getAdjNode() - node);
+                nodeBlocks.add(iter.getAdjNode() >> blockShift);
+                edgeBlocks.add(iter.getEdge() >> blockShift);
+            }
+            blockSum += nodeBlocks.size() + edgeBlocks.size();
+        }
+        int edges = g.getAllEdges().getMaxId();
+        put(prefix + ".meanIdGap", edges == 0 ? 0 : idGapSum / (2 * edges));
+        put(prefix + ".blocksPerExpansion", nodes == 0 ? 0 : (float) blockSum / nodes);
+        logger.info(prefix + ": mean id gap " + properties.get(prefix + ".meanIdGap")
+                + ", blocks per node expansion " + properties.get(prefix + ".blocksPerExpansion"));
+    }
+
+    private void printTimeOfDijkstraBi( String prefix, final Graph g, final FlagEncoder encoder,
+                                        final Weighting weighting, int count )
+    {
+        // uniformly random nodes make the routes comparable for all node orders
+        final Random rand = new Random(seed);
+        final int nodes = g.getNodes();
+        MiniPerfTest miniPerf = new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                RoutingAlgorithm algo = new DijkstraBidirectionRef(g, encoder, weighting, TraversalMode.NODE_BASED);
+                algo.calcPath(rand.nextInt(nodes), rand.nextInt(nodes));
+                return algo.getVisitedNodes();
+            }
+        }.setIterations(count).start();
+        print(prefix + ".routing", miniPerf);
+    }
+
     private void printLocationIndexQuery( Graph g, final LocationIndex idx, int count )
     {
         count *= 2;
@@ -304,6 +597,44 @@ public class Measurement
         print("unit_tests" + description + ".get_edge_state", miniPerf);
     }
 
+    private void printWeightingPerfTests( final Graph graph, final FlagEncoder encoder,
+                                          int count, final GHBitSet allowedEdges )
+    {
+        if (!(encoder instanceof BikeGenericFlagEncoder))
+            return;
+
+        // compare the precomputed table against the speed and preference providers
+        DynamicWeighting weighting = new DynamicWeighting(encoder);
+        DynamicWeightingTable table = weighting.getWeightingTable();
+        final int maxEdgesId = graph.getAllEdges().getMaxId();
+        final EdgeIteratorState[] edges = new EdgeIteratorState[1000];
+        Random rand = new Random(seed);
+        for (int i = 0; i < edges.length;)
+        {
+            int edgeId = rand.nextInt(maxEdgesId);
+            if (allowedEdges.contains(edgeId))
+                edges[i++] = graph.getEdgeIteratorState(edgeId, Integer.MIN_VALUE);
+        }
+
+        weighting.setWeightingTable(null);
+        print("unit_tests.dynamic_weighting_providers", createWeightingPerfTest(weighting, edges).setIterations(count).start());
+        weighting.setWeightingTable(table);
+        print("unit_tests.dynamic_weighting_table", createWeightingPerfTest(weighting, edges).setIterations(count).start());
+    }
+
+    private MiniPerfTest createWeightingPerfTest( final Weighting weighting, final EdgeIteratorState[] edges )
+    {
+        return new MiniPerfTest()
+        {
+            @Override
+            public int doCalc( boolean warmup, int run )
+            {
+                EdgeIteratorState edge = edges[run % edges.length];
+                return (int) weighting.calcWeight(edge, (run & 1) == 0, EdgeIterator.NO_EDGE);
+            }
+        };
+    }
+
     private void printTimeOfRouteQuery( final GraphHopper hopper, int count, String prefix,
                                         final String vehicle, final boolean withInstructions )
     {
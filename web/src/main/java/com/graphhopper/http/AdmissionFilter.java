@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.*;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of requests which are processed at the same time. Further requests wait for
+ * a free slot in a queue of limited length. If the queue is full a request is rejected immediately
+ * with 503 (Service Unavailable), if it waited longer than maxWait it is rejected afterwards.
+ * <p>
+ * Note that a queued request blocks its Jetty thread while waiting, so up to maxQueued threads are
+ * blocked for up to maxWait milliseconds. Keep maxConcurrent + maxQueued well below the thread
+ * pool size (jetty.maxThreads) so that other requests are still served. The wait in the queue and
+ * the parsing of the request do not count towards routing.timeout, which starts when the paths
+ * are calculated in GraphHopper.getPaths.
+ * <p>
+ * @author Peter Karich
+ */
+public class AdmissionFilter implements Filter
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Semaphore slots;
+    private final int maxQueued;
+    private final long maxWait;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param maxConcurrent the maximum number of requests processed at the same time
+     * @param maxQueued the maximum number of requests waiting for a slot
+     * @param maxWait the maximum time in milliseconds a request waits for a slot
+     */
+    public AdmissionFilter( int maxConcurrent, int maxQueued, long maxWait )
+    {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("maximum concurrent requests must be positive but was " + maxConcurrent);
+        if (maxQueued < 0)
+            throw new IllegalArgumentException("maximum queued requests cannot be negative " + maxQueued);
+
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException, ServletException
+    {
+        if (!acquire())
+        {
+            rejected.incrementAndGet();
+            logger.warn("Rejected request of " + request.getRemoteAddr() + ", queued:" + queued.get());
+            reject((HttpServletResponse) response);
+            return;
+        }
+
+        try
+        {
+            chain.doFilter(request, response);
+        } finally
+        {
+            release();
+        }
+    }
+
+    /**
+     * @return true if a slot was acquired which has to be released afterwards
+     */
+    boolean acquire()
+    {
+        if (slots.tryAcquire())
+            return true;
+
+        if (queued.incrementAndGet() > maxQueued)
+        {
+            queued.decrementAndGet();
+            return false;
+        }
+
+        try
+        {
+            return slots.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally
+        {
+            queued.decrementAndGet();
+        }
+    }
+
+    void release()
+    {
+        slots.release();
+    }
+
+    private void reject( HttpServletResponse res ) throws IOException
+    {
+        JSONObject json = new JSONObject();
+        json.put("message", "Too many requests, try again later");
+        res.setContentType("application/json");
+        res.setCharacterEncoding("UTF-8");
+        res.setHeader("Retry-After", "1");
+        res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        res.getWriter().append(json.toString(2));
+    }
+
+    /**
+     * @return the number of requests waiting for a slot
+     */
+    public int getQueued()
+    {
+        return queued.get();
+    }
+
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException
+    {
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+}
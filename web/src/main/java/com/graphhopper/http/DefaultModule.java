@@ -25,6 +25,8 @@ import com.graphhopper.util.TranslationMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+
 /**
  * @author Peter Karich
  */
@@ -67,7 +69,17 @@ public class DefaultModule extends AbstractModule
         try
         {
             graphHopper = createGraphHopper(args);
-            bind(GraphHopper.class).toInstance(graphHopper);
+            // servlets acquire the instance from the holder as it can be replaced while running
+            GraphHopperHolder holder = new GraphHopperHolder(graphHopper);
+            bind(GraphHopperHolder.class).toInstance(holder);
+            // a reload only loads prepared graphs, it must not import into the directory of the new graph
+            GraphReloader reloader = new GraphReloader(holder, args);
+            String watchFile = args.get("web.reload.watchFile", "");
+            if (!watchFile.isEmpty())
+                reloader.startWatching(new File(watchFile), args.getLong("web.reload.checkInterval", 10000));
+
+            bind(GraphReloader.class).toInstance(reloader);
+            bind(String.class).annotatedWith(Names.named("adminKey")).toInstance(args.get("web.admin.key", ""));
             bind(TranslationMap.class).toInstance(graphHopper.getTranslationMap());
 
             long timeout = args.getLong("web.timeout", 3000);
@@ -77,8 +89,12 @@ public class DefaultModule extends AbstractModule
                 logger.info("jsonp disabled");
 
             bind(Boolean.class).annotatedWith(Names.named("jsonpAllowed")).toInstance(jsonpAllowed);
+            bind(Integer.class).annotatedWith(Names.named("matrixMaxSize")).toInstance(args.getInt("web.matrix.maxSize", 10000));
+            bind(Integer.class).annotatedWith(Names.named("isochroneMaxBuckets")).toInstance(args.getInt("web.isochrone.maxBuckets", 10));
+            bind(Long.class).annotatedWith(Names.named("isochroneMaxTimeLimit")).toInstance(args.getLong("web.isochrone.maxTimeLimit", 3600));
 
             bind(RouteSerializer.class).toInstance(new SimpleRouteSerializer(graphHopper.getGraphHopperStorage().getBounds()));
+            bind(ProtobufRouteSerializer.class).toInstance(new ProtobufRouteSerializer(graphHopper.getGraphHopperStorage().getBounds()));
         } catch (Exception ex)
         {
             throw new IllegalStateException("Couldn't load graph", ex);
@@ -17,6 +17,8 @@
  */
 package com.graphhopper.http;
 
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.util.shapes.GHPoint;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -27,10 +29,15 @@ import javax.inject.Named;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
@@ -41,44 +48,65 @@ import static javax.servlet.http.HttpServletResponse.SC_OK;
 public class GHBaseServlet extends HttpServlet
 {
     protected static Logger logger = LoggerFactory.getLogger(GHBaseServlet.class);
+    private static final int WRITER_BUFFER_SIZE = 8 * 1024;
     @Inject
     @Named("jsonpAllowed")
     private boolean jsonpAllowed;
 
     protected void writeJson( HttpServletRequest req, HttpServletResponse res, JSONObject json ) throws JSONException, IOException
+    {
+        JsonWriter writer = createJsonWriter(req, res);
+        if (writer == null)
+            return;
+
+        writer.value(json);
+        writer.flush();
+    }
+
+    /**
+     * Prepares the response for JSON or JSONP (type=jsonp) and returns a writer which writes the
+     * JSON directly into the response, call flush when done. The JSON is pretty printed if the
+     * debug or pretty parameter is true.
+     * <p>
+     * @return null if JSONP was requested but is not possible, the error is already written then
+     */
+    protected JsonWriter createJsonWriter( HttpServletRequest req, HttpServletResponse res ) throws IOException
     {
         String type = getParam(req, "type", "json");
         res.setCharacterEncoding("UTF-8");
         boolean debug = getBooleanParam(req, "debug", false) || getBooleanParam(req, "pretty", false);
+        String callbackName = null;
         if ("jsonp".equals(type))
         {
             res.setContentType("application/javascript");
             if (!jsonpAllowed)
             {
                 writeError(res, SC_BAD_REQUEST, "Server is not configured to allow jsonp!");
-                return;
+                return null;
             }
 
-            String callbackName = getParam(req, "callback", null);
+            callbackName = getParam(req, "callback", null);
             if (callbackName == null)
             {
                 writeError(res, SC_BAD_REQUEST, "No callback provided, necessary if type=jsonp");
-                return;
+                return null;
             }
-
-            if (debug)
-                writeResponse(res, callbackName + "(" + json.toString(2) + ")");
-            else
-                writeResponse(res, callbackName + "(" + json.toString() + ")");
-
         } else
         {
             res.setContentType("application/json");
-            if (debug)
-                writeResponse(res, json.toString(2));
-            else
-                writeResponse(res, json.toString());
         }
+
+        res.setStatus(SC_OK);
+        return new JsonWriter(createWriter(res), debug).setCallback(callbackName);
+    }
+
+    /**
+     * Returns a buffered writer for the body of the response. Many small writes are then collected
+     * before they are passed to the response, which is also compressed via the gzip filter.
+     */
+    protected Writer createWriter( HttpServletResponse res ) throws IOException
+    {
+        return new BufferedWriter(res.getWriter(), WRITER_BUFFER_SIZE);
     }
 
     protected void writeError( HttpServletResponse res, int code, String message )
@@ -104,6 +132,25 @@ public class GHBaseServlet extends HttpServlet
         }
     }
 
+    /**
+     * Creates the error JSON in the same format as for routing errors.
+     */
+    protected JSONObject createErrorJson( List<Throwable> errors )
+    {
+        Map<String, Object> json = new HashMap<String, Object>();
+        json.put("message", errors.get(0).getMessage());
+        List<Map<String, String>> errorHintList = new ArrayList<Map<String, String>>();
+        for (Throwable t : errors)
+        {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("message", t.getMessage());
+            map.put("details", t.getClass().getName());
+            errorHintList.add(map);
+        }
+        json.put("hints", errorHintList);
+        return new JSONObject(json);
+    }
+
     protected String getParam( HttpServletRequest req, String key, String _default )
     {
         String[] l = req.getParameterMap().get(key);
@@ -171,6 +218,36 @@ public class GHBaseServlet extends HttpServlet
         }
     }
 
+    protected List<GHPoint> getPoints( HttpServletRequest req, String key )
+    {
+        String[] pointsAsStr = getParams(req, key);
+        final List<GHPoint> infoPoints = new ArrayList<GHPoint>(pointsAsStr.length);
+        for (String str : pointsAsStr)
+        {
+            String[] fromStrs = str.split(",");
+            if (fromStrs.length == 2)
+            {
+                GHPoint point = GHPoint.parse(str);
+                if (point != null)
+                    infoPoints.add(point);
+            }
+        }
+
+        return infoPoints;
+    }
+
+    /**
+     * Puts all parameters with a single value into the specified hints.
+     */
+    protected void initHints( WeightingMap hints, Map<String, String[]> parameterMap )
+    {
+        for (Entry<String, String[]> e : parameterMap.entrySet())
+        {
+            if (e.getValue().length == 1)
+                hints.put(e.getKey(), e.getValue()[0]);
+        }
+    }
+
     public void writeResponse( HttpServletResponse res, String str )
     {
         try
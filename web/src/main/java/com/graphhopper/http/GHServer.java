@@ -37,6 +37,7 @@ import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,6 +77,11 @@ public class GHServer
         resHandler.setResourceBase(args.get("jetty.resourcebase", "./src/main/webapp"));
 
         server = new Server();
+        // a bounded pool, the jobs exceeding the queue are not executed and their connections are closed
+        QueuedThreadPool threadPool = new QueuedThreadPool(args.getInt("jetty.maxThreads", 200));
+        threadPool.setMinThreads(args.getInt("jetty.minThreads", 8));
+        threadPool.setMaxQueued(args.getInt("jetty.maxQueued", 1000));
+        server.setThreadPool(threadPool);
         // getSessionHandler and getSecurityHandler should always return null
         ServletContextHandler servHandler = new ServletContextHandler(ServletContextHandler.NO_SECURITY | ServletContextHandler.NO_SESSIONS);
         servHandler.setErrorHandler(new GHErrorHandler());
@@ -42,6 +42,7 @@ public class GHServletModule extends ServletModule
                 + "text/css,"
                 + "application/json,"
                 + "application/javascript,"
+                + ProtobufRouteSerializer.CONTENT_TYPE + ","
                 + "image/svg+xml");
     }
 
@@ -57,6 +58,16 @@ public class GHServletModule extends ServletModule
         filter("*").through(IPFilter.class);
         bind(IPFilter.class).toInstance(new IPFilter(args.get("jetty.whiteips", ""), args.get("jetty.blackips", "")));
 
+        // reject route requests early if the server is overloaded
+        int maxConcurrentRoutes = args.getInt("web.route.maxConcurrent", 0);
+        if (maxConcurrentRoutes > 0)
+        {
+            filter("/route*").through(AdmissionFilter.class);
+            bind(AdmissionFilter.class).toInstance(new AdmissionFilter(maxConcurrentRoutes,
+                    args.getInt("web.route.maxQueued", maxConcurrentRoutes),
+                    args.getLong("web.route.maxWait", 1000)));
+        }
+
         serve("/i18n*").with(I18NServlet.class);
         bind(I18NServlet.class).in(Singleton.class);
 
@@ -68,5 +79,18 @@ public class GHServletModule extends ServletModule
 
         serve("/nearest*").with(NearestServlet.class);
         bind(NearestServlet.class).in(Singleton.class);
+
+        serve("/matrix*").with(MatrixServlet.class);
+        bind(MatrixServlet.class).in(Singleton.class);
+
+        serve("/isochrone*").with(IsochroneServlet.class);
+        bind(IsochroneServlet.class).in(Singleton.class);
+
+        // the admin endpoint is only available if a key is configured
+        if (!args.get("web.admin.key", "").isEmpty())
+        {
+            serve("/admin/reload*").with(ReloadServlet.class);
+            bind(ReloadServlet.class).in(Singleton.class);
+        }
     }
 }
@@ -0,0 +1,159 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the GraphHopper instance used by the servlets, which can be switched to a newly loaded
+ * instance while requests are served. A request acquires the current instance and releases it
+ * after the response is written. A replaced instance is closed as soon as its last request
+ * released it.
+ * <p>
+ * @author Peter Karich
+ */
+public class GraphHopperHolder
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final AtomicReference<Generation> current;
+    // replaced instances which still have requests in flight
+    private final List<Generation> retired = new CopyOnWriteArrayList<Generation>();
+    private final AtomicInteger swaps = new AtomicInteger();
+
+    public GraphHopperHolder( GraphHopper hopper )
+    {
+        current = new AtomicReference<Generation>(new Generation(hopper));
+    }
+
+    /**
+     * @return the current instance which has to be released via release after usage
+     */
+    public GraphHopper acquire()
+    {
+        while (true)
+        {
+            Generation generation = current.get();
+            generation.users.incrementAndGet();
+            // the instance could have been replaced before it was marked as used
+            if (generation == current.get())
+                return generation.hopper;
+
+            release(generation);
+        }
+    }
+
+    public void release( GraphHopper hopper )
+    {
+        Generation generation = current.get();
+        if (generation.hopper == hopper)
+        {
+            release(generation);
+            return;
+        }
+
+        for (Generation tmp : retired)
+        {
+            if (tmp.hopper == hopper)
+            {
+                release(tmp);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("GraphHopper instance was not acquired from this holder");
+    }
+
+    private void release( Generation generation )
+    {
+        if (generation.users.decrementAndGet() == 0 && generation.retired)
+            close(generation);
+    }
+
+    /**
+     * @return the current instance without acquiring it, e.g. to read its configuration
+     */
+    public GraphHopper get()
+    {
+        return current.get().hopper;
+    }
+
+    /**
+     * Makes the specified instance the current one. New requests use it immediately and the
+     * previous instance is closed once all its requests are finished.
+     */
+    public synchronized void swap( GraphHopper hopper )
+    {
+        // add the old instance to the retired ones before replacing it, so that a request in
+        // flight always finds its instance on release
+        Generation old = current.get();
+        retired.add(old);
+        current.set(new Generation(hopper));
+        swaps.incrementAndGet();
+        old.retired = true;
+        if (old.users.get() == 0)
+            close(old);
+    }
+
+    private void close( Generation generation )
+    {
+        // only one thread is allowed to close the instance
+        if (!retired.remove(generation))
+            return;
+
+        logger.info("closing replaced graph " + generation.hopper.getGraphHopperLocation());
+        generation.hopper.close();
+    }
+
+    /**
+     * @return how often the instance was replaced
+     */
+    public int getSwaps()
+    {
+        return swaps.get();
+    }
+
+    /**
+     * Closes the current instance and all replaced instances even if they are still in use.
+     */
+    public void close()
+    {
+        for (Generation generation : retired)
+        {
+            close(generation);
+        }
+        current.get().hopper.close();
+    }
+
+    private static class Generation
+    {
+        final GraphHopper hopper;
+        final AtomicInteger users = new AtomicInteger();
+        volatile boolean retired;
+
+        Generation( GraphHopper hopper )
+        {
+            this.hopper = hopper;
+        }
+    }
+}
@@ -21,7 +21,6 @@ import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.routing.util.WeightingMap;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.GHPoint;
 import org.json.JSONObject;
@@ -39,16 +38,19 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.*;
-import java.util.Map.Entry;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 /**
  * Servlet to use GraphHopper in a remote client application like mobile or browser. Note: If type
  * is json it returns the points in GeoJson format (longitude,latitude) unlike the format "lat,lon"
- * used otherwise. See the full API response format in docs/web/api-doc.md
+ * used otherwise. If type is pb a compact binary response is returned, its protobuf schema is in
+ * src/main/proto/route.proto. See the full API response format in docs/web/api-doc.md
  * <p>
  *
  * @author Peter Karich
@@ -56,19 +58,36 @@ import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 public class GraphHopperServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
     @Inject
     private RouteSerializer routeSerializer;
+    @Inject
+    private ProtobufRouteSerializer protobufSerializer;
 
     @Override
     public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // keep the instance until the response is written as the graph could be reloaded meanwhile
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            processRequest(hopper, httpReq, httpRes);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+    }
+
+    private void processRequest( GraphHopper hopper, HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
     {
         List<GHPoint> requestPoints = getPoints(httpReq, "point");
         GHResponse ghRsp = new GHResponse();
 
         // we can reduce the path length based on the maximum differences to the original coordinates
         double minPathPrecision = getDoubleParam(httpReq, "way_point_max_distance", 1d);
-        boolean writeGPX = "gpx".equalsIgnoreCase(getParam(httpReq, "type", "json"));
+        String type = getParam(httpReq, "type", "json");
+        boolean writeGPX = "gpx".equalsIgnoreCase(type);
+        boolean writeProtobuf = "pb".equalsIgnoreCase(type);
         boolean enableInstructions = writeGPX || getBooleanParam(httpReq, "instructions", true);
         boolean calcPoints = getBooleanParam(httpReq, "calc_points", true);
         boolean enableElevation = getBooleanParam(httpReq, "elevation", false);
@@ -151,33 +170,36 @@ public class GraphHopperServlet extends GHBaseServlet
 
         if (writeGPX)
         {
-            String xml = createGPXString(httpReq, httpRes, ghRsp);
-            if (ghRsp.hasErrors())
-            {
-                httpRes.setStatus(SC_BAD_REQUEST);
-                httpRes.getWriter().append(xml);
-            } else
-            {
-                writeResponse(httpRes, xml);
-            }
+            writeGPX(httpReq, httpRes, ghRsp);
+        } else if (writeProtobuf)
+        {
+            httpRes.setContentType(ProtobufRouteSerializer.CONTENT_TYPE);
+            httpRes.setStatus(ghRsp.hasErrors() ? SC_BAD_REQUEST : SC_OK);
+            OutputStream os = httpRes.getOutputStream();
+            protobufSerializer.write(os, ghRsp, Math.round(took * 1000), calcPoints, enableElevation, enableInstructions);
+            os.flush();
+        } else if (ghRsp.hasErrors())
+        {
+            writeJsonError(httpRes, SC_BAD_REQUEST, new JSONObject(routeSerializer.toJSON(ghRsp, calcPoints,
+                    pointsEncoded, enableElevation, enableInstructions)));
         } else
         {
-            Map<String, Object> map = routeSerializer.toJSON(ghRsp, calcPoints, pointsEncoded,
-                    enableElevation, enableInstructions);
+            JsonWriter writer = createJsonWriter(httpReq, httpRes);
+            if (writer == null)
+                return;
 
             // deprecated - remove in 0.5
-            Object infoMap = map.get("info");
-            if (infoMap != null)
-                ((Map) infoMap).put("took", Math.round(took * 1000));
-
-            if (ghRsp.hasErrors())
-                writeJsonError(httpRes, SC_BAD_REQUEST, new JSONObject(map));
-            else
-                writeJson(httpReq, httpRes, new JSONObject(map));
+            Map<String, Object> info = Collections.<String, Object>singletonMap("took", Math.round(took * 1000));
+            routeSerializer.writeJSON(writer, ghRsp, info, calcPoints, pointsEncoded,
+                    enableElevation, enableInstructions);
+            writer.flush();
         }
     }
 
-    protected String createGPXString( HttpServletRequest req, HttpServletResponse res, GHResponse rsp )
+    /**
+     * Writes the route as GPX directly into the response or the errors if routing failed.
+     */
+    protected void writeGPX( HttpServletRequest req, HttpServletResponse res, GHResponse rsp ) throws IOException
     {
         boolean includeElevation = getBooleanParam(req, "elevation", false);
         res.setCharacterEncoding("UTF-8");
@@ -186,9 +208,16 @@ public class GraphHopperServlet extends GHBaseServlet
         res.setHeader("Content-Disposition", "attachment;filename=" + "GraphHopper.gpx");
         long time = getLongParam(req, "millis", System.currentTimeMillis());
         if (rsp.hasErrors())
-            return errorsToXML(rsp.getErrors());
-        else
-            return rsp.getInstructions().createGPX(trackName, time, includeElevation);
+        {
+            res.setStatus(SC_BAD_REQUEST);
+            res.getWriter().append(errorsToXML(rsp.getErrors()));
+        } else
+        {
+            res.setStatus(SC_OK);
+            Writer writer = createWriter(res);
+            rsp.getInstructions().createGPX(writer, trackName, time, includeElevation);
+            writer.flush();
+        }
     }
 
     String errorsToXML( List<Throwable> list )
@@ -234,31 +263,8 @@ public class GraphHopperServlet extends GHBaseServlet
         }
     }
 
-    protected List<GHPoint> getPoints( HttpServletRequest req, String key )
-    {
-        String[] pointsAsStr = getParams(req, key);
-        final List<GHPoint> infoPoints = new ArrayList<GHPoint>(pointsAsStr.length);
-        for (String str : pointsAsStr)
-        {
-            String[] fromStrs = str.split(",");
-            if (fromStrs.length == 2)
-            {
-                GHPoint point = GHPoint.parse(str);
-                if (point != null)
-                    infoPoints.add(point);
-            }
-        }
-
-        return infoPoints;
-    }
-
     protected void initHints( GHRequest request, Map<String, String[]> parameterMap )
     {
-        WeightingMap m = request.getHints();
-        for (Entry<String, String[]> e : parameterMap.entrySet())
-        {
-            if (e.getValue().length == 1)
-                m.put(e.getKey(), e.getValue()[0]);
-        }
+        initHints(request.getHints(), parameterMap);
     }
 }
@@ -17,12 +17,18 @@
  */
 package com.graphhopper.http;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.json.JSONArray;
@@ -30,6 +36,8 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.graphhopper.http.ProtobufRouteSerializer.*;
+
 /**
  * Main wrapper of the GraphHopper Directions API for a simple and efficient usage.
  * <p>
@@ -44,6 +52,8 @@ public class GraphHopperWeb implements GraphHopperAPI
     private boolean instructions = true;
     private boolean calcPoints = true;
     private boolean elevation = false;
+    private boolean protobuf = false;
+    private TranslationMap translationMap;
 
     public GraphHopperWeb()
     {
@@ -88,6 +98,16 @@ public class GraphHopperWeb implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Requests the compact binary response instead of JSON. The texts of the instructions are then
+     * created from the street names in the client.
+     */
+    public GraphHopperWeb setProtobuf( boolean protobuf )
+    {
+        this.protobuf = protobuf;
+        return this;
+    }
+
     @Override
     public GHResponse route( GHRequest request )
     {
@@ -108,12 +128,13 @@ public class GraphHopperWeb implements GraphHopperAPI
                         + "Use calcPoints=false and instructions=false to disable point and instruction calculation");
 
             boolean tmpElevation = request.getHints().getBool("elevation", elevation);
+            boolean tmpProtobuf = request.getHints().getBool("protobuf", protobuf);
             String tmpKey = request.getHints().get("key", key);
 
             String url = routeServiceUrl
                     + "?"
                     + places
-                    + "&type=json"
+                    + "&type=" + (tmpProtobuf ? "pb" : "json")
                     + "&instructions=" + tmpInstructions
                     + "&points_encoded=true"
                     + "&calc_points=" + tmpCalcPoints
@@ -127,10 +148,23 @@ public class GraphHopperWeb implements GraphHopperAPI
             if (!tmpKey.isEmpty())
                 url += "&key=" + tmpKey;
 
+            GHResponse res = new GHResponse();
+            if (tmpProtobuf)
+            {
+                InputStream is = downloader.fetch((HttpURLConnection) downloader.createConnection(url), true);
+                try
+                {
+                    readProtobuf(res, is, getTranslationMap().getWithFallBack(request.getLocale()));
+                } finally
+                {
+                    is.close();
+                }
+                return res;
+            }
+
             String str = downloader.downloadAsString(url, true);
             JSONObject json = new JSONObject(str);
 
-            GHResponse res = new GHResponse();
             readErrors(res.getErrors(), json);
             if (res.hasErrors())
                 return res;
@@ -253,22 +287,268 @@ public class GraphHopperWeb implements GraphHopperAPI
                 exClass = error.getString("details");
 
             String exMessage = error.getString("message");
-
-            if (exClass.equals(UnsupportedOperationException.class.getName()))
-                errors.add(new UnsupportedOperationException(exMessage));
-            else if (exClass.equals(IllegalStateException.class.getName()))
-                errors.add(new IllegalStateException(exMessage));
-            else if (exClass.equals(RuntimeException.class.getName()))
-                errors.add(new RuntimeException(exMessage));
-            else if (exClass.equals(IllegalArgumentException.class.getName()))
-                errors.add(new IllegalArgumentException(exMessage));
-            else if (exClass.isEmpty())
-                errors.add(new RuntimeException(exMessage));
-            else
-                errors.add(new RuntimeException(exClass + " " + exMessage));
+            errors.add(createException(exClass, exMessage));
         }
 
         if (json.has("message") && errors.isEmpty())
             errors.add(new RuntimeException(json.getString("message")));
     }
+
+    static Throwable createException( String exClass, String exMessage )
+    {
+        if (exClass.equals(UnsupportedOperationException.class.getName()))
+            return new UnsupportedOperationException(exMessage);
+        else if (exClass.equals(IllegalStateException.class.getName()))
+            return new IllegalStateException(exMessage);
+        else if (exClass.equals(RuntimeException.class.getName()))
+            return new RuntimeException(exMessage);
+        else if (exClass.equals(IllegalArgumentException.class.getName()))
+            return new IllegalArgumentException(exMessage);
+        else if (exClass.isEmpty())
+            return new RuntimeException(exMessage);
+        else
+            return new RuntimeException(exClass + " " + exMessage);
+    }
+
+    private synchronized TranslationMap getTranslationMap()
+    {
+        if (translationMap == null)
+            translationMap = new TranslationMap().doImport();
+
+        return translationMap;
+    }
+
+    /**
+     * Reads the binary response of type=pb into the specified response, see route.proto. Only the
+     * street names of the instructions are transferred and their texts are created with the
+     * specified translation.
+     */
+    public static void readProtobuf( GHResponse res, InputStream is, Translation tr ) throws IOException
+    {
+        CodedInputStream in = CodedInputStream.newInstance(is);
+        // long routes can be bigger than the default limit of 64MB
+        in.setSizeLimit(Integer.MAX_VALUE);
+        boolean firstPath = true;
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (WireFormat.getTagFieldNumber(tag))
+            {
+                case RESPONSE_PATHS:
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    if (firstPath)
+                        readProtobufPath(res, in, tr);
+                    else
+                        in.skipRawBytes(in.getBytesUntilLimit());
+                    firstPath = false;
+                    in.popLimit(limit);
+                    break;
+                case RESPONSE_ERRORS:
+                    limit = in.pushLimit(in.readRawVarint32());
+                    String message = "", details = "";
+                    while ((tag = in.readTag()) != 0)
+                    {
+                        if (WireFormat.getTagFieldNumber(tag) == ERROR_MESSAGE)
+                            message = in.readString();
+                        else if (WireFormat.getTagFieldNumber(tag) == ERROR_DETAILS)
+                            details = in.readString();
+                        else
+                            in.skipField(tag);
+                    }
+                    res.addError(createException(details, message));
+                    in.popLimit(limit);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+    }
+
+    private static void readProtobufPath( GHResponse res, CodedInputStream in, Translation tr ) throws IOException
+    {
+        double distance = 0;
+        long time = 0;
+        PointList points = new PointList(0, false);
+        List<String> names = new ArrayList<String>();
+        InstructionList il = null;
+        int pointIndex = 0;
+        int viaCount = 1;
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (WireFormat.getTagFieldNumber(tag))
+            {
+                case PATH_DISTANCE:
+                    distance = in.readDouble();
+                    break;
+                case PATH_WEIGHT:
+                    res.setRouteWeight(in.readDouble());
+                    break;
+                case PATH_TIME:
+                    time = in.readInt64();
+                    break;
+                case PATH_ASCEND:
+                    res.setAscend(in.readDouble());
+                    break;
+                case PATH_DESCEND:
+                    res.setDescend(in.readDouble());
+                    break;
+                case PATH_POINTS:
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    points = readProtobufGeometry(in);
+                    in.popLimit(limit);
+                    res.setPoints(points);
+                    break;
+                case PATH_NAMES:
+                    names.add(in.readString());
+                    break;
+                case PATH_INSTRUCTIONS:
+                    if (il == null)
+                        il = new InstructionList(tr);
+
+                    limit = in.pushLimit(in.readRawVarint32());
+                    // the points are written before the instructions
+                    Instruction instr = readProtobufInstruction(in, points, pointIndex, names);
+                    in.popLimit(limit);
+                    if (instr instanceof ViaInstruction)
+                    {
+                        ((ViaInstruction) instr).setViaCount(viaCount);
+                        viaCount++;
+                    }
+                    pointIndex += instr.getPoints().getSize();
+                    il.add(instr);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        if (il != null)
+            res.setInstructions(il);
+
+        res.setDistance(distance).setTime(time);
+    }
+
+    private static PointList readProtobufGeometry( CodedInputStream in ) throws IOException
+    {
+        boolean is3D = false;
+        int size = 10;
+        PointList points = null;
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (WireFormat.getTagFieldNumber(tag))
+            {
+                case GEOMETRY_ELEVATION:
+                    is3D = in.readBool();
+                    break;
+                case GEOMETRY_SIZE:
+                    size = in.readInt32();
+                    break;
+                case GEOMETRY_COORDINATES:
+                    points = new PointList(size, is3D);
+                    int limit = in.pushLimit(in.readRawVarint32());
+                    int lat = 0, lon = 0, ele = 0;
+                    while (in.getBytesUntilLimit() > 0)
+                    {
+                        lat += in.readSInt32();
+                        lon += in.readSInt32();
+                        if (is3D)
+                        {
+                            ele += in.readSInt32();
+                            points.add(lat / COORDINATE_FACTOR, lon / COORDINATE_FACTOR, ele / ELEVATION_FACTOR);
+                        } else
+                        {
+                            points.add(lat / COORDINATE_FACTOR, lon / COORDINATE_FACTOR);
+                        }
+                    }
+                    in.popLimit(limit);
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+        return points == null ? new PointList(0, is3D) : points;
+    }
+
+    private static Instruction readProtobufInstruction( CodedInputStream in, PointList points, int pointIndex,
+                                                        List<String> names ) throws IOException
+    {
+        int sign = 0, nameIndex = 0, pointCount = 0, importance = 0, exitNumber = 0;
+        double instDist = 0, turnAngle = Double.NaN;
+        long instTime = 0;
+        String annotationText = null;
+        boolean exited = false;
+        int tag;
+        while ((tag = in.readTag()) != 0)
+        {
+            switch (WireFormat.getTagFieldNumber(tag))
+            {
+                case INSTRUCTION_SIGN:
+                    sign = in.readSInt32();
+                    break;
+                case INSTRUCTION_NAME:
+                    nameIndex = in.readInt32();
+                    break;
+                case INSTRUCTION_DISTANCE:
+                    instDist = in.readDouble();
+                    break;
+                case INSTRUCTION_TIME:
+                    instTime = in.readInt64();
+                    break;
+                case INSTRUCTION_POINTS:
+                    pointCount = in.readInt32();
+                    break;
+                case INSTRUCTION_ANNOTATION_TEXT:
+                    annotationText = in.readString();
+                    break;
+                case INSTRUCTION_ANNOTATION_IMPORTANCE:
+                    importance = in.readInt32();
+                    break;
+                case INSTRUCTION_EXIT_NUMBER:
+                    exitNumber = in.readInt32();
+                    break;
+                case INSTRUCTION_EXITED:
+                    exited = in.readBool();
+                    break;
+                case INSTRUCTION_TURN_ANGLE:
+                    turnAngle = in.readDouble();
+                    break;
+                default:
+                    in.skipField(tag);
+            }
+        }
+
+        int to = Math.min(pointIndex + pointCount, points.getSize());
+        PointList instPL = new PointList(Math.max(0, to - pointIndex), points.is3D());
+        for (int j = pointIndex; j < to; j++)
+        {
+            instPL.add(points, j);
+        }
+
+        String name = nameIndex > 0 ? names.get(nameIndex - 1) : "";
+        InstructionAnnotation ia = annotationText == null ? InstructionAnnotation.EMPTY
+                : new InstructionAnnotation(importance, annotationText);
+        Instruction instr;
+        if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
+        {
+            RoundaboutInstruction ri = new RoundaboutInstruction(sign, name, ia, instPL).setExitNumber(exitNumber);
+            if (exited)
+                ri.setExited();
+            // the turn angle is PI * clockwise - radian, so this restores the same angle
+            if (!Double.isNaN(turnAngle))
+                ri.setDirOfRotation(1).setRadian(Math.PI - turnAngle);
+            instr = ri;
+        } else if (sign == Instruction.REACHED_VIA)
+        {
+            instr = new ViaInstruction(name, ia, instPL);
+        } else if (sign == Instruction.FINISH)
+        {
+            instr = new FinishInstruction(instPL, 0);
+        } else
+        {
+            instr = new Instruction(sign, name, ia, instPL);
+        }
+        instr.setDistance(instDist).setTime(instTime);
+        return instr;
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads a graph from another directory in the background, warms it up with a set of queries and
+ * then swaps it into the GraphHopperHolder. A reload can be triggered directly or by a watch file
+ * which contains the graph location to be used. The file is polled as it is a small text file and
+ * only changes on deployment.
+ * <p>
+ * @author Peter Karich
+ */
+public class GraphReloader
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final GraphHopperHolder holder;
+    private final CmdArgs args;
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread(r, "graph-reloader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private Timer watchTimer;
+    private int warmupQueries;
+    private String warmupFile;
+
+    public GraphReloader( GraphHopperHolder holder, CmdArgs args )
+    {
+        this.holder = holder;
+        this.args = args;
+        warmupQueries = args.getInt("web.reload.warmupQueries", 100);
+        warmupFile = args.get("web.reload.warmupFile", "");
+    }
+
+    /**
+     * Specifies how many random routes are calculated before a new graph is used.
+     */
+    public GraphReloader setWarmupQueries( int warmupQueries )
+    {
+        this.warmupQueries = warmupQueries;
+        return this;
+    }
+
+    /**
+     * Specifies a file with additional warm up routes. Every line contains the points of one route
+     * separated by whitespace where each point is in the format 'lat,lon'.
+     */
+    public GraphReloader setWarmupFile( String warmupFile )
+    {
+        this.warmupFile = warmupFile;
+        return this;
+    }
+
+    /**
+     * Loads the graph at the specified location in the background.
+     * <p>
+     * @return false if a reload is already in progress
+     */
+    public boolean reload( final String graphLocation )
+    {
+        if (!reloading.compareAndSet(false, true))
+            return false;
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    doReload(graphLocation);
+                } catch (Exception ex)
+                {
+                    logger.error("Couldn't reload graph from " + graphLocation + ", keeping "
+                            + holder.get().getGraphHopperLocation(), ex);
+                } finally
+                {
+                    reloading.set(false);
+                }
+            }
+        });
+        return true;
+    }
+
+    public boolean isReloading()
+    {
+        return reloading.get();
+    }
+
+    /**
+     * Loads and warms up the graph at the specified location in the current thread and makes it
+     * the current instance of the holder.
+     */
+    void doReload( String graphLocation )
+    {
+        if (Helper.isEmpty(graphLocation))
+            throw new IllegalArgumentException("No graph location specified");
+
+        StopWatch sw = new StopWatch().start();
+        CmdArgs newArgs = new CmdArgs(args.toMap());
+        newArgs.put("graph.location", graphLocation);
+        GraphHopper hopper = createGraphHopper(newArgs);
+        try
+        {
+            warmUp(hopper);
+        } catch (RuntimeException ex)
+        {
+            hopper.close();
+            throw ex;
+        }
+        holder.swap(hopper);
+        logger.info("switched to graph " + hopper.getGraphHopperLocation() + ", took " + sw.stop().getSeconds() + "s");
+    }
+
+    /**
+     * Loads an existing graph. In contrast to the startup no import is done as this would block
+     * the reload thread for a long time and write into the directory of a running deployment.
+     * <p>
+     * @return an initialized GraphHopper instance for the specified configuration
+     * @throws IllegalStateException if no graph exists at the configured location
+     */
+    protected GraphHopper createGraphHopper( CmdArgs args )
+    {
+        GraphHopper tmp = new GraphHopper().forServer().init(args);
+        boolean loaded;
+        try
+        {
+            loaded = tmp.load(tmp.getGraphHopperLocation());
+        } catch (RuntimeException ex)
+        {
+            tmp.close();
+            throw ex;
+        }
+        if (!loaded)
+        {
+            tmp.close();
+            throw new IllegalStateException("No graph found at " + args.get("graph.location", ""));
+        }
+        return tmp;
+    }
+
+    /**
+     * Calculates the configured routes to load the hot parts of the graph and the algorithm pools
+     * before the instance gets traffic. Failing routes are ignored.
+     */
+    void warmUp( GraphHopper hopper )
+    {
+        List<GHRequest> requests = new ArrayList<GHRequest>();
+        if (!Helper.isEmpty(warmupFile))
+        {
+            try
+            {
+                for (String line : Helper.readFile(warmupFile))
+                {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#"))
+                        continue;
+
+                    List<GHPoint> points = new ArrayList<GHPoint>();
+                    for (String str : line.split("\\s+"))
+                    {
+                        GHPoint point = GHPoint.parse(str);
+                        if (point == null)
+                            throw new IllegalArgumentException("Cannot parse point " + str + " in " + warmupFile);
+
+                        points.add(point);
+                    }
+                    requests.add(new GHRequest(points));
+                }
+            } catch (IOException ex)
+            {
+                throw new RuntimeException("Cannot read warm up file " + warmupFile, ex);
+            }
+        }
+
+        BBox bounds = hopper.getGraphHopperStorage().getBounds();
+        // a fixed seed makes the warm up comparable between deployments
+        Random rand = new Random(123);
+        for (int i = 0; i < warmupQueries; i++)
+        {
+            requests.add(new GHRequest(randomLat(rand, bounds), randomLon(rand, bounds),
+                    randomLat(rand, bounds), randomLon(rand, bounds)));
+        }
+
+        String vehicle = hopper.getEncodingManager().fetchEdgeEncoders().get(0).toString();
+        StopWatch sw = new StopWatch().start();
+        int failed = 0;
+        for (GHRequest request : requests)
+        {
+            request.setVehicle(vehicle);
+            if (hopper.route(request).hasErrors())
+                failed++;
+        }
+        logger.info("warmed up " + hopper.getGraphHopperLocation() + " with " + requests.size()
+                + " routes (" + failed + " failed) in " + sw.stop().getSeconds() + "s");
+    }
+
+    private static double randomLat( Random rand, BBox bounds )
+    {
+        return bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat);
+    }
+
+    private static double randomLon( Random rand, BBox bounds )
+    {
+        return bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon);
+    }
+
+    /**
+     * Checks the specified file every checkInterval milliseconds and reloads the graph if the file
+     * was changed. The file contains the location of the graph directory.
+     */
+    public synchronized void startWatching( final File watchFile, long checkInterval )
+    {
+        if (watchTimer != null)
+            throw new IllegalStateException("Already watching a file");
+
+        final long initialModified = watchFile.lastModified();
+        watchTimer = new Timer("graph-reload-watch", true);
+        watchTimer.schedule(new TimerTask()
+        {
+            private long lastModified = initialModified;
+
+            @Override
+            public void run()
+            {
+                long modified = watchFile.lastModified();
+                if (modified == 0 || modified == lastModified)
+                    return;
+
+                try
+                {
+                    List<String> lines = Helper.readFile(watchFile.getAbsolutePath());
+                    String location = lines.isEmpty() ? "" : lines.get(0).trim();
+                    if (location.isEmpty())
+                    {
+                        logger.warn("watch file " + watchFile + " contains no graph location");
+                        lastModified = modified;
+                    } else if (reload(location))
+                    {
+                        logger.info("watch file " + watchFile + " changed, reloading graph from " + location);
+                        lastModified = modified;
+                    }
+                    // if a reload is in progress the file is checked again later
+                } catch (IOException ex)
+                {
+                    logger.error("Cannot read watch file " + watchFile, ex);
+                }
+            }
+        }, checkInterval, checkInterval);
+    }
+
+    public synchronized void stop()
+    {
+        if (watchTimer != null)
+        {
+            watchTimer.cancel();
+            watchTimer = null;
+        }
+        executor.shutdownNow();
+    }
+}
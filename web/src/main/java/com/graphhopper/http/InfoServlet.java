@@ -18,6 +18,7 @@
 package com.graphhopper.http;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.RouteCache;
 import com.graphhopper.storage.StorableProperties;
 import com.graphhopper.util.Constants;
 import com.graphhopper.util.Helper;
@@ -40,10 +41,23 @@ import org.json.JSONObject;
 public class InfoServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
 
     @Override
     public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        // keep the instance until the response is written as the graph could be reloaded meanwhile
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            processRequest(hopper, req, res);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+    }
+
+    private void processRequest( GraphHopper hopper, HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
     {
         BBox bb = hopper.getGraphHopperStorage().getBounds();
         List<Double> list = new ArrayList<Double>(4);
@@ -76,6 +90,21 @@ public class InfoServlet extends GHBaseServlet
         if (!Helper.isEmpty(props.get("prepare.date")))
             json.put("prepare_date", props.get("prepare.date"));
 
+        RouteCache routeCache = hopper.getRouteCache();
+        if (routeCache != null)
+        {
+            JSONObject cacheJson = new JSONObject();
+            cacheJson.put("size", routeCache.getSize());
+            cacheJson.put("max_size", routeCache.getMaxSize());
+            cacheJson.put("bytes", routeCache.getBytes());
+            cacheJson.put("max_bytes", routeCache.getMaxBytes());
+            cacheJson.put("hits", routeCache.getHits());
+            cacheJson.put("misses", routeCache.getMisses());
+            cacheJson.put("evictions", routeCache.getEvictions());
+            cacheJson.put("expirations", routeCache.getExpirations());
+            json.put("route_cache", cacheJson);
+        }
+
         writeJson(req, res, json);
     }
 
@@ -0,0 +1,172 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHIsochroneRequest;
+import com.graphhopper.GHIsochroneResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Servlet to get everything reachable from a point within 'time_limit' seconds. The result is a
+ * GeoJSON FeatureCollection with one feature per bucket, either the polygon (result=polygon) or
+ * the reached points (result=pointlist) of the bucket. The time limit and the number of buckets are
+ * limited by web.isochrone.maxTimeLimit and web.isochrone.maxBuckets.
+ * <p>
+ * @author Peter Karich
+ */
+public class IsochroneServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperHolder hopperHolder;
+    @Inject
+    @Named("isochroneMaxBuckets")
+    private int maxBuckets;
+    @Inject
+    @Named("isochroneMaxTimeLimit")
+    private long maxTimeLimit;
+
+    @Override
+    public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // keep the instance until the response is written as the graph could be reloaded meanwhile
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            processRequest(hopper, httpReq, httpRes);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+    }
+
+    private void processRequest( GraphHopper hopper, HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        List<GHPoint> points = getPoints(httpReq, "point");
+        String vehicleStr = getParam(httpReq, "vehicle", "car");
+        String weighting = getParam(httpReq, "weighting", "fastest");
+        long timeLimit = getLongParam(httpReq, "time_limit", 600);
+        long buckets = getLongParam(httpReq, "buckets", 1);
+        String resultStr = getParam(httpReq, "result", "polygon");
+
+        StopWatch sw = new StopWatch().start();
+        GHIsochroneResponse isoRsp = new GHIsochroneResponse();
+        if (points.size() != 1)
+        {
+            isoRsp.addError(new IllegalArgumentException("Exactly one point has to be specified, but was:" + points.size()));
+        } else if (!hopper.getEncodingManager().supports(vehicleStr))
+        {
+            isoRsp.addError(new IllegalArgumentException("Vehicle not supported: " + vehicleStr));
+        } else if (timeLimit <= 0 || timeLimit > maxTimeLimit)
+        {
+            isoRsp.addError(new IllegalArgumentException("time_limit has to be in (0, " + maxTimeLimit + "] but was:" + timeLimit));
+        } else if (buckets <= 0 || buckets > maxBuckets)
+        {
+            isoRsp.addError(new IllegalArgumentException("buckets has to be in (0, " + maxBuckets + "] but was:" + buckets));
+        } else if (!"polygon".equals(resultStr) && !"pointlist".equals(resultStr))
+        {
+            isoRsp.addError(new IllegalArgumentException("Unsupported result " + resultStr + ", supported are: polygon, pointlist"));
+        } else
+        {
+            GHIsochroneRequest request = new GHIsochroneRequest(points.get(0));
+            initHints(request.getHints(), httpReq.getParameterMap());
+            request.setVehicle(vehicleStr).setWeighting(weighting).
+                    setTimeLimit(timeLimit * 1000).
+                    setBuckets((int) buckets);
+            isoRsp = hopper.calcIsochrone(request);
+        }
+
+        float took = sw.stop().getSeconds();
+        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+        String logStr = httpReq.getQueryString() + " " + infoStr + " " + points + ", took:" + took
+                + ", " + weighting + ", " + vehicleStr;
+        httpRes.setHeader("X-GH-Took", "" + Math.round(took * 1000));
+
+        if (isoRsp.hasErrors())
+        {
+            logger.error(logStr + ", errors:" + isoRsp.getErrors());
+            writeJsonError(httpRes, SC_BAD_REQUEST, createErrorJson(isoRsp.getErrors()));
+            return;
+        }
+
+        logger.info(logStr + ", debug - " + isoRsp.getDebugInfo());
+        boolean writePolygon = "polygon".equals(resultStr);
+        httpRes.setStatus(SC_OK);
+        httpRes.setContentType("application/json");
+        httpRes.setCharacterEncoding("UTF-8");
+        PrintWriter writer = httpRes.getWriter();
+        writer.append("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int bucket = 0; bucket < isoRsp.getBuckets(); bucket++)
+        {
+            if (bucket > 0)
+                writer.append(',');
+
+            writer.append("{\"type\":\"Feature\",\"properties\":{\"bucket\":").append(Integer.toString(bucket))
+                    .append(",\"time_limit\":").append(Long.toString(isoRsp.getTimeLimit(bucket) / 1000))
+                    .append("},\"geometry\":");
+            if (writePolygon)
+            {
+                writer.append("{\"type\":\"Polygon\",\"coordinates\":[");
+                writeCoordinates(writer, isoRsp.getPolygon(bucket), true);
+                writer.append("]}");
+            } else
+            {
+                writer.append("{\"type\":\"MultiPoint\",\"coordinates\":");
+                writeCoordinates(writer, isoRsp.getPoints(bucket), false);
+                writer.append('}');
+            }
+            writer.append('}');
+        }
+        writer.append("],\"info\":{\"copyrights\":[\"GraphHopper\",\"OpenStreetMap contributors\"],\"took\":")
+                .append(Long.toString(Math.round(took * 1000))).append("}}");
+        writer.flush();
+    }
+
+    private void writeCoordinates( PrintWriter writer, PointList points, boolean closeRing )
+    {
+        writer.append('[');
+        int size = points.getSize();
+        int end = closeRing && size > 0 ? size + 1 : size;
+        for (int i = 0; i < end; i++)
+        {
+            if (i > 0)
+                writer.append(',');
+
+            // GeoJSON order is lon,lat
+            int index = i % size;
+            writer.append('[').append(Double.toString(Helper.round6(points.getLongitude(index))))
+                    .append(',').append(Double.toString(Helper.round6(points.getLatitude(index)))).append(']');
+        }
+        writer.append(']');
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes JSON directly to a writer without creating it in memory first, e.g. to stream a long
+ * route into the response. Values are written in the same format as org.json does. Use
+ * setCallback to wrap the JSON into a JSONP callback.
+ * <p>
+ * @author Peter Karich
+ */
+public class JsonWriter
+{
+    private final Writer writer;
+    private final boolean pretty;
+    private final StringValue stringValue = new StringValue();
+    private String callback;
+    // one entry per open object or array, true if it is an object or if it contains no value yet
+    private boolean[] objects = new boolean[8];
+    private boolean[] empty = new boolean[8];
+    private int depth;
+    private boolean afterKey;
+
+    /**
+     * @param pretty if true every value is written into a separate line and indented
+     */
+    public JsonWriter( Writer writer, boolean pretty )
+    {
+        this.writer = writer;
+        this.pretty = pretty;
+    }
+
+    /**
+     * Wraps the written JSON into a call of the specified function, i.e. JSONP.
+     */
+    public JsonWriter setCallback( String callback )
+    {
+        this.callback = callback;
+        return this;
+    }
+
+    public JsonWriter startObject() throws IOException
+    {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException
+    {
+        return close('}');
+    }
+
+    public JsonWriter startArray() throws IOException
+    {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException
+    {
+        return close(']');
+    }
+
+    public JsonWriter key( String key ) throws IOException
+    {
+        if (depth == 0 || !objects[depth - 1] || afterKey)
+            throw new IllegalStateException("A key is only allowed within an object, not for " + key);
+
+        beforeValue();
+        JSONObject.quote(key, writer);
+        writer.write(':');
+        if (pretty)
+            writer.write(' ');
+        afterKey = true;
+        return this;
+    }
+
+    public JsonWriter value( String value ) throws IOException
+    {
+        beforeValue();
+        if (value == null)
+            writer.write("null");
+        else
+            JSONObject.quote(value, writer);
+        return afterValue();
+    }
+
+    public JsonWriter value( long value ) throws IOException
+    {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return afterValue();
+    }
+
+    /**
+     * Writes the value like org.json without trailing zeros, NaN or infinite values are written
+     * as null as they are not valid JSON.
+     */
+    public JsonWriter value( double value ) throws IOException
+    {
+        beforeValue();
+        writer.write(JSONObject.doubleToString(value));
+        return afterValue();
+    }
+
+    public JsonWriter value( boolean value ) throws IOException
+    {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return afterValue();
+    }
+
+    /**
+     * Writes maps, JSONObjects, collections, arrays and JSONArrays recursively. Numbers and
+     * booleans are written unquoted, all other values as string.
+     */
+    public JsonWriter value( Object value ) throws IOException
+    {
+        if (value == null || value == JSONObject.NULL)
+        {
+            beforeValue();
+            writer.write("null");
+            return afterValue();
+        } else if (value instanceof String)
+        {
+            return value((String) value);
+        } else if (value instanceof Double || value instanceof Float)
+        {
+            return value(((Number) value).doubleValue());
+        } else if (value instanceof Number)
+        {
+            beforeValue();
+            writer.write(JSONObject.numberToString((Number) value));
+            return afterValue();
+        } else if (value instanceof Boolean)
+        {
+            return value(((Boolean) value).booleanValue());
+        } else if (value instanceof Map)
+        {
+            startObject();
+            for (Object o : ((Map) value).entrySet())
+            {
+                Map.Entry e = (Map.Entry) o;
+                key(String.valueOf(e.getKey()));
+                value(e.getValue());
+            }
+            return endObject();
+        } else if (value instanceof JSONObject)
+        {
+            JSONObject json = (JSONObject) value;
+            startObject();
+            Iterator<String> iter = json.keys();
+            while (iter.hasNext())
+            {
+                String key = iter.next();
+                key(key);
+                value(json.get(key));
+            }
+            return endObject();
+        } else if (value instanceof Iterable)
+        {
+            startArray();
+            for (Object o : (Iterable) value)
+            {
+                value(o);
+            }
+            return endArray();
+        } else if (value instanceof Object[])
+        {
+            return value(Arrays.asList((Object[]) value));
+        } else if (value instanceof JSONArray)
+        {
+            JSONArray array = (JSONArray) value;
+            startArray();
+            for (int i = 0; i < array.length(); i++)
+            {
+                value(array.get(i));
+            }
+            return endArray();
+        }
+        return value(value.toString());
+    }
+
+    /**
+     * Starts a string value whose characters are appended to the returned Appendable and escaped
+     * while writing. Call endString afterwards. This avoids creating long strings like an encoded
+     * polyline in memory.
+     */
+    public Appendable startString() throws IOException
+    {
+        beforeValue();
+        writer.write('"');
+        return stringValue;
+    }
+
+    public JsonWriter endString() throws IOException
+    {
+        writer.write('"');
+        return afterValue();
+    }
+
+    public void flush() throws IOException
+    {
+        writer.flush();
+    }
+
+    private JsonWriter open( char c ) throws IOException
+    {
+        beforeValue();
+        writer.write(c);
+        if (depth == empty.length)
+        {
+            objects = Arrays.copyOf(objects, depth * 2);
+            empty = Arrays.copyOf(empty, depth * 2);
+        }
+
+        objects[depth] = c == '{';
+        empty[depth++] = true;
+        return this;
+    }
+
+    private JsonWriter close( char c ) throws IOException
+    {
+        if (depth == 0 || objects[depth - 1] != (c == '}') || afterKey)
+            throw new IllegalStateException("Nothing to close with " + c);
+
+        depth--;
+        if (pretty && !empty[depth])
+            newLine();
+
+        writer.write(c);
+        return afterValue();
+    }
+
+    private void beforeValue() throws IOException
+    {
+        if (afterKey)
+        {
+            afterKey = false;
+            return;
+        }
+
+        if (depth == 0)
+        {
+            if (callback != null)
+            {
+                writer.write(callback);
+                writer.write('(');
+            }
+            return;
+        }
+
+        if (!empty[depth - 1])
+            writer.write(',');
+
+        empty[depth - 1] = false;
+        if (pretty)
+            newLine();
+    }
+
+    private JsonWriter afterValue() throws IOException
+    {
+        if (depth == 0 && callback != null)
+            writer.write(')');
+
+        return this;
+    }
+
+    private void newLine() throws IOException
+    {
+        writer.write('\n');
+        for (int i = 0; i < depth; i++)
+        {
+            writer.write("  ");
+        }
+    }
+
+    private class StringValue implements Appendable
+    {
+        @Override
+        public Appendable append( CharSequence csq ) throws IOException
+        {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append( CharSequence csq, int start, int end ) throws IOException
+        {
+            for (int i = start; i < end; i++)
+            {
+                append(csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append( char c ) throws IOException
+        {
+            if (c == '"' || c == '\\')
+            {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < ' ')
+            {
+                writer.write("\\u00");
+                writer.write(Character.forDigit(c >> 4, 16));
+                writer.write(Character.forDigit(c & 0xF, 16));
+            } else
+            {
+                writer.write(c);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Servlet to calculate a many-to-many matrix. Either specify the points of a symmetric matrix via
+ * the 'point' parameter or the rows and columns via 'from_point' and 'to_point'. Which matrices
+ * are returned is specified via 'out_array' (distances, times or weights). Distances are in meter,
+ * times in milliseconds and unreachable entries are null. Matrices with more entries than
+ * web.matrix.maxSize are rejected.
+ * <p>
+ * The matrices are written row by row directly to the response instead of building a JSON object
+ * of the whole result in memory.
+ * <p>
+ * @author Peter Karich
+ */
+public class MatrixServlet extends GHBaseServlet
+{
+    private static final List<String> OUT_ARRAYS = Arrays.asList("distances", "times", "weights");
+    @Inject
+    private GraphHopperHolder hopperHolder;
+    @Inject
+    @Named("matrixMaxSize")
+    private int maxSize;
+
+    @Override
+    public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // keep the instance until the response is written as the graph could be reloaded meanwhile
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            processRequest(hopper, httpReq, httpRes);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+    }
+
+    private void processRequest( GraphHopper hopper, HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        List<GHPoint> fromPoints = getPoints(httpReq, "point");
+        List<GHPoint> toPoints = fromPoints;
+        if (fromPoints.isEmpty())
+        {
+            fromPoints = getPoints(httpReq, "from_point");
+            toPoints = getPoints(httpReq, "to_point");
+        }
+
+        String vehicleStr = getParam(httpReq, "vehicle", "car");
+        String weighting = getParam(httpReq, "weighting", "fastest");
+        List<String> outArrays = new ArrayList<String>(Arrays.asList(getParams(httpReq, "out_array")));
+        if (outArrays.isEmpty())
+            outArrays = Arrays.asList("distances", "times");
+
+        StopWatch sw = new StopWatch().start();
+        GHMatrixResponse matrixRsp = new GHMatrixResponse();
+        if (!hopper.getEncodingManager().supports(vehicleStr))
+        {
+            matrixRsp.addError(new IllegalArgumentException("Vehicle not supported: " + vehicleStr));
+        } else if ((long) fromPoints.size() * toPoints.size() > maxSize)
+        {
+            matrixRsp.addError(new IllegalArgumentException("Too many entries " + fromPoints.size() + "x"
+                    + toPoints.size() + ", the maximum is " + maxSize));
+        } else if (!OUT_ARRAYS.containsAll(outArrays))
+        {
+            matrixRsp.addError(new IllegalArgumentException("Unsupported out_array " + outArrays
+                    + ", supported are: " + OUT_ARRAYS));
+        } else
+        {
+            GHMatrixRequest request = new GHMatrixRequest();
+            for (GHPoint point : fromPoints)
+            {
+                request.addFromPoint(point);
+            }
+            for (GHPoint point : toPoints)
+            {
+                request.addToPoint(point);
+            }
+
+            initHints(request.getHints(), httpReq.getParameterMap());
+            request.setVehicle(vehicleStr).setWeighting(weighting);
+            matrixRsp = hopper.calcMatrix(request);
+        }
+
+        float took = sw.stop().getSeconds();
+        String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
+        String logStr = httpReq.getQueryString() + " " + infoStr + " " + fromPoints.size() + "x" + toPoints.size()
+                + ", took:" + took + ", " + weighting + ", " + vehicleStr;
+        httpRes.setHeader("X-GH-Took", "" + Math.round(took * 1000));
+
+        if (matrixRsp.hasErrors())
+        {
+            logger.error(logStr + ", errors:" + matrixRsp.getErrors());
+            writeJsonError(httpRes, SC_BAD_REQUEST, createErrorJson(matrixRsp.getErrors()));
+            return;
+        }
+
+        logger.info(logStr + ", debug - " + matrixRsp.getDebugInfo());
+        httpRes.setStatus(SC_OK);
+        httpRes.setContentType("application/json");
+        httpRes.setCharacterEncoding("UTF-8");
+        PrintWriter writer = httpRes.getWriter();
+        writer.append("{\"info\":{\"copyrights\":[\"GraphHopper\",\"OpenStreetMap contributors\"],\"took\":")
+                .append(Long.toString(Math.round(took * 1000))).append("}");
+        for (String outArray : outArrays)
+        {
+            writer.append(",\"").append(outArray).append("\":");
+            writeMatrix(writer, matrixRsp, outArray);
+        }
+        writer.append("}");
+        writer.flush();
+    }
+
+    private void writeMatrix( PrintWriter writer, GHMatrixResponse rsp, String outArray )
+    {
+        writer.append('[');
+        for (int row = 0; row < rsp.getRows(); row++)
+        {
+            if (row > 0)
+                writer.append(',');
+
+            writer.append('[');
+            for (int column = 0; column < rsp.getColumns(); column++)
+            {
+                if (column > 0)
+                    writer.append(',');
+
+                if (!rsp.isFound(row, column))
+                    writer.append("null");
+                else if ("distances".equals(outArray))
+                    writer.append(Double.toString(Helper.round(rsp.getDistance(row, column), 3)));
+                else if ("times".equals(outArray))
+                    writer.append(Long.toString(rsp.getTime(row, column)));
+                else
+                    writer.append(Double.toString(Helper.round6(rsp.getWeight(row, column))));
+            }
+            writer.append(']');
+        }
+        writer.append(']');
+    }
+}
@@ -40,11 +40,24 @@ import java.io.IOException;
 public class NearestServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
     private final DistanceCalc calc = Helper.DIST_EARTH;
 
     @Override
     public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // keep the instance until the response is written as the graph could be reloaded meanwhile
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            processRequest(hopper, httpReq, httpRes);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+    }
+
+    private void processRequest( GraphHopper hopper, HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
     {
         String pointStr = getParam(httpReq, "point", null);
         boolean enabledElevation = getBooleanParam(httpReq, "elevation", false);
@@ -0,0 +1,342 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.google.protobuf.CodedOutputStream;
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.protobuf.CodedOutputStream.*;
+import static com.google.protobuf.WireFormat.*;
+
+/**
+ * Writes the route as compact binary response in the protobuf format specified in
+ * src/main/proto/route.proto. The points are delta encoded and the street names of the
+ * instructions are stored only once. The sizes of the nested messages are calculated before
+ * writing, so the response is written directly to the stream without creating it in memory.
+ * <p>
+ * @author Peter Karich
+ */
+public class ProtobufRouteSerializer
+{
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+    // the field numbers of route.proto
+    static final int RESPONSE_PATHS = 1;
+    static final int RESPONSE_ERRORS = 2;
+    static final int RESPONSE_TOOK = 3;
+    static final int RESPONSE_COPYRIGHTS = 4;
+    static final int ERROR_MESSAGE = 1;
+    static final int ERROR_DETAILS = 2;
+    static final int PATH_DISTANCE = 1;
+    static final int PATH_WEIGHT = 2;
+    static final int PATH_TIME = 3;
+    static final int PATH_ASCEND = 4;
+    static final int PATH_DESCEND = 5;
+    static final int PATH_BBOX = 6;
+    static final int PATH_POINTS = 7;
+    static final int PATH_NAMES = 8;
+    static final int PATH_INSTRUCTIONS = 9;
+    static final int GEOMETRY_ELEVATION = 1;
+    static final int GEOMETRY_SIZE = 2;
+    static final int GEOMETRY_COORDINATES = 3;
+    static final int INSTRUCTION_SIGN = 1;
+    static final int INSTRUCTION_NAME = 2;
+    static final int INSTRUCTION_DISTANCE = 3;
+    static final int INSTRUCTION_TIME = 4;
+    static final int INSTRUCTION_POINTS = 5;
+    static final int INSTRUCTION_ANNOTATION_TEXT = 6;
+    static final int INSTRUCTION_ANNOTATION_IMPORTANCE = 7;
+    static final int INSTRUCTION_EXIT_NUMBER = 8;
+    static final int INSTRUCTION_EXITED = 9;
+    static final int INSTRUCTION_TURN_ANGLE = 10;
+    static final double COORDINATE_FACTOR = 1e6;
+    static final double ELEVATION_FACTOR = 100;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private final BBox maxBounds;
+
+    public ProtobufRouteSerializer( BBox maxBounds )
+    {
+        this.maxBounds = maxBounds;
+    }
+
+    /**
+     * Writes the specified response or its errors to the stream.
+     * <p>
+     * @param took the milliseconds needed to calculate the route
+     */
+    public void write( OutputStream os, GHResponse rsp, long took,
+                       boolean calcPoints, boolean includeElevation, boolean enableInstructions ) throws IOException
+    {
+        CodedOutputStream out = CodedOutputStream.newInstance(os, BUFFER_SIZE);
+        if (rsp.hasErrors())
+        {
+            for (Throwable t : rsp.getErrors())
+            {
+                String message = t.getMessage() == null ? "" : t.getMessage();
+                String details = t.getClass().getName();
+                out.writeTag(RESPONSE_ERRORS, WIRETYPE_LENGTH_DELIMITED);
+                out.writeRawVarint32(computeStringSize(ERROR_MESSAGE, message)
+                        + computeStringSize(ERROR_DETAILS, details));
+                out.writeString(ERROR_MESSAGE, message);
+                out.writeString(ERROR_DETAILS, details);
+            }
+        } else
+        {
+            PathWriter path = new PathWriter(rsp, calcPoints, includeElevation, enableInstructions);
+            out.writeTag(RESPONSE_PATHS, WIRETYPE_LENGTH_DELIMITED);
+            out.writeRawVarint32(path.getSize());
+            path.write(out);
+        }
+        out.writeInt64(RESPONSE_TOOK, took);
+        out.writeString(RESPONSE_COPYRIGHTS, "GraphHopper");
+        out.writeString(RESPONSE_COPYRIGHTS, "OpenStreetMap contributors");
+        out.flush();
+    }
+
+    private static int computeMessageSize( int fieldNumber, int size )
+    {
+        return computeTagSize(fieldNumber) + computeRawVarint32Size(size) + size;
+    }
+
+    /**
+     * Calculates the sizes of the path and its nested messages once and writes them afterwards.
+     */
+    private class PathWriter
+    {
+        private final GHResponse rsp;
+        private final boolean calcPoints;
+        private final boolean includeElevation;
+        private final PointList points;
+        private final InstructionList instructions;
+        private final List<Double> bbox;
+        private final List<String> names = new ArrayList<String>();
+        private final int[] nameIndices;
+        private final int[] instructionSizes;
+        private final int coordinatesSize;
+        private final int geometrySize;
+        private final int size;
+
+        PathWriter( GHResponse rsp, boolean calcPoints, boolean includeElevation, boolean enableInstructions )
+        {
+            this.rsp = rsp;
+            this.calcPoints = calcPoints;
+            this.includeElevation = includeElevation;
+            points = rsp.getPoints();
+            instructions = calcPoints && enableInstructions ? rsp.getInstructions() : InstructionList.EMPTY;
+            int tmpSize = computeDoubleSize(PATH_DISTANCE, rsp.getDistance())
+                    + computeDoubleSize(PATH_WEIGHT, rsp.getRouteWeight())
+                    + computeInt64Size(PATH_TIME, rsp.getTime());
+            if (!calcPoints)
+            {
+                bbox = null;
+                nameIndices = instructionSizes = new int[0];
+                coordinatesSize = geometrySize = 0;
+                size = tmpSize;
+                return;
+            }
+
+            tmpSize += computeDoubleSize(PATH_ASCEND, rsp.getAscend())
+                    + computeDoubleSize(PATH_DESCEND, rsp.getDescend());
+            if (points.getSize() >= 2)
+            {
+                BBox maxBounds2D = new BBox(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat);
+                bbox = rsp.calcRouteBBox(maxBounds2D).toGeoJson();
+                tmpSize += computeMessageSize(PATH_BBOX, bbox.size() * 8);
+            } else
+            {
+                bbox = null;
+            }
+
+            coordinatesSize = calcCoordinatesSize();
+            geometrySize = computeBoolSize(GEOMETRY_ELEVATION, includeElevation)
+                    + computeInt32Size(GEOMETRY_SIZE, points.getSize())
+                    + computeMessageSize(GEOMETRY_COORDINATES, coordinatesSize);
+            tmpSize += computeMessageSize(PATH_POINTS, geometrySize);
+
+            // intern the street names, 0 is used for no name
+            Map<String, Integer> nameMap = new HashMap<String, Integer>();
+            nameIndices = new int[instructions.size()];
+            instructionSizes = new int[instructions.size()];
+            for (int i = 0; i < instructions.size(); i++)
+            {
+                String name = instructions.get(i).getName();
+                if (Helper.isEmpty(name))
+                    continue;
+
+                Integer index = nameMap.get(name);
+                if (index == null)
+                {
+                    names.add(name);
+                    index = names.size();
+                    nameMap.put(name, index);
+                    tmpSize += computeStringSize(PATH_NAMES, name);
+                }
+                nameIndices[i] = index;
+            }
+
+            for (int i = 0; i < instructions.size(); i++)
+            {
+                instructionSizes[i] = calcInstructionSize(instructions.get(i), nameIndices[i]);
+                tmpSize += computeMessageSize(PATH_INSTRUCTIONS, instructionSizes[i]);
+            }
+            size = tmpSize;
+        }
+
+        int getSize()
+        {
+            return size;
+        }
+
+        void write( CodedOutputStream out ) throws IOException
+        {
+            out.writeDouble(PATH_DISTANCE, rsp.getDistance());
+            out.writeDouble(PATH_WEIGHT, rsp.getRouteWeight());
+            out.writeInt64(PATH_TIME, rsp.getTime());
+            if (!calcPoints)
+                return;
+
+            out.writeDouble(PATH_ASCEND, rsp.getAscend());
+            out.writeDouble(PATH_DESCEND, rsp.getDescend());
+            if (bbox != null)
+            {
+                out.writeTag(PATH_BBOX, WIRETYPE_LENGTH_DELIMITED);
+                out.writeRawVarint32(bbox.size() * 8);
+                for (Double val : bbox)
+                {
+                    out.writeDoubleNoTag(val);
+                }
+            }
+
+            out.writeTag(PATH_POINTS, WIRETYPE_LENGTH_DELIMITED);
+            out.writeRawVarint32(geometrySize);
+            out.writeBool(GEOMETRY_ELEVATION, includeElevation);
+            out.writeInt32(GEOMETRY_SIZE, points.getSize());
+            out.writeTag(GEOMETRY_COORDINATES, WIRETYPE_LENGTH_DELIMITED);
+            out.writeRawVarint32(coordinatesSize);
+            writeCoordinates(out);
+
+            for (String name : names)
+            {
+                out.writeString(PATH_NAMES, name);
+            }
+
+            for (int i = 0; i < instructions.size(); i++)
+            {
+                out.writeTag(PATH_INSTRUCTIONS, WIRETYPE_LENGTH_DELIMITED);
+                out.writeRawVarint32(instructionSizes[i]);
+                writeInstruction(out, instructions.get(i), nameIndices[i]);
+            }
+        }
+
+        private int calcCoordinatesSize()
+        {
+            int bytes = 0;
+            int prevLat = 0, prevLon = 0, prevEle = 0;
+            for (int i = 0; i < points.getSize(); i++)
+            {
+                int lat = (int) Math.round(points.getLatitude(i) * COORDINATE_FACTOR);
+                int lon = (int) Math.round(points.getLongitude(i) * COORDINATE_FACTOR);
+                bytes += computeSInt32SizeNoTag(lat - prevLat) + computeSInt32SizeNoTag(lon - prevLon);
+                prevLat = lat;
+                prevLon = lon;
+                if (includeElevation)
+                {
+                    int ele = (int) Math.round(points.getElevation(i) * ELEVATION_FACTOR);
+                    bytes += computeSInt32SizeNoTag(ele - prevEle);
+                    prevEle = ele;
+                }
+            }
+            return bytes;
+        }
+
+        private void writeCoordinates( CodedOutputStream out ) throws IOException
+        {
+            int prevLat = 0, prevLon = 0, prevEle = 0;
+            for (int i = 0; i < points.getSize(); i++)
+            {
+                int lat = (int) Math.round(points.getLatitude(i) * COORDINATE_FACTOR);
+                int lon = (int) Math.round(points.getLongitude(i) * COORDINATE_FACTOR);
+                out.writeSInt32NoTag(lat - prevLat);
+                out.writeSInt32NoTag(lon - prevLon);
+                prevLat = lat;
+                prevLon = lon;
+                if (includeElevation)
+                {
+                    int ele = (int) Math.round(points.getElevation(i) * ELEVATION_FACTOR);
+                    out.writeSInt32NoTag(ele - prevEle);
+                    prevEle = ele;
+                }
+            }
+        }
+
+        private int calcInstructionSize( Instruction instruction, int nameIndex )
+        {
+            int bytes = computeSInt32Size(INSTRUCTION_SIGN, instruction.getSign())
+                    + computeInt32Size(INSTRUCTION_NAME, nameIndex)
+                    + computeDoubleSize(INSTRUCTION_DISTANCE, instruction.getDistance())
+                    + computeInt64Size(INSTRUCTION_TIME, instruction.getTime())
+                    + computeInt32Size(INSTRUCTION_POINTS, instruction.getPoints().getSize());
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (!ia.isEmpty())
+                bytes += computeStringSize(INSTRUCTION_ANNOTATION_TEXT, ia.getMessage())
+                        + computeInt32Size(INSTRUCTION_ANNOTATION_IMPORTANCE, ia.getImportance());
+
+            if (instruction instanceof RoundaboutInstruction)
+            {
+                RoundaboutInstruction ri = (RoundaboutInstruction) instruction;
+                bytes += computeInt32Size(INSTRUCTION_EXIT_NUMBER, ri.getExitNumber())
+                        + computeBoolSize(INSTRUCTION_EXITED, ri.isExited());
+                if (!Double.isNaN(ri.getTurnAngle()))
+                    bytes += computeDoubleSize(INSTRUCTION_TURN_ANGLE, ri.getTurnAngle());
+            }
+            return bytes;
+        }
+
+        private void writeInstruction( CodedOutputStream out, Instruction instruction, int nameIndex ) throws IOException
+        {
+            out.writeSInt32(INSTRUCTION_SIGN, instruction.getSign());
+            out.writeInt32(INSTRUCTION_NAME, nameIndex);
+            out.writeDouble(INSTRUCTION_DISTANCE, instruction.getDistance());
+            out.writeInt64(INSTRUCTION_TIME, instruction.getTime());
+            out.writeInt32(INSTRUCTION_POINTS, instruction.getPoints().getSize());
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (!ia.isEmpty())
+            {
+                out.writeString(INSTRUCTION_ANNOTATION_TEXT, ia.getMessage());
+                out.writeInt32(INSTRUCTION_ANNOTATION_IMPORTANCE, ia.getImportance());
+            }
+
+            if (instruction instanceof RoundaboutInstruction)
+            {
+                RoundaboutInstruction ri = (RoundaboutInstruction) instruction;
+                out.writeInt32(INSTRUCTION_EXIT_NUMBER, ri.getExitNumber());
+                out.writeBool(INSTRUCTION_EXITED, ri.isExited());
+                if (!Double.isNaN(ri.getTurnAngle()))
+                    out.writeDouble(INSTRUCTION_TURN_ANGLE, ri.getTurnAngle());
+            }
+        }
+    }
+}
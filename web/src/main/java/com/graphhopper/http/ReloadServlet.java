@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_CONFLICT;
+import static javax.servlet.http.HttpServletResponse.SC_FORBIDDEN;
+
+/**
+ * Admin endpoint to show the current graph (GET) and to load a new graph in the background
+ * (POST with the parameter 'location'). Both require the configured 'key' parameter.
+ * <p>
+ * @author Peter Karich
+ */
+public class ReloadServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperHolder hopperHolder;
+    @Inject
+    private GraphReloader reloader;
+    @Inject
+    @Named("adminKey")
+    private String adminKey;
+
+    @Override
+    public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        if (!isAuthorized(req, res))
+            return;
+
+        JSONObject json = new JSONObject();
+        json.put("location", hopperHolder.get().getGraphHopperLocation());
+        json.put("reloading", reloader.isReloading());
+        json.put("swaps", hopperHolder.getSwaps());
+        writeJson(req, res, json);
+    }
+
+    @Override
+    public void doPost( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        if (!isAuthorized(req, res))
+            return;
+
+        String location = getParam(req, "location", "");
+        if (location.isEmpty())
+        {
+            writeError(res, SC_BAD_REQUEST, "No graph location specified");
+            return;
+        }
+
+        if (!reloader.reload(location))
+        {
+            writeError(res, SC_CONFLICT, "Another reload is in progress");
+            return;
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("location", location);
+        json.put("reloading", true);
+        writeJson(req, res, json);
+    }
+
+    private boolean isAuthorized( HttpServletRequest req, HttpServletResponse res )
+    {
+        if (adminKey.isEmpty() || !adminKey.equals(getParam(req, "key", "")))
+        {
+            writeError(res, SC_FORBIDDEN, "Wrong or missing key");
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.Translation;
+import com.graphhopper.util.shapes.BBox;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the route responses created in memory with the streamed ones. Prints the written bytes
+ * per second and the allocated bytes per response of JSON and GPX. Then compares the size and the
+ * parse time of JSON with encoded points, GeoJSON points and the binary protobuf response. Start via
+ * <p>
+ * java -cp ... com.graphhopper.http.ResponseMeasurement graph.location=... osmreader.osm=...
+ * [measurement.count=200]
+ * <p>
+ * @author Peter Karich
+ */
+public class ResponseMeasurement
+{
+    private static final Logger logger = LoggerFactory.getLogger(ResponseMeasurement.class);
+    private final List<GHResponse> responses = new ArrayList<GHResponse>();
+    private RouteSerializer serializer;
+    private ProtobufRouteSerializer protobufSerializer;
+    private Translation translation;
+    private boolean elevation;
+
+    public static void main( String[] strs ) throws Exception
+    {
+        CmdArgs args = CmdArgs.read(strs);
+        GraphHopper hopper = new GraphHopper().forServer().init(args);
+        hopper.importOrLoad();
+        try
+        {
+            new ResponseMeasurement().start(hopper, args.getInt("measurement.count", 200),
+                    args.getInt("measurement.rounds", 5));
+        } finally
+        {
+            hopper.close();
+        }
+    }
+
+    public void start( GraphHopper hopper, int count, int rounds ) throws IOException
+    {
+        BBox bounds = hopper.getGraphHopperStorage().getBounds();
+        serializer = new SimpleRouteSerializer(bounds);
+        protobufSerializer = new ProtobufRouteSerializer(bounds);
+        translation = hopper.getTranslationMap().getWithFallBack(Locale.US);
+        elevation = hopper.hasElevation();
+        Random rand = new Random(123);
+        for (int i = 0; responses.size() < count && i < count * 10; i++)
+        {
+            GHRequest req = new GHRequest(
+                    bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat),
+                    bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon),
+                    bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat),
+                    bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon));
+            GHResponse rsp = hopper.route(req);
+            if (!rsp.hasErrors())
+                responses.add(rsp);
+        }
+        logger.info("responses: " + responses.size() + ", elevation: " + elevation);
+
+        // the first round warms up the JVM
+        for (int round = 0; round <= rounds; round++)
+        {
+            boolean print = round == rounds;
+            measure("json.encoded.string", print, true, false, false);
+            measure("json.encoded.stream", print, true, false, true);
+            measure("json.geojson.string", print, false, false, false);
+            measure("json.geojson.stream", print, false, false, true);
+            measure("gpx.string", print, false, true, false);
+            measure("gpx.stream", print, false, true, true);
+        }
+
+        // compare the formats a client can request by their size and the time to parse them
+        List<byte[]> encodedJsons = new ArrayList<byte[]>(responses.size());
+        List<byte[]> geoJsons = new ArrayList<byte[]>(responses.size());
+        List<byte[]> protobufs = new ArrayList<byte[]>(responses.size());
+        for (GHResponse rsp : responses)
+        {
+            encodedJsons.add(toJSON(rsp, true));
+            geoJsons.add(toJSON(rsp, false));
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            protobufSerializer.write(os, rsp, 0, true, elevation, true);
+            protobufs.add(os.toByteArray());
+        }
+        for (int round = 0; round <= rounds; round++)
+        {
+            boolean print = round == rounds;
+            measureParsing("parse.json.encoded", print, encodedJsons, "json");
+            // the client reads only encoded points, so this measures the parsing of the JSON alone
+            measureParsing("parse.json.geojson", print, geoJsons, "geojson");
+            measureParsing("parse.pb", print, protobufs, "pb");
+        }
+    }
+
+    private byte[] toJSON( GHResponse rsp, boolean pointsEncoded ) throws IOException
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(os, "UTF-8"), false);
+        serializer.writeJSON(writer, rsp, Collections.<String, Object>emptyMap(), true, pointsEncoded, elevation, true);
+        writer.flush();
+        return os.toByteArray();
+    }
+
+    private void measureParsing( String name, boolean print, List<byte[]> payloads, String type ) throws IOException
+    {
+        long bytes = 0;
+        long allocated = getAllocatedBytes();
+        StopWatch sw = new StopWatch().start();
+        for (byte[] payload : payloads)
+        {
+            bytes += payload.length;
+            GHResponse res = new GHResponse();
+            if ("pb".equals(type))
+            {
+                GraphHopperWeb.readProtobuf(res, new ByteArrayInputStream(payload), translation);
+            } else
+            {
+                JSONObject json = new JSONObject(new String(payload, "UTF-8"));
+                if ("json".equals(type))
+                    GraphHopperWeb.readPath(res, json.getJSONArray("paths").getJSONObject(0), true, true, elevation);
+            }
+        }
+        float seconds = sw.stop().getSeconds();
+        if (allocated >= 0)
+            allocated = (getAllocatedBytes() - allocated) / payloads.size();
+        if (!print)
+            return;
+
+        long gzipBytes = 0;
+        for (byte[] payload : payloads)
+        {
+            CountingOutputStream counter = new CountingOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(counter);
+            gzip.write(payload);
+            gzip.close();
+            gzipBytes += counter.bytes;
+        }
+        logger.info(name + ".bytesPerResponse: " + bytes / payloads.size()
+                + ", " + name + ".gzipBytesPerResponse: " + gzipBytes / payloads.size()
+                + ", " + name + ".bytesPerSec: " + Math.round(bytes / seconds)
+                + ", " + name + ".allocatedPerResponse: " + allocated
+                + ", " + name + ".time: " + seconds);
+    }
+
+    private void measure( String name, boolean print, boolean pointsEncoded, boolean gpx, boolean stream )
+            throws IOException
+    {
+        CountingWriter counter = new CountingWriter();
+        long allocated = getAllocatedBytes();
+        StopWatch sw = new StopWatch().start();
+        for (GHResponse rsp : responses)
+        {
+            if (gpx)
+            {
+                if (stream)
+                {
+                    // the servlet buffers the response writer in the same way
+                    Writer writer = new BufferedWriter(counter, 8 * 1024);
+                    rsp.getInstructions().createGPX(writer, "GraphHopper Track", 0, elevation);
+                    writer.flush();
+                } else
+                {
+                    counter.write(rsp.getInstructions().createGPX("GraphHopper Track", 0, elevation));
+                }
+            } else if (stream)
+            {
+                JsonWriter writer = new JsonWriter(new BufferedWriter(counter, 8 * 1024), false);
+                serializer.writeJSON(writer, rsp, Collections.<String, Object>emptyMap(), true, pointsEncoded, elevation, true);
+                writer.flush();
+            } else
+            {
+                counter.write(new JSONObject(serializer.toJSON(rsp, true, pointsEncoded, elevation, true)).toString());
+            }
+        }
+        float seconds = sw.stop().getSeconds();
+        if (allocated >= 0)
+            allocated = (getAllocatedBytes() - allocated) / responses.size();
+        if (print)
+            logger.info(name + ".bytesPerSec: " + Math.round(counter.chars / seconds)
+                    + ", " + name + ".bytesPerResponse: " + counter.chars / responses.size()
+                    + ", " + name + ".allocatedPerResponse: " + allocated
+                    + ", " + name + ".time: " + seconds);
+    }
+
+    /**
+     * @return the bytes allocated by the current thread or -1 if not supported by the JVM
+     */
+    static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return -1;
+    }
+
+    static class CountingOutputStream extends OutputStream
+    {
+        long bytes;
+
+        @Override
+        public void write( int b )
+        {
+            bytes++;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+            bytes += len;
+        }
+    }
+
+    /**
+     * Counts the written characters and discards them. All characters of the responses are ASCII
+     * or nearly so, i.e. the characters are roughly the bytes.
+     */
+    static class CountingWriter extends Writer
+    {
+        long chars;
+
+        @Override
+        public void write( char[] cbuf, int off, int len )
+        {
+            chars += len;
+        }
+
+        @Override
+        public void write( String str )
+        {
+            chars += str.length();
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -19,6 +19,8 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHResponse;
 import com.graphhopper.util.PointList;
+
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -35,6 +37,16 @@ public interface RouteSerializer
                                 boolean calcPoints, boolean pointsEncoded,
                                 boolean includeElevation, boolean enableInstructions );
 
+    /**
+     * This method writes the specified response as JSON directly to the writer. The JSON is the
+     * same as for toJSON but the points and instructions are encoded while writing and no copy of
+     * the response is created in memory. The entries of the specified map are added to the info
+     * object.
+     */
+    void writeJSON( JsonWriter writer, GHResponse response, Map<String, Object> info,
+                    boolean calcPoints, boolean pointsEncoded,
+                    boolean includeElevation, boolean enableInstructions ) throws IOException;
+
     /**
      * This method returns either a Map containing the GeoJSON of the specified points OR the string
      * encoded polyline of it.
@@ -19,9 +19,13 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHResponse;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionAnnotation;
 import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
+
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -74,8 +78,7 @@ public class SimpleRouteSerializer implements RouteSerializer
                 PointList points = rsp.getPoints();
                 if (points.getSize() >= 2)
                 {
-                    BBox maxBounds2D = new BBox(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat);
-                    jsonPath.put("bbox", rsp.calcRouteBBox(maxBounds2D).toGeoJson());
+                    jsonPath.put("bbox", calcRouteBBox(rsp));
                 }
 
                 jsonPath.put("points", createPoints(points, pointsEncoded, includeElevation));
@@ -94,6 +97,142 @@ public class SimpleRouteSerializer implements RouteSerializer
         return json;
     }
 
+    @Override
+    public void writeJSON( JsonWriter writer, GHResponse rsp, Map<String, Object> info,
+                           boolean calcPoints, boolean pointsEncoded,
+                           boolean includeElevation, boolean enableInstructions ) throws IOException
+    {
+        writer.startObject();
+        if (rsp.hasErrors())
+        {
+            writer.key("message").value(rsp.getErrors().get(0).getMessage());
+            writer.key("hints").startArray();
+            for (Throwable t : rsp.getErrors())
+            {
+                writer.startObject();
+                writer.key("message").value(t.getMessage());
+                writer.key("details").value(t.getClass().getName());
+                writer.endObject();
+            }
+            writer.endArray();
+        } else
+        {
+            writer.key("info").startObject();
+            writer.key("copyrights").startArray().value("GraphHopper").value("OpenStreetMap contributors").endArray();
+            for (Map.Entry<String, Object> e : info.entrySet())
+            {
+                writer.key(e.getKey()).value(e.getValue());
+            }
+            writer.endObject();
+            writer.key("hints").value(rsp.getHints().toMap());
+
+            writer.key("paths").startArray().startObject();
+            writer.key("distance").value(Helper.round(rsp.getDistance(), 3));
+            writer.key("weight").value(Helper.round6(rsp.getDistance()));
+            writer.key("time").value(rsp.getTime());
+
+            if (calcPoints)
+            {
+                writer.key("points_encoded").value(pointsEncoded);
+
+                PointList points = rsp.getPoints();
+                if (points.getSize() >= 2)
+                    writer.key("bbox").value(calcRouteBBox(rsp));
+
+                writer.key("points");
+                writePoints(writer, points, pointsEncoded, includeElevation);
+
+                if (enableInstructions)
+                {
+                    writer.key("instructions");
+                    writeInstructions(writer, rsp.getInstructions());
+                }
+
+                writer.key("ascend").value(rsp.getAscend());
+                writer.key("descend").value(rsp.getDescend());
+            }
+            writer.endObject().endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes the points like createPoints without creating a list of coordinates or the encoded
+     * string.
+     */
+    protected void writePoints( JsonWriter writer, PointList points, boolean pointsEncoded, boolean includeElevation )
+            throws IOException
+    {
+        if (pointsEncoded)
+        {
+            WebHelper.encodePolyline(writer.startString(), points, includeElevation);
+            writer.endString();
+            return;
+        }
+
+        writer.startObject();
+        writer.key("type").value("LineString");
+        writer.key("coordinates").startArray();
+        int size = points.getSize();
+        for (int i = 0; i < size; i++)
+        {
+            writer.startArray();
+            writer.value(Helper.round6(points.getLongitude(i)));
+            writer.value(Helper.round6(points.getLatitude(i)));
+            if (includeElevation)
+                writer.value(Helper.round2(points.getElevation(i)));
+            writer.endArray();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * Writes the instructions in the same format as InstructionList.createJson.
+     */
+    protected void writeInstructions( JsonWriter writer, InstructionList instructions ) throws IOException
+    {
+        writer.startArray();
+        int pointsIndex = 0;
+        int size = instructions.size();
+        for (int i = 0; i < size; i++)
+        {
+            Instruction instruction = instructions.get(i);
+            writer.startObject();
+            writer.key("text").value(instructions.createText(instruction));
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (!ia.isEmpty())
+            {
+                writer.key("annotation_text").value(ia.getMessage());
+                writer.key("annotation_importance").value(ia.getImportance());
+            }
+
+            writer.key("time").value(instruction.getTime());
+            writer.key("distance").value(Helper.round(instruction.getDistance(), 3));
+            writer.key("sign").value(instruction.getSign());
+            for (Map.Entry<String, Object> e : instruction.getExtraInfoJSON().entrySet())
+            {
+                writer.key(e.getKey()).value(e.getValue());
+            }
+
+            int tmpIndex = pointsIndex + instruction.getPoints().size();
+            // the last instruction should not point to the next instruction
+            if (i + 1 == size)
+                tmpIndex--;
+
+            writer.key("interval").startArray().value(pointsIndex).value(tmpIndex).endArray();
+            pointsIndex = tmpIndex;
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    private List<Double> calcRouteBBox( GHResponse rsp )
+    {
+        BBox maxBounds2D = new BBox(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat);
+        return rsp.calcRouteBBox(maxBounds2D).toGeoJson();
+    }
+
     @Override
     public Object createPoints( PointList points, boolean pointsEncoded, boolean includeElevation )
     {
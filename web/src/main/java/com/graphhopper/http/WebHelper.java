@@ -109,6 +109,21 @@ public class WebHelper
     public static String encodePolyline( PointList poly, boolean includeElevation )
     {
         StringBuilder sb = new StringBuilder();
+        try
+        {
+            encodePolyline(sb, poly, includeElevation);
+        } catch (IOException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the encoded polyline point by point, e.g. directly to a response.
+     */
+    public static void encodePolyline( Appendable output, PointList poly, boolean includeElevation ) throws IOException
+    {
         int size = poly.getSize();
         int prevLat = 0;
         int prevLon = 0;
@@ -116,22 +131,21 @@ public class WebHelper
         for (int i = 0; i < size; i++)
         {
             int num = (int) Math.floor(poly.getLatitude(i) * 1e5);
-            encodeNumber(sb, num - prevLat);
+            encodeNumber(output, num - prevLat);
             prevLat = num;
             num = (int) Math.floor(poly.getLongitude(i) * 1e5);
-            encodeNumber(sb, num - prevLon);
+            encodeNumber(output, num - prevLon);
             prevLon = num;
             if (includeElevation)
             {
                 num = (int) Math.floor(poly.getElevation(i) * 100);
-                encodeNumber(sb, num - prevEle);
+                encodeNumber(output, num - prevEle);
                 prevEle = num;
             }
         }
-        return sb.toString();
     }
 
-    private static void encodeNumber( StringBuilder sb, int num )
+    private static void encodeNumber( Appendable output, int num ) throws IOException
     {
         num = num << 1;
         if (num < 0)
@@ -141,11 +155,11 @@ public class WebHelper
         while (num >= 0x20)
         {
             int nextValue = (0x20 | (num & 0x1f)) + 63;
-            sb.append((char) (nextValue));
+            output.append((char) (nextValue));
             num >>= 5;
         }
         num += 63;
-        sb.append((char) (num));
+        output.append((char) (num));
     }
 
     public static String readString( InputStream inputStream ) throws IOException
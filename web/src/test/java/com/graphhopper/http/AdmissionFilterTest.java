@@ -0,0 +1,84 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class AdmissionFilterTest
+{
+    @Test
+    public void testRejectWithoutQueue()
+    {
+        AdmissionFilter filter = new AdmissionFilter(1, 0, 10000);
+        assertTrue(filter.acquire());
+        long start = System.currentTimeMillis();
+        assertFalse(filter.acquire());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+
+        filter.release();
+        assertTrue(filter.acquire());
+    }
+
+    @Test
+    public void testMaxWait()
+    {
+        AdmissionFilter filter = new AdmissionFilter(1, 1, 20);
+        assertTrue(filter.acquire());
+        assertFalse(filter.acquire());
+        assertEquals(0, filter.getQueued());
+    }
+
+    @Test
+    public void testRejectIfQueueIsFull() throws InterruptedException
+    {
+        final AdmissionFilter filter = new AdmissionFilter(1, 1, 10000);
+        assertTrue(filter.acquire());
+
+        final AtomicBoolean queuedAcquired = new AtomicBoolean();
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                queuedAcquired.set(filter.acquire());
+            }
+        };
+        thread.start();
+        while (filter.getQueued() == 0)
+        {
+            Thread.sleep(1);
+        }
+
+        // the queue is full
+        long start = System.currentTimeMillis();
+        assertFalse(filter.acquire());
+        assertTrue(System.currentTimeMillis() - start < 5000);
+
+        // the queued request gets the slot
+        filter.release();
+        thread.join();
+        assertTrue(queuedAcquired.get());
+    }
+}
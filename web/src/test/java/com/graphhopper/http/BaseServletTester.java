@@ -112,7 +112,24 @@ public class BaseServletTester
         return "http://" + host + ":" + port + "/nearest";
     }
 
+    protected String getTestMatrixAPIUrl()
+    {
+        String host = "localhost";
+        return "http://" + host + ":" + port + "/matrix";
+    }
+
+    protected String getTestIsochroneAPIUrl()
+    {
+        String host = "localhost";
+        return "http://" + host + ":" + port + "/isochrone";
+    }
+
     protected String queryString( String query, int code ) throws Exception
+    {
+        return queryString(getTestRouteAPIUrl(), query, code);
+    }
+
+    protected String queryString( String apiUrl, String query, int code ) throws Exception
     {
         String resQuery = "";
         for (String q : query.split("\\&"))
@@ -125,7 +142,7 @@ public class BaseServletTester
 
             resQuery += "&";
         }
-        String url = getTestRouteAPIUrl() + "?" + resQuery;
+        String url = apiUrl + "?" + resQuery;
         Downloader downloader = new Downloader("web integration tester").setTimeout(2000);
         HttpURLConnection conn = downloader.createConnection(url);
         conn.connect();
@@ -138,6 +155,16 @@ public class BaseServletTester
         return new JSONObject(queryString(query, code));
     }
 
+    protected JSONObject matrixQuery( String query, int code ) throws Exception
+    {
+        return new JSONObject(queryString(getTestMatrixAPIUrl(), query, code));
+    }
+
+    protected JSONObject isochroneQuery( String query, int code ) throws Exception
+    {
+        return new JSONObject(queryString(getTestIsochroneAPIUrl(), query, code));
+    }
+
     protected JSONObject nearestQuery( String query ) throws Exception
     {
         String resQuery = "";
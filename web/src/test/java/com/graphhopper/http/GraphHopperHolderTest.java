@@ -0,0 +1,130 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class GraphHopperHolderTest
+{
+    private static class ClosingCounter extends GraphHopper
+    {
+        final AtomicInteger closed = new AtomicInteger();
+
+        @Override
+        public void close()
+        {
+            closed.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testCloseAfterRelease()
+    {
+        ClosingCounter first = new ClosingCounter();
+        ClosingCounter second = new ClosingCounter();
+        GraphHopperHolder holder = new GraphHopperHolder(first);
+
+        GraphHopper used = holder.acquire();
+        assertSame(first, used);
+        holder.swap(second);
+        assertSame(second, holder.get());
+        assertEquals(1, holder.getSwaps());
+
+        // the request in flight still uses the old instance
+        assertEquals(0, first.closed.get());
+        holder.release(used);
+        assertEquals(1, first.closed.get());
+
+        // an unused instance is closed immediately
+        ClosingCounter third = new ClosingCounter();
+        holder.swap(third);
+        assertEquals(1, second.closed.get());
+        assertSame(third, holder.acquire());
+        holder.release(third);
+        assertEquals(0, third.closed.get());
+
+        try
+        {
+            holder.release(first);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testConcurrentSwaps() throws Exception
+    {
+        final List<ClosingCounter> hoppers = new ArrayList<ClosingCounter>();
+        for (int i = 0; i < 20; i++)
+        {
+            hoppers.add(new ClosingCounter());
+        }
+        final GraphHopperHolder holder = new GraphHopperHolder(hoppers.get(0));
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 10000; i++)
+                    {
+                        ClosingCounter hopper = (ClosingCounter) holder.acquire();
+                        // an acquired instance must never be closed
+                        if (hopper.closed.get() > 0)
+                            errors.incrementAndGet();
+
+                        holder.release(hopper);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (int i = 1; i < hoppers.size(); i++)
+        {
+            holder.swap(hoppers.get(i));
+            Thread.sleep(1);
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        for (int i = 0; i < hoppers.size() - 1; i++)
+        {
+            assertEquals(1, hoppers.get(i).closed.get());
+        }
+        assertEquals(0, hoppers.get(hoppers.size() - 1).closed.get());
+    }
+}
@@ -139,6 +139,45 @@ public class GraphHopperServletIT extends BaseServletTester
         assertEquals("At roundabout, take exit 2", instructions.get(3).get("text"));
     }
 
+    @Test
+    public void testGraphHopperWebProtobuf() throws Exception
+    {
+        GraphHopperWeb jsonHopper = new GraphHopperWeb();
+        assertTrue(jsonHopper.load(getTestRouteAPIUrl()));
+        GraphHopperWeb hopper = new GraphHopperWeb().setProtobuf(true);
+        assertTrue(hopper.load(getTestRouteAPIUrl()));
+        GHRequest req = new GHRequest().
+                addPoint(new GHPoint(42.554851, 1.536198)).
+                addPoint(new GHPoint(42.531896, 1.553278)).
+                addPoint(new GHPoint(42.510071, 1.548128));
+        GHResponse jsonRsp = jsonHopper.route(req);
+        GHResponse rsp = hopper.route(req);
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().isEmpty());
+        assertEquals(jsonRsp.getDistance(), rsp.getDistance(), 1e-2);
+        assertEquals(jsonRsp.getTime(), rsp.getTime());
+        assertEquals(jsonRsp.getPoints().getSize(), rsp.getPoints().getSize());
+        // the encoded polyline has a precision of 1e-5 only
+        assertEquals(jsonRsp.getPoints().getLatitude(10), rsp.getPoints().getLatitude(10), 1e-5);
+
+        List<Map<String, Object>> instructions = rsp.getInstructions().createJson();
+        assertEquals(23, instructions.size());
+        assertEquals("Continue onto la Callisa", instructions.get(0).get("text"));
+        assertEquals("la Callisa", rsp.getInstructions().get(0).getName());
+        assertEquals("At roundabout, take exit 2", instructions.get(3).get("text"));
+        assertEquals(2, instructions.get(3).get("exit_number"));
+        List<Map<String, Object>> jsonInstructions = jsonRsp.getInstructions().createJson();
+        // the JSON client has no text for the finish instruction
+        for (int i = 0; i < instructions.size() - 1; i++)
+        {
+            assertEquals(jsonInstructions.get(i).get("text"), instructions.get(i).get("text"));
+        }
+        assertEquals("Finish!", instructions.get(22).get("text"));
+
+        rsp = hopper.route(new GHRequest(42.554851, 1.536198, 42.510071, 1.548128).setVehicle("SPACE-SHUTTLE"));
+        assertFalse("Errors expected but not found.", rsp.getErrors().isEmpty());
+        assertTrue(rsp.getErrors().get(0) instanceof IllegalArgumentException);
+    }
+
     @Test
     public void testGraphHopperWebRealExceptions()
     {
@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class GraphReloaderTest
+{
+    @Test
+    public void testReloadWithoutGraph()
+    {
+        GraphHopper current = new GraphHopper();
+        GraphHopperHolder holder = new GraphHopperHolder(current);
+        CmdArgs args = new CmdArgs().put("graph.flagEncoders", "car").
+                put("osmreader.osm", "../core/files/andorra.osm.pbf");
+        GraphReloader reloader = new GraphReloader(holder, args).setWarmupQueries(0);
+        String location = "./target/reload-missing-gh";
+        Helper.removeDir(new File(location));
+        try
+        {
+            reloader.doReload(location);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("No graph found at " + location));
+        }
+
+        // no import was started and the current instance is kept
+        assertFalse(new File(location, "nodes").exists());
+        assertSame(current, holder.get());
+        assertEquals(0, holder.getSwaps());
+        reloader.stop();
+    }
+
+    @Test
+    public void testReloadThroughDefaultModule()
+    {
+        String dir = "./target/reload-andorra-gh";
+        String location = "./target/reload-missing-gh";
+        Helper.removeDir(new File(dir));
+        Helper.removeDir(new File(location));
+        CmdArgs args = new CmdArgs().
+                put("config", "../config-example.properties").
+                put("osmreader.osm", "../core/files/andorra.osm.pbf").
+                put("graph.location", dir).
+                put("web.reload.warmupQueries", "10");
+        Injector injector = Guice.createInjector(new DefaultModule(args));
+        GraphReloader reloader = injector.getInstance(GraphReloader.class);
+        GraphHopperHolder holder = injector.getInstance(GraphHopperHolder.class);
+        GraphHopper current = holder.get();
+        try
+        {
+            // the OSM file of the server configuration must not be imported into the new location
+            try
+            {
+                reloader.doReload(location);
+                assertTrue(false);
+            } catch (IllegalStateException ex)
+            {
+                assertTrue(ex.getMessage(), ex.getMessage().startsWith("No graph found at " + location));
+            }
+            assertFalse(new File(location, "nodes").exists());
+            assertSame(current, holder.get());
+
+            // a prepared graph is loaded and swapped in
+            reloader.doReload(dir);
+            assertNotSame(current, holder.get());
+            assertEquals(1, holder.getSwaps());
+        } finally
+        {
+            reloader.stop();
+            holder.get().close();
+            Helper.removeDir(new File(dir));
+            Helper.removeDir(new File(location));
+        }
+    }
+}
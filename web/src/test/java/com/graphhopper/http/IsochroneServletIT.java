@@ -0,0 +1,109 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IsochroneServletIT extends BaseServletTester
+{
+    private static final String dir = "./target/andorra-gh/";
+
+    @AfterClass
+    public static void cleanUp()
+    {
+        Helper.removeDir(new File(dir));
+        shutdownJetty(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CmdArgs args = new CmdArgs().
+                put("config", "../config-example.properties").
+                put("osmreader.osm", "../core/files/andorra.osm.pbf").
+                put("graph.location", dir);
+        setUpJetty(args);
+    }
+
+    @Test
+    public void testPolygons() throws Exception
+    {
+        JSONObject json = isochroneQuery("point=42.531073,1.573792&time_limit=300&buckets=2", 200);
+        assertEquals("FeatureCollection", json.getString("type"));
+        JSONArray features = json.getJSONArray("features");
+        assertEquals(2, features.length());
+        JSONObject feature = features.getJSONObject(1);
+        assertEquals(300, feature.getJSONObject("properties").getLong("time_limit"));
+        JSONObject geometry = feature.getJSONObject("geometry");
+        assertEquals("Polygon", geometry.getString("type"));
+        JSONArray ring = geometry.getJSONArray("coordinates").getJSONArray(0);
+        assertTrue(ring.length() > 3);
+        // the ring is closed
+        assertEquals(ring.getJSONArray(0).getDouble(0), ring.getJSONArray(ring.length() - 1).getDouble(0), 1e-6);
+        assertEquals(ring.getJSONArray(0).getDouble(1), ring.getJSONArray(ring.length() - 1).getDouble(1), 1e-6);
+    }
+
+    @Test
+    public void testPointList() throws Exception
+    {
+        JSONObject json = isochroneQuery("point=42.531073,1.573792&time_limit=120&result=pointlist", 200);
+        JSONObject geometry = json.getJSONArray("features").getJSONObject(0).getJSONObject("geometry");
+        assertEquals("MultiPoint", geometry.getString("type"));
+        assertTrue(geometry.getJSONArray("coordinates").length() > 10);
+    }
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        JSONObject json = isochroneQuery("time_limit=120", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("Exactly one point"));
+
+        json = isochroneQuery("point=42.531073,1.573792&result=lines", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("Unsupported result"));
+    }
+
+    @Test
+    public void testLimits() throws Exception
+    {
+        JSONObject json = isochroneQuery("point=42.531073,1.573792&time_limit=0", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("time_limit has to be in (0, 3600]"));
+
+        json = isochroneQuery("point=42.531073,1.573792&time_limit=3601", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("time_limit has to be in (0, 3600]"));
+
+        json = isochroneQuery("point=42.531073,1.573792&buckets=-1", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("buckets has to be in (0, 10]"));
+
+        // must not overflow into a valid int
+        json = isochroneQuery("point=42.531073,1.573792&buckets=4294967297", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("buckets has to be in (0, 10]"));
+    }
+}
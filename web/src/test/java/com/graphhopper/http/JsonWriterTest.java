@@ -0,0 +1,106 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class JsonWriterTest
+{
+    @Test
+    public void testCompact() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        JsonWriter writer = new JsonWriter(sw, false);
+        writer.startObject();
+        writer.key("a").value(1.0);
+        writer.key("b").startArray().value(2).value(2.5).value("x\"y").endArray();
+        writer.key("c").startObject().endObject();
+        writer.key("d").value(Double.NaN);
+        writer.key("e").value(true);
+        writer.endObject();
+        assertEquals("{\"a\":1,\"b\":[2,2.5,\"x\\\"y\"],\"c\":{},\"d\":null,\"e\":true}", sw.toString());
+    }
+
+    @Test
+    public void testPretty() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        new JsonWriter(sw, true).startObject().key("a").startArray().value(1).value(2).endArray().
+                key("b").startArray().endArray().endObject();
+        assertEquals("{\n  \"a\": [\n    1,\n    2\n  ],\n  \"b\": []\n}", sw.toString());
+        assertEquals(2, new JSONObject(sw.toString()).getJSONArray("a").getInt(1));
+    }
+
+    @Test
+    public void testCallback() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        new JsonWriter(sw, false).setCallback("cb").startArray().value("a").endArray();
+        assertEquals("cb([\"a\"])", sw.toString());
+    }
+
+    @Test
+    public void testObjectValues() throws Exception
+    {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("list", Arrays.asList(1, 2L));
+        map.put("array", new Double[]
+        {
+            1.5, 2.0
+        });
+        map.put("json", new JSONObject().put("k", "v"));
+        map.put("null", null);
+
+        StringWriter sw = new StringWriter();
+        new JsonWriter(sw, false).value(map);
+        assertEquals("{\"list\":[1,2],\"array\":[1.5,2],\"json\":{\"k\":\"v\"},\"null\":null}", sw.toString());
+    }
+
+    @Test
+    public void testStringValue() throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        JsonWriter writer = new JsonWriter(sw, false).startArray();
+        writer.startString().append("a\\b\"c").append('\n');
+        writer.endString().endArray();
+        assertEquals("[\"a\\\\b\\\"c\\u000a\"]", sw.toString());
+    }
+
+    @Test
+    public void testKeyOutsideOfObject() throws Exception
+    {
+        try
+        {
+            new JsonWriter(new StringWriter(), false).startArray().key("a");
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+}
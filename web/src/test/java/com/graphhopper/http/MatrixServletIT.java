@@ -0,0 +1,106 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class MatrixServletIT extends BaseServletTester
+{
+    private static final String dir = "./target/andorra-gh/";
+
+    @AfterClass
+    public static void cleanUp()
+    {
+        Helper.removeDir(new File(dir));
+        shutdownJetty(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CmdArgs args = new CmdArgs().
+                put("config", "../config-example.properties").
+                put("osmreader.osm", "../core/files/andorra.osm.pbf").
+                put("graph.location", dir).
+                put("web.matrix.maxSize", "9");
+        setUpJetty(args);
+    }
+
+    @Test
+    public void testSymmetricMatrix() throws Exception
+    {
+        JSONObject json = matrixQuery("point=42.554851,1.536198&point=42.510071,1.548128&point=42.531073,1.573792", 200);
+        assertTrue(json.getJSONObject("info").has("took"));
+        assertFalse(json.has("weights"));
+        JSONArray distances = json.getJSONArray("distances");
+        JSONArray times = json.getJSONArray("times");
+        assertEquals(3, distances.length());
+        assertEquals(3, times.length());
+        for (int row = 0; row < 3; row++)
+        {
+            assertEquals(3, distances.getJSONArray(row).length());
+            assertEquals(0, distances.getJSONArray(row).getDouble(row), 1e-6);
+        }
+
+        // same points as in GraphHopperServletIT.testBasicQuery
+        double distance = distances.getJSONArray(0).getDouble(1);
+        assertTrue("distance wasn't correct:" + distance, distance > 9000);
+        assertTrue("distance wasn't correct:" + distance, distance < 9500);
+        assertTrue(times.getJSONArray(0).getLong(1) > 0);
+    }
+
+    @Test
+    public void testFromToMatrix() throws Exception
+    {
+        JSONObject json = matrixQuery("from_point=42.554851,1.536198&to_point=42.510071,1.548128&to_point=42.531073,1.573792"
+                + "&out_array=weights", 200);
+        assertFalse(json.has("distances"));
+        JSONArray weights = json.getJSONArray("weights");
+        assertEquals(1, weights.length());
+        assertEquals(2, weights.getJSONArray(0).length());
+        assertTrue(weights.getJSONArray(0).getDouble(0) > 0);
+    }
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        JSONObject json = matrixQuery("from_point=42.554851,1.536198", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("At least 1 from and 1 to point"));
+
+        json = matrixQuery("point=42.554851,1.536198&point=42.510071,1.548128&out_array=paths", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("Unsupported out_array"));
+
+        json = matrixQuery("from_point=42.554851,1.536198&from_point=42.510071,1.548128"
+                + "&to_point=42.554851,1.536198&to_point=42.510071,1.548128&to_point=42.531073,1.573792"
+                + "&to_point=42.531073,1.573792&to_point=42.531073,1.573792", 400);
+        assertTrue(json.getString("message"), json.getString("message").startsWith("Too many entries 2x5"));
+    }
+}
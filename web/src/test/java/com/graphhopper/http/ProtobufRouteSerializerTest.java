@@ -0,0 +1,140 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ProtobufRouteSerializerTest
+{
+    private final Translation usTR = new TranslationMap().doImport().getWithFallBack(Locale.US);
+    private final ProtobufRouteSerializer serializer = new ProtobufRouteSerializer(new BBox(1, 2, 40, 50, 0, 100));
+
+    private GHResponse createResponse()
+    {
+        InstructionList il = new InstructionList(usTR);
+        PointList pl = Helper.createPointList3D(42.5, 1.5, 100, 42.510001, 1.51, 120.5);
+        il.add(new Instruction(Instruction.CONTINUE_ON_STREET, "street 1", new InstructionAnnotation(1, "toll"), pl).
+                setDistance(1200.1234).setTime(60000));
+        pl = Helper.createPointList3D(42.52, 1.505, 110, 42.521, 1.504, 109);
+        il.add(new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "street 2", InstructionAnnotation.EMPTY, pl).
+                setDirOfRotation(-0.1).setRadian(-Math.PI + 1).setExitNumber(2).setExited().
+                setDistance(300).setTime(20000));
+        pl = Helper.createPointList3D(42.525, 1.502, 108);
+        il.add(new Instruction(Instruction.TURN_LEFT, "street 1", InstructionAnnotation.EMPTY, pl).
+                setDistance(100).setTime(10000));
+        il.add(new FinishInstruction(42.53, 1.5, 105));
+
+        PointList points = new PointList(10, true);
+        for (Instruction instr : il)
+        {
+            points.add(instr.getPoints());
+        }
+        GHResponse rsp = new GHResponse().setPoints(points).setDistance(1600.1234).setTime(90000).
+                setAscend(20.5).setDescend(15).setRouteWeight(123.4);
+        rsp.setInstructions(il);
+        return rsp;
+    }
+
+    private GHResponse readWritten( GHResponse rsp, boolean includeElevation ) throws Exception
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        serializer.write(os, rsp, 12, true, includeElevation, true);
+        GHResponse res = new GHResponse();
+        GraphHopperWeb.readProtobuf(res, new ByteArrayInputStream(os.toByteArray()), usTR);
+        return res;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        GHResponse rsp = createResponse();
+        GHResponse res = readWritten(rsp, true);
+        assertFalse(res.hasErrors());
+        assertEquals(1600.1234, res.getDistance(), 1e-6);
+        assertEquals(123.4, res.getRouteWeight(), 1e-6);
+        assertEquals(90000, res.getTime());
+        assertEquals(20.5, res.getAscend(), 1e-6);
+        assertEquals(15, res.getDescend(), 1e-6);
+
+        PointList points = res.getPoints();
+        assertTrue(points.is3D());
+        assertEquals(rsp.getPoints().getSize(), points.getSize());
+        for (int i = 0; i < points.getSize(); i++)
+        {
+            assertEquals(rsp.getPoints().getLatitude(i), points.getLatitude(i), 1e-6);
+            assertEquals(rsp.getPoints().getLongitude(i), points.getLongitude(i), 1e-6);
+            assertEquals(rsp.getPoints().getElevation(i), points.getElevation(i), 1e-2);
+        }
+
+        InstructionList il = res.getInstructions();
+        assertEquals(4, il.size());
+        for (int i = 0; i < il.size(); i++)
+        {
+            Instruction expected = rsp.getInstructions().get(i);
+            assertEquals(expected.getSign(), il.get(i).getSign());
+            assertEquals(expected.getName(), il.get(i).getName());
+            assertEquals(expected.getTime(), il.get(i).getTime());
+            assertEquals(expected.getDistance(), il.get(i).getDistance(), 1e-6);
+            assertEquals(expected.getPoints().getSize(), il.get(i).getPoints().getSize());
+            assertEquals(rsp.getInstructions().createText(expected), il.createText(il.get(i)));
+        }
+        assertEquals("toll", il.get(0).getAnnotation().getMessage());
+        assertEquals(1, il.get(0).getAnnotation().getImportance());
+        assertEquals(42.525, il.get(2).getPoints().getLatitude(0), 1e-6);
+        assertEquals(rsp.getInstructions().createJson().get(1), il.createJson().get(1));
+    }
+
+    @Test
+    public void testWithoutElevationAndPoints() throws Exception
+    {
+        GHResponse res = readWritten(createResponse(), false);
+        assertFalse(res.getPoints().is3D());
+        assertEquals(1.51, res.getPoints().getLongitude(1), 1e-6);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        serializer.write(os, createResponse(), 12, false, false, false);
+        res = new GHResponse();
+        GraphHopperWeb.readProtobuf(res, new ByteArrayInputStream(os.toByteArray()), usTR);
+        assertEquals(1600.1234, res.getDistance(), 1e-6);
+        assertEquals(0, res.getPoints().getSize());
+    }
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("invalid point")).
+                addError(new IllegalStateException("invalid state"));
+        GHResponse res = readWritten(rsp, false);
+        assertEquals(2, res.getErrors().size());
+        assertTrue(res.getErrors().get(0) instanceof IllegalArgumentException);
+        assertEquals("invalid point", res.getErrors().get(0).getMessage());
+        assertTrue(res.getErrors().get(1) instanceof IllegalStateException);
+    }
+}
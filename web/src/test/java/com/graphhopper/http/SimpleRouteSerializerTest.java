@@ -0,0 +1,129 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class SimpleRouteSerializerTest
+{
+    private final Translation usTR = new TranslationMap().doImport().getWithFallBack(Locale.US);
+    private final SimpleRouteSerializer serializer = new SimpleRouteSerializer(new BBox(1, 2, 40, 50, 0, 100));
+
+    private GHResponse createResponse()
+    {
+        InstructionList il = new InstructionList(usTR);
+        PointList pl = Helper.createPointList3D(42.5, 1.5, 100, 42.51, 1.51, 120);
+        il.add(new Instruction(Instruction.CONTINUE_ON_STREET, "street \\ \"1\"",
+                new InstructionAnnotation(1, "toll"), pl).setDistance(1200.1234).setTime(60000));
+        pl = Helper.createPointList3D(42.52, 1.505, 110);
+        il.add(new Instruction(Instruction.TURN_LEFT, "street 2", InstructionAnnotation.EMPTY, pl).
+                setDistance(300).setTime(20000));
+        il.add(new FinishInstruction(42.53, 1.5, 105));
+
+        PointList points = Helper.createPointList3D(42.5, 1.5, 100, 42.51, 1.51, 120,
+                42.52, 1.505, 110, 42.53, 1.5, 105);
+        GHResponse rsp = new GHResponse().setPoints(points).setDistance(1500.1234).setTime(80000).
+                setAscend(20).setDescend(15);
+        rsp.setInstructions(il);
+        return rsp;
+    }
+
+    private JSONObject writeJSON( GHResponse rsp, Map<String, Object> info, boolean pointsEncoded,
+                                  boolean includeElevation, boolean pretty ) throws Exception
+    {
+        StringWriter sw = new StringWriter();
+        JsonWriter writer = new JsonWriter(sw, pretty);
+        serializer.writeJSON(writer, rsp, info, true, pointsEncoded, includeElevation, true);
+        writer.flush();
+        return new JSONObject(sw.toString());
+    }
+
+    @Test
+    public void testSameAsToJSON() throws Exception
+    {
+        Map<String, Object> info = Collections.<String, Object>emptyMap();
+        GHResponse rsp = createResponse();
+        for (int i = 0; i < 8; i++)
+        {
+            boolean pointsEncoded = (i & 1) != 0, includeElevation = (i & 2) != 0, pretty = (i & 4) != 0;
+            // compare the parsed JSON as the order of the keys is not defined
+            JSONObject expected = new JSONObject(new JSONObject(
+                    serializer.toJSON(rsp, true, pointsEncoded, includeElevation, true)).toString());
+            assertJsonEquals(expected, writeJSON(rsp, info, pointsEncoded, includeElevation, pretty));
+        }
+    }
+
+    @Test
+    public void testInfoAndErrors() throws Exception
+    {
+        JSONObject json = writeJSON(createResponse(), Collections.<String, Object>singletonMap("took", 12L),
+                true, false, false);
+        assertEquals(12, json.getJSONObject("info").getLong("took"));
+        assertEquals(2, json.getJSONObject("info").getJSONArray("copyrights").length());
+
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("invalid"));
+        JSONObject expected = new JSONObject(new JSONObject(serializer.toJSON(rsp, true, true, false, true)).toString());
+        assertJsonEquals(expected, writeJSON(rsp, null, true, false, false));
+    }
+
+    static void assertJsonEquals( Object expected, Object actual )
+    {
+        if (expected instanceof JSONObject)
+        {
+            JSONObject expectedObj = (JSONObject) expected, actualObj = (JSONObject) actual;
+            assertEquals(expectedObj.length(), actualObj.length());
+            Iterator iter = expectedObj.keys();
+            while (iter.hasNext())
+            {
+                String key = (String) iter.next();
+                assertTrue(key, actualObj.has(key));
+                assertJsonEquals(expectedObj.get(key), actualObj.get(key));
+            }
+        } else if (expected instanceof JSONArray)
+        {
+            JSONArray expectedArr = (JSONArray) expected, actualArr = (JSONArray) actual;
+            assertEquals(expectedArr.length(), actualArr.length());
+            for (int i = 0; i < expectedArr.length(); i++)
+            {
+                assertJsonEquals(expectedArr.get(i), actualArr.get(i));
+            }
+        } else if (expected instanceof Number)
+        {
+            assertEquals(((Number) expected).doubleValue(), ((Number) actual).doubleValue(), 1e-10);
+        } else
+        {
+            assertEquals(expected, actual);
+        }
+    }
+}